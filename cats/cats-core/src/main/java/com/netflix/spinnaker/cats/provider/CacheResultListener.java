@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.cats.provider;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Notified whenever a ProviderCache stores or evicts data, allowing derived views to be maintained incrementally
+ * rather than rebuilt from a full cache scan.
+ *
+ * Listeners are invoked synchronously on the writing thread and should do as little work as possible.
+ * Only writes made through this process are observed; writes made by other nodes sharing the same backing store
+ * are not.
+ */
+public interface CacheResultListener {
+  /**
+   * @param providerName The provider whose cache was written.
+   * @param sourceAgentType The agent (or on-demand source) responsible for the write, or null for writes that aren't
+   *                        made on behalf of an agent (single items stored with putCacheData, evictions).
+   * @param stored Identifiers that were added or updated, by type.
+   * @param evicted Identifiers that were evicted, by type.
+   */
+  void cacheResultStored(String providerName,
+                         String sourceAgentType,
+                         Map<String, Collection<String>> stored,
+                         Map<String, Collection<String>> evicted);
+}
@@ -22,6 +22,8 @@ import com.netflix.spinnaker.cats.cache.CacheFilter;
 import com.netflix.spinnaker.cats.cache.DefaultCacheData;
 import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
 import com.netflix.spinnaker.cats.cache.WriteableCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -30,7 +32,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * An implementation of ProviderCache that writes through to a provided backing
@@ -46,12 +50,26 @@ public class DefaultProviderCache implements ProviderCache {
     put("id", ALL_ID);
   }});
 
+  private final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final String providerName;
   private final WriteableCache backingStore;
+  private final List<CacheResultListener> listeners = new CopyOnWriteArrayList<>();
 
   public DefaultProviderCache(WriteableCache backingStore) {
+    this(null, backingStore);
+  }
+
+  public DefaultProviderCache(String providerName, WriteableCache backingStore) {
+    this.providerName = providerName;
     this.backingStore = backingStore;
   }
 
+  @Override
+  public void addCacheResultListener(CacheResultListener listener) {
+    listeners.add(listener);
+  }
+
   @Override
   public CacheData get(String type, String id) {
     return get(type, id, null);
@@ -132,6 +150,7 @@ public class DefaultProviderCache implements ProviderCache {
     validateTypes(allTypes);
 
     Map<String, Collection<String>> evictions = new HashMap<>();
+    Map<String, Collection<String>> stored = new HashMap<>();
 
     for (String type : allTypes) {
       final Collection<String> previousSet;
@@ -142,9 +161,12 @@ public class DefaultProviderCache implements ProviderCache {
       }
       if (cacheResult.getCacheResults().containsKey(type)) {
         cacheDataType(type, sourceAgentType, cacheResult.getCacheResults().get(type));
+        Collection<String> storedIds = new ArrayList<>(cacheResult.getCacheResults().get(type).size());
         for (CacheData data : cacheResult.getCacheResults().get(type)) {
           previousSet.remove(data.getId());
+          storedIds.add(data.getId());
         }
+        stored.put(type, storedIds);
       }
       if (cacheResult.getEvictions().containsKey(type)) {
         previousSet.addAll(cacheResult.getEvictions().get(type));
@@ -155,8 +177,10 @@ public class DefaultProviderCache implements ProviderCache {
     }
 
     for (Map.Entry<String, Collection<String>> eviction : evictions.entrySet()) {
-      evictDeletedItems(eviction.getKey(), eviction.getValue());
+      backingStore.evictAll(eviction.getKey(), eviction.getValue());
     }
+
+    notifyListeners(sourceAgentType, stored, evictions);
   }
 
   @Override
@@ -164,14 +188,31 @@ public class DefaultProviderCache implements ProviderCache {
     Set<String> allTypes = new HashSet<>(cacheResult.getCacheResults().keySet());
     validateTypes(allTypes);
 
+    Map<String, Collection<String>> stored = new HashMap<>();
     allTypes.forEach(type -> {
-      cacheDataType(type, sourceAgentType, cacheResult.getCacheResults().get(type));
+      Collection<CacheData> items = cacheResult.getCacheResults().get(type);
+      cacheDataType(type, sourceAgentType, items);
+
+      Collection<String> storedIds = new ArrayList<>(items.size());
+      for (CacheData item : items) {
+        storedIds.add(item.getId());
+      }
+      stored.put(type, storedIds);
     });
+
+    notifyListeners(sourceAgentType, stored, Collections.emptyMap());
   }
 
   @Override
-  public void putCacheData(String sourceAgentType, CacheData cacheData) {
-    backingStore.merge(sourceAgentType, cacheData);
+  public void putCacheData(String type, CacheData cacheData) {
+    backingStore.merge(type, cacheData);
+
+    // the data isn't written on behalf of a particular agent
+    notifyListeners(
+      null,
+      Collections.singletonMap(type, Collections.singletonList(cacheData.getId())),
+      Collections.emptyMap()
+    );
   }
 
   private void validateTypes(String... types) {
@@ -265,5 +306,23 @@ public class DefaultProviderCache implements ProviderCache {
   @Override
   public void evictDeletedItems(String type, Collection<String> ids) {
     backingStore.evictAll(type, ids);
+
+    notifyListeners(null, Collections.emptyMap(), Collections.singletonMap(type, ids));
+  }
+
+  private void notifyListeners(String sourceAgentType,
+                               Map<String, Collection<String>> stored,
+                               Map<String, Collection<String>> evicted) {
+    if (stored.isEmpty() && evicted.isEmpty()) {
+      return;
+    }
+
+    for (CacheResultListener listener : listeners) {
+      try {
+        listener.cacheResultStored(providerName, sourceAgentType, stored, evicted);
+      } catch (Exception e) {
+        log.error("Cache result listener failed (provider: {}, source: {}, listener: {})", providerName, sourceAgentType, listener.getClass().getSimpleName(), e);
+      }
+    }
   }
 }
@@ -31,7 +31,7 @@ public class DefaultProviderRegistry implements ProviderRegistry {
     public DefaultProviderRegistry(Collection<Provider> providers, NamedCacheFactory cacheFactory) {
         this.providers = Collections.unmodifiableCollection(providers);
         for (Provider provider : providers) {
-            providerCaches.put(provider.getProviderName(), new DefaultProviderCache(cacheFactory.getCache(provider.getProviderName())));
+            providerCaches.put(provider.getProviderName(), new DefaultProviderCache(provider.getProviderName(), cacheFactory.getCache(provider.getProviderName())));
         }
     }
 
@@ -62,4 +62,14 @@ public interface ProviderCache extends Cache {
    * @param ids The identifiers to delete.
    */
   void evictDeletedItems(String type, Collection<String> ids);
+
+  /***
+   * Register a listener to be notified of all subsequent writes to this cache.
+   *
+   * Caches that don't support listeners ignore them by default, so a listener must not rely on being notified of
+   * every write (e.g. by bounding how long it trusts what it derived from earlier writes).
+   * @param listener The listener to notify.
+   */
+  default void addCacheResultListener(CacheResultListener listener) {
+  }
 }
@@ -30,4 +30,13 @@ public interface ProviderRegistry {
     Collection<Cache> getProviderCaches();
 
     ProviderCache getProviderCache(String providerName);
+
+    /**
+     * Registers a listener against the cache of every provider in this registry.
+     */
+    default void addCacheResultListener(CacheResultListener listener) {
+        for (Provider provider : getProviders()) {
+            getProviderCache(provider.getProviderName()).addCacheResultListener(listener);
+        }
+    }
 }
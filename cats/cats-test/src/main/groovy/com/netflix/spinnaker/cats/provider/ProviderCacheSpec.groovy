@@ -61,6 +61,31 @@ abstract class ProviderCacheSpec extends CacheSpec {
         data == null
     }
 
+    def 'listeners are notified of stored and evicted identifiers'() {
+        setup:
+        def listener = Mock(CacheResultListener)
+        defaultProviderCache.addCacheResultListener(listener)
+        defaultProviderCache.putCacheResult('agent', ['test'], new DefaultCacheResult(test: [createData('id1'), createData('id2')]))
+
+        when:
+        defaultProviderCache.putCacheResult('agent', ['test'], new DefaultCacheResult(test: [createData('id1')]))
+
+        then:
+        1 * listener.cacheResultStored(_, 'agent', { it.test as List == ['id1'] }, { it.test as List == ['id2'] })
+    }
+
+    def 'listeners are notified of single items stored by type without a source agent'() {
+        setup:
+        def listener = Mock(CacheResultListener)
+        defaultProviderCache.addCacheResultListener(listener)
+
+        when:
+        defaultProviderCache.putCacheData('test', createData('id1'))
+
+        then:
+        1 * listener.cacheResultStored(_, null, { it.test as List == ['id1'] }, [:])
+    }
+
     def 'multiple agents can cache the same data type'() {
         setup:
         String usEast1Agent = 'AwsProvider:test/us-east-1/ClusterCachingAgent'
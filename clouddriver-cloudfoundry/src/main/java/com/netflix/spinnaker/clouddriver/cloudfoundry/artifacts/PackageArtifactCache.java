@@ -0,0 +1,351 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts;
+
+import com.google.common.io.BaseEncoding;
+import com.netflix.spinnaker.clouddriver.artifacts.config.ArtifactCredentials;
+import com.netflix.spinnaker.kork.artifacts.model.Artifact;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded local cache of the package artifacts deployed to Cloud Foundry, so that deploying the same artifact again
+ * doesn't download it again.
+ *
+ * An artifact is written to the cache as it is streamed to Cloud Foundry, and only kept once it was read to the end.
+ * Files are named by the SHA-256 of their content, which is computed on the way and checked again whenever a file is
+ * read back. The least recently used files are removed once the cache grows beyond its size.
+ *
+ * Artifacts are looked up by their type, reference and version, so only artifacts with a version are cached: the
+ * content behind an unversioned reference (e.g. {@code app-latest.zip}) can change from one deploy to the next. The
+ * cache should still only be enabled (given a size) where a version identifies the content of an artifact.
+ */
+@Slf4j
+public class PackageArtifactCache {
+  private static final Pattern DIGEST_FILE_NAME = Pattern.compile("[0-9a-f]{64}");
+
+  private final Path directory;
+  private final long maxSizeBytes;
+
+  // the size of each file by the digest it is named by, least recently used first
+  private final LinkedHashMap<String, Long> fileSizes = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, String> digestsByArtifact = new LinkedHashMap<>();
+  private long sizeBytes;
+
+  /**
+   * @param maxSizeBytes how much the cached files may take up in all, or 0 to disable the cache.
+   */
+  public PackageArtifactCache(Path directory, long maxSizeBytes) {
+    this.directory = directory;
+    this.maxSizeBytes = maxSizeBytes;
+
+    if (isEnabled()) {
+      try {
+        Files.createDirectories(directory);
+        deleteCachedFiles(directory);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to create the package artifact cache in " + directory, e);
+      }
+    }
+  }
+
+  /**
+   * Files cached before a restart can't be found again, as artifacts are only mapped to files in memory. Only the files
+   * this cache writes are deleted, in case the directory is shared with anything else.
+   */
+  private static void deleteCachedFiles(Path directory) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        if (DIGEST_FILE_NAME.matcher(name).matches() || (name.startsWith("download-") && name.endsWith(".tmp"))) {
+          deleteQuietly(file);
+        }
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return maxSizeBytes > 0;
+  }
+
+  /**
+   * @return credentials that download artifacts through this cache, or the credentials themselves if it is disabled.
+   */
+  public ArtifactCredentials cached(ArtifactCredentials credentials) {
+    return isEnabled() ? new CachingArtifactCredentials(credentials) : credentials;
+  }
+
+  InputStream download(ArtifactCredentials credentials, Artifact artifact) throws IOException {
+    if (StringUtils.isEmpty(artifact.getVersion())) {
+      return credentials.download(artifact);
+    }
+
+    String artifactKey = artifactKey(artifact);
+
+    String digest = lookup(artifactKey);
+    if (digest != null) {
+      try {
+        return new VerifyingInputStream(Files.newInputStream(file(digest)), digest);
+      } catch (NoSuchFileException e) {
+        evict(digest);
+      }
+    }
+
+    Path download = Files.createTempFile(directory, "download-", ".tmp");
+    OutputStream copy = null;
+    try {
+      copy = new BufferedOutputStream(Files.newOutputStream(download));
+      return new CachingInputStream(credentials.download(artifact), copy, download, artifactKey);
+    } catch (IOException | RuntimeException e) {
+      if (copy != null) {
+        copy.close();
+      }
+      Files.deleteIfExists(download);
+      throw e;
+    }
+  }
+
+  @Nullable
+  private synchronized String lookup(String artifactKey) {
+    String digest = digestsByArtifact.get(artifactKey);
+    if (digest != null) {
+      // marks the file as recently used
+      fileSizes.get(digest);
+    }
+    return digest;
+  }
+
+  private void add(String artifactKey, Path download, String digest, long size) throws IOException {
+    if (size > maxSizeBytes) {
+      Files.delete(download);
+      return;
+    }
+
+    Files.move(download, file(digest), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    synchronized (this) {
+      digestsByArtifact.put(artifactKey, digest);
+      if (fileSizes.put(digest, size) == null) {
+        sizeBytes += size;
+      }
+
+      Iterator<String> leastRecentlyUsed = fileSizes.keySet().iterator();
+      while (sizeBytes > maxSizeBytes && leastRecentlyUsed.hasNext()) {
+        String evicted = leastRecentlyUsed.next();
+        sizeBytes -= fileSizes.get(evicted);
+        leastRecentlyUsed.remove();
+        digestsByArtifact.values().removeIf(evicted::equals);
+        deleteQuietly(file(evicted));
+      }
+    }
+  }
+
+  private synchronized void evict(String digest) {
+    Long size = fileSizes.remove(digest);
+    if (size != null) {
+      sizeBytes -= size;
+    }
+    digestsByArtifact.values().removeIf(digest::equals);
+    deleteQuietly(file(digest));
+  }
+
+  private Path file(String digest) {
+    return directory.resolve(digest);
+  }
+
+  private static String artifactKey(Artifact artifact) {
+    return artifact.getType() + ":" + artifact.getReference() + ":" + artifact.getVersion();
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Unable to delete cached package artifact {}", file, e);
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @RequiredArgsConstructor
+  private class CachingArtifactCredentials implements ArtifactCredentials {
+    private final ArtifactCredentials credentials;
+
+    @Override
+    public String getName() {
+      return credentials.getName();
+    }
+
+    @Override
+    public List<String> getTypes() {
+      return credentials.getTypes();
+    }
+
+    @Override
+    public InputStream download(Artifact artifact) throws IOException {
+      return PackageArtifactCache.this.download(credentials, artifact);
+    }
+  }
+
+  /**
+   * Reads a file back from the cache, failing at the end if its content no longer matches the digest it is named by.
+   */
+  private class VerifyingInputStream extends DigestingInputStream {
+    private final String expectedDigest;
+
+    VerifyingInputStream(InputStream in, String expectedDigest) {
+      super(in);
+      this.expectedDigest = expectedDigest;
+    }
+
+    @Override
+    void completed(String digest, long size) throws IOException {
+      if (!expectedDigest.equals(digest)) {
+        evict(expectedDigest);
+        throw new IOException("Cached package artifact " + expectedDigest + " is corrupt");
+      }
+    }
+  }
+
+  /**
+   * Copies a download into the cache as it is read, keeping the copy once the download was read to the end. Failing to
+   * cache the download is logged rather than failing the read, as the download itself is fine.
+   */
+  private class CachingInputStream extends DigestingInputStream {
+    private final OutputStream copy;
+    private final Path download;
+    private final String artifactKey;
+    private boolean copying = true;
+    private boolean added;
+
+    CachingInputStream(InputStream in, OutputStream copy, Path download, String artifactKey) {
+      super(in);
+      this.copy = copy;
+      this.download = download;
+      this.artifactKey = artifactKey;
+    }
+
+    @Override
+    void copied(byte[] b, int off, int len) {
+      if (copying) {
+        try {
+          copy.write(b, off, len);
+        } catch (IOException e) {
+          log.warn("Unable to cache package artifact {}", artifactKey, e);
+          copying = false;
+        }
+      }
+    }
+
+    @Override
+    void completed(String digest, long size) {
+      if (copying) {
+        try {
+          copy.close();
+          add(artifactKey, download, digest, size);
+          added = true;
+        } catch (IOException e) {
+          log.warn("Unable to cache package artifact {}", artifactKey, e);
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        copy.close();
+        if (!added) {
+          Files.deleteIfExists(download);
+        }
+      }
+    }
+  }
+
+  private abstract static class DigestingInputStream extends FilterInputStream {
+    private final MessageDigest digest = sha256();
+    private long size;
+    private boolean completed;
+
+    DigestingInputStream(InputStream in) {
+      super(in);
+    }
+
+    void copied(byte[] b, int off, int len) {
+    }
+
+    abstract void completed(String digest, long size) throws IOException;
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read == -1) {
+        if (!completed) {
+          completed = true;
+          completed(BaseEncoding.base16().lowerCase().encode(digest.digest()), size);
+        }
+      } else {
+        digest.update(b, off, read);
+        size += read;
+        copied(b, off, read);
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // every byte has to go through the digest
+      byte[] skipped = new byte[(int) Math.min(n, 8192)];
+      int read = read(skipped, 0, skipped.length);
+      return read == -1 ? 0 : read;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
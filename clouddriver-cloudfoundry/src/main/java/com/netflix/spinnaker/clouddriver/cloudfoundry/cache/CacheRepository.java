@@ -18,28 +18,52 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.cache;
 
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import com.fasterxml.jackson.databind.introspect.AnnotatedClass;
 import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import com.google.common.cache.CacheBuilder;
 import com.netflix.spinnaker.cats.cache.Cache;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.cache.RelationshipCacheFilter;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.*;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
-import java.util.Collection;
-import java.util.Optional;
-import java.util.Set;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.*;
-import static java.util.Collections.emptySet;
+import static java.util.Collections.*;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 
+/**
+ * Rehydrates models from the cache one relationship level at a time, so that e.g. the instances of every server group
+ * of a cluster are read with a single request rather than one per server group.
+ */
 @Repository
 public class CacheRepository {
+  private static final long MODEL_TTL_SECONDS = 30;
+  private static final long MAX_CACHED_MODELS = 50_000;
+
   private final ObjectMapper objectMapper = new ObjectMapper()
     .disable(MapperFeature.DEFAULT_VIEW_INCLUSION);
 
+  private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+  /**
+   * Models deserialized recently, by cache key. An entry is only used while the cached resource it was deserialized
+   * from is unchanged, so a caching cycle invalidates the models it rewrites without having to evict them.
+   */
+  private final com.google.common.cache.Cache<String, CachedModel> models = CacheBuilder.newBuilder()
+    .expireAfterWrite(MODEL_TTL_SECONDS, TimeUnit.SECONDS)
+    .maximumSize(MAX_CACHED_MODELS)
+    .build();
+
   private final Cache cacheView;
 
   public CacheRepository(Cache cacheView) {
@@ -55,93 +79,145 @@ public class CacheRepository {
   }
 
   public Set<CloudFoundryApplication> findApplicationsByKeys(Collection<String> keys, Detail detail) {
-    return cacheView.getAll(APPLICATIONS.getNs(), keys, detail.appFilter()).stream()
-      .map(appData -> applicationFromCacheData(appData, detail))
-      .collect(toSet());
+    return new HashSet<>(applicationsByKey(cacheView.getAll(APPLICATIONS.getNs(), keys, detail.appFilter()), detail).values());
   }
 
   public Optional<CloudFoundryApplication> findApplicationByKey(String key, Detail detail) {
     return Optional.ofNullable(cacheView.get(APPLICATIONS.getNs(), key, detail.appFilter()))
-      .map(appData -> applicationFromCacheData(appData, detail));
+      .map(appData -> applicationsByKey(singletonList(appData), detail).get(appData.getId()));
   }
 
-  private CloudFoundryApplication applicationFromCacheData(CacheData appData, Detail detail) {
-    CloudFoundryApplication app = objectMapper.convertValue(appData.getAttributes().get("resource"), CloudFoundryApplication.class);
-    if (detail.equals(Detail.NONE)) {
-      return app.withClusters(emptySet());
-    }
-    return app.withClusters(findClustersByKeys(appData.getRelationships().get(CLUSTERS.getNs()), Detail.NONE));
+  private Map<String, CloudFoundryApplication> applicationsByKey(Collection<CacheData> appData, Detail detail) {
+    // rehydrated clusters are shallow, serving only to provide cluster names
+    Map<String, CloudFoundryCluster> clusters = detail.equals(Detail.NONE) ? emptyMap() :
+      clustersByKey(cacheView.getAll(CLUSTERS.getNs(), relatedKeys(appData, CLUSTERS), Detail.NONE.clusterFilter()), Detail.NONE);
+
+    return appData.stream().collect(toMap(CacheData::getId, data -> fromCacheData(data, CloudFoundryApplication.class)
+      .withClusters(related(data, CLUSTERS, clusters))));
   }
 
   public Set<CloudFoundryCluster> findClustersByKeys(Collection<String> keys, Detail detail) {
-    return cacheView.getAll(CLUSTERS.getNs(), keys, detail.clusterFilter()).stream()
-      .map(clusterData -> clusterFromCacheData(clusterData, detail))
-      .collect(toSet());
+    return new HashSet<>(clustersByKey(cacheView.getAll(CLUSTERS.getNs(), keys, detail.clusterFilter()), detail).values());
   }
 
   public Optional<CloudFoundryCluster> findClusterByKey(String key, Detail detail) {
     return Optional.ofNullable(cacheView.get(CLUSTERS.getNs(), key, detail.clusterFilter()))
-      .map(clusterData -> clusterFromCacheData(clusterData, detail));
+      .map(clusterData -> clustersByKey(singletonList(clusterData), detail).get(clusterData.getId()));
   }
 
-  private CloudFoundryCluster clusterFromCacheData(CacheData clusterData, Detail detail) {
-    CloudFoundryCluster cluster = objectMapper.convertValue(clusterData.getAttributes().get("resource"), CloudFoundryCluster.class);
-    if (detail.equals(Detail.NONE)) {
-      return cluster.withServerGroups(emptySet());
-    }
-    return cluster.withServerGroups(findServerGroupsByKeys(clusterData.getRelationships().get(SERVER_GROUPS.getNs()), detail.deep()));
+  private Map<String, CloudFoundryCluster> clustersByKey(Collection<CacheData> clusterData, Detail detail) {
+    Map<String, CloudFoundryServerGroup> serverGroups = detail.equals(Detail.NONE) ? emptyMap() :
+      serverGroupsByKey(cacheView.getAll(SERVER_GROUPS.getNs(), relatedKeys(clusterData, SERVER_GROUPS),
+        detail.deep().serverGroupFilter()), detail.deep());
+
+    return clusterData.stream().collect(toMap(CacheData::getId, data -> fromCacheData(data, CloudFoundryCluster.class)
+      .withServerGroups(related(data, SERVER_GROUPS, serverGroups))));
   }
 
   public Set<CloudFoundryServerGroup> findServerGroupsByKeys(Collection<String> keys, Detail detail) {
-    return cacheView.getAll(SERVER_GROUPS.getNs(), keys, detail.serverGroupFilter()).stream()
-      .map(serverGroupData -> serverGroupFromCacheData(serverGroupData, detail))
-      .collect(toSet());
+    return new HashSet<>(serverGroupsByKey(cacheView.getAll(SERVER_GROUPS.getNs(), keys, detail.serverGroupFilter()), detail).values());
   }
 
   public Optional<CloudFoundryServerGroup> findServerGroupByKey(String key, Detail detail) {
     return Optional.ofNullable(cacheView.get(SERVER_GROUPS.getNs(), key, detail.serverGroupFilter()))
-      .map(serverGroupData -> serverGroupFromCacheData(serverGroupData, detail));
+      .map(serverGroupData -> serverGroupsByKey(singletonList(serverGroupData), detail).get(serverGroupData.getId()));
   }
 
-  private CloudFoundryServerGroup serverGroupFromCacheData(CacheData serverGroupData, Detail detail) {
-    CloudFoundryServerGroup serverGroup = objectMapper.convertValue(serverGroupData.getAttributes().get("resource"), CloudFoundryServerGroup.class);
-    if (detail.equals(Detail.NONE)) {
-      return serverGroup
-        .withLoadBalancerNames(emptySet())
-        .withInstances(findInstancesByKeys(serverGroupData.getRelationships().get(INSTANCES.getNs())));
-    }
-    return serverGroup
-      .withLoadBalancerNames(findLoadBalancersByKeys(serverGroupData.getRelationships().get(LOAD_BALANCERS.getNs()), Detail.NONE).stream()
+  private Map<String, CloudFoundryServerGroup> serverGroupsByKey(Collection<CacheData> serverGroupData, Detail detail) {
+    // we always populate instance data on server groups, regardless of detail level
+    Map<String, CloudFoundryInstance> instances = instancesByKey(cacheView.getAll(INSTANCES.getNs(),
+      relatedKeys(serverGroupData, INSTANCES)));
+    Map<String, CloudFoundryLoadBalancer> loadBalancers = detail.equals(Detail.NONE) ? emptyMap() :
+      loadBalancersByKey(cacheView.getAll(LOAD_BALANCERS.getNs(), relatedKeys(serverGroupData, LOAD_BALANCERS),
+        Detail.NONE.loadBalancerFilter()), Detail.NONE);
+
+    return serverGroupData.stream().collect(toMap(CacheData::getId, data -> fromCacheData(data, CloudFoundryServerGroup.class)
+      .withLoadBalancerNames(related(data, LOAD_BALANCERS, loadBalancers).stream()
         .map(CloudFoundryLoadBalancer::getName)
         .collect(toSet()))
-      .withInstances(findInstancesByKeys(serverGroupData.getRelationships().get(INSTANCES.getNs())));
+      .withInstances(related(data, INSTANCES, instances))));
   }
 
   public Set<CloudFoundryLoadBalancer> findLoadBalancersByKeys(Collection<String> keys, Detail detail) {
-    return cacheView.getAll(LOAD_BALANCERS.getNs(), keys, detail.loadBalancerFilter()).stream()
-      .map(lbData -> loadBalancerFromCacheData(lbData, detail))
-      .collect(toSet());
+    return new HashSet<>(loadBalancersByKey(cacheView.getAll(LOAD_BALANCERS.getNs(), keys, detail.loadBalancerFilter()), detail).values());
   }
 
-  private CloudFoundryLoadBalancer loadBalancerFromCacheData(CacheData lbData, Detail detail) {
-    CloudFoundryLoadBalancer loadBalancer = objectMapper.convertValue(lbData.getAttributes().get("resource"), CloudFoundryLoadBalancer.class);
+  private Map<String, CloudFoundryLoadBalancer> loadBalancersByKey(Collection<CacheData> lbData, Detail detail) {
     if (detail.equals(Detail.NONE)) {
-      return loadBalancer;
+      return lbData.stream().collect(toMap(CacheData::getId, data -> fromCacheData(data, CloudFoundryLoadBalancer.class)));
     }
 
-    // the server groups populated here will have an empty load balancer names set to avoid a cyclic call back to findLoadBalancersByKeys
-    return loadBalancer.withMappedApps(findServerGroupsByKeys(lbData.getRelationships().get(SERVER_GROUPS.getNs()), Detail.NONE));
+    // the server groups populated here will have an empty load balancer names set to avoid a cyclic call back to loadBalancersByKey
+    Map<String, CloudFoundryServerGroup> serverGroups = serverGroupsByKey(cacheView.getAll(SERVER_GROUPS.getNs(),
+      relatedKeys(lbData, SERVER_GROUPS), Detail.NONE.serverGroupFilter()), Detail.NONE);
+
+    return lbData.stream().collect(toMap(CacheData::getId, data -> fromCacheData(data, CloudFoundryLoadBalancer.class)
+      .withMappedApps(related(data, SERVER_GROUPS, serverGroups))));
   }
 
   public Set<CloudFoundryInstance> findInstancesByKeys(Collection<String> keys) {
-    return cacheView.getAll(INSTANCES.getNs(), keys).stream()
-      .map(instanceData -> objectMapper.convertValue(instanceData.getAttributes().get("resource"), CloudFoundryInstance.class))
-      .collect(toSet());
+    return new HashSet<>(instancesByKey(cacheView.getAll(INSTANCES.getNs(), keys)).values());
   }
 
   public Optional<CloudFoundryInstance> findInstanceByKey(String key) {
     return Optional.ofNullable(cacheView.get(INSTANCES.getNs(), key))
-      .map(instanceData -> objectMapper.convertValue(instanceData.getAttributes().get("resource"), CloudFoundryInstance.class));
+      .map(instanceData -> fromCacheData(instanceData, CloudFoundryInstance.class));
+  }
+
+  private Map<String, CloudFoundryInstance> instancesByKey(Collection<CacheData> instanceData) {
+    return instanceData.stream().collect(toMap(CacheData::getId, data -> fromCacheData(data, CloudFoundryInstance.class)));
+  }
+
+  /**
+   * Resources are cached as JSON, which is read directly into the model. Resources cached as maps by earlier versions
+   * of the caching agent are still converted.
+   */
+  private <T> T fromCacheData(CacheData data, Class<T> type) {
+    Object resource = data.getAttributes().get("resource");
+
+    CachedModel cached = models.getIfPresent(data.getId());
+    if (cached != null && type.isInstance(cached.model) && Objects.equals(cached.resource, resource)) {
+      return type.cast(cached.model);
+    }
+
+    T model;
+    if (resource instanceof String) {
+      try {
+        model = readers.computeIfAbsent(type, objectMapper::readerFor).readValue((String) resource);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to deserialize cached " + data.getId(), e);
+      }
+    } else {
+      model = objectMapper.convertValue(resource, type);
+    }
+
+    models.put(data.getId(), new CachedModel(resource, model));
+    return model;
+  }
+
+  private static Set<String> relatedKeys(Collection<CacheData> data, Keys.Namespace namespace) {
+    Set<String> keys = new HashSet<>();
+    for (CacheData cacheData : data) {
+      Collection<String> related = cacheData.getRelationships().get(namespace.getNs());
+      if (related != null) {
+        keys.addAll(related);
+      }
+    }
+    return keys;
+  }
+
+  private static <T> Set<T> related(CacheData data, Keys.Namespace namespace, Map<String, T> modelsByKey) {
+    Collection<String> keys = data.getRelationships().get(namespace.getNs());
+    if (keys == null || modelsByKey.isEmpty()) {
+      return emptySet();
+    }
+    return keys.stream().map(modelsByKey::get).filter(Objects::nonNull).collect(toSet());
+  }
+
+  @RequiredArgsConstructor
+  private static class CachedModel {
+    final Object resource;
+    final Object model;
   }
 
   public enum Detail {
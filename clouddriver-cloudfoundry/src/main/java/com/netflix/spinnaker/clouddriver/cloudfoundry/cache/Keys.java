@@ -144,7 +144,8 @@ public class Keys implements KeyParser {
     LOAD_BALANCERS("loadBalancers"),
     CLUSTERS("clusters"),
     SERVER_GROUPS("serverGroups"),
-    INSTANCES("instances");
+    INSTANCES("instances"),
+    ON_DEMAND("onDemand");
 
     final String ns;
 
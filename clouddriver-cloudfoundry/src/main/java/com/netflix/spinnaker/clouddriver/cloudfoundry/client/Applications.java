@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
 
+import com.google.common.collect.Lists;
 import com.netflix.frigga.Names;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.api.ApplicationService;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.ApplicationEnv;
@@ -28,31 +29,34 @@ import com.netflix.spinnaker.clouddriver.cloudfoundry.model.*;
 import com.netflix.spinnaker.clouddriver.model.HealthState;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import retrofit.RetrofitError;
 import retrofit.client.Response;
-import retrofit.mime.TypedFile;
 import retrofit.mime.TypedInput;
 
 import javax.annotation.Nullable;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClientUtils.*;
 import static java.util.Arrays.asList;
 import static java.util.Collections.*;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
 @RequiredArgsConstructor
 @Slf4j
 public class Applications {
+  // keeps the guid filter of a list request well within the url length servers accept
+  private static final int GUID_BATCH_SIZE = 100;
+  private static final int PAGE_SIZE = 1000;
+
   private final String account;
   private final String appsManagerUri;
   private final String metricsUri;
@@ -65,8 +69,67 @@ public class Applications {
   }
 
   public List<CloudFoundryApplication> all() {
-    List<CloudFoundryServerGroup> serverGroups = collectPages("applications", page -> api.all(page, null, null))
-      .stream().map(this::map).collect(toList());
+    return all(null);
+  }
+
+  /**
+   * Loads every application with its web process and package fetched through the v3 list endpoints in batches of
+   * application guids and joined in memory, rather than looked up application by application. The v3 droplet listing
+   * can't tell which droplet is current (a rollback makes an older one current again), so current droplets are still
+   * looked up per application, as are environments (which have no list endpoint), concurrently.
+   *
+   * @param spaceGuids the spaces to load applications from, or null for all of them
+   */
+  public List<CloudFoundryApplication> all(@Nullable List<String> spaceGuids) {
+    List<Application> applications;
+    if (spaceGuids == null) {
+      applications = collectPages("applications", page -> api.all(page, null, null));
+    } else {
+      applications = new ArrayList<>();
+      for (List<String> batch : Lists.partition(spaceGuids, GUID_BATCH_SIZE)) {
+        List<String> spaceGuidFilter = singletonList(String.join(",", batch));
+        applications.addAll(collectPages("applications", page -> api.all(page, null, spaceGuidFilter)));
+      }
+    }
+
+    List<CompletableFuture<List<Process>>> processCalls = new ArrayList<>();
+    List<CompletableFuture<List<Package>>> packageCalls = new ArrayList<>();
+
+    // the listings of every batch are independent of each other, so all of them are started before any is waited on
+    for (List<Application> batch : Lists.partition(applications, GUID_BATCH_SIZE)) {
+      String appGuids = batch.stream().map(Application::getGuid).collect(joining(","));
+
+      processCalls.add(callAsync(() -> collectPages("processes", page -> api.listProcesses(page, PAGE_SIZE, appGuids, "web"))));
+      packageCalls.add(callAsync(() -> collectPages("packages", page -> api.listPackages(page, PAGE_SIZE, appGuids))));
+    }
+
+    Map<String, CompletableFuture<Droplet>> dropletCalls = new HashMap<>();
+    Map<String, CompletableFuture<ApplicationEnv>> envCalls = new HashMap<>();
+    for (Application application : applications) {
+      dropletCalls.put(application.getGuid(), callAsync(() ->
+        safelyCall(() -> api.findDropletByApplicationGuid(application.getGuid())).orElse(null)));
+      envCalls.put(application.getGuid(), callAsync(() ->
+        safelyCall(() -> api.findApplicationEnvById(application.getGuid())).orElse(null)));
+    }
+
+    // a web process shares the guid of its application
+    Map<String, Process> processesByGuid = new HashMap<>();
+    processCalls.forEach(call -> join(call).forEach(process -> processesByGuid.put(process.getGuid(), process)));
+
+    // keep the first package listed for each application, as the per-application lookup does
+    Map<String, Package> packagesByAppGuid = new HashMap<>();
+    packageCalls.forEach(call -> join(call).forEach(pkg -> packagesByAppGuid.putIfAbsent(pkg.getLinks().get("app").getGuid(), pkg)));
+
+    Map<String, Droplet> dropletsByAppGuid = new HashMap<>();
+    dropletCalls.forEach((appGuid, call) -> dropletsByAppGuid.put(appGuid, join(call)));
+
+    Map<String, ApplicationEnv> envsByAppGuid = new HashMap<>();
+    envCalls.forEach((appGuid, call) -> envsByAppGuid.put(appGuid, join(call)));
+
+    List<CloudFoundryServerGroup> serverGroups = applications.stream()
+      .map(app -> map(app, processesByGuid.get(app.getGuid()), packagesByAppGuid.get(app.getGuid()),
+        dropletsByAppGuid.get(app.getGuid()), envsByAppGuid.get(app.getGuid()), false))
+      .collect(toList());
 
     Map<String, Set<CloudFoundryServerGroup>> serverGroupsByClusters = new HashMap<>();
     Map<String, Set<String>> clustersByApps = new HashMap<>();
@@ -92,6 +155,74 @@ public class Applications {
       .collect(toList());
   }
 
+  /**
+   * Looks up the state of the instances of each server group from the stats of its web process. There is no endpoint
+   * for the stats of several processes at once, so a few lookups are in flight at a time rather than one per server
+   * group, which would flood the API on large foundations. Server groups whose stats couldn't be retrieved are left out
+   * of the result rather than reported as having no instances.
+   *
+   * @return the instances of each server group by its guid
+   */
+  public Map<String, Set<CloudFoundryInstance>> findInstances(Collection<CloudFoundryServerGroup> serverGroups) {
+    List<CloudFoundryServerGroup> serverGroupList = new ArrayList<>(serverGroups);
+    Map<String, Set<CloudFoundryInstance>> instancesByAppGuid = new ConcurrentHashMap<>();
+    callConcurrently(serverGroupList.size(), i -> {
+      CloudFoundryServerGroup serverGroup = serverGroupList.get(i);
+      String zone = serverGroup.getSpace() == null ? "unknown" : serverGroup.getSpace().getName();
+      try {
+        instancesByAppGuid.put(serverGroup.getId(), findInstances(serverGroup.getId(), zone));
+      } catch (CloudFoundryApiException e) {
+        log.warn("Unable to retrieve instances for application '" + serverGroup.getId() + "': " + e.getMessage());
+      }
+    }, "instances");
+    return new HashMap<>(instancesByAppGuid);
+  }
+
+  private Set<CloudFoundryInstance> findInstances(String appGuid, String zone) {
+    long now = System.currentTimeMillis();
+    return safelyCall(() -> api.findProcessStatsById(appGuid))
+      .map(ProcessResources::getResources)
+      .orElse(emptyList())
+      .stream()
+      .map(stats -> {
+        HealthState healthState = HealthState.Unknown;
+        switch (stats.getState()) {
+          case RUNNING:
+            healthState = HealthState.Up;
+            break;
+          case DOWN:
+          case CRASHED:
+            healthState = HealthState.Down;
+            break;
+          case STARTING:
+            healthState = HealthState.Starting;
+            break;
+        }
+        return CloudFoundryInstance.builder()
+          .appGuid(appGuid)
+          .key(String.valueOf(stats.getIndex()))
+          .healthState(healthState)
+          .details(stats.getDetails())
+          .launchTime(stats.getUptime() == null ? null : now - (stats.getUptime() * 1000))
+          .zone(zone)
+          .build();
+      })
+      .collect(toSet());
+  }
+
+  /**
+   * The instances of a web process are indexed from zero up to the number it is scaled to.
+   */
+  private static Set<CloudFoundryInstance> scaledInstances(String appGuid, @Nullable Process process, String zone) {
+    return IntStream.range(0, process == null ? 0 : process.getInstances())
+      .mapToObj(index -> CloudFoundryInstance.builder()
+        .appGuid(appGuid)
+        .key(String.valueOf(index))
+        .zone(zone)
+        .build())
+      .collect(toSet());
+  }
+
   @Nullable
   public String findServerGroupId(String name, String spaceId) {
     return safelyCall(() -> api.all(null, singletonList(name), singletonList(spaceId)))
@@ -100,11 +231,27 @@ public class Applications {
   }
 
   private CloudFoundryServerGroup map(Application application) {
+    Process process = safelyCall(() -> api.findProcessById(application.getGuid())).orElse(null);
+    Package pkg = safelyCall(() -> api.findPackagesByAppId(application.getGuid()))
+      .flatMap(packages -> packages.getResources().stream().findFirst())
+      .orElse(null);
+    Droplet droplet = safelyCall(() -> api.findDropletByApplicationGuid(application.getGuid())).orElse(null);
+    ApplicationEnv applicationEnv = safelyCall(() -> api.findApplicationEnvById(application.getGuid())).orElse(null);
+
+    return map(application, process, pkg, droplet, applicationEnv, true);
+  }
+
+  /**
+   * @param instanceState whether to look up the state of each instance, rather than only listing the instances the
+   *                      process is scaled to and leaving their state to the instance state caching agent.
+   */
+  private CloudFoundryServerGroup map(Application application, @Nullable Process process, @Nullable Package pkg,
+                                      @Nullable Droplet apiDroplet, @Nullable ApplicationEnv applicationEnv,
+                                      boolean instanceState) {
     CloudFoundryServerGroup.State state = CloudFoundryServerGroup.State.valueOf(application.getState());
 
     CloudFoundrySpace space = safelyCall(() -> spaces.findById(application.getLinks().get("space").getGuid())).orElse(null);
-    ApplicationEnv applicationEnv = safelyCall(() -> api.findApplicationEnvById(application.getGuid())).orElse(null);
-    Process process = safelyCall(() -> api.findProcessById(application.getGuid())).orElse(null);
+    String zone = space == null ? "unknown" : space.getName();
 
     Set<CloudFoundryInstance> instances;
     switch (state) {
@@ -113,88 +260,44 @@ public class Applications {
         break;
       case STARTED:
       default:
-        try {
-          instances = safelyCall(() -> api.instances(application.getGuid()))
-            .orElse(emptyMap())
-            .entrySet()
-            .stream()
-            .map(inst -> {
-              HealthState healthState = HealthState.Unknown;
-              switch (inst.getValue().getState()) {
-                case RUNNING:
-                  healthState = HealthState.Up;
-                  break;
-                case DOWN:
-                case CRASHED:
-                  healthState = HealthState.Down;
-                  break;
-                case STARTING:
-                  healthState = HealthState.Starting;
-                  break;
-              }
-              return CloudFoundryInstance.builder()
-                .appGuid(application.getGuid())
-                .key(inst.getKey())
-                .healthState(healthState)
-                .details(inst.getValue().getDetails())
-                .launchTime(System.currentTimeMillis() - (inst.getValue().getUptime() * 1000))
-                .zone(space == null ? "unknown" : space.getName())
-                .build();
-            }).collect(toSet());
-
-          log.debug("Successfully retrieved " + instances.size() + " instances for application '" + application.getName() + "'");
-        } catch (RetrofitError e) {
+        if (instanceState) {
           try {
-            log.debug("Unable to retrieve instances for application '" + application.getName() + "': " +
-              IOUtils.toString(e.getResponse().getBody().in(), Charset.defaultCharset()));
-          } catch (IOException e1) {
-            log.debug("Unable to retrieve instances for application '" + application.getName());
+            instances = findInstances(application.getGuid(), zone);
+            log.debug("Successfully retrieved " + instances.size() + " instances for application '" + application.getName() + "'");
+          } catch (CloudFoundryApiException e) {
+            log.debug("Unable to retrieve instances for application '" + application.getName() + "': " + e.getMessage());
+            instances = emptySet();
           }
-          instances = emptySet();
+        } else {
+          instances = scaledInstances(application.getGuid(), process, zone);
         }
     }
 
-    CloudFoundryDroplet droplet = null;
-    try {
-      CloudFoundryPackage cfPackage = safelyCall(() -> api.findPackagesByAppId(application.getGuid()))
-        .map(packages ->
-          packages.getResources().stream().findFirst()
-            .map(pkg -> CloudFoundryPackage.builder()
-              .downloadUrl(pkg.getLinks().containsKey("download") ? pkg.getLinks().get("download").getHref() : null)
-              .checksumType(pkg.getData().getChecksum() == null ? null : pkg.getData().getChecksum().getType())
-              .checksum(pkg.getData().getChecksum() == null ? null : pkg.getData().getChecksum().getValue())
-              .build()
-            )
-            .orElse(null)
-        )
-        .orElse(null);
-
-      droplet = safelyCall(() -> api.findDropletByApplicationGuid(application.getGuid()))
-        .map(apiDroplet ->
-          CloudFoundryDroplet.builder()
-            .id(apiDroplet.getGuid())
-            .name(application.getName() + "-droplet")
-            .stack(apiDroplet.getStack())
-            .buildpacks(ofNullable(apiDroplet.getBuildpacks())
-              .orElse(emptyList())
-              .stream()
-              .map(bp -> CloudFoundryBuildpack.builder()
-                .name(bp.getName())
-                .detectOutput(bp.getDetectOutput())
-                .version(bp.getVersion())
-                .buildpackName(bp.getBuildpackName())
-                .build()
-              )
-              .collect(toList())
-            )
-            .space(space)
-            .sourcePackage(cfPackage)
-            .build()
+    CloudFoundryPackage cfPackage = pkg == null ? null : CloudFoundryPackage.builder()
+      .downloadUrl(pkg.getLinks().containsKey("download") ? pkg.getLinks().get("download").getHref() : null)
+      .checksumType(pkg.getData().getChecksum() == null ? null : pkg.getData().getChecksum().getType())
+      .checksum(pkg.getData().getChecksum() == null ? null : pkg.getData().getChecksum().getValue())
+      .build();
+
+    CloudFoundryDroplet droplet = apiDroplet == null ? null : CloudFoundryDroplet.builder()
+      .id(apiDroplet.getGuid())
+      .name(application.getName() + "-droplet")
+      .stack(apiDroplet.getStack())
+      .buildpacks(ofNullable(apiDroplet.getBuildpacks())
+        .orElse(emptyList())
+        .stream()
+        .map(bp -> CloudFoundryBuildpack.builder()
+          .name(bp.getName())
+          .detectOutput(bp.getDetectOutput())
+          .version(bp.getVersion())
+          .buildpackName(bp.getBuildpackName())
+          .build()
         )
-        .orElse(null);
-    } catch (RetrofitError ignored) {
-      log.debug("Unable to retrieve droplet for application '" + application.getName() + "'");
-    }
+        .collect(toList())
+      )
+      .space(space)
+      .sourcePackage(cfPackage)
+      .build();
 
     List<CloudFoundryServiceInstance> cloudFoundryServices = applicationEnv == null ? emptyList() :
       applicationEnv.getSystemEnvJson().getVcapServices()
@@ -328,11 +431,17 @@ public class Applications {
     }
   }
 
-  public String uploadPackageBits(String packageGuid, File file) throws CloudFoundryApiException {
-    TypedFile uploadFile = new TypedFile("multipart/form-data", file);
-    return safelyCall(() -> api.uploadPackageBits(packageGuid, uploadFile))
-      .map(Package::getGuid)
-      .orElseThrow(() -> new CloudFoundryApiException("Cloud Foundry signaled that package upload succeeded but failed to provide a response."));
+  /**
+   * Streams the bits into the upload request as they are read. {@code bits} is opened again each time the request is
+   * sent, so that a retried upload sends the bits from the start; the streams it opens are closed once the upload is
+   * done.
+   */
+  public String uploadPackageBits(String packageGuid, PackageBits.Source bits) throws CloudFoundryApiException {
+    try (PackageBits packageBits = new PackageBits(bits)) {
+      return safelyCall(() -> api.uploadPackageBits(packageGuid, packageBits))
+        .map(Package::getGuid)
+        .orElseThrow(() -> new CloudFoundryApiException("Cloud Foundry signaled that package upload succeeded but failed to provide a response."));
+    }
   }
 
   public String createBuild(String packageGuid) throws CloudFoundryApiException {
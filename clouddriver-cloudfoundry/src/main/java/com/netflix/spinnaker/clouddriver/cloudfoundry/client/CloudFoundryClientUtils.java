@@ -16,6 +16,7 @@
 
 package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.ErrorDescription;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.Page;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.Resource;
@@ -25,9 +26,55 @@ import retrofit.RetrofitError;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 final class CloudFoundryClientUtils {
+  private static final int PAGE_PARALLELISM = 4;
+  private static final int DEFAULT_CALLERS = 16;
+  private static final int MAX_QUEUED_CALLS = 1000;
+
+  /**
+   * Runs the calls started by {@link #callAsync(Supplier)} and the page fetches of concurrent listings. Its size is set
+   * once from configuration (see {@link #setCallers(int)}), and calls that don't fit its queue run on the thread
+   * starting them.
+   */
+  private static final ThreadPoolExecutor apiCallers = new ThreadPoolExecutor(DEFAULT_CALLERS, DEFAULT_CALLERS,
+    60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_CALLS), new ThreadFactoryBuilder()
+    .setNameFormat("cf-api-caller-%d")
+    .setDaemon(true)
+    .build(), new ThreadPoolExecutor.CallerRunsPolicy());
+
+  static {
+    apiCallers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Sizes the shared pool of API callers. More callers than requests {@link CloudFoundryHttpClientPool} lets through to
+   * the foundations in use only adds threads waiting on it.
+   */
+  static synchronized void setCallers(int callers) {
+    // the maximum can't be lower than the core size, so whichever keeps them in order is set first
+    if (callers > apiCallers.getMaximumPoolSize()) {
+      apiCallers.setMaximumPoolSize(callers);
+      apiCallers.setCorePoolSize(callers);
+    } else {
+      apiCallers.setCorePoolSize(callers);
+      apiCallers.setMaximumPoolSize(callers);
+    }
+  }
+
   static void safelyCall(RetrofitConsumer r) throws CloudFoundryApiException {
     try {
       r.accept();
@@ -54,36 +101,116 @@ final class CloudFoundryClientUtils {
     }
   }
 
-  static <R> List<R> collectPages(String resourceNamePluralized, Function<Integer, Pagination<R>> fetchPage) throws CloudFoundryApiException {
-    Pagination<R> firstPage = safelyCall(() -> fetchPage.apply(null))
-      .orElseThrow(() -> new CloudFoundryApiException("Unable to retrieve " + resourceNamePluralized));
+  /**
+   * Starts a call to the API without waiting on it, so that independent requests (e.g. the listings for each batch of a
+   * bulk load) can be in flight together. Retrofit calls block, so each runs on a thread of a shared, configured pool,
+   * or on the calling thread when the pool is backed up.
+   */
+  static <T> CompletableFuture<T> callAsync(Supplier<T> call) {
+    return CompletableFuture.supplyAsync(call, apiCallers);
+  }
 
-    List<R> allResources = new ArrayList<>(firstPage.getResources());
-    for (int page = 2; page <= firstPage.getPagination().getTotalPages(); page++) {
-      final int p = page;
-      allResources.addAll(safelyCall(() -> fetchPage.apply(p))
-        .orElseThrow(() -> new CloudFoundryApiException("Unable to retrieve " + resourceNamePluralized))
-        .getResources());
+  /**
+   * Waits on a call started by {@link #callAsync(Supplier)}, failing the way the call itself would have.
+   */
+  static <T> T join(CompletableFuture<T> call) throws CloudFoundryApiException {
+    try {
+      return call.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof CloudFoundryApiException) {
+        throw (CloudFoundryApiException) e.getCause();
+      }
+      throw new CloudFoundryApiException(e.getCause(), "Unable to call the Cloud Foundry API");
     }
+  }
 
-    return allResources;
+  static <R> List<R> collectPages(String resourceNamePluralized, Function<Integer, Pagination<R>> fetchPage) throws CloudFoundryApiException {
+    return collectConcurrently(resourceNamePluralized, fetchPage, page -> page.getPagination().getTotalPages(),
+      Pagination::getResources);
   }
 
   static <R> List<Resource<R>> collectPageResources(String resourceNamePluralized, Function<Integer, Page<R>> fetchPage) throws CloudFoundryApiException {
-    Page<R> firstPage = safelyCall(() -> fetchPage.apply(null))
+    return collectConcurrently(resourceNamePluralized, fetchPage, Page::getTotalPages, Page::getResources);
+  }
+
+  /**
+   * Fetches the first page to learn how many there are, then the rest with {@link #callConcurrently}, reassembling the
+   * resources in page order.
+   */
+  private static <P, R> List<R> collectConcurrently(String resourceNamePluralized, Function<Integer, P> fetchPage,
+                                                    ToIntFunction<P> totalPages, Function<P, List<R>> resources) throws CloudFoundryApiException {
+    P firstPage = safelyCall(() -> fetchPage.apply(null))
       .orElseThrow(() -> new CloudFoundryApiException("Unable to retrieve " + resourceNamePluralized));
 
-    List<Resource<R>> allResources = new ArrayList<>(firstPage.getResources());
-    for (int page = 2; page <= firstPage.getTotalPages(); page++) {
-      final int p = page;
-      allResources.addAll(safelyCall(() -> fetchPage.apply(p))
-        .orElseThrow(() -> new CloudFoundryApiException("Unable to retrieve " + resourceNamePluralized))
-        .getResources());
+    int pageCount = totalPages.applyAsInt(firstPage);
+    if (pageCount <= 1) {
+      return new ArrayList<>(resources.apply(firstPage));
+    }
+
+    AtomicReferenceArray<List<R>> pages = new AtomicReferenceArray<>(pageCount);
+    pages.set(0, resources.apply(firstPage));
+
+    callConcurrently(pageCount - 1, i -> pages.set(i + 1, resources.apply(safelyCall(() -> fetchPage.apply(i + 2))
+      .orElseThrow(() -> new CloudFoundryApiException("Unable to retrieve " + resourceNamePluralized)))),
+      resourceNamePluralized);
+
+    List<R> allResources = new ArrayList<>();
+    for (int i = 0; i < pageCount; i++) {
+      allResources.addAll(pages.get(i));
     }
 
     return allResources;
   }
 
+  /**
+   * Makes {@code count} calls with up to {@link #PAGE_PARALLELISM} of them in flight at a time, failing with the first
+   * call that fails. How many requests are in flight to a host overall is bounded by {@link CloudFoundryHttpClientPool}.
+   *
+   * @param call made with the index of each call, from zero
+   * @param resourceNamePluralized what the calls retrieve, to describe their failure
+   */
+  static void callConcurrently(int count, IntConsumer call, String resourceNamePluralized) throws CloudFoundryApiException {
+    AtomicInteger next = new AtomicInteger();
+    Runnable callRemaining = () -> {
+      for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+        call.accept(i);
+      }
+    };
+
+    List<Future<?>> callers = new ArrayList<>();
+    for (int i = 1; i < Math.min(PAGE_PARALLELISM, count); i++) {
+      callers.add(apiCallers.submit(callRemaining));
+    }
+
+    try {
+      // the calling thread makes calls too, so that calls made from a pool thread complete even when every other one
+      // is busy
+      callRemaining.run();
+      for (Future<?> caller : callers) {
+        // a caller that hasn't started yet would find no call left
+        if (!caller.cancel(false)) {
+          caller.get();
+        }
+      }
+    } catch (CloudFoundryApiException e) {
+      callers.forEach(caller -> caller.cancel(true));
+      throw e;
+    } catch (ExecutionException e) {
+      callers.forEach(caller -> caller.cancel(true));
+      if (e.getCause() instanceof CloudFoundryApiException) {
+        throw (CloudFoundryApiException) e.getCause();
+      }
+      throw new CloudFoundryApiException(e.getCause(), "Unable to retrieve " + resourceNamePluralized);
+    } catch (InterruptedException e) {
+      callers.forEach(caller -> caller.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new CloudFoundryApiException(e, "Interrupted while retrieving " + resourceNamePluralized);
+    } catch (RuntimeException e) {
+      callers.forEach(caller -> caller.cancel(true));
+      throw new CloudFoundryApiException(e, "Unable to retrieve " + resourceNamePluralized);
+    }
+  }
+
   interface RetrofitCallable<T> {
     T call() throws RetrofitError;
   }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Response;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The HTTP connections shared by the clients of every Cloud Foundry account, so that accounts on the same foundation
+ * reuse each other's connections to its UAA and Cloud Controller rather than each opening (and handshaking) their own.
+ *
+ * OkHttp only reuses a connection for clients with the same SSL socket factory and hostname verifier, which is why
+ * those are created once here too. Responses are transparently gzip-decompressed by OkHttp, which asks for gzip on
+ * every request that doesn't set its own Accept-Encoding.
+ */
+public class CloudFoundryHttpClientPool {
+  static final int DEFAULT_MAX_IDLE_CONNECTIONS = 20;
+  static final long DEFAULT_KEEP_ALIVE_DURATION_MILLISECONDS = Duration.ofMinutes(5).toMillis();
+  static final int DEFAULT_MAX_REQUESTS_PER_HOST = 16;
+  static final int DEFAULT_API_CALLER_THREADS = 16;
+
+  public static final CloudFoundryHttpClientPool DEFAULT = new CloudFoundryHttpClientPool(DEFAULT_MAX_IDLE_CONNECTIONS,
+    DEFAULT_KEEP_ALIVE_DURATION_MILLISECONDS, DEFAULT_MAX_REQUESTS_PER_HOST, DEFAULT_API_CALLER_THREADS, true);
+
+  private final OkHttpClient baseClient = new OkHttpClient();
+  private final int maxRequestsPerHost;
+  private final ConcurrentMap<String, Semaphore> requestsInFlightByHost = new ConcurrentHashMap<>();
+
+  /**
+   * @param apiCallerThreads how many API calls started without waiting on them (e.g. the page fetches of bulk loads)
+   *                         may run at once across all accounts; see {@link CloudFoundryClientUtils#setCallers(int)}.
+   * @param http2Enabled     whether to offer HTTP/2 when connecting, which is used where the API and JVM both support
+   *                         it (ALPN) and falls back to HTTP/1.1 otherwise.
+   */
+  public CloudFoundryHttpClientPool(int maxIdleConnections, long keepAliveDurationMilliseconds, int maxRequestsPerHost,
+                                    int apiCallerThreads, boolean http2Enabled) {
+    this.maxRequestsPerHost = maxRequestsPerHost;
+    CloudFoundryClientUtils.setCallers(apiCallerThreads);
+
+    baseClient.setConnectionPool(new ConnectionPool(maxIdleConnections, keepAliveDurationMilliseconds));
+    baseClient.setProtocols(http2Enabled ?
+      Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1) :
+      Collections.singletonList(Protocol.HTTP_1_1));
+    baseClient.setHostnameVerifier((s, sslSession) -> true);
+    baseClient.setSslSocketFactory(trustAllSocketFactory());
+  }
+
+  /**
+   * @return a client sharing this pool's connections, to which an account can add its own interceptors.
+   */
+  OkHttpClient newClient() {
+    return baseClient.clone();
+  }
+
+  /**
+   * Holds each request to the limit on requests in flight to its host, which all accounts on that host share. Clients
+   * add this inside their retry interceptor so that a request waiting to be retried doesn't hold its place.
+   */
+  Response limitRequestsPerHost(Interceptor.Chain chain) throws IOException {
+    // OkHttp's dispatcher only limits asynchronous calls, and Retrofit's calls are synchronous
+    Semaphore requestsInFlight = requestsInFlightByHost.computeIfAbsent(chain.request().url().getHost(),
+      host -> new Semaphore(maxRequestsPerHost));
+
+    try {
+      requestsInFlight.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting to call the Cloud Foundry API");
+    }
+
+    try {
+      return chain.proceed(chain.request());
+    } finally {
+      requestsInFlight.release();
+    }
+  }
+
+  private static SSLSocketFactory trustAllSocketFactory() {
+    TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
+      @Override
+      public void checkClientTrusted(X509Certificate[] x509Certificates, String s) {
+      }
+
+      @Override
+      public void checkServerTrusted(X509Certificate[] x509Certificates, String s) {
+      }
+
+      @Override
+      public X509Certificate[] getAcceptedIssuers() {
+        return new X509Certificate[0];
+      }
+    }};
+
+    try {
+      SSLContext sslContext = SSLContext.getInstance("SSL");
+      sslContext.init(null, trustAllCerts, new SecureRandom());
+      return sslContext.getSocketFactory();
+    } catch (KeyManagementException | NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
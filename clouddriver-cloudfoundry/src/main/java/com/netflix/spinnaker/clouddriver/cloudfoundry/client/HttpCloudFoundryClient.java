@@ -26,6 +26,7 @@ import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.Token;
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Response;
+import io.github.resilience4j.retry.IntervalFunction;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
 import okio.Buffer;
@@ -35,15 +36,9 @@ import retrofit.RestAdapter;
 import retrofit.client.OkClient;
 import retrofit.converter.JacksonConverter;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.nio.charset.Charset;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -85,15 +80,25 @@ public class HttpCloudFoundryClient implements CloudFoundryClient {
     }
   }
 
+  // an upper bound on how long a throttled call waits when the server asks for more than this
+  private static final long MAX_RETRY_AFTER_SECONDS = 30;
+
   Response createRetryInterceptor(Interceptor.Chain chain) {
     final String callName = "cf.api.call";
+    // jittered so that concurrent page requests which were throttled together don't retry together
+    IntervalFunction backoff = IntervalFunction.ofExponentialRandomBackoff(Duration.ofMillis(500), 2, 0.5);
+    AtomicLong retryAfterMillis = new AtomicLong();
     Retry retry = Retry.of(callName, RetryConfig.custom()
       .retryExceptions(RetryableApiException.class)
+      .intervalFunction(attempt -> Math.max(backoff.apply(attempt), retryAfterMillis.getAndSet(0)))
       .build());
 
     AtomicReference<Response> lastResponse = new AtomicReference<>();
     try {
       return retry.executeCallable(() -> {
+        // a response that is being retried is never read, so its connection is released here
+        closeBody(lastResponse.get());
+
         Response response = chain.proceed(chain.request());
         lastResponse.set(response);
 
@@ -105,10 +110,19 @@ public class HttpCloudFoundryClient implements CloudFoundryClient {
             String body = buffer.clone().readString(Charset.forName("UTF-8"));
             if (!body.contains("Bad credentials")) {
               refreshToken();
+              closeBody(response);
               response = chain.proceed(chain.request().newBuilder().header("Authorization", "bearer " + token.getAccessToken()).build());
               lastResponse.set(response);
             }
             break;
+          case 429:
+            retryAfterMillis.set(retryAfterMillis(response));
+            throw new RetryableApiException();
+          case 500:
+            // the request may have been partially applied, so only retry reads
+            if (!"GET".equals(chain.request().method())) {
+              break;
+            }
           case 502:
           case 503:
           case 504:
@@ -129,30 +143,44 @@ public class HttpCloudFoundryClient implements CloudFoundryClient {
     }
   }
 
+  /**
+   * Only the delta-seconds form of Retry-After is honored; an HTTP date falls back to the usual backoff.
+   */
+  private static long retryAfterMillis(Response response) {
+    String retryAfter = response.header("Retry-After");
+    if (retryAfter == null) {
+      return 0;
+    }
+
+    try {
+      return Duration.ofSeconds(Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(0, Long.parseLong(retryAfter.trim())))).toMillis();
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static void closeBody(Response response) {
+    if (response != null && response.body() != null) {
+      try {
+        response.body().close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
   public HttpCloudFoundryClient(String account, String appsManagerUri, String metricsUri, String apiHost, String user, String password) {
+    this(account, appsManagerUri, metricsUri, apiHost, user, password, CloudFoundryHttpClientPool.DEFAULT);
+  }
+
+  public HttpCloudFoundryClient(String account, String appsManagerUri, String metricsUri, String apiHost, String user, String password,
+                                CloudFoundryHttpClientPool httpClientPool) {
     this.apiHost = apiHost;
     this.user = user;
     this.password = password;
 
-    this.okHttpClient = new OkHttpClient();
+    this.okHttpClient = httpClientPool.newClient();
     okHttpClient.interceptors().add(this::createRetryInterceptor);
-
-    okHttpClient.setHostnameVerifier((s, sslSession) -> true);
-
-    TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-      @Override
-      public void checkClientTrusted(X509Certificate[] x509Certificates, String s) {
-      }
-
-      @Override
-      public void checkServerTrusted(X509Certificate[] x509Certificates, String s) {
-      }
-
-      @Override
-      public X509Certificate[] getAcceptedIssuers() {
-        return new X509Certificate[0];
-      }
-    }};
+    okHttpClient.interceptors().add(httpClientPool::limitRequestsPerHost);
 
     ObjectMapper mapper = new ObjectMapper();
     mapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
@@ -162,16 +190,6 @@ public class HttpCloudFoundryClient implements CloudFoundryClient {
 
     this.jacksonConverter = new JacksonConverter(mapper);
 
-    SSLContext sslContext;
-    try {
-      sslContext = SSLContext.getInstance("SSL");
-      sslContext.init(null, trustAllCerts, new SecureRandom());
-    } catch (KeyManagementException | NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
-
-    okHttpClient.setSslSocketFactory(sslContext.getSocketFactory());
-
     this.uaaService = new RestAdapter.Builder()
       .setEndpoint("https://" + apiHost.replaceAll("^api\\.", "login."))
       .setClient(new OkClient(okHttpClient)).setConverter(jacksonConverter)
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
+
+import org.apache.commons.io.IOUtils;
+import retrofit.mime.TypedOutput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Package bits streamed into the upload request as they are read. The length isn't known up front, so the request is
+ * sent with chunked transfer encoding.
+ *
+ * The upload may be sent again, e.g. when it is throttled or retried with a refreshed token. Bits that were streamed
+ * can't be read again, so each send opens the bits afresh from their source, which either replays them from a local
+ * copy (see {@link com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.PackageArtifactCache}) or downloads them
+ * again. Nothing is written to disk for the upload itself.
+ */
+public class PackageBits implements TypedOutput, Closeable {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Source source;
+  private InputStream bits;
+
+  PackageBits(Source source) {
+    this.source = source;
+  }
+
+  @Override
+  public String fileName() {
+    return "package.zip";
+  }
+
+  @Override
+  public String mimeType() {
+    return "application/zip";
+  }
+
+  @Override
+  public long length() {
+    return -1;
+  }
+
+  @Override
+  public synchronized void writeTo(OutputStream out) throws IOException {
+    // what a previous attempt left unread can't be sent anymore
+    IOUtils.closeQuietly(bits);
+    bits = source.open();
+    IOUtils.copyLarge(bits, out, new byte[BUFFER_SIZE]);
+  }
+
+  @Override
+  public synchronized void close() {
+    IOUtils.closeQuietly(bits);
+  }
+
+  /**
+   * Opens the package bits, once for every time the upload is sent.
+   */
+  public interface Source {
+    InputStream open() throws IOException;
+  }
+}
@@ -19,11 +19,13 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.api.RouteService;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.RouteId;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.Resource;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.Route;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.RouteMapping;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryApplication;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryDomain;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryLoadBalancer;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryServerGroup;
@@ -34,21 +36,30 @@ import lombok.extern.slf4j.Slf4j;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClientUtils.callAsync;
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClientUtils.collectPageResources;
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClientUtils.join;
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClientUtils.safelyCall;
 import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
 
 @RequiredArgsConstructor
 @Slf4j
 public class Routes {
+  // keeps the guid filter of a list request well within the url length servers accept
+  private static final int GUID_BATCH_SIZE = 100;
   private static final Pattern VALID_ROUTE_REGEX = Pattern.compile("^([a-zA-Z0-9_-]+)\\.([a-zA-Z0-9_.-]+)(:[0-9]+)?([/a-zA-Z0-9_-]+)?$");
 
   private final String account;
@@ -68,8 +79,6 @@ public class Routes {
     });
 
   private CloudFoundryLoadBalancer map(Resource<Route> res) throws CloudFoundryApiException {
-    Route route = res.getEntity();
-
     Set<CloudFoundryServerGroup> mappedApps = emptySet();
     try {
       mappedApps = routeMappings.get(res.getMetadata().getGuid()).stream()
@@ -80,6 +89,12 @@ public class Routes {
         throw new CloudFoundryApiException(e.getCause(), "Unable to find route mappings by id");
     }
 
+    return map(res, mappedApps);
+  }
+
+  private CloudFoundryLoadBalancer map(Resource<Route> res, Set<CloudFoundryServerGroup> mappedApps) throws CloudFoundryApiException {
+    Route route = res.getEntity();
+
     return CloudFoundryLoadBalancer.builder()
       .account(account)
       .id(res.getMetadata().getGuid())
@@ -131,11 +146,58 @@ public class Routes {
     }
   }
 
-  public List<CloudFoundryLoadBalancer> all() throws CloudFoundryApiException {
-    List<Resource<Route>> routeResources = collectPageResources("routes", pg -> api.all(pg, null));
+  public List<CloudFoundryLoadBalancer> all(List<CloudFoundryApplication> loadedApplications) throws CloudFoundryApiException {
+    return all(loadedApplications, null);
+  }
+
+  /**
+   * Lists every route with the server groups mapped to it, joining all route mappings (listed once) against
+   * applications already loaded by the caller rather than looking each mapped application up again. Mappings to
+   * applications that aren't among them, e.g. ones created since they were loaded, are left out.
+   *
+   * @param spaceGuids the spaces to list routes from, or null for all of them. Routes can only be mapped to
+   *                   applications in their own space, so only the mappings of the loaded applications are listed.
+   */
+  public List<CloudFoundryLoadBalancer> all(List<CloudFoundryApplication> loadedApplications,
+                                            @Nullable List<String> spaceGuids) throws CloudFoundryApiException {
+    Map<String, CloudFoundryServerGroup> serverGroupsById = loadedApplications.stream()
+      .flatMap(app -> app.getClusters().stream())
+      .flatMap(cluster -> cluster.getServerGroups().stream())
+      .collect(Collectors.toMap(CloudFoundryServerGroup::getId, sg -> sg, (sg1, sg2) -> sg1));
+
+    List<CompletableFuture<List<Resource<RouteMapping>>>> routeMappingCalls = new ArrayList<>();
+    List<CompletableFuture<List<Resource<Route>>>> routeCalls = new ArrayList<>();
+    if (spaceGuids == null) {
+      routeMappingCalls.add(callAsync(() -> collectPageResources("route mappings", pg -> api.allRouteMappings(pg, null))));
+      routeCalls.add(callAsync(() -> collectPageResources("routes", pg -> api.all(pg, null))));
+    } else {
+      for (List<String> batch : Lists.partition(new ArrayList<>(serverGroupsById.keySet()), GUID_BATCH_SIZE)) {
+        List<String> query = singletonList("app_guid IN " + String.join(",", batch));
+        routeMappingCalls.add(callAsync(() -> collectPageResources("route mappings", pg -> api.allRouteMappings(pg, query))));
+      }
+
+      for (List<String> batch : Lists.partition(spaceGuids, GUID_BATCH_SIZE)) {
+        List<String> query = singletonList("space_guid IN " + String.join(",", batch));
+        routeCalls.add(callAsync(() -> collectPageResources("routes", pg -> api.all(pg, query))));
+      }
+    }
+
+    Map<String, Set<CloudFoundryServerGroup>> mappedAppsByRouteGuid = new HashMap<>();
+    for (CompletableFuture<List<Resource<RouteMapping>>> routeMappingCall : routeMappingCalls) {
+      for (Resource<RouteMapping> routeMapping : join(routeMappingCall)) {
+        CloudFoundryServerGroup serverGroup = serverGroupsById.get(routeMapping.getEntity().getAppGuid());
+        if (serverGroup != null) {
+          mappedAppsByRouteGuid.computeIfAbsent(routeMapping.getEntity().getRouteGuid(), guid -> new HashSet<>()).add(serverGroup);
+        }
+      }
+    }
+
+    List<Resource<Route>> routeResources = new ArrayList<>();
+    routeCalls.forEach(routeCall -> routeResources.addAll(join(routeCall)));
+
     List<CloudFoundryLoadBalancer> loadBalancers = new ArrayList<>(routeResources.size());
     for (Resource<Route> routeResource : routeResources) {
-      loadBalancers.add(map(routeResource));
+      loadBalancers.add(map(routeResource, mappedAppsByRouteGuid.getOrDefault(routeResource.getMetadata().getGuid(), emptySet())));
     }
     return loadBalancers;
   }
@@ -25,7 +25,7 @@ import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.Process;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.*;
 import retrofit.client.Response;
 import retrofit.http.*;
-import retrofit.mime.TypedFile;
+import retrofit.mime.TypedOutput;
 
 import java.util.List;
 import java.util.Map;
@@ -82,6 +82,10 @@ public interface ApplicationService {
   @GET("/v3/processes/{guid}")
   Process findProcessById(@Path("guid") String guid);
 
+  @GET("/v3/processes")
+  Pagination<Process> listProcesses(@Query("page") Integer page, @Query("per_page") Integer perPage,
+                                    @Query("app_guids") String appGuids, @Query("types") String types);
+
   @GET("/v3/processes/{guid}/stats")
   ProcessResources findProcessStatsById(@Path("guid") String guid);
 
@@ -91,18 +95,23 @@ public interface ApplicationService {
   @GET("/v3/apps/{guid}/packages")
   Pagination<Package> findPackagesByAppId(@Path("guid") String appGuid);
 
+  @GET("/v3/packages")
+  Pagination<Package> listPackages(@Query("page") Integer page, @Query("per_page") Integer perPage,
+                                   @Query("app_guids") String appGuids);
+
   @POST("/v3/packages")
   Package createPackage(@Body CreatePackage pkg);
 
   @GET("/v3/packages/{guid}")
   Package getPackage(@Path("guid") String packageGuid);
 
+  @Streaming
   @GET("/v3/packages/{guid}/download")
   Response downloadPackage(@Path("guid") String packageGuid);
 
   @Multipart
   @POST("/v3/packages/{guid}/upload")
-  Package uploadPackageBits(@Path("guid") String packageGuid, @Part("bits") TypedFile file);
+  Package uploadPackageBits(@Path("guid") String packageGuid, @Part("bits") TypedOutput bits);
 
   @POST("/v3/builds")
   Build createBuild(@Body CreateBuild build);
@@ -36,6 +36,9 @@ public interface RouteService {
   @GET("/v2/routes/{guid}/route_mappings")
   Page<RouteMapping> routeMappings(@Path("guid") String guid, @Query("page") Integer page);
 
+  @GET("/v2/route_mappings?results-per-page=100")
+  Page<RouteMapping> allRouteMappings(@Query("page") Integer page, @Query("q") List<String> queryParams);
+
   @POST("/v2/routes")
   Resource<Route> createRoute(@Body Route route);
 
@@ -18,10 +18,22 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3;
 
 import lombok.Data;
 
+import javax.annotation.Nullable;
+
 @Data
 public class ProcessStats {
+  private int index;
   private State state;
 
+  /**
+   * Seconds since the instance started.
+   */
+  @Nullable
+  private Long uptime;
+
+  @Nullable
+  private String details;
+
   public enum State {
     RUNNING, CRASHED, STARTING, DOWN
   }
@@ -23,6 +23,7 @@ import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,15 +32,28 @@ import java.util.List;
 @ConfigurationProperties("cloudfoundry")
 public class CloudFoundryConfigurationProperties {
   static final int POLLING_INTERVAL_MILLISECONDS_DEFAULT = 300 * 1000;
-  static final int ASYNC_OPERATION_TIMEOUT_MILLISECONDS_DEFAULT = (int) (POLLING_INTERVAL_MILLISECONDS_DEFAULT * 1.5);
+  static final int INSTANCE_STATE_POLLING_INTERVAL_MILLISECONDS_DEFAULT = 30 * 1000;
+  // long enough for large applications to upload, build and start
+  static final int ASYNC_OPERATION_TIMEOUT_MILLISECONDS_DEFAULT = 15 * 60 * 1000;
   static final int ASYNC_OPERATION_MAX_POLLING_INTERVAL_MILLISECONDS = 8 * 1000;
 
   private int pollingIntervalMilliseconds = POLLING_INTERVAL_MILLISECONDS_DEFAULT;
+
+  /**
+   * How often the state of instances is polled, which takes a stats request per started server group. Instances are
+   * only cached by this poll, so a newly deployed server group shows none until it next runs; raising this trades that
+   * delay for fewer requests.
+   */
+  private int instanceStatePollingIntervalMilliseconds = INSTANCE_STATE_POLLING_INTERVAL_MILLISECONDS_DEFAULT;
   private int asyncOperationTimeoutMillisecondsDefault = ASYNC_OPERATION_TIMEOUT_MILLISECONDS_DEFAULT;
   private int asyncOperationMaxPollingIntervalMilliseconds = ASYNC_OPERATION_MAX_POLLING_INTERVAL_MILLISECONDS;
 
   private List<ManagedAccount> accounts = new ArrayList<>();
 
+  private HttpClient httpClient = new HttpClient();
+
+  private PackageCache packageCache = new PackageCache();
+
   @Getter
   @Setter
   @ToString(exclude = "password")
@@ -51,5 +65,28 @@ public class CloudFoundryConfigurationProperties {
     private String user;
     private String password;
     private String environment;
+    private int cachingShards = 1;
+  }
+
+  /**
+   * Settings of the HTTP connections shared by all accounts.
+   */
+  @Data
+  public static class HttpClient {
+    private int maxIdleConnections = 20;
+    private long keepAliveDurationMilliseconds = 5 * 60 * 1000;
+    private int maxRequestsPerHost = 16;
+    // how many API calls may run concurrently across all accounts; about maxRequestsPerHost per foundation in use
+    private int apiCallerThreads = 16;
+    private boolean http2Enabled = true;
+  }
+
+  /**
+   * Settings of the local cache of deployed package artifacts, which is disabled unless given a size.
+   */
+  @Data
+  public static class PackageCache {
+    private String directory = Paths.get(System.getProperty("java.io.tmpdir"), "cloudfoundry-packages").toString();
+    private long maxSizeMb = 0;
   }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.deploy;
+
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryApiException;
+import com.netflix.spinnaker.clouddriver.data.task.Task;
+import com.netflix.spinnaker.clouddriver.exceptions.OperationTimedOutException;
+import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Polls the asynchronous work Cloud Foundry does for an operation (package uploads, builds, starting processes) on the
+ * thread of the operation, sleeping between checks like {@link OperationPoller} does.
+ *
+ * Checks back off along the same Fibonacci sequence, but the first check of an operation is delayed by half as long as
+ * operations of the same kind recently took, so e.g. a build that typically stages in a minute isn't checked on every
+ * few seconds from the start.
+ */
+@Slf4j
+public class CloudFoundryOperationPoller extends OperationPoller {
+  private static final long INITIAL_POLLING_INTERVAL_MILLISECONDS = 1000;
+
+  private final Sleeper sleeper;
+  private final Clock clock;
+  private final long timeoutMilliseconds;
+  private final long initialPollingIntervalMilliseconds;
+  private final long maxPollingIntervalMilliseconds;
+
+  // a moving average of how long operations took, by their kind
+  private final Map<String, Long> typicalDurations = new ConcurrentHashMap<>();
+
+  public CloudFoundryOperationPoller(int timeoutMilliseconds, int maxPollingIntervalMilliseconds) {
+    this(Thread::sleep, Clock.systemDefaultZone(), timeoutMilliseconds, INITIAL_POLLING_INTERVAL_MILLISECONDS,
+      maxPollingIntervalMilliseconds);
+  }
+
+  CloudFoundryOperationPoller(Sleeper sleeper, Clock clock, long timeoutMilliseconds,
+                              long initialPollingIntervalMilliseconds, long maxPollingIntervalMilliseconds) {
+    super((int) TimeUnit.MILLISECONDS.toSeconds(timeoutMilliseconds),
+      (int) TimeUnit.MILLISECONDS.toSeconds(maxPollingIntervalMilliseconds));
+    this.sleeper = sleeper;
+    this.clock = clock;
+    this.timeoutMilliseconds = timeoutMilliseconds;
+    this.initialPollingIntervalMilliseconds = initialPollingIntervalMilliseconds;
+    this.maxPollingIntervalMilliseconds = maxPollingIntervalMilliseconds;
+  }
+
+  @Override
+  public <T> T waitForOperation(Supplier<T> operation, Function<T, Boolean> ifDone, Long timeoutSeconds, Task task,
+                                String resourceString, String basePhase) {
+    return waitForOperation(basePhase, operation, ifDone, timeoutSeconds, task, resourceString, basePhase);
+  }
+
+  /**
+   * Checks on {@code operation} until {@code ifDone} accepts its result, reporting the outcome to the task like
+   * {@link OperationPoller#waitForOperation(Supplier, Function, Long, Task, String, String)} does.
+   *
+   * @param kind what sort of operation is polled, so that its typical duration can be learned.
+   */
+  public <T> T waitForOperation(String kind, Supplier<T> operation, Function<T, Boolean> ifDone,
+                                @Nullable Long timeoutSeconds, @Nullable Task task, String resourceString,
+                                String basePhase) {
+    long timeout = timeoutSeconds == null ? timeoutMilliseconds : TimeUnit.SECONDS.toMillis(Math.max(timeoutSeconds, 0));
+    long started = clock.millis();
+    long deadline = started + timeout;
+
+    Long typicalDuration = typicalDurations.get(kind);
+    long pollingInterval = typicalDuration == null ? initialPollingIntervalMilliseconds :
+      Math.max(initialPollingIntervalMilliseconds, typicalDuration / 2);
+    long pollingIncrement = 0;
+
+    try {
+      while (true) {
+        sleeper.sleep(Math.max(Math.min(pollingInterval, deadline - clock.millis()), 0));
+
+        T polled = operation.get();
+        long now = clock.millis();
+
+        if (Boolean.TRUE.equals(ifDone.apply(polled))) {
+          typicalDurations.merge(kind, now - started, (typical, observed) -> (typical * 3 + observed) / 4);
+          updateStatus(task, basePhase, "Done operating on " + resourceString + ".");
+          return polled;
+        }
+
+        if (now >= deadline) {
+          String message = "Operation on " + resourceString + " timed out.";
+          updateStatus(task, basePhase, message);
+          throw new OperationTimedOutException(message);
+        }
+
+        long oldIncrement = pollingIncrement;
+        pollingIncrement = pollingInterval;
+        pollingInterval = Math.min(pollingInterval + oldIncrement, maxPollingIntervalMilliseconds);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CloudFoundryApiException(e, "Interrupted while waiting on " + resourceString);
+    }
+  }
+
+  private static void updateStatus(@Nullable Task task, String basePhase, String status) {
+    if (task != null) {
+      task.updateStatus(basePhase, status);
+    } else {
+      log.info(status);
+    }
+  }
+
+  // This only exists to facilitate testing.
+  interface Sleeper {
+    void sleep(long milliseconds) throws InterruptedException;
+  }
+}
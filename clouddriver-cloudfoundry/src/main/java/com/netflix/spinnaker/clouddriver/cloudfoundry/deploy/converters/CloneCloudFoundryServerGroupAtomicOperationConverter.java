@@ -19,7 +19,8 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.converters;
 import com.netflix.spinnaker.clouddriver.artifacts.ArtifactCredentialsRepository;
 import com.netflix.spinnaker.clouddriver.artifacts.ArtifactDownloader;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.CloudFoundryOperation;
-import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.PackageArtifactCache;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.CloudFoundryOperationPoller;
 import com.netflix.spinnaker.clouddriver.orchestration.AtomicOperations;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
@@ -27,9 +28,10 @@ import org.springframework.stereotype.Component;
 @CloudFoundryOperation(AtomicOperations.CLONE_SERVER_GROUP)
 @Component
 public class CloneCloudFoundryServerGroupAtomicOperationConverter extends DeployCloudFoundryServerGroupAtomicOperationConverter {
-  public CloneCloudFoundryServerGroupAtomicOperationConverter(@Qualifier("cloudFoundryOperationPoller") OperationPoller operationPoller,
+  public CloneCloudFoundryServerGroupAtomicOperationConverter(@Qualifier("cloudFoundryOperationPoller") CloudFoundryOperationPoller operationPoller,
                                                               ArtifactCredentialsRepository credentialsRepository,
-                                                              ArtifactDownloader artifactDownloader) {
-    super(operationPoller, credentialsRepository, artifactDownloader);
+                                                              ArtifactDownloader artifactDownloader,
+                                                              PackageArtifactCache packageArtifactCache) {
+    super(operationPoller, credentialsRepository, artifactDownloader, packageArtifactCache);
   }
 }
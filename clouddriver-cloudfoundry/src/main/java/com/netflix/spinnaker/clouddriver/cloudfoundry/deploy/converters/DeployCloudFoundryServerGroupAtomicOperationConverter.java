@@ -26,10 +26,11 @@ import com.netflix.spinnaker.clouddriver.artifacts.ArtifactDownloader;
 import com.netflix.spinnaker.clouddriver.artifacts.config.ArtifactCredentials;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.CloudFoundryOperation;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.CloudFoundryArtifactCredentials;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.PackageArtifactCache;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.CloudFoundryOperationPoller;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.description.DeployCloudFoundryServerGroupDescription;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.ops.DeployCloudFoundryServerGroupAtomicOperation;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.security.CloudFoundryCredentials;
-import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
 import com.netflix.spinnaker.clouddriver.orchestration.AtomicOperation;
 import com.netflix.spinnaker.clouddriver.orchestration.AtomicOperations;
 import com.netflix.spinnaker.kork.artifacts.model.Artifact;
@@ -48,16 +49,19 @@ import static java.util.stream.Collectors.toList;
 @CloudFoundryOperation(AtomicOperations.CREATE_SERVER_GROUP)
 @Component
 public class DeployCloudFoundryServerGroupAtomicOperationConverter extends AbstractCloudFoundryServerGroupAtomicOperationConverter {
-  private final OperationPoller operationPoller;
+  private final CloudFoundryOperationPoller operationPoller;
   private final ArtifactCredentialsRepository credentialsRepository;
   private final ArtifactDownloader artifactDownloader;
+  private final PackageArtifactCache packageArtifactCache;
 
-  public DeployCloudFoundryServerGroupAtomicOperationConverter(@Qualifier("cloudFoundryOperationPoller") OperationPoller operationPoller,
+  public DeployCloudFoundryServerGroupAtomicOperationConverter(@Qualifier("cloudFoundryOperationPoller") CloudFoundryOperationPoller operationPoller,
                                                                ArtifactCredentialsRepository credentialsRepository,
-                                                               ArtifactDownloader artifactDownloader) {
+                                                               ArtifactDownloader artifactDownloader,
+                                                               PackageArtifactCache packageArtifactCache) {
     this.operationPoller = operationPoller;
     this.credentialsRepository = credentialsRepository;
     this.artifactDownloader = artifactDownloader;
+    this.packageArtifactCache = packageArtifactCache;
   }
 
   @Override
@@ -77,7 +81,7 @@ public class DeployCloudFoundryServerGroupAtomicOperationConverter extends Abstr
       .orElseThrow(() -> new IllegalArgumentException("Unable to find organization and space '" + region + "'.")));
 
     // fail early if we're not going to be able to locate credentials to download the artifact in the deploy operation.
-    converted.setArtifactCredentials(getArtifactCredentials(converted));
+    converted.setArtifactCredentials(packageArtifactCache.cached(getArtifactCredentials(converted)));
 
     downloadAndProcessManifest(artifactDownloader, converted.getManifest(), myMap -> converted.setApplicationAttributes(convertManifest(myMap)));
 
@@ -17,14 +17,15 @@
 package com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.ops;
 
 import com.netflix.spinnaker.clouddriver.cloudfoundry.CloudFoundryCloudProvider;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.Applications;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryApiException;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.ProcessStats;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.CloudFoundryOperationPoller;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.CloudFoundryServerGroupNameResolver;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.description.DeployCloudFoundryServerGroupDescription;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryServerGroup;
 import com.netflix.spinnaker.clouddriver.deploy.DeploymentResult;
-import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
 import com.netflix.spinnaker.clouddriver.orchestration.AtomicOperation;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.io.IOUtils;
@@ -33,6 +34,7 @@ import org.apache.commons.lang3.StringUtils;
 import javax.annotation.Nullable;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.ops.CloudFoundryOperationUtils.describeProcessState;
@@ -46,7 +48,7 @@ public class DeployCloudFoundryServerGroupAtomicOperation
   implements AtomicOperation<DeploymentResult> {
   private static final String PHASE = "DEPLOY";
 
-  private final OperationPoller operationPoller;
+  private final CloudFoundryOperationPoller operationPoller;
   private final DeployCloudFoundryServerGroupDescription description;
 
   @Override
@@ -68,18 +70,19 @@ public class DeployCloudFoundryServerGroupAtomicOperation
 
     CloudFoundryServerGroup serverGroup;
     String packageId;
-    // we download the package artifact first, because if this fails, we don't want to create an empty CF app
-    File packageArtifact = downloadPackageArtifact(description);
+    // the package artifact is opened first, so that an artifact which can't be found doesn't leave an empty CF app
+    // behind. It is only read as it is uploaded though, so a download failing partway through still fails the deploy
+    // after the app was created.
+    InputStream packageArtifact = downloadPackageArtifact(description);
     try {
       serverGroup = createApplication(description);
-      packageId = buildPackage(serverGroup.getId(), description, packageArtifact);
+      packageId = uploadPackage(serverGroup.getId(), description, packageArtifact);
     } finally {
-      if (packageArtifact != null) {
-        packageArtifact.delete();
-      }
+      IOUtils.closeQuietly(packageArtifact);
     }
 
-    buildDroplet(packageId, serverGroup.getId(), description);
+    buildDroplet(serverGroup.getId(), packageId, description);
+
     scaleApplication(serverGroup.getId(), description);
     if (description.getApplicationAttributes().getHealthCheckType() != null) {
       updateProcess(serverGroup.getId(), description);
@@ -94,7 +97,7 @@ public class DeployCloudFoundryServerGroupAtomicOperation
     final Integer desiredInstanceCount = description.getApplicationAttributes().getInstances();
     if (description.isStartApplication() && desiredInstanceCount > 0) {
       client.getApplications().startApplication(serverGroup.getId());
-      ProcessStats.State state = operationPoller.waitForOperation(
+      ProcessStats.State state = operationPoller.waitForOperation("start",
         () -> client.getApplications().getProcessState(serverGroup.getId()),
         inProgressState -> inProgressState == ProcessStats.State.RUNNING || inProgressState == ProcessStats.State.CRASHED,
         null, getTask(), description.getServerGroupName(), PHASE);
@@ -154,53 +157,57 @@ public class DeployCloudFoundryServerGroupAtomicOperation
     return serverGroup;
   }
 
-  @Nullable
-  private File downloadPackageArtifact(DeployCloudFoundryServerGroupDescription description) {
-    File file = null;
+  private static InputStream downloadPackageArtifact(DeployCloudFoundryServerGroupDescription description) {
     try {
-      InputStream artifactInputStream = description.getArtifactCredentials().download(description.getApplicationArtifact());
-      file = File.createTempFile(UUID.randomUUID().toString(), null);
-      FileOutputStream fileOutputStream = new FileOutputStream(file);
-      IOUtils.copy(artifactInputStream, fileOutputStream);
-      fileOutputStream.close();
+      return description.getArtifactCredentials().download(description.getApplicationArtifact());
     } catch (IOException e) {
-      if (file != null) {
-        file.delete();
-      }
       throw new UncheckedIOException(e);
     }
-    return file;
   }
 
-  private String buildPackage(String serverGroupId, DeployCloudFoundryServerGroupDescription description, File packageArtifact) {
-    CloudFoundryClient client = description.getClient();
-    getTask().updateStatus(PHASE, "Creating package for application '" + description.getServerGroupName() + "'");
-
-    String packageId = client.getApplications().createPackage(serverGroupId);
-    client.getApplications().uploadPackageBits(packageId, packageArtifact);
-
-    operationPoller.waitForOperation(
-      () -> client.getApplications().packageUploadComplete(packageId),
-      Function.identity(), null, getTask(), description.getServerGroupName(), PHASE);
-
-    getTask().updateStatus(PHASE, "Completed creating package for application '" + description.getServerGroupName() + "'");
+  /**
+   * Uploads the package and waits for Cloud Foundry to process it. The package artifact is streamed into the upload as
+   * it is downloaded. A retried upload downloads the artifact again, which the package artifact cache (when enabled)
+   * serves from its local copy once the artifact was read in full.
+   */
+  private String uploadPackage(String serverGroupId, DeployCloudFoundryServerGroupDescription description,
+                               InputStream packageArtifact) {
+    Applications apps = description.getClient().getApplications();
+    String serverGroupName = description.getServerGroupName();
+
+    getTask().updateStatus(PHASE, "Creating package for application '" + serverGroupName + "'");
+    String packageId = apps.createPackage(serverGroupId);
+    AtomicReference<InputStream> unsent = new AtomicReference<>(packageArtifact);
+    apps.uploadPackageBits(packageId, () -> {
+      InputStream bits = unsent.getAndSet(null);
+      return bits != null ? bits : downloadPackageArtifact(description);
+    });
+
+    operationPoller.waitForOperation("package upload", () -> apps.packageUploadComplete(packageId),
+      Function.identity(), null, getTask(), serverGroupName, PHASE);
+    getTask().updateStatus(PHASE, "Completed creating package for application '" + serverGroupName + "'");
 
     return packageId;
   }
 
-  private void buildDroplet(String packageId, String serverGroupId, DeployCloudFoundryServerGroupDescription description) {
-    CloudFoundryClient client = description.getClient();
-    getTask().updateStatus(PHASE, "Building droplet for package '" + packageId + "'");
-
-    String buildId = client.getApplications().createBuild(packageId);
-
-    operationPoller.waitForOperation(() -> client.getApplications().buildCompleted(buildId),
-      Function.identity(), null, getTask(), description.getServerGroupName(), PHASE);
+  /**
+   * Builds a droplet from the uploaded package and sets it as the current droplet of the application.
+   *
+   * @return the droplet of the application, once set.
+   */
+  private String buildDroplet(String serverGroupId, String packageId, DeployCloudFoundryServerGroupDescription description) {
+    Applications apps = description.getClient().getApplications();
+    String serverGroupName = description.getServerGroupName();
 
-    String dropletGuid = client.getApplications().findDropletGuidFromBuildId(buildId);
+    getTask().updateStatus(PHASE, "Building droplet for package '" + packageId + "'");
+    String buildId = apps.createBuild(packageId);
+    operationPoller.waitForOperation("build", () -> apps.buildCompleted(buildId), Function.identity(), null,
+      getTask(), serverGroupName, PHASE);
 
-    client.getApplications().setCurrentDroplet(serverGroupId, dropletGuid);
+    String dropletGuid = apps.findDropletGuidFromBuildId(buildId);
+    apps.setCurrentDroplet(serverGroupId, dropletGuid);
     getTask().updateStatus(PHASE, "Droplet built for package '" + packageId + "'");
+    return dropletGuid;
   }
 
   private void scaleApplication(String serverGroupId, DeployCloudFoundryServerGroupDescription description) {
@@ -16,68 +16,127 @@
 
 package com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.netflix.frigga.Names;
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spectator.api.Registry;
 import com.netflix.spinnaker.cats.agent.*;
 import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
 import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.clouddriver.cache.OnDemandAgent;
+import com.netflix.spinnaker.clouddriver.cache.OnDemandMetricsSupport;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.CloudFoundryCloudProvider;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.ResourceCacheData;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryApplication;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryCluster;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryLoadBalancer;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryServerGroup;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundrySpace;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.Views;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.CloudFoundryProvider;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.AUTHORITATIVE;
+import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.INFORMATIVE;
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.*;
-import static java.util.Collections.emptyMap;
+import static java.util.Collections.*;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 
 @Getter
 @Slf4j
-public class CloudFoundryCachingAgent implements CachingAgent, AccountAware {
+public class CloudFoundryCachingAgent implements CachingAgent, OnDemandAgent, AccountAware {
   private final String providerName = CloudFoundryProvider.class.getName();
   private final Collection<AgentDataType> providedDataTypes = Arrays.asList(
     AUTHORITATIVE.forType(APPLICATIONS.getNs()),
     AUTHORITATIVE.forType(CLUSTERS.getNs()),
     AUTHORITATIVE.forType(SERVER_GROUPS.getNs()),
-    AUTHORITATIVE.forType(INSTANCES.getNs()),
-    AUTHORITATIVE.forType(LOAD_BALANCERS.getNs())
+    AUTHORITATIVE.forType(LOAD_BALANCERS.getNs()),
+    INFORMATIVE.forType(ON_DEMAND.getNs())
   );
 
-  private final ObjectMapper cacheViewMapper = new ObjectMapper()
-    .disable(MapperFeature.DEFAULT_VIEW_INCLUSION);
+  private static final ObjectWriter cacheViewWriter = new ObjectMapper()
+    .disable(MapperFeature.DEFAULT_VIEW_INCLUSION)
+    .writerWithView(Views.Cache.class);
+
+  private static final ObjectMapper onDemandMapper = new ObjectMapper();
+
+  private static final String CACHE_TIME_KEY = "cacheTime";
+  private static final String PROCESSED_COUNT_KEY = "processedCount";
+  private static final String PROCESSED_TIME_KEY = "processedTime";
+  private static final String CACHE_RESULTS_KEY = "cacheResults";
+  private static final String SPACE_ID_KEY = "spaceId";
 
   private final String account;
   private final CloudFoundryClient client;
 
+  /**
+   * Large foundations can be split across several agents, each caching the spaces whose guid hashes to its shard, so
+   * that the spaces of one account are cached in parallel and a slow space only delays its own shard.
+   */
+  private final int shardIndex;
+  private final int shardCount;
+
+  private final OnDemandMetricsSupport metricsSupport;
+
   public CloudFoundryCachingAgent(String account, CloudFoundryClient client) {
+    this(account, client, new NoopRegistry(), 0, 1);
+  }
+
+  public CloudFoundryCachingAgent(String account, CloudFoundryClient client, Registry registry, int shardIndex, int shardCount) {
+    if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+      throw new IllegalArgumentException("Invalid caching shard " + shardIndex + " of " + shardCount + " for account " + account);
+    }
+
     this.account = account;
     this.client = client;
-    this.cacheViewMapper.setConfig(cacheViewMapper.getSerializationConfig().withView(Views.Cache.class));
+    this.shardIndex = shardIndex;
+    this.shardCount = shardCount;
+    this.metricsSupport = new OnDemandMetricsSupport(registry, this, CloudFoundryCloudProvider.ID + ":" + OnDemandType.ServerGroup);
   }
 
   @Override
   public CacheResult loadData(ProviderCache providerCache) {
     String accountName = getAccountName();
-    log.info("Caching all resources in Cloud Foundry account " + accountName);
+    long start = System.currentTimeMillis();
 
     Map<String, Collection<CacheData>> results = new HashMap<>();
 
-    List<CloudFoundryApplication> apps = client.getApplications().all();
-    List<CloudFoundryLoadBalancer> loadBalancers = client.getRoutes().all();
+    List<String> spaceGuids = null;
+    if (shardCount > 1) {
+      spaceGuids = client.getSpaces().all().stream()
+        .map(CloudFoundrySpace::getId)
+        .filter(this::isInShard)
+        .collect(toList());
+      log.info("Caching {} spaces in shard {} of {} of Cloud Foundry account {}", spaceGuids.size(), shardIndex + 1,
+        shardCount, accountName);
+    } else {
+      log.info("Caching all resources in Cloud Foundry account " + accountName);
+    }
+
+    List<CloudFoundryApplication> apps = client.getApplications().all(spaceGuids);
+    List<CloudFoundryLoadBalancer> loadBalancers = client.getRoutes().all(apps, spaceGuids);
 
     results.put(LOAD_BALANCERS.getNs(), loadBalancers.stream()
       .map(lb -> {
         Map<String, Collection<String>> relationships = new HashMap<>();
 
-        relationships.put(SERVER_GROUPS.getNs(), lb.getServerGroups().stream()
+        relationships.put(SERVER_GROUPS.getNs(), lb.getMappedApps().stream()
           .map(sg -> Keys.getServerGroupKey(accountName, sg.getName(), sg.getRegion()))
           .collect(toSet()));
 
@@ -112,39 +171,123 @@ public class CloudFoundryCachingAgent implements CachingAgent, AccountAware {
       )
       .collect(toSet()));
 
+    // server group key -> keys of the load balancers in this account mapped to it
+    Map<String, Set<String>> loadBalancerKeysByServerGroup = new HashMap<>();
+    for (CloudFoundryLoadBalancer lb : loadBalancers) {
+      if (!accountName.equals(lb.getAccount())) {
+        continue;
+      }
+
+      String loadBalancerKey = Keys.getLoadBalancerKey(accountName, lb);
+      for (CloudFoundryServerGroup sg : lb.getMappedApps()) {
+        loadBalancerKeysByServerGroup
+          .computeIfAbsent(Keys.getServerGroupKey(accountName, sg.getName(), sg.getRegion()), key -> new HashSet<>())
+          .add(loadBalancerKey);
+      }
+    }
+
     results.put(SERVER_GROUPS.getNs(), apps.stream()
       .flatMap(app -> app.getClusters().stream()
         .flatMap(cluster -> cluster.getServerGroups().stream()
           .map(serverGroup -> {
             Map<String, Collection<String>> relationships = new HashMap<>();
+            String serverGroupKey = Keys.getServerGroupKey(accountName, serverGroup.getName(), serverGroup.getRegion());
 
+            // the state of these instances is cached by the instance state agent, on a faster cycle
             relationships.put(INSTANCES.getNs(), serverGroup.getInstances().stream()
               .map(inst -> Keys.getInstanceKey(accountName, inst.getName()))
               .collect(toSet()));
-            relationships.put(LOAD_BALANCERS.getNs(), loadBalancers.stream()
-              .filter(lb -> lb.getServerGroups().stream()
-                .anyMatch(lbSg -> lbSg.getName().equals(serverGroup.getName()) &&
-                  lbSg.getRegion().equals(serverGroup.getRegion()) &&
-                  lbSg.getAccount().equals(accountName))
-              )
-              .map(lb -> Keys.getLoadBalancerKey(accountName, lb))
-              .collect(toSet()));
+            relationships.put(LOAD_BALANCERS.getNs(), loadBalancerKeysByServerGroup.getOrDefault(serverGroupKey, emptySet()));
 
-            return new ResourceCacheData(Keys.getServerGroupKey(accountName, serverGroup.getName(), serverGroup.getRegion()),
-              cacheView(serverGroup), relationships);
+            return new ResourceCacheData(serverGroupKey, cacheView(serverGroup), relationships);
           })
         )
       )
       .collect(toSet()));
 
-    results.put(INSTANCES.getNs(), apps.stream()
-      .flatMap(app -> app.getClusters().stream())
-      .flatMap(cluster -> cluster.getServerGroups().stream())
-      .flatMap(serverGroup -> serverGroup.getInstances().stream())
-      .map(inst -> new ResourceCacheData(Keys.getInstanceKey(accountName, inst.getName()), cacheView(inst), emptyMap()))
-      .collect(toSet()));
+    Map<String, Collection<String>> evictions = new HashMap<>();
+    mergeOnDemandData(providerCache, start, results, evictions);
+
+    return new DefaultCacheResult(results, evictions);
+  }
+
+  /**
+   * Server groups refreshed on demand after this cycle started listing are fresher than what it listed, so their stored
+   * results are merged over the listed ones. Each stored result is kept until a cycle that started after it was stored
+   * has processed it, which is what a pending on demand request waits for.
+   */
+  private void mergeOnDemandData(ProviderCache providerCache, long start, Map<String, Collection<CacheData>> results,
+                                 Map<String, Collection<String>> evictions) {
+    Collection<CacheData> keepInOnDemand = new ArrayList<>();
+    Collection<String> evictFromOnDemand = new ArrayList<>();
+
+    for (CacheData onDemandData : onDemandEntries(providerCache)) {
+      Map<String, Object> attributes = onDemandData.getAttributes();
+      long cacheTime = ((Number) attributes.get(CACHE_TIME_KEY)).longValue();
+      int processedCount = ((Number) attributes.getOrDefault(PROCESSED_COUNT_KEY, 0)).intValue();
+
+      if (cacheTime >= start) {
+        log.info("On demand entry '{}' is newer than the listing of Cloud Foundry account {}", onDemandData.getId(),
+          getAccountName());
+        mergeCacheResults(results, onDemandResults(onDemandData));
+      }
+
+      if (cacheTime < start && processedCount > 0) {
+        evictFromOnDemand.add(onDemandData.getId());
+      } else {
+        attributes.put(PROCESSED_COUNT_KEY, processedCount + 1);
+        attributes.put(PROCESSED_TIME_KEY, System.currentTimeMillis());
+        keepInOnDemand.add(onDemandData);
+      }
+    }
+
+    results.put(ON_DEMAND.getNs(), keepInOnDemand);
+    evictions.put(ON_DEMAND.getNs(), evictFromOnDemand);
+  }
+
+  /**
+   * Attributes are replaced by the fresher on demand ones, relationships are added to the listed ones.
+   */
+  private static void mergeCacheResults(Map<String, Collection<CacheData>> results,
+                                        Map<String, Collection<CacheData>> onDemandResults) {
+    onDemandResults.forEach((type, onDemandData) -> {
+      Map<String, CacheData> byId = results.getOrDefault(type, emptySet()).stream()
+        .collect(toMap(CacheData::getId, identity()));
 
-    return new DefaultCacheResult(results);
+      for (CacheData data : onDemandData) {
+        byId.merge(data.getId(), data, (listed, onDemand) -> {
+          Map<String, Collection<String>> relationships = new HashMap<>();
+          listed.getRelationships().forEach((relationship, keys) -> relationships.put(relationship, new HashSet<>(keys)));
+          onDemand.getRelationships().forEach((relationship, keys) ->
+            relationships.computeIfAbsent(relationship, r -> new HashSet<>()).addAll(keys));
+          return new DefaultCacheData(onDemand.getId(), onDemand.getAttributes(), relationships);
+        });
+      }
+
+      results.put(type, new HashSet<>(byId.values()));
+    });
+  }
+
+  private Map<String, Collection<CacheData>> onDemandResults(CacheData onDemandData) {
+    try {
+      return onDemandMapper.readValue((String) onDemandData.getAttributes().get(CACHE_RESULTS_KEY),
+        new TypeReference<Map<String, List<DefaultCacheData>>>() {
+        });
+    } catch (IOException e) {
+      log.error("Failure parsing stored on demand data for '{}'", onDemandData.getId(), e);
+      return emptyMap();
+    }
+  }
+
+  /**
+   * The on demand entries stored by this agent, i.e. for server groups of its account in spaces of its shard.
+   */
+  private Collection<CacheData> onDemandEntries(ProviderCache providerCache) {
+    Collection<String> keys = providerCache.filterIdentifiers(ON_DEMAND.getNs(), Keys.getServerGroupKey(getAccountName(), "*", "*"));
+    return providerCache.getAll(ON_DEMAND.getNs(), keys).stream()
+      .filter(data -> data.getAttributes().get(SPACE_ID_KEY) instanceof String &&
+        isInShard((String) data.getAttributes().get(SPACE_ID_KEY)))
+      .collect(toList());
   }
 
   @Override
@@ -154,14 +297,137 @@ public class CloudFoundryCachingAgent implements CachingAgent, AccountAware {
 
   @Override
   public String getAgentType() {
-    return getAccountName() + "/" + getClass().getSimpleName();
+    if (shardCount == 1) {
+      return getAccountName() + "/" + getClass().getSimpleName();
+    }
+    return getAccountName() + "/" + (shardIndex + 1) + "-of-" + shardCount + "/" + getClass().getSimpleName();
+  }
+
+  @Override
+  public String getOnDemandAgentType() {
+    return getAgentType() + "-OnDemand";
+  }
+
+  @Override
+  public boolean handles(OnDemandType type, String cloudProvider) {
+    return OnDemandType.ServerGroup.equals(type) && CloudFoundryCloudProvider.ID.equals(cloudProvider);
   }
 
   /**
-   * Serialize just enough data to be able to reconstitute the model fully if its relationships are also deserialized.
+   * Refreshes a single server group right after it was changed by a deployment, rather than waiting on the next caching
+   * cycle of the whole shard. The complete result is stored as an on demand entry, which the next cycle merges into its
+   * own result and then evicts. Relationships written under the on demand agent type are never replaced by a caching
+   * cycle, so only those that stay true for as long as the server group exists (to its cluster and application) are
+   * written right away; its instances are related by the cycle.
    */
-  private Map<String, Object> cacheView(Object o) {
-    return cacheViewMapper.convertValue(o, new TypeReference<Map<String, Object>>() {
+  @Nullable
+  @Override
+  public OnDemandResult handle(ProviderCache providerCache, Map<String, ?> data) {
+    String serverGroupName = (String) data.get("serverGroupName");
+    String region = (String) data.get("region");
+    if (!account.equals(data.get("account")) || serverGroupName == null || region == null) {
+      return null;
+    }
+
+    CloudFoundrySpace space = findSpace(region);
+    if (space == null || !isInShard(space.getId())) {
+      return null;
+    }
+
+    String accountName = getAccountName();
+    String serverGroupKey = Keys.getServerGroupKey(accountName, serverGroupName, region);
+
+    CloudFoundryServerGroup serverGroup = metricsSupport.readData(() -> {
+      String serverGroupId = client.getApplications().findServerGroupId(serverGroupName, space.getId());
+      return serverGroupId == null ? null : client.getApplications().findById(serverGroupId);
+    });
+
+    if (serverGroup == null) {
+      log.info("Evicting server group {} from Cloud Foundry account {}", serverGroupName, accountName);
+      providerCache.evictDeletedItems(ON_DEMAND.getNs(), singletonList(serverGroupKey));
+      return new OnDemandResult(getOnDemandAgentType(), new DefaultCacheResult(emptyMap()),
+        singletonMap(SERVER_GROUPS.getNs(), singletonList(serverGroupKey)));
+    }
+
+    CacheResult cacheResult = metricsSupport.transformData(() -> {
+      Names names = Names.parseName(serverGroupName);
+      String clusterKey = Keys.getClusterKey(accountName, names.getApp(), names.getCluster());
+      Map<String, Collection<CacheData>> results = new HashMap<>();
+
+      // attributes aren't merged across sources like relationships are, so these have to be complete
+      CloudFoundryApplication app = CloudFoundryApplication.builder().name(names.getApp()).build();
+      CloudFoundryCluster cluster = CloudFoundryCluster.builder().accountName(accountName).name(names.getCluster()).build();
+
+      results.put(APPLICATIONS.getNs(), singleton(new ResourceCacheData(Keys.getApplicationKey(names.getApp()),
+        cacheView(app), singletonMap(CLUSTERS.getNs(), singleton(clusterKey)))));
+      results.put(CLUSTERS.getNs(), singleton(new ResourceCacheData(clusterKey, cacheView(cluster),
+        singletonMap(SERVER_GROUPS.getNs(), singleton(serverGroupKey)))));
+      results.put(SERVER_GROUPS.getNs(), singleton(new ResourceCacheData(serverGroupKey, cacheView(serverGroup),
+        singletonMap(INSTANCES.getNs(), serverGroup.getInstances().stream()
+          .map(inst -> Keys.getInstanceKey(accountName, inst.getName()))
+          .collect(toSet())))));
+
+      return new DefaultCacheResult(results);
     });
+
+    metricsSupport.onDemandStore(() -> {
+      Map<String, Object> attributes = new HashMap<>();
+      attributes.put(CACHE_TIME_KEY, System.currentTimeMillis());
+      attributes.put(PROCESSED_COUNT_KEY, 0);
+      attributes.put(SPACE_ID_KEY, space.getId());
+      try {
+        attributes.put(CACHE_RESULTS_KEY, onDemandMapper.writeValueAsString(cacheResult.getCacheResults()));
+      } catch (JsonProcessingException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      providerCache.putCacheData(ON_DEMAND.getNs(), new DefaultCacheData(serverGroupKey, attributes, emptyMap()));
+      return null;
+    });
+
+    // only the server group itself is written right away: anything written under the on demand source is never replaced
+    // by a caching cycle, so application and cluster relationships written here would outlive the server group. They
+    // reach the cache when the next cycle merges the entry stored above.
+    return new OnDemandResult(getOnDemandAgentType(), new DefaultCacheResult(singletonMap(SERVER_GROUPS.getNs(),
+      singleton(new ResourceCacheData(serverGroupKey, cacheView(serverGroup), emptyMap())))), emptyMap());
+  }
+
+  @Override
+  public Collection<Map> pendingOnDemandRequests(ProviderCache providerCache) {
+    return onDemandEntries(providerCache).stream()
+      .map(data -> {
+        Map<String, Object> request = new HashMap<>();
+        request.put("id", data.getId());
+        request.put("details", Keys.parse(data.getId()).orElse(emptyMap()));
+        request.put(CACHE_TIME_KEY, data.getAttributes().get(CACHE_TIME_KEY));
+        request.put(PROCESSED_COUNT_KEY, data.getAttributes().get(PROCESSED_COUNT_KEY));
+        request.put(PROCESSED_TIME_KEY, data.getAttributes().get(PROCESSED_TIME_KEY));
+        return (Map) request;
+      })
+      .collect(toList());
+  }
+
+  private boolean isInShard(String spaceGuid) {
+    return Math.floorMod(spaceGuid.hashCode(), shardCount) == shardIndex;
+  }
+
+  @Nullable
+  private CloudFoundrySpace findSpace(String region) {
+    CloudFoundrySpace space = CloudFoundrySpace.fromRegion(region);
+    return client.getOrganizations().findByName(space.getOrganization().getName())
+      .map(org -> client.getSpaces().findByName(org.getId(), space.getName()))
+      .orElse(null);
+  }
+
+  /**
+   * Serialize just enough data to be able to reconstitute the model fully if its relationships are also deserialized.
+   * The JSON is stored as is, so that reading the model back doesn't have to go through an intermediate map.
+   */
+  static String cacheView(Object o) {
+    try {
+      return cacheViewWriter.writeValueAsString(o);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent;
+
+import com.netflix.spinnaker.cats.agent.*;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.CacheRepository;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.ResourceCacheData;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryInstance;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryServerGroup;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.CloudFoundryProvider;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nullable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+
+import static com.netflix.spinnaker.cats.agent.AgentDataType.Authority.INFORMATIVE;
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.INSTANCES;
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.SERVER_GROUPS;
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent.CloudFoundryCachingAgent.cacheView;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Caches the state of the instances of an account's started server groups on a cycle of its own, apart from
+ * {@link CloudFoundryCachingAgent}, which only relates each server group to the instances it is scaled to.
+ *
+ * The instances last cached are kept in memory, so that a cycle only writes the instances whose health, details or
+ * launch time changed and evicts those that went away. Launch times are derived from uptimes, which drift by a few
+ * seconds from one poll to the next, so they only count as changed when they move by more than a minute.
+ */
+@Getter
+@Slf4j
+public class CloudFoundryInstanceStateAgent implements CachingAgent, AccountAware, AgentIntervalAware {
+  private static final long LAUNCH_TIME_TOLERANCE_MILLISECONDS = Duration.ofMinutes(1).toMillis();
+
+  // the agent may run on another node in between, so what it last cached is read back from the cache every so often
+  private static final long RESYNC_INTERVAL_MILLISECONDS = Duration.ofMinutes(5).toMillis();
+
+  private final String providerName = CloudFoundryProvider.class.getName();
+  private final Collection<AgentDataType> providedDataTypes = singletonList(INFORMATIVE.forType(INSTANCES.getNs()));
+
+  private final String account;
+  private final CloudFoundryClient client;
+
+  /**
+   * Split like the caching agents of the account, each agent polling the server groups whose guid hashes to its shard.
+   */
+  private final int shardIndex;
+  private final int shardCount;
+
+  private final long pollingIntervalMilliseconds;
+  private final Clock clock;
+
+  @Getter(AccessLevel.NONE)
+  private Map<String, CloudFoundryInstance> cachedInstances = emptyMap();
+
+  @Getter(AccessLevel.NONE)
+  private long nextResync = Long.MIN_VALUE;
+
+  public CloudFoundryInstanceStateAgent(String account, CloudFoundryClient client, int shardIndex, int shardCount,
+                                        long pollingIntervalMilliseconds) {
+    this(account, client, shardIndex, shardCount, pollingIntervalMilliseconds, Clock.systemDefaultZone());
+  }
+
+  CloudFoundryInstanceStateAgent(String account, CloudFoundryClient client, int shardIndex, int shardCount,
+                                 long pollingIntervalMilliseconds, Clock clock) {
+    if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+      throw new IllegalArgumentException("Invalid caching shard " + shardIndex + " of " + shardCount + " for account " + account);
+    }
+
+    this.account = account;
+    this.client = client;
+    this.shardIndex = shardIndex;
+    this.shardCount = shardCount;
+    this.pollingIntervalMilliseconds = pollingIntervalMilliseconds;
+    this.clock = clock;
+  }
+
+  @Override
+  public CacheResult loadData(ProviderCache providerCache) {
+    CacheRepository repository = new CacheRepository(providerCache);
+
+    long now = clock.millis();
+    if (now >= nextResync) {
+      cachedInstances = repository.findInstancesByKeys(
+        providerCache.filterIdentifiers(INSTANCES.getNs(), Keys.getInstanceKey(account, "*"))).stream()
+        .filter(instance -> isInShard(instance.getAppGuid()))
+        .collect(toMap(this::instanceKey, instance -> instance));
+      nextResync = now + RESYNC_INTERVAL_MILLISECONDS;
+    }
+
+    List<CloudFoundryServerGroup> startedServerGroups = repository.findServerGroupsByKeys(
+      providerCache.filterIdentifiers(SERVER_GROUPS.getNs(), Keys.getServerGroupKey(account, "*", "*")),
+      CacheRepository.Detail.NONE).stream()
+      .filter(serverGroup -> CloudFoundryServerGroup.State.STARTED.equals(serverGroup.getState()))
+      .filter(serverGroup -> isInShard(serverGroup.getId()))
+      .collect(toList());
+
+    Map<String, Set<CloudFoundryInstance>> instancesByAppGuid = client.getApplications().findInstances(startedServerGroups);
+
+    // the instances of server groups whose stats couldn't be retrieved this time are left as they were
+    Set<String> unreadAppGuids = startedServerGroups.stream()
+      .map(CloudFoundryServerGroup::getId)
+      .filter(appGuid -> !instancesByAppGuid.containsKey(appGuid))
+      .collect(toSet());
+
+    Map<String, CloudFoundryInstance> instances = new HashMap<>();
+    cachedInstances.forEach((key, instance) -> {
+      if (unreadAppGuids.contains(instance.getAppGuid())) {
+        instances.put(key, instance);
+      }
+    });
+
+    Collection<CacheData> changed = new ArrayList<>();
+    instancesByAppGuid.values().stream().flatMap(Collection::stream).forEach(instance -> {
+      String key = instanceKey(instance);
+      CloudFoundryInstance cached = cachedInstances.get(key);
+      if (cached != null && sameState(cached, instance)) {
+        instances.put(key, cached);
+      } else {
+        instances.put(key, instance);
+        changed.add(new ResourceCacheData(key, cacheView(instance), emptyMap()));
+      }
+    });
+
+    Collection<String> evicted = cachedInstances.keySet().stream()
+      .filter(key -> !instances.containsKey(key))
+      .collect(toList());
+
+    log.debug("Caching {} changed and evicting {} of {} instances in shard {} of {} of Cloud Foundry account {}",
+      changed.size(), evicted.size(), instances.size(), shardIndex + 1, shardCount, account);
+
+    cachedInstances = instances;
+    return new DefaultCacheResult(singletonMap(INSTANCES.getNs(), changed), singletonMap(INSTANCES.getNs(), evicted));
+  }
+
+  @Override
+  public String getAccountName() {
+    return account;
+  }
+
+  @Override
+  public String getAgentType() {
+    if (shardCount == 1) {
+      return getAccountName() + "/" + getClass().getSimpleName();
+    }
+    return getAccountName() + "/" + (shardIndex + 1) + "-of-" + shardCount + "/" + getClass().getSimpleName();
+  }
+
+  @Override
+  public Long getAgentInterval() {
+    return pollingIntervalMilliseconds;
+  }
+
+  private String instanceKey(CloudFoundryInstance instance) {
+    return Keys.getInstanceKey(account, instance.getName());
+  }
+
+  private boolean isInShard(String appGuid) {
+    return Math.floorMod(appGuid.hashCode(), shardCount) == shardIndex;
+  }
+
+  private static boolean sameState(CloudFoundryInstance cached, CloudFoundryInstance instance) {
+    return Objects.equals(cached.getHealthState(), instance.getHealthState()) &&
+      Objects.equals(cached.getDetails(), instance.getDetails()) &&
+      Objects.equals(cached.getZone(), instance.getZone()) &&
+      sameLaunchTime(cached.getLaunchTime(), instance.getLaunchTime());
+  }
+
+  private static boolean sameLaunchTime(@Nullable Long cached, @Nullable Long launchTime) {
+    if (cached == null || launchTime == null) {
+      return Objects.equals(cached, launchTime);
+    }
+    return Math.abs(cached - launchTime) < LAUNCH_TIME_TOLERANCE_MILLISECONDS;
+  }
+}
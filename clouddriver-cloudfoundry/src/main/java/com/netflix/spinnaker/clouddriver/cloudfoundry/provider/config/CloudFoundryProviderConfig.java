@@ -16,9 +16,13 @@
 
 package com.netflix.spinnaker.clouddriver.cloudfoundry.provider.config;
 
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.cats.agent.Agent;
 import com.netflix.spinnaker.cats.provider.ProviderSynchronizerTypeWrapper;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.config.CloudFoundryConfigurationProperties;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.CloudFoundryProvider;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent.CloudFoundryCachingAgent;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent.CloudFoundryInstanceStateAgent;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.security.CloudFoundryCredentials;
 import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository;
 import com.netflix.spinnaker.clouddriver.security.ProviderUtils;
@@ -29,20 +33,23 @@ import org.springframework.context.annotation.DependsOn;
 import org.springframework.context.annotation.Scope;
 
 import java.util.Collections;
-import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Configuration
 public class CloudFoundryProviderConfig {
 
   @Bean
   @DependsOn("cloudFoundryAccountCredentials")
-  public CloudFoundryProvider cloudFoundryProvider(AccountCredentialsRepository accountCredentialsRepository) {
+  public CloudFoundryProvider cloudFoundryProvider(AccountCredentialsRepository accountCredentialsRepository,
+                                                   CloudFoundryConfigurationProperties cloudFoundryConfigurationProperties,
+                                                   Registry registry) {
     CloudFoundryProvider provider = new CloudFoundryProvider(
       Collections.newSetFromMap(new ConcurrentHashMap<>()));
-    synchronizeCloudFoundryProvider(provider, accountCredentialsRepository);
+    synchronizeCloudFoundryProvider(provider, accountCredentialsRepository, cloudFoundryConfigurationProperties, registry);
     return provider;
   }
 
@@ -54,16 +61,23 @@ public class CloudFoundryProviderConfig {
   @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
   @Bean
   public CloudFoundryProviderSynchronizer synchronizeCloudFoundryProvider(CloudFoundryProvider cloudFoundryProvider,
-                                                                          AccountCredentialsRepository accountCredentialsRepository) {
+                                                                          AccountCredentialsRepository accountCredentialsRepository,
+                                                                          CloudFoundryConfigurationProperties cloudFoundryConfigurationProperties,
+                                                                          Registry registry) {
     Set<String> scheduledAccounts = ProviderUtils.getScheduledAccounts(cloudFoundryProvider);
     Set<CloudFoundryCredentials> allAccounts = ProviderUtils.buildThreadSafeSetOfAccounts(accountCredentialsRepository,
       CloudFoundryCredentials.class);
 
     cloudFoundryProvider.getAgents().addAll(allAccounts.stream()
-      .map(credentials -> !scheduledAccounts.contains(credentials.getName()) ?
-        new CloudFoundryCachingAgent(credentials.getName(), credentials.getClient()) :
-        null)
-      .filter(Objects::nonNull)
+      .filter(credentials -> !scheduledAccounts.contains(credentials.getName()))
+      .flatMap(credentials -> IntStream.range(0, credentials.getCachingShards())
+        .boxed()
+        .flatMap(shard -> Stream.<Agent>of(
+          new CloudFoundryCachingAgent(credentials.getName(), credentials.getClient(), registry,
+            shard, credentials.getCachingShards()),
+          new CloudFoundryInstanceStateAgent(credentials.getName(), credentials.getClient(),
+            shard, credentials.getCachingShards(),
+            cloudFoundryConfigurationProperties.getInstanceStatePollingIntervalMilliseconds()))))
       .collect(Collectors.toList()));
 
     return new CloudFoundryProviderSynchronizer();
@@ -19,6 +19,7 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.security;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryApiException;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryHttpClientPool;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.HttpCloudFoundryClient;
 import com.netflix.spinnaker.clouddriver.security.AccountCredentials;
 import lombok.Getter;
@@ -54,10 +55,21 @@ public class CloudFoundryCredentials implements AccountCredentials<CloudFoundryC
 
   private final CloudFoundryClient credentials;
 
+  /**
+   * The number of caching agents the spaces of this account are split across.
+   */
+  private final int cachingShards;
+
   public CloudFoundryCredentials(String name, String appsManagerUri, String metricsUri, String apiHost, String userName, String password, String environment) {
+    this(name, appsManagerUri, metricsUri, apiHost, userName, password, environment, 1, CloudFoundryHttpClientPool.DEFAULT);
+  }
+
+  public CloudFoundryCredentials(String name, String appsManagerUri, String metricsUri, String apiHost, String userName, String password, String environment,
+                                 int cachingShards, CloudFoundryHttpClientPool httpClientPool) {
     this.name = name;
     this.environment = Optional.ofNullable(environment).orElse("dev");
-    this.credentials = new HttpCloudFoundryClient(name, appsManagerUri, metricsUri, apiHost, userName, password);
+    this.cachingShards = Math.max(1, cachingShards);
+    this.credentials = new HttpCloudFoundryClient(name, appsManagerUri, metricsUri, apiHost, userName, password, httpClientPool);
   }
 
   public CloudFoundryClient getClient() {
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.security;
 
 import com.netflix.spinnaker.cats.module.CatsModule;
 import com.netflix.spinnaker.cats.provider.ProviderSynchronizerTypeWrapper;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryHttpClientPool;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.config.CloudFoundryConfigurationProperties;
 import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository;
 import com.netflix.spinnaker.clouddriver.security.CredentialsInitializerSynchronizable;
@@ -36,11 +37,12 @@ public class CloudFoundryCredentialsInitializer implements CredentialsInitialize
 
   @Bean
   public List<? extends CloudFoundryCredentials> cloudFoundryAccountCredentials(CloudFoundryConfigurationProperties cloudFoundryConfigurationProperties,
+                                                                                CloudFoundryHttpClientPool cloudFoundryHttpClientPool,
                                                                                 AccountCredentialsRepository accountCredentialsRepository,
                                                                                 ApplicationContext applicationContext,
                                                                                 List<ProviderSynchronizerTypeWrapper> providerSynchronizerTypeWrappers) {
-    return synchronizeCloudFoundryAccounts(cloudFoundryConfigurationProperties, null, accountCredentialsRepository,
-      applicationContext, providerSynchronizerTypeWrappers);
+    return synchronizeCloudFoundryAccounts(cloudFoundryConfigurationProperties, cloudFoundryHttpClientPool, null,
+      accountCredentialsRepository, applicationContext, providerSynchronizerTypeWrappers);
   }
 
   @Override
@@ -52,6 +54,7 @@ public class CloudFoundryCredentialsInitializer implements CredentialsInitialize
   @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
   @Bean
   public List<? extends CloudFoundryCredentials> synchronizeCloudFoundryAccounts(CloudFoundryConfigurationProperties cloudFoundryConfigurationProperties,
+                                                                                 CloudFoundryHttpClientPool cloudFoundryHttpClientPool,
                                                                                  CatsModule catsModule,
                                                                                  AccountCredentialsRepository accountCredentialsRepository,
                                                                                  ApplicationContext applicationContext,
@@ -70,7 +73,9 @@ public class CloudFoundryCredentialsInitializer implements CredentialsInitialize
         managedAccount.getApi(),
         managedAccount.getUser(),
         managedAccount.getPassword(),
-        managedAccount.getEnvironment()
+        managedAccount.getEnvironment(),
+        managedAccount.getCachingShards(),
+        cloudFoundryHttpClientPool
       );
       accountCredentialsRepository.save(managedAccount.getName(), cloudFoundryAccountCredentials);
     }
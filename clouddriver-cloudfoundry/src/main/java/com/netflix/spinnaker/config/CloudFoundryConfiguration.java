@@ -17,9 +17,11 @@
 package com.netflix.spinnaker.config;
 
 import com.netflix.spinnaker.cats.provider.ProviderSynchronizerTypeWrapper;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.PackageArtifactCache;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryHttpClientPool;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.config.CloudFoundryConfigurationProperties;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.CloudFoundryOperationPoller;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.security.CloudFoundryCredentialsInitializer;
-import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -27,6 +29,8 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.nio.file.Paths;
+
 @Configuration
 @EnableConfigurationProperties
 @EnableScheduling
@@ -44,14 +48,32 @@ public class CloudFoundryConfiguration {
     return new CloudFoundrySynchronizerTypeWrapper();
   }
 
+  @Bean
+  CloudFoundryHttpClientPool cloudFoundryHttpClientPool(CloudFoundryConfigurationProperties properties) {
+    CloudFoundryConfigurationProperties.HttpClient httpClient = properties.getHttpClient();
+    return new CloudFoundryHttpClientPool(
+      httpClient.getMaxIdleConnections(),
+      httpClient.getKeepAliveDurationMilliseconds(),
+      httpClient.getMaxRequestsPerHost(),
+      httpClient.getApiCallerThreads(),
+      httpClient.isHttp2Enabled()
+    );
+  }
+
+  @Bean
+  PackageArtifactCache cloudFoundryPackageArtifactCache(CloudFoundryConfigurationProperties properties) {
+    CloudFoundryConfigurationProperties.PackageCache packageCache = properties.getPackageCache();
+    return new PackageArtifactCache(Paths.get(packageCache.getDirectory()), packageCache.getMaxSizeMb() * 1024 * 1024);
+  }
+
   @Bean
   CloudFoundryCredentialsInitializer cloudFoundryCredentialsInitializer() {
     return new CloudFoundryCredentialsInitializer();
   }
 
   @Bean
-  OperationPoller cloudFoundryOperationPoller(CloudFoundryConfigurationProperties properties) {
-    return new OperationPoller(
+  CloudFoundryOperationPoller cloudFoundryOperationPoller(CloudFoundryConfigurationProperties properties) {
+    return new CloudFoundryOperationPoller(
       properties.getAsyncOperationTimeoutMillisecondsDefault(),
       properties.getAsyncOperationMaxPollingIntervalMilliseconds()
     );
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts;
+
+import com.netflix.spinnaker.clouddriver.artifacts.config.ArtifactCredentials;
+import com.netflix.spinnaker.kork.artifacts.model.Artifact;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+class PackageArtifactCacheTest {
+  private final ArtifactCredentials credentials = mock(ArtifactCredentials.class);
+  private Path directory;
+
+  @BeforeEach
+  void before() throws IOException {
+    directory = Files.createTempDirectory("cloudfoundry-packages");
+    when(credentials.download(any())).thenAnswer(invocation ->
+      new ByteArrayInputStream(content((Artifact) invocation.getArguments()[0]).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @AfterEach
+  void after() throws IOException {
+    FileUtils.deleteDirectory(directory.toFile());
+  }
+
+  @Test
+  void disabledCacheLeavesTheCredentialsAsTheyAre() {
+    assertThat(new PackageArtifactCache(directory, 0).cached(credentials)).isSameAs(credentials);
+  }
+
+  @Test
+  void downloadsAnArtifactOnlyOnce() throws IOException {
+    ArtifactCredentials cached = new PackageArtifactCache(directory, 1024).cached(credentials);
+
+    assertThat(read(cached, artifact("app.zip"))).isEqualTo(content(artifact("app.zip")));
+    assertThat(read(cached, artifact("app.zip"))).isEqualTo(content(artifact("app.zip")));
+
+    verify(credentials, times(1)).download(any());
+  }
+
+  @Test
+  void downloadsAnUnversionedArtifactEveryTime() throws IOException {
+    ArtifactCredentials cached = new PackageArtifactCache(directory, 1024).cached(credentials);
+    Artifact latest = Artifact.builder().type("http/file").reference("app-latest.zip").build();
+
+    assertThat(read(cached, latest)).isEqualTo(content(latest));
+    assertThat(read(cached, latest)).isEqualTo(content(latest));
+
+    verify(credentials, times(2)).download(any());
+    assertThat(directory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  void clearsOnlyItsOwnFilesOnStartup() throws IOException {
+    read(new PackageArtifactCache(directory, 1024).cached(credentials), artifact("app.zip"));
+    Files.createFile(directory.resolve("download-1.tmp"));
+    Files.createFile(directory.resolve("unrelated.txt"));
+
+    new PackageArtifactCache(directory, 1024);
+
+    assertThat(directory.toFile().list()).containsExactly("unrelated.txt");
+  }
+
+  @Test
+  void keepsOnlyArtifactsThatWereReadToTheEnd() throws IOException {
+    ArtifactCredentials cached = new PackageArtifactCache(directory, 1024).cached(credentials);
+
+    try (InputStream partial = cached.download(artifact("app.zip"))) {
+      assertThat(partial.read()).isNotEqualTo(-1);
+    }
+    assertThat(read(cached, artifact("app.zip"))).isEqualTo(content(artifact("app.zip")));
+
+    verify(credentials, times(2)).download(any());
+    assertThat(directory.toFile().list()).hasSize(1);
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedArtifacts() throws IOException {
+    int size = content(artifact("a.zip")).length();
+    ArtifactCredentials cached = new PackageArtifactCache(directory, size * 2).cached(credentials);
+
+    read(cached, artifact("a.zip"));
+    read(cached, artifact("b.zip"));
+    read(cached, artifact("a.zip"));
+    read(cached, artifact("c.zip"));
+
+    assertThat(directory.toFile().list()).hasSize(2);
+
+    read(cached, artifact("a.zip"));
+    read(cached, artifact("c.zip"));
+    verify(credentials, times(1)).download(artifact("a.zip"));
+    verify(credentials, times(1)).download(artifact("c.zip"));
+
+    read(cached, artifact("b.zip"));
+    verify(credentials, times(2)).download(artifact("b.zip"));
+  }
+
+  @Test
+  void downloadsACorruptedArtifactAgain() throws IOException {
+    ArtifactCredentials cached = new PackageArtifactCache(directory, 1024).cached(credentials);
+    read(cached, artifact("app.zip"));
+
+    try (Stream<Path> files = Files.list(directory)) {
+      Files.write(files.findFirst().get(), "corrupted".getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertThatThrownBy(() -> read(cached, artifact("app.zip"))).isInstanceOf(IOException.class);
+    assertThat(read(cached, artifact("app.zip"))).isEqualTo(content(artifact("app.zip")));
+    verify(credentials, times(2)).download(any());
+  }
+
+  private static String read(ArtifactCredentials credentials, Artifact artifact) throws IOException {
+    try (InputStream in = credentials.download(artifact)) {
+      return IOUtils.toString(in, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static Artifact artifact(String reference) {
+    return Artifact.builder().type("http/file").reference(reference).version("1.0").build();
+  }
+
+  private static String content(Artifact artifact) {
+    return "bits of " + artifact.getReference();
+  }
+}
@@ -18,6 +18,7 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.cache;
 
 import com.netflix.spinnaker.cats.agent.AgentDataType;
 import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.cache.CacheFilter;
 import com.netflix.spinnaker.cats.mem.InMemoryCache;
 import com.netflix.spinnaker.cats.provider.DefaultProviderCache;
 import com.netflix.spinnaker.cats.provider.ProviderCache;
@@ -26,19 +27,27 @@ import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.Routes;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.*;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent.CloudFoundryCachingAgent;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent.CloudFoundryInstanceStateAgent;
 import com.netflix.spinnaker.clouddriver.model.HealthState;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.CacheRepository.Detail.FULL;
 import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.CacheRepository.Detail.NAMES_ONLY;
 import static java.util.Collections.*;
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.*;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
 
 class CacheRepositoryTest {
   private final ProviderCache cache = new DefaultProviderCache(new InMemoryCache());
@@ -56,7 +65,9 @@ class CacheRepositoryTest {
 
     CloudFoundryServerGroup serverGroup = CloudFoundryServerGroup.builder()
       .name("demo-dev-v001")
+      .id("appguid")
       .account("devaccount")
+      .state(CloudFoundryServerGroup.State.STARTED)
       .createdTime(1L)
       .space(CloudFoundrySpace.fromRegion("myorg > dev"))
       .instances(singleton(instance))
@@ -72,23 +83,7 @@ class CacheRepositoryTest {
 
     CloudFoundryCluster cluster = CloudFoundryCluster.builder().accountName("devaccount").name("demo-dev")
       .serverGroups(singleton(serverGroup)).build();
-    CloudFoundryApplication app = CloudFoundryApplication.builder().name("demo").clusters(singleton(cluster)).build();
-
-    CloudFoundryClient client = mock(CloudFoundryClient.class);
-
-    Applications apps = mock(Applications.class);
-    Routes routes = mock(Routes.class);
-
-    when(client.getApplications()).thenReturn(apps);
-    when(client.getRoutes()).thenReturn(routes);
-    when(apps.all()).thenReturn(singletonList(app));
-    when(routes.all()).thenReturn(emptyList());
-
-    CloudFoundryCachingAgent agent = new CloudFoundryCachingAgent("devaccount", client);
-
-    CacheResult result = agent.loadData(null);
-    List<String> authoritativeTypes = agent.getProvidedDataTypes().stream().map(AgentDataType::getTypeName).collect(toList());
-    cache.putCacheResult(agent.getAgentType(), authoritativeTypes, result);
+    cacheApplication(cache, CloudFoundryApplication.builder().name("demo").clusters(singleton(cluster)).build());
   }
 
   @Test
@@ -134,4 +129,86 @@ class CacheRepositoryTest {
       });
     });
   }
+
+  @Test
+  void rehydratesEachRelationshipLevelWithOneRequest() {
+    InMemoryCache store = new InMemoryCache();
+    CloudFoundryCluster cluster = CloudFoundryCluster.builder().accountName("devaccount").name("demo-dev")
+      .serverGroups(IntStream.range(0, 5).mapToObj(i -> serverGroup("demo-dev-v00" + i, instance("appguid" + i, HealthState.Up))).collect(toSet()))
+      .build();
+    cacheApplication(new DefaultProviderCache(store), CloudFoundryApplication.builder().name("demo").clusters(singleton(cluster)).build());
+
+    ProviderCache cache = spy(new DefaultProviderCache(store));
+    Optional<CloudFoundryCluster> rehydrated = new CacheRepository(cache).findClusterByKey(Keys.getClusterKey("devaccount", "demo", "demo-dev"), FULL);
+
+    assertThat(rehydrated).hasValueSatisfying(c -> {
+      assertThat(c.getServerGroups()).hasSize(5);
+      assertThat(c.getServerGroups()).allSatisfy(serverGroup -> assertThat(serverGroup.getInstances()).hasSize(1));
+    });
+    verify(cache, times(1)).getAll(eq(SERVER_GROUPS.getNs()), anyCollectionOf(String.class), any(CacheFilter.class));
+    verify(cache, times(1)).getAll(eq(INSTANCES.getNs()), anyCollectionOf(String.class));
+    verify(cache, times(1)).getAll(eq(LOAD_BALANCERS.getNs()), anyCollectionOf(String.class), any(CacheFilter.class));
+  }
+
+  @Test
+  void reusesDeserializedModelsUntilTheirCachedResourceChanges() {
+    String instanceKey = Keys.getInstanceKey("devaccount", "appguid-abc123");
+    CloudFoundryInstance instance = repo.findInstanceByKey(instanceKey).orElseThrow(IllegalStateException::new);
+    assertThat(repo.findInstanceByKey(instanceKey)).hasValueSatisfying(same -> assertThat(same).isSameAs(instance));
+
+    CloudFoundryCluster cluster = CloudFoundryCluster.builder().accountName("devaccount").name("demo-dev")
+      .serverGroups(singleton(serverGroup("demo-dev-v001", instance("appguid", HealthState.Down)))).build();
+    cacheApplication(cache, CloudFoundryApplication.builder().name("demo").clusters(singleton(cluster)).build());
+
+    assertThat(repo.findInstanceByKey(instanceKey)).hasValueSatisfying(changed ->
+      assertThat(changed.getHealthState()).isEqualTo(HealthState.Down));
+  }
+
+  private static void cacheApplication(ProviderCache cache, CloudFoundryApplication app) {
+    CloudFoundryClient client = mock(CloudFoundryClient.class);
+
+    Applications apps = mock(Applications.class);
+    Routes routes = mock(Routes.class);
+
+    when(client.getApplications()).thenReturn(apps);
+    when(client.getRoutes()).thenReturn(routes);
+    when(apps.all(any())).thenReturn(singletonList(app));
+    when(routes.all(any(), any())).thenReturn(emptyList());
+
+    CloudFoundryCachingAgent agent = new CloudFoundryCachingAgent("devaccount", client);
+
+    CacheResult result = agent.loadData(null);
+    List<String> authoritativeTypes = agent.getProvidedDataTypes().stream().map(AgentDataType::getTypeName).collect(toList());
+    cache.putCacheResult(agent.getAgentType(), authoritativeTypes, result);
+
+    // the state of the instances is cached separately from the server groups they belong to
+    when(apps.findInstances(any())).thenReturn(app.getClusters().stream()
+      .flatMap(cluster -> cluster.getServerGroups().stream())
+      .collect(toMap(CloudFoundryServerGroup::getId, CloudFoundryServerGroup::getInstances)));
+
+    CloudFoundryInstanceStateAgent instanceStateAgent = new CloudFoundryInstanceStateAgent("devaccount", client);
+    cache.putCacheResult(instanceStateAgent.getAgentType(), emptyList(), instanceStateAgent.loadData(cache));
+  }
+
+  private static CloudFoundryServerGroup serverGroup(String name, CloudFoundryInstance instance) {
+    return CloudFoundryServerGroup.builder()
+      .name(name)
+      .id(instance.getAppGuid())
+      .account("devaccount")
+      .state(CloudFoundryServerGroup.State.STARTED)
+      .createdTime(1L)
+      .space(CloudFoundrySpace.fromRegion("myorg > dev"))
+      .instances(singleton(instance))
+      .build();
+  }
+
+  private static CloudFoundryInstance instance(String appGuid, HealthState healthState) {
+    return CloudFoundryInstance.builder()
+      .appGuid(appGuid)
+      .key("abc123")
+      .healthState(healthState)
+      .launchTime(1L)
+      .zone("us-east-1")
+      .build();
+  }
 }
@@ -17,29 +17,50 @@
 package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
 
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.api.ApplicationService;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.ErrorDescription;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.*;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.Application;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.Package;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.Process;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.*;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryApplication;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryInstance;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryOrganization;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryServerGroup;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundrySpace;
+import com.netflix.spinnaker.clouddriver.model.HealthState;
 import io.vavr.collection.HashMap;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import retrofit.RetrofitError;
 import retrofit.client.Response;
+import retrofit.mime.TypedOutput;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -120,8 +141,8 @@ class ApplicationsTest {
     when(applicationService.findApplicationEnvById("some-app-guid")).thenReturn(applicationEnv);
     when(spaces.findById(any())).thenReturn(cloudFoundrySpace);
     when(applicationService.findProcessById(any())).thenReturn(process);
-    when(applicationService.instances("some-app-guid")).thenReturn(
-      HashMap.of("0", new InstanceStatus().setState(InstanceStatus.State.RUNNING).setUptime(2405L)).toJavaMap());
+    when(applicationService.findProcessStatsById("some-app-guid")).thenReturn(new ProcessResources().setResources(
+      singletonList(new ProcessStats().setIndex(0).setState(ProcessStats.State.RUNNING).setUptime(2405L))));
     when(applicationService.findPackagesByAppId("some-app-guid")).thenReturn(packagePagination);
     when(applicationService.findDropletByApplicationGuid("some-app-guid")).thenReturn(droplet);
 
@@ -133,6 +154,128 @@ class ApplicationsTest {
     assertThat(cloudFoundryServerGroup.getMetricsUri()).isEqualTo("some-metrics-uri/apps/some-app-guid");
     assertThat(cloudFoundryServerGroup.getServiceInstances().size()).isEqualTo(1);
     assertThat(cloudFoundryServerGroup.getServiceInstances().get(0).getTags()).containsExactly("tag1", "tag2");
+    assertThat(cloudFoundryServerGroup.getInstances()).hasOnlyOneElementSatisfying(instance -> {
+      assertThat(instance.getName()).isEqualTo("some-app-guid-0");
+      assertThat(instance.getHealthState()).isEqualTo(HealthState.Up);
+      assertThat(instance.getZone()).isEqualTo("space-name");
+    });
+  }
+
+  @Test
+  void allJoinsProcessesAndPackagesListedInBulkWithTheCurrentDroplets() {
+    CloudFoundrySpace space = CloudFoundrySpace.builder()
+      .id("space-guid")
+      .name("space-name")
+      .organization(CloudFoundryOrganization.builder().id("org-guid").name("org-name").build())
+      .build();
+
+    List<Application> applications = Arrays.asList(application("app1-v000"), application("app1-v001"), application("app2"));
+
+    Process process = new Process().setGuid("app1-v000-guid").setMemoryInMb(512).setDiskInMb(256);
+    Package pkg = new Package()
+      .setData(new PackageData().setChecksum(new PackageChecksum().setType("sha256").setValue("abc")))
+      .setLinks(HashMap.of(
+        "app", new Link().setHref("http://capi.io/v3/apps/app1-v001-guid"),
+        "download", new Link().setHref("http://capi.io/v3/packages/package-guid/download")).toJavaMap());
+    // rolled back to a droplet staged before the application's newest one
+    Droplet currentDroplet = new Droplet()
+      .setGuid("older-droplet-guid")
+      .setStack("cflinuxfs2")
+      .setLinks(HashMap.of("app", new Link().setHref("http://capi.io/v3/apps/app2-guid")).toJavaMap());
+
+    when(spaces.findById("space-guid")).thenReturn(space);
+    when(applicationService.all(any(), any(), any())).thenReturn(pagination(applications));
+    when(applicationService.listProcesses(any(), any(), any(), any())).thenReturn(pagination(singletonList(process)));
+    when(applicationService.listPackages(any(), any(), any())).thenReturn(pagination(singletonList(pkg)));
+    when(applicationService.findDropletByApplicationGuid("app2-guid")).thenReturn(currentDroplet);
+    when(applicationService.findApplicationEnvById("app2-guid")).thenReturn(new ApplicationEnv()
+      .setEnvironmentJson(HashMap.of("SOME_VAR", "some-value").toJavaMap())
+      .setSystemEnvJson(new ApplicationEnv.SystemEnv().setVcapServices(emptyMap())));
+
+    List<CloudFoundryApplication> all = apps.all();
+
+    verify(applicationService).listProcesses(null, 1000, "app1-v000-guid,app1-v001-guid,app2-guid", "web");
+    verify(applicationService, never()).findProcessById(any());
+    verify(applicationService, never()).findPackagesByAppId(any());
+
+    Map<String, CloudFoundryServerGroup> serverGroups = all.stream()
+      .flatMap(app -> app.getClusters().stream())
+      .flatMap(cluster -> cluster.getServerGroups().stream())
+      .collect(toMap(CloudFoundryServerGroup::getName, sg -> sg));
+
+    assertThat(serverGroups).containsOnlyKeys("app1-v000", "app1-v001", "app2");
+    assertThat(serverGroups.get("app1-v000").getMemory()).isEqualTo(512);
+    assertThat(serverGroups.get("app1-v000").getDroplet()).isNull();
+    assertThat(serverGroups.get("app1-v001").getMemory()).isNull();
+    assertThat(serverGroups.get("app2").getDroplet().getId()).isEqualTo("older-droplet-guid");
+    assertThat(serverGroups.get("app2").getDroplet().getSourcePackage()).isNull();
+    assertThat(serverGroups.get("app2").getEnv()).containsEntry("SOME_VAR", "some-value");
+    assertThat(serverGroups.get("app1-v000").getEnv()).isEmpty();
+  }
+
+  @Test
+  void allListsTheInstancesStartedApplicationsAreScaledToWithoutTheirState() {
+    Application application = application("app1-v000").setState("STARTED");
+
+    when(spaces.findById(any())).thenReturn(CloudFoundrySpace.builder()
+      .id("space-guid")
+      .name("space-name")
+      .organization(CloudFoundryOrganization.builder().id("org-guid").build())
+      .build());
+    when(applicationService.all(any(), any(), any())).thenReturn(pagination(singletonList(application)));
+    when(applicationService.listProcesses(any(), any(), any(), any()))
+      .thenReturn(pagination(singletonList(new Process().setGuid("app1-v000-guid").setInstances(2))));
+    when(applicationService.listPackages(any(), any(), any())).thenReturn(pagination(emptyList()));
+
+    CloudFoundryServerGroup serverGroup = apps.all().get(0).getClusters().iterator().next().getServerGroups().iterator().next();
+
+    assertThat(serverGroup.getInstances()).extracting(CloudFoundryInstance::getName)
+      .containsExactlyInAnyOrder("app1-v000-guid-0", "app1-v000-guid-1");
+    assertThat(serverGroup.getInstances()).allSatisfy(instance -> assertThat(instance.getHealthState()).isNull());
+    verify(applicationService, never()).findProcessStatsById(any());
+  }
+
+  @Test
+  void findInstancesLeavesOutServerGroupsWhoseStatsCouldNotBeRetrieved() {
+    CloudFoundrySpace space = CloudFoundrySpace.builder().id("space-guid").name("space-name").build();
+    CloudFoundryServerGroup running = CloudFoundryServerGroup.builder().id("running-guid").space(space).build();
+    CloudFoundryServerGroup failing = CloudFoundryServerGroup.builder().id("failing-guid").space(space).build();
+
+    when(applicationService.findProcessStatsById("running-guid")).thenReturn(new ProcessResources().setResources(Arrays.asList(
+      new ProcessStats().setIndex(0).setState(ProcessStats.State.RUNNING).setUptime(60L),
+      new ProcessStats().setIndex(1).setState(ProcessStats.State.CRASHED).setDetails("insufficient resources"))));
+    RetrofitError statsError = mock(RetrofitError.class);
+    when(statsError.getBodyAs(any())).thenReturn(new ErrorDescription());
+    when(applicationService.findProcessStatsById("failing-guid")).thenThrow(statsError);
+
+    Map<String, Set<CloudFoundryInstance>> instances = apps.findInstances(Arrays.asList(running, failing));
+
+    assertThat(instances).containsOnlyKeys("running-guid");
+    assertThat(instances.get("running-guid")).extracting(CloudFoundryInstance::getName, CloudFoundryInstance::getHealthState,
+      CloudFoundryInstance::getDetails, CloudFoundryInstance::getZone)
+      .containsExactlyInAnyOrder(
+        tuple("running-guid-0", HealthState.Up, null, "space-name"),
+        tuple("running-guid-1", HealthState.Down, "insufficient resources", "space-name"));
+  }
+
+  @Test
+  void allListsApplicationGuidsInBatches() {
+    List<Application> applications = IntStream.range(0, 250)
+      .mapToObj(i -> application("app-v" + i))
+      .collect(toList());
+
+    when(spaces.findById(any())).thenReturn(CloudFoundrySpace.builder()
+      .id("space-guid")
+      .organization(CloudFoundryOrganization.builder().id("org-guid").build())
+      .build());
+    when(applicationService.all(any(), any(), any())).thenReturn(pagination(applications));
+    when(applicationService.listProcesses(any(), any(), any(), any())).thenReturn(pagination(emptyList()));
+    when(applicationService.listPackages(any(), any(), any())).thenReturn(pagination(emptyList()));
+
+    apps.all();
+
+    verify(applicationService, times(3)).listProcesses(any(), any(), any(), any());
+    verify(applicationService, times(3)).listPackages(any(), any(), any());
   }
 
   @Test
@@ -223,4 +366,59 @@ class ApplicationsTest {
       .getTakenSlots("myapp", "space");
     assertThat(taken).extracting(app -> app.getEntity().getName()).contains("myapp", "myapp-v003");
   }
+
+  @Test
+  void uploadPackageBitsCanBeSentAgain() throws IOException {
+    byte[] content = new byte[200 * 1024];
+    new Random(0).nextBytes(content);
+    AtomicInteger opened = new AtomicInteger();
+    ArgumentCaptor<TypedOutput> bits = ArgumentCaptor.forClass(TypedOutput.class);
+    when(applicationService.uploadPackageBits(eq("package-guid"), bits.capture())).thenAnswer(invocation -> {
+      TypedOutput packageBits = bits.getValue();
+      assertThat(packageBits.length()).isEqualTo(-1);
+
+      // the first attempt fails partway through streaming the bits
+      assertThatThrownBy(() -> packageBits.writeTo(new ByteArrayOutputStream() {
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+          if (size() > 0) {
+            throw new UncheckedIOException(new IOException("connection reset"));
+          }
+          super.write(b, off, len);
+        }
+      })).isInstanceOf(UncheckedIOException.class);
+
+      ByteArrayOutputStream retried = new ByteArrayOutputStream();
+      packageBits.writeTo(retried);
+      assertThat(retried.toByteArray()).isEqualTo(content);
+
+      ByteArrayOutputStream retriedAgain = new ByteArrayOutputStream();
+      packageBits.writeTo(retriedAgain);
+      assertThat(retriedAgain.toByteArray()).isEqualTo(content);
+
+      return new Package().setGuid("package-guid");
+    });
+
+    assertThat(apps.uploadPackageBits("package-guid", () -> {
+      opened.incrementAndGet();
+      return new ByteArrayInputStream(content);
+    })).isEqualTo("package-guid");
+    // every attempt reads the bits from their source again
+    assertThat(opened.get()).isEqualTo(3);
+  }
+
+  private static Application application(String name) {
+    return new Application()
+      .setCreatedAt(ZonedDateTime.now())
+      .setGuid(name + "-guid")
+      .setName(name)
+      .setState("STOPPED")
+      .setLinks(HashMap.of("space", new Link().setHref("http://capi.io/space/space-guid")).toJavaMap());
+  }
+
+  private static <R> Pagination<R> pagination(List<R> resources) {
+    return new Pagination<R>()
+      .setPagination(new Pagination.Details().setTotalPages(1))
+      .setResources(resources);
+  }
 }
@@ -23,11 +23,20 @@ import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.Page;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.Application;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v3.Pagination;
 import org.junit.jupiter.api.Test;
+import retrofit.RetrofitError;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -100,4 +109,86 @@ class CloudFoundryClientUtilsTest {
 
     assertThat(results).containsExactly(pageOne.getResources().get(0), pageTwo.getResources().get(0));
   }
+
+  @Test
+  void collectPagesReassemblesConcurrentlyFetchedPagesInOrder() {
+    ApplicationService applicationService = mock(ApplicationService.class);
+    int totalPages = 25;
+    when(applicationService.all(any(), any(), any())).thenAnswer(invocation -> {
+      Integer page = (Integer) invocation.getArguments()[0];
+      return new Pagination<Application>()
+        .setPagination(new Pagination.Details().setTotalPages(totalPages))
+        .setResources(Collections.singletonList(new Application().setName("app-" + (page == null ? 1 : page))));
+    });
+
+    List<Application> results = CloudFoundryClientUtils.collectPages("applications", page -> applicationService.all(page, null, null));
+
+    assertThat(results).extracting(Application::getName)
+      .containsExactlyElementsOf(IntStream.rangeClosed(1, totalPages).mapToObj(i -> "app-" + i).collect(toList()));
+  }
+
+  @Test
+  void collectPagesFailsWhenAnyPageFails() {
+    ApplicationService applicationService = mock(ApplicationService.class);
+    Pagination<Application> pageOne = new Pagination<Application>()
+      .setPagination(new Pagination.Details().setTotalPages(3))
+      .setResources(Collections.singletonList(new Application().setName("app-name-one")));
+
+    when(applicationService.all(null, null, null)).thenReturn(pageOne);
+    when(applicationService.all(2, null, null)).thenReturn(pageOne);
+    when(applicationService.all(3, null, null)).thenThrow(RetrofitError.unexpectedError("http://capi.io", new RuntimeException("connection reset")));
+
+    assertThatThrownBy(() -> CloudFoundryClientUtils.collectPages("applications", page -> applicationService.all(page, null, null)))
+      .isInstanceOf(CloudFoundryApiException.class);
+  }
+
+  @Test
+  void listingsStartedAsyncCompleteWhenEveryCallerIsBusy() {
+    ApplicationService applicationService = mock(ApplicationService.class);
+    when(applicationService.all(any(), any(), any())).thenAnswer(invocation -> {
+      Integer page = (Integer) invocation.getArguments()[0];
+      return new Pagination<Application>()
+        .setPagination(new Pagination.Details().setTotalPages(10))
+        .setResources(Collections.singletonList(new Application().setName("app-" + (page == null ? 1 : page))));
+    });
+
+    // many more listings than callers, each of which fetches its pages concurrently from a caller too
+    List<CompletableFuture<List<Application>>> listings = IntStream.range(0, 200)
+      .mapToObj(i -> CloudFoundryClientUtils.callAsync(() ->
+        CloudFoundryClientUtils.collectPages("applications", page -> applicationService.all(page, null, null))))
+      .collect(toList());
+
+    assertThat(listings).allSatisfy(listing -> assertThat(CloudFoundryClientUtils.join(listing)).hasSize(10));
+  }
+
+  @Test
+  void callConcurrentlyKeepsAFewCallsInFlightAtATime() {
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger mostInFlight = new AtomicInteger();
+    Set<Integer> called = ConcurrentHashMap.newKeySet();
+
+    CloudFoundryClientUtils.callConcurrently(100, i -> {
+      mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      called.add(i);
+      inFlight.decrementAndGet();
+    }, "instances");
+
+    assertThat(called).containsExactlyInAnyOrderElementsOf(IntStream.range(0, 100).boxed().collect(toList()));
+    assertThat(mostInFlight.get()).isBetween(1, 4);
+  }
+
+  @Test
+  void joinFailsTheWayTheCallWould() {
+    CloudFoundryApiException failure = new CloudFoundryApiException("Unable to retrieve applications");
+
+    assertThat(CloudFoundryClientUtils.join(CloudFoundryClientUtils.callAsync(() -> "done"))).isEqualTo("done");
+    assertThatThrownBy(() -> CloudFoundryClientUtils.join(CloudFoundryClientUtils.callAsync(() -> {
+      throw failure;
+    }))).isSameAs(failure);
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
+
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.squareup.okhttp.Protocol.HTTP_1_1;
+import static com.squareup.okhttp.Protocol.HTTP_2;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CloudFoundryHttpClientPoolTest {
+  @Test
+  void clientsShareConnectionsAndTheirTlsSettings() {
+    CloudFoundryHttpClientPool pool = new CloudFoundryHttpClientPool(5, 1000, 4, 4, true);
+    OkHttpClient client1 = pool.newClient();
+    OkHttpClient client2 = pool.newClient();
+
+    client1.interceptors().add(Interceptor.Chain::proceed);
+
+    assertThat(client1).isNotSameAs(client2);
+    assertThat(client1.getConnectionPool()).isSameAs(client2.getConnectionPool());
+    assertThat(client1.getSslSocketFactory()).isSameAs(client2.getSslSocketFactory());
+    assertThat(client1.getHostnameVerifier()).isSameAs(client2.getHostnameVerifier());
+    assertThat(client2.interceptors()).isEmpty();
+  }
+
+  @Test
+  void offersHttp2UnlessDisabled() {
+    assertThat(new CloudFoundryHttpClientPool(5, 1000, 4, 4, true).newClient().getProtocols()).containsExactly(HTTP_2, HTTP_1_1);
+    assertThat(new CloudFoundryHttpClientPool(5, 1000, 4, 4, false).newClient().getProtocols()).containsExactly(HTTP_1_1);
+  }
+
+  @Test
+  void limitsRequestsInFlightPerHost() throws Exception {
+    CloudFoundryHttpClientPool pool = new CloudFoundryHttpClientPool(5, 1000, 1, 4, true);
+    CountDownLatch inFlight = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    Interceptor.Chain blockingChain = chain("api.sys.example.com", () -> {
+      inFlight.countDown();
+      release.await();
+    });
+    CompletableFuture<Response> blocked = CompletableFuture.supplyAsync(() -> {
+      try {
+        return pool.limitRequestsPerHost(blockingChain);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    assertThat(inFlight.await(10, TimeUnit.SECONDS)).isTrue();
+
+    // another host isn't held up by the request in flight
+    assertThat(pool.limitRequestsPerHost(chain("login.sys.other.com", () -> {})).code()).isEqualTo(200);
+
+    CompletableFuture<Response> queued = CompletableFuture.supplyAsync(() -> {
+      try {
+        return pool.limitRequestsPerHost(chain("api.sys.example.com", () -> {}));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    Thread.sleep(100);
+    assertThat(queued).isNotDone();
+
+    release.countDown();
+    assertThat(blocked.get(10, TimeUnit.SECONDS).code()).isEqualTo(200);
+    assertThat(queued.get(10, TimeUnit.SECONDS).code()).isEqualTo(200);
+  }
+
+  private static Interceptor.Chain chain(String host, BeforeResponse beforeResponse) throws Exception {
+    Request request = new Request.Builder().url("https://" + host).build();
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(any())).thenAnswer(invocation -> {
+      beforeResponse.run();
+      return new Response.Builder().code(200).request(request).protocol(HTTP_1_1).build();
+    });
+    return chain;
+  }
+
+  private interface BeforeResponse {
+    void run() throws Exception;
+  }
+}
@@ -19,6 +19,7 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
 import com.squareup.okhttp.Interceptor;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
 import com.squareup.okhttp.Response;
 import com.squareup.okhttp.ResponseBody;
 import org.junit.jupiter.api.Test;
@@ -108,4 +109,78 @@ class HttpCloudFoundryClientTest {
     }
     assertThat(response).isEqualTo(response200);
   }
+
+  @Test
+  void createRetryInterceptorShouldRetryWhenThrottled() throws IOException {
+    Request request = new Request.Builder().url("http://duke.of.url").build();
+    Response response429 = new Response.Builder().code(429).request(request).protocol(HTTP_1_1).build();
+    Response response200 = new Response.Builder().code(200).request(request).protocol(HTTP_1_1).build();
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(any())).thenReturn(response429, response200);
+
+    HttpCloudFoundryClient cloudFoundryClient = new HttpCloudFoundryClient("account", "appsManUri", "metricsUri", "host", "user", "password");
+    Response response = cloudFoundryClient.createRetryInterceptor(chain);
+
+    verify(chain, times(2)).proceed(eq(request));
+    assertThat(response).isEqualTo(response200);
+  }
+
+  @Test
+  void createRetryInterceptorShouldWaitAsLongAsAThrottledResponseAsks() throws IOException {
+    Request request = new Request.Builder().url("http://duke.of.url").build();
+    Response response429 = new Response.Builder().code(429).header("Retry-After", "2").request(request).protocol(HTTP_1_1).build();
+    Response response200 = new Response.Builder().code(200).request(request).protocol(HTTP_1_1).build();
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(any())).thenReturn(response429, response200);
+
+    HttpCloudFoundryClient cloudFoundryClient = new HttpCloudFoundryClient("account", "appsManUri", "metricsUri", "host", "user", "password");
+    long start = System.nanoTime();
+    Response response = cloudFoundryClient.createRetryInterceptor(chain);
+
+    assertThat(response).isEqualTo(response200);
+    assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(2_000_000_000L);
+  }
+
+  @Test
+  void createRetryInterceptorShouldCloseTheBodiesOfRetriedResponses() throws IOException {
+    Request request = new Request.Builder().url("http://duke.of.url").build();
+    ResponseBody retriedBody = mock(ResponseBody.class);
+    ResponseBody lastBody = mock(ResponseBody.class);
+    Response response503 = new Response.Builder().code(503).request(request).body(retriedBody).protocol(HTTP_1_1).build();
+    Response response504 = new Response.Builder().code(504).request(request).body(lastBody).protocol(HTTP_1_1).build();
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(any())).thenReturn(response503, response503, response504);
+
+    HttpCloudFoundryClient cloudFoundryClient = new HttpCloudFoundryClient("account", "appsManUri", "metricsUri", "host", "user", "password");
+    Response response = cloudFoundryClient.createRetryInterceptor(chain);
+
+    // the last response is handed back so its body can be reported
+    assertThat(response).isEqualTo(response504);
+    verify(retriedBody, times(2)).close();
+    verify(lastBody, never()).close();
+  }
+
+  @Test
+  void createRetryInterceptorShouldOnlyRetryReadsOnInternalServerError() throws IOException {
+    Request request = new Request.Builder().url("http://duke.of.url")
+      .post(RequestBody.create(MediaType.parse("application/json"), "{}"))
+      .build();
+    Response response500 = new Response.Builder().code(500).request(request).protocol(HTTP_1_1).build();
+    Interceptor.Chain chain = mock(Interceptor.Chain.class);
+
+    when(chain.request()).thenReturn(request);
+    when(chain.proceed(any())).thenReturn(response500);
+
+    HttpCloudFoundryClient cloudFoundryClient = new HttpCloudFoundryClient("account", "appsManUri", "metricsUri", "host", "user", "password");
+    Response response = cloudFoundryClient.createRetryInterceptor(chain);
+
+    verify(chain, times(1)).proceed(eq(request));
+    assertThat(response).isEqualTo(response500);
+  }
 }
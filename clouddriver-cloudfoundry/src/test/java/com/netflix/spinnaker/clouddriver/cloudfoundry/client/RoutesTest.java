@@ -19,22 +19,23 @@ package com.netflix.spinnaker.clouddriver.cloudfoundry.client;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.api.RouteService;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.RouteId;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.model.v2.*;
-import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryDomain;
-import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryLoadBalancer;
-import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryOrganization;
-import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundrySpace;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.*;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Matchers.*;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 class RoutesTest {
   @Test
@@ -131,6 +132,58 @@ class RoutesTest {
     assertThat(loadBalancer.getPort()).isNull();
   }
 
+  @Test
+  void allJoinsRouteMappingsAgainstLoadedApplications() {
+    Domains domains = mock(Domains.class);
+    when(domains.findById(any())).thenReturn(CloudFoundryDomain.builder().id("domain-guid").name("apps.calabasas.cf-app.com").build());
+
+    Spaces spaces = mock(Spaces.class);
+    when(spaces.findById(any())).thenReturn(CloudFoundrySpace.fromRegion("myorg > dev"));
+
+    Page<Route> routePage = new Page<>();
+    routePage.setTotalPages(1);
+    routePage.setResources(Arrays.asList(
+      new Resource<Route>().setEntity(new Route().setHost("host1").setDomainGuid("domain-guid")).setMetadata(new Resource.Metadata().setGuid("route1")),
+      new Resource<Route>().setEntity(new Route().setHost("host2").setDomainGuid("domain-guid")).setMetadata(new Resource.Metadata().setGuid("route2"))));
+
+    Page<RouteMapping> routeMappingPage = Page.asPage(
+      new RouteMapping().setRouteGuid("route1").setAppGuid("app1-guid"),
+      new RouteMapping().setRouteGuid("route1").setAppGuid("app2-guid"),
+      new RouteMapping().setRouteGuid("route2").setAppGuid("unknown-guid"));
+
+    RouteService routeService = mock(RouteService.class);
+    when(routeService.all(any(), any())).thenReturn(routePage);
+    when(routeService.allRouteMappings(any(), any())).thenReturn(routeMappingPage);
+
+    Applications applications = mock(Applications.class);
+    Routes routes = new Routes("pws", routeService, applications, domains, spaces);
+
+    List<CloudFoundryLoadBalancer> loadBalancers = routes.all(singletonList(CloudFoundryApplication.builder()
+      .name("app")
+      .clusters(singleton(CloudFoundryCluster.builder()
+        .name("app")
+        .serverGroups(new HashSet<>(Arrays.asList(serverGroup("app1"), serverGroup("app2"))))
+        .build()))
+      .build()));
+
+    assertThat(loadBalancers).hasSize(2);
+    assertThat(loadBalancers.get(0).getMappedApps()).extracting(CloudFoundryServerGroup::getName)
+      .containsExactlyInAnyOrder("app1", "app2");
+    assertThat(loadBalancers.get(1).getMappedApps()).isEmpty();
+    verify(routeService, never()).routeMappings(any(), any());
+    verifyZeroInteractions(applications);
+  }
+
+  private static CloudFoundryServerGroup serverGroup(String name) {
+    return CloudFoundryServerGroup.builder()
+      .id(name + "-guid")
+      .name(name)
+      .account("pws")
+      .space(CloudFoundrySpace.fromRegion("myorg > dev"))
+      .instances(emptySet())
+      .build();
+  }
+
   private Resource<Route> createRouteResource(Route route) {
     return new Resource<Route>().setEntity(route).setMetadata(new Resource.Metadata().setGuid("route-guid"));
   }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.deploy;
+
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryApiException;
+import com.netflix.spinnaker.clouddriver.exceptions.OperationTimedOutException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CloudFoundryOperationPollerTest {
+  private final AtomicLong now = new AtomicLong();
+  private final List<Long> sleeps = new ArrayList<>();
+  private final CloudFoundryOperationPoller poller = new CloudFoundryOperationPoller(millis -> {
+    sleeps.add(millis);
+    now.addAndGet(millis);
+  }, clock(), 600_000, 1000, 8000);
+
+  @Test
+  void backsOffUntilTheOperationIsDone() {
+    AtomicInteger checks = new AtomicInteger();
+
+    assertThat(poller.waitForOperation("build", () -> checks.incrementAndGet() == 7, done -> done, null, null,
+      "app", "DEPLOY")).isTrue();
+    assertThat(sleeps).containsExactly(1000L, 1000L, 2000L, 3000L, 5000L, 8000L, 8000L);
+  }
+
+  @Test
+  void timesOutWhenTheOperationIsNeverDone() {
+    assertThatThrownBy(() -> poller.waitForOperation(() -> false, done -> done, 10L, null, "app", "DEPLOY"))
+      .isInstanceOf(OperationTimedOutException.class)
+      .hasMessage("Operation on app timed out.");
+    assertThat(now.get()).isEqualTo(10_000L);
+  }
+
+  @Test
+  void failsWithTheFailureOfACheck() {
+    assertThatThrownBy(() -> poller.waitForOperation(() -> {
+      throw new CloudFoundryApiException("build failed");
+    }, done -> true, null, null, "app", "DEPLOY")).isInstanceOf(CloudFoundryApiException.class);
+  }
+
+  @Test
+  void stopsWaitingWhenInterrupted() {
+    CloudFoundryOperationPoller poller = new CloudFoundryOperationPoller(millis -> {
+      throw new InterruptedException();
+    }, clock(), 600_000, 1000, 8000);
+
+    try {
+      assertThatThrownBy(() -> poller.waitForOperation(() -> true, done -> done, null, null, "app", "DEPLOY"))
+        .isInstanceOf(CloudFoundryApiException.class);
+      assertThat(Thread.currentThread().isInterrupted()).isTrue();
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  void delaysTheFirstCheckByHowLongOperationsOfTheSameKindTook() {
+    // the build takes a minute
+    poller.waitForOperation("build", () -> now.get() >= 60_000, done -> done, null, null, "app", "DEPLOY");
+
+    sleeps.clear();
+    poller.waitForOperation("build", () -> true, done -> done, null, null, "app", "DEPLOY");
+    assertThat(sleeps).containsExactly(30_000L);
+
+    // other kinds of operations aren't delayed by it
+    sleeps.clear();
+    poller.waitForOperation("start", () -> true, done -> done, null, null, "app", "DEPLOY");
+    assertThat(sleeps).containsExactly(1000L);
+  }
+
+  private Clock clock() {
+    Clock clock = mock(Clock.class);
+    when(clock.millis()).thenAnswer(invocation -> now.get());
+    return clock;
+  }
+}
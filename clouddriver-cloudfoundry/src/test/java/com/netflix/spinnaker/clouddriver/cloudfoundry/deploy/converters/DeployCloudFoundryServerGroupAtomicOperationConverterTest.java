@@ -21,6 +21,7 @@ import com.netflix.spinnaker.clouddriver.artifacts.ArtifactCredentialsRepository
 import com.netflix.spinnaker.clouddriver.artifacts.ArtifactDownloader;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.ArtifactCredentialsFromString;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.CloudFoundryArtifactCredentials;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.artifacts.PackageArtifactCache;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.client.MockCloudFoundryClient;
 import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.description.DeployCloudFoundryServerGroupDescription;
@@ -94,7 +95,7 @@ class DeployCloudFoundryServerGroupAtomicOperationConverterTest {
 
   private final DeployCloudFoundryServerGroupAtomicOperationConverter converter =
     new DeployCloudFoundryServerGroupAtomicOperationConverter(null, artifactCredentialsRepository,
-      new ArtifactDownloader(artifactCredentialsRepository));
+      new ArtifactDownloader(artifactCredentialsRepository), new PackageArtifactCache(null, 0));
 
   @BeforeEach
   void initializeClassUnderTest() {
@@ -16,18 +16,23 @@
 
 package com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.ops;
 
+import com.netflix.spinnaker.clouddriver.cloudfoundry.deploy.CloudFoundryOperationPoller;
 import com.netflix.spinnaker.clouddriver.data.task.Task;
-import com.netflix.spinnaker.clouddriver.helpers.OperationPoller;
 import groovy.lang.Closure;
 
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-public class PassThroughOperationPoller extends OperationPoller {
+public class PassThroughOperationPoller extends CloudFoundryOperationPoller {
   public PassThroughOperationPoller() {
     super(0, 0);
   }
 
+  @Override
+  public <T> T waitForOperation(String kind, Supplier<T> operation, Function<T, Boolean> ifDone, Long timeoutSeconds, Task task, String resourceString, String basePhase) {
+    return operation.get();
+  }
+
   @Override
   public Object waitForOperation(Closure operation, Closure ifDone, Long timeoutSeconds, Task task, String resourceString, String basePhase) {
     return operation.call();
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent;
+
+import com.netflix.spectator.api.NoopRegistry;
+import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.clouddriver.cache.OnDemandAgent;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.*;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.*;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.*;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.*;
+
+class CloudFoundryCachingAgentTest {
+  private static final Logger log = LoggerFactory.getLogger(CloudFoundryCachingAgentTest.class);
+
+  private static final String ACCOUNT = "devaccount";
+  private static final CloudFoundrySpace DEV = space("dev");
+  private static final CloudFoundrySpace PROD = space("prod");
+
+  @Test
+  void relatesServerGroupsToTheLoadBalancersMappedToThem() {
+    CloudFoundryServerGroup devV001 = serverGroup("demo-dev-v001", DEV);
+    CloudFoundryServerGroup devV002 = serverGroup("demo-dev-v002", DEV);
+    // same name as devV001 in another space
+    CloudFoundryServerGroup prodV001 = serverGroup("demo-dev-v001", PROD);
+
+    CloudFoundryLoadBalancer both = loadBalancer("both", ACCOUNT, devV001, devV002);
+    CloudFoundryLoadBalancer prodOnly = loadBalancer("prod", ACCOUNT, prodV001);
+    CloudFoundryLoadBalancer otherAccount = loadBalancer("other", "otheraccount", devV001);
+
+    CacheResult result = loadData(singletonApplication(devV001, devV002, prodV001), Arrays.asList(both, prodOnly, otherAccount));
+
+    Map<String, Collection<String>> loadBalancersByServerGroup = relationships(result, SERVER_GROUPS.getNs(), LOAD_BALANCERS.getNs());
+    assertThat(loadBalancersByServerGroup.get(serverGroupKey(devV001))).containsExactlyInAnyOrder(loadBalancerKey(both));
+    assertThat(loadBalancersByServerGroup.get(serverGroupKey(devV002))).containsExactlyInAnyOrder(loadBalancerKey(both));
+    assertThat(loadBalancersByServerGroup.get(serverGroupKey(prodV001))).containsExactlyInAnyOrder(loadBalancerKey(prodOnly));
+
+    Map<String, Collection<String>> serverGroupsByLoadBalancer = relationships(result, LOAD_BALANCERS.getNs(), SERVER_GROUPS.getNs());
+    assertThat(serverGroupsByLoadBalancer.get(loadBalancerKey(both))).containsExactlyInAnyOrder(serverGroupKey(devV001), serverGroupKey(devV002));
+  }
+
+  @Test
+  void serverGroupsWithoutLoadBalancersHaveNoLoadBalancerRelationships() {
+    CloudFoundryServerGroup unmapped = serverGroup("demo-dev-v001", DEV);
+
+    CacheResult result = loadData(singletonApplication(unmapped), Collections.emptyList());
+
+    assertThat(relationships(result, SERVER_GROUPS.getNs(), LOAD_BALANCERS.getNs()).get(serverGroupKey(unmapped))).isEmpty();
+  }
+
+  /**
+   * There is no JMH harness in this repository, so this times a caching cycle over a synthetic foundation of 10,000
+   * server groups and 20,000 routes, each route mapped to one server group.
+   */
+  @Test
+  void benchmarkLoadDataForALargeFoundation() {
+    int serverGroupCount = 10_000;
+    int routeCount = 20_000;
+
+    List<CloudFoundryServerGroup> serverGroups = new ArrayList<>(serverGroupCount);
+    for (int i = 0; i < serverGroupCount; i++) {
+      serverGroups.add(serverGroup("app" + (i % 1000) + "-dev-v" + String.format("%03d", i / 1000), i % 2 == 0 ? DEV : PROD));
+    }
+
+    List<CloudFoundryLoadBalancer> loadBalancers = new ArrayList<>(routeCount);
+    for (int i = 0; i < routeCount; i++) {
+      loadBalancers.add(loadBalancer("route" + i, ACCOUNT, serverGroups.get(i % serverGroupCount)));
+    }
+
+    List<CloudFoundryApplication> apps = serverGroups.stream()
+      .collect(toMap(sg -> sg.getName().substring(0, sg.getName().indexOf('-')), sg -> new HashSet<>(singleton(sg)),
+        (a, b) -> {
+          a.addAll(b);
+          return a;
+        }))
+      .entrySet().stream()
+      .map(e -> CloudFoundryApplication.builder()
+        .name(e.getKey())
+        .clusters(singleton(CloudFoundryCluster.builder().accountName(ACCOUNT).name(e.getKey() + "-dev").serverGroups(e.getValue()).build()))
+        .build())
+      .collect(toList());
+
+    long start = System.nanoTime();
+    CacheResult result = loadData(apps, loadBalancers);
+    log.info("Caching {} server groups and {} load balancers took {}ms", serverGroupCount, routeCount,
+      (System.nanoTime() - start) / 1_000_000);
+
+    Map<String, Collection<String>> loadBalancersByServerGroup = relationships(result, SERVER_GROUPS.getNs(), LOAD_BALANCERS.getNs());
+    assertThat(loadBalancersByServerGroup).hasSize(serverGroupCount);
+    assertThat(loadBalancersByServerGroup.values()).allSatisfy(lbs -> assertThat(lbs).hasSize(routeCount / serverGroupCount));
+  }
+
+  @Test
+  void shardsSplitTheSpacesOfAnAccountBetweenThem() {
+    List<CloudFoundrySpace> spaces = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      spaces.add(space("space" + i));
+    }
+
+    CloudFoundryClient client = mock(CloudFoundryClient.class);
+    Spaces spacesClient = mock(Spaces.class);
+    Applications applications = mock(Applications.class);
+    Routes routes = mock(Routes.class);
+
+    when(client.getSpaces()).thenReturn(spacesClient);
+    when(client.getApplications()).thenReturn(applications);
+    when(client.getRoutes()).thenReturn(routes);
+    when(spacesClient.all()).thenReturn(spaces);
+    when(applications.all(any())).thenReturn(Collections.emptyList());
+    when(routes.all(any(), any())).thenReturn(Collections.emptyList());
+
+    Set<String> cachedSpaceGuids = new HashSet<>();
+    Set<String> agentTypes = new HashSet<>();
+    for (int shard = 0; shard < 3; shard++) {
+      CloudFoundryCachingAgent agent = new CloudFoundryCachingAgent(ACCOUNT, client, new NoopRegistry(), shard, 3);
+      agent.loadData(mock(ProviderCache.class));
+      agentTypes.add(agent.getAgentType());
+
+      @SuppressWarnings("unchecked")
+      ArgumentCaptor<List<String>> spaceGuids = ArgumentCaptor.forClass((Class) List.class);
+      verify(applications, times(shard + 1)).all(spaceGuids.capture());
+      assertThat(spaceGuids.getValue()).doesNotContainAnyElementsOf(cachedSpaceGuids);
+      cachedSpaceGuids.addAll(spaceGuids.getValue());
+    }
+
+    assertThat(cachedSpaceGuids).containsExactlyInAnyOrderElementsOf(spaces.stream().map(CloudFoundrySpace::getId).collect(toList()));
+    assertThat(agentTypes).containsExactlyInAnyOrder(
+      ACCOUNT + "/1-of-3/CloudFoundryCachingAgent",
+      ACCOUNT + "/2-of-3/CloudFoundryCachingAgent",
+      ACCOUNT + "/3-of-3/CloudFoundryCachingAgent");
+  }
+
+  @Test
+  void anUnshardedAgentCachesEverySpaceUnderItsOriginalAgentType() {
+    CloudFoundryClient client = mock(CloudFoundryClient.class);
+    Applications applications = mock(Applications.class);
+    Routes routes = mock(Routes.class);
+
+    when(client.getApplications()).thenReturn(applications);
+    when(client.getRoutes()).thenReturn(routes);
+
+    CloudFoundryCachingAgent agent = new CloudFoundryCachingAgent(ACCOUNT, client);
+    agent.loadData(mock(ProviderCache.class));
+
+    assertThat(agent.getAgentType()).isEqualTo(ACCOUNT + "/CloudFoundryCachingAgent");
+    verify(client, never()).getSpaces();
+    verify(applications).all((List<String>) isNull());
+  }
+
+  @Test
+  void handlesServerGroupRequestsForItsAccountAndShard() {
+    CloudFoundryServerGroup serverGroup = serverGroup("demo-dev-v001", DEV);
+    CloudFoundryClient client = onDemandClient(DEV, serverGroup);
+    CloudFoundryCachingAgent agent = new CloudFoundryCachingAgent(ACCOUNT, client);
+
+    assertThat(agent.handles(OnDemandAgent.OnDemandType.ServerGroup, "cloudfoundry")).isTrue();
+    assertThat(agent.handles(OnDemandAgent.OnDemandType.LoadBalancer, "cloudfoundry")).isFalse();
+    assertThat(agent.handles(OnDemandAgent.OnDemandType.ServerGroup, "aws")).isFalse();
+    assertThat(agent.handle(mock(ProviderCache.class), onDemandRequest("otheraccount", serverGroup))).isNull();
+
+    OnDemandAgent.OnDemandResult result = agent.handle(mock(ProviderCache.class), onDemandRequest(ACCOUNT, serverGroup));
+
+    assertThat(result.sourceAgentType).isEqualTo(ACCOUNT + "/CloudFoundryCachingAgent-OnDemand");
+    assertThat(result.evictions).isEmpty();
+    // relationships written on demand are never replaced by a caching cycle, so they are left to the cycle
+    assertThat(result.cacheResult.getCacheResults()).containsOnlyKeys(SERVER_GROUPS.getNs());
+    assertThat(result.cacheResult.getCacheResults().get(SERVER_GROUPS.getNs()))
+      .extracting(CacheData::getId).containsExactly(serverGroupKey(serverGroup));
+    assertThat(result.cacheResult.getCacheResults().get(SERVER_GROUPS.getNs()))
+      .allSatisfy(sg -> assertThat(sg.getRelationships()).isEmpty());
+
+    CloudFoundryCachingAgent otherShard = new CloudFoundryCachingAgent(ACCOUNT, client, new NoopRegistry(),
+      1 - Math.floorMod(DEV.getId().hashCode(), 2), 2);
+    assertThat(otherShard.handle(mock(ProviderCache.class), onDemandRequest(ACCOUNT, serverGroup))).isNull();
+  }
+
+  @Test
+  void evictsServerGroupsThatNoLongerExist() {
+    CloudFoundryServerGroup serverGroup = serverGroup("demo-dev-v001", DEV);
+    CloudFoundryCachingAgent agent = new CloudFoundryCachingAgent(ACCOUNT, onDemandClient(DEV, null));
+
+    ProviderCache providerCache = mock(ProviderCache.class);
+
+    OnDemandAgent.OnDemandResult result = agent.handle(providerCache, onDemandRequest(ACCOUNT, serverGroup));
+
+    assertThat(result.cacheResult.getCacheResults()).isEmpty();
+    assertThat(result.evictions.get(SERVER_GROUPS.getNs())).containsExactly(serverGroupKey(serverGroup));
+    verify(providerCache).evictDeletedItems(ON_DEMAND.getNs(), singletonList(serverGroupKey(serverGroup)));
+  }
+
+  @Test
+  void mergesServerGroupsRefreshedOnDemandAfterTheCycleStartedListing() {
+    CloudFoundryServerGroup listed = serverGroup("demo-dev-v001", DEV);
+    CloudFoundryServerGroup deployed = serverGroup("demo-dev-v002", DEV)
+      .withInstances(singleton(CloudFoundryInstance.builder().appGuid("v002-guid").key("0").build()));
+    CacheData onDemand = storeOnDemand(deployed);
+    // refreshed while the cycle was listing
+    onDemand.getAttributes().put("cacheTime", Long.MAX_VALUE);
+
+    CacheResult result = loadData(singletonApplication(listed), emptyList(), onDemandCache(onDemand));
+
+    String clusterKey = Keys.getClusterKey(ACCOUNT, "demo", "demo-dev");
+    assertThat(relationships(result, CLUSTERS.getNs(), SERVER_GROUPS.getNs()).get(clusterKey))
+      .containsExactlyInAnyOrder(serverGroupKey(listed), serverGroupKey(deployed));
+    assertThat(relationships(result, SERVER_GROUPS.getNs(), INSTANCES.getNs()).get(serverGroupKey(deployed)))
+      .containsExactly(Keys.getInstanceKey(ACCOUNT, deployed.getInstances().iterator().next().getName()));
+    assertThat(result.getCacheResults().get(ON_DEMAND.getNs())).extracting(CacheData::getId)
+      .containsExactly(serverGroupKey(deployed));
+    assertThat(result.getCacheResults().get(ON_DEMAND.getNs()).iterator().next().getAttributes())
+      .containsEntry("processedCount", 1);
+    assertThat(result.getEvictions().get(ON_DEMAND.getNs())).isEmpty();
+  }
+
+  @Test
+  void evictsOnDemandEntriesOnceACycleThatStartedAfterThemProcessedThem() {
+    CloudFoundryServerGroup serverGroup = serverGroup("demo-dev-v001", DEV);
+    CacheData onDemand = storeOnDemand(serverGroup);
+    // refreshed before the cycle started listing
+    onDemand.getAttributes().put("cacheTime", 0L);
+
+    CacheResult first = loadData(singletonApplication(serverGroup), emptyList(), onDemandCache(onDemand));
+    assertThat(first.getCacheResults().get(ON_DEMAND.getNs())).containsExactly(onDemand);
+    assertThat(first.getEvictions().get(ON_DEMAND.getNs())).isEmpty();
+
+    CacheResult second = loadData(singletonApplication(serverGroup), emptyList(), onDemandCache(onDemand));
+    assertThat(second.getCacheResults().get(ON_DEMAND.getNs())).isEmpty();
+    assertThat(second.getEvictions().get(ON_DEMAND.getNs())).containsExactly(serverGroupKey(serverGroup));
+  }
+
+  @Test
+  void reportsTheOnDemandEntriesOfItsShardAsPendingRequests() {
+    CloudFoundryServerGroup serverGroup = serverGroup("demo-dev-v001", DEV);
+    ProviderCache providerCache = onDemandCache(storeOnDemand(serverGroup));
+
+    Collection<Map> pending = new CloudFoundryCachingAgent(ACCOUNT, mock(CloudFoundryClient.class))
+      .pendingOnDemandRequests(providerCache);
+
+    assertThat(pending).hasSize(1);
+    Map<?, ?> request = pending.iterator().next();
+    assertThat(request.get("id")).isEqualTo(serverGroupKey(serverGroup));
+    assertThat(request.get("processedCount")).isEqualTo(0);
+    assertThat((Map<?, ?>) request.get("details")).containsEntry("name", "demo-dev-v001");
+
+    CloudFoundryCachingAgent otherShard = new CloudFoundryCachingAgent(ACCOUNT, mock(CloudFoundryClient.class),
+      new NoopRegistry(), 1 - Math.floorMod(DEV.getId().hashCode(), 2), 2);
+    assertThat(otherShard.pendingOnDemandRequests(providerCache)).isEmpty();
+  }
+
+  /**
+   * Refreshes the server group on demand, returning the entry stored for the next caching cycle.
+   */
+  private static CacheData storeOnDemand(CloudFoundryServerGroup serverGroup) {
+    ProviderCache providerCache = mock(ProviderCache.class);
+    new CloudFoundryCachingAgent(ACCOUNT, onDemandClient(serverGroup.getSpace(), serverGroup))
+      .handle(providerCache, onDemandRequest(ACCOUNT, serverGroup));
+
+    ArgumentCaptor<CacheData> stored = ArgumentCaptor.forClass(CacheData.class);
+    verify(providerCache).putCacheData(eq(ON_DEMAND.getNs()), stored.capture());
+    return stored.getValue();
+  }
+
+  private static ProviderCache onDemandCache(CacheData... onDemand) {
+    ProviderCache providerCache = mock(ProviderCache.class);
+    when(providerCache.filterIdentifiers(eq(ON_DEMAND.getNs()), any()))
+      .thenReturn(Arrays.stream(onDemand).map(CacheData::getId).collect(toList()));
+    when(providerCache.getAll(eq(ON_DEMAND.getNs()), anyCollectionOf(String.class))).thenReturn(Arrays.asList(onDemand));
+    return providerCache;
+  }
+
+  private static CloudFoundryClient onDemandClient(CloudFoundrySpace space, CloudFoundryServerGroup serverGroup) {
+    CloudFoundryClient client = mock(CloudFoundryClient.class);
+    Organizations organizations = mock(Organizations.class);
+    Spaces spaces = mock(Spaces.class);
+    Applications applications = mock(Applications.class);
+
+    when(client.getOrganizations()).thenReturn(organizations);
+    when(client.getSpaces()).thenReturn(spaces);
+    when(client.getApplications()).thenReturn(applications);
+    when(organizations.findByName(space.getOrganization().getName())).thenReturn(Optional.of(space.getOrganization()));
+    when(spaces.findByName(space.getOrganization().getId(), space.getName())).thenReturn(space);
+    if (serverGroup != null) {
+      when(applications.findServerGroupId(serverGroup.getName(), space.getId())).thenReturn(serverGroup.getId());
+      when(applications.findById(serverGroup.getId())).thenReturn(serverGroup);
+    }
+
+    return client;
+  }
+
+  private static Map<String, Object> onDemandRequest(String account, CloudFoundryServerGroup serverGroup) {
+    Map<String, Object> data = new HashMap<>();
+    data.put("account", account);
+    data.put("region", serverGroup.getRegion());
+    data.put("serverGroupName", serverGroup.getName());
+    return data;
+  }
+
+  private static CacheResult loadData(List<CloudFoundryApplication> apps, List<CloudFoundryLoadBalancer> loadBalancers) {
+    return loadData(apps, loadBalancers, mock(ProviderCache.class));
+  }
+
+  private static CacheResult loadData(List<CloudFoundryApplication> apps, List<CloudFoundryLoadBalancer> loadBalancers,
+                                      ProviderCache providerCache) {
+    CloudFoundryClient client = mock(CloudFoundryClient.class);
+    Applications applications = mock(Applications.class);
+    Routes routes = mock(Routes.class);
+
+    when(client.getApplications()).thenReturn(applications);
+    when(client.getRoutes()).thenReturn(routes);
+    when(applications.all(any())).thenReturn(apps);
+    when(routes.all(any(), any())).thenReturn(loadBalancers);
+
+    return new CloudFoundryCachingAgent(ACCOUNT, client).loadData(providerCache);
+  }
+
+  private static Map<String, Collection<String>> relationships(CacheResult result, String type, String relationship) {
+    return result.getCacheResults().get(type).stream()
+      .collect(toMap(CacheData::getId, data -> data.getRelationships().get(relationship)));
+  }
+
+  private static List<CloudFoundryApplication> singletonApplication(CloudFoundryServerGroup... serverGroups) {
+    CloudFoundryCluster cluster = CloudFoundryCluster.builder()
+      .accountName(ACCOUNT)
+      .name("demo-dev")
+      .serverGroups(Arrays.stream(serverGroups).collect(toSet()))
+      .build();
+    return Collections.singletonList(CloudFoundryApplication.builder().name("demo").clusters(singleton(cluster)).build());
+  }
+
+  private static CloudFoundryServerGroup serverGroup(String name, CloudFoundrySpace space) {
+    return CloudFoundryServerGroup.builder()
+      .id(UUID.randomUUID().toString())
+      .name(name)
+      .account(ACCOUNT)
+      .createdTime(1L)
+      .space(space)
+      .instances(emptySet())
+      .build();
+  }
+
+  private static CloudFoundrySpace space(String name) {
+    return CloudFoundrySpace.builder()
+      .id(name + "-guid")
+      .name(name)
+      .organization(CloudFoundryOrganization.builder().id("myorg-guid").name("myorg").build())
+      .build();
+  }
+
+  private static CloudFoundryLoadBalancer loadBalancer(String host, String account, CloudFoundryServerGroup... mappedApps) {
+    return CloudFoundryLoadBalancer.builder()
+      .account(account)
+      .id(host + "-guid")
+      .host(host)
+      .space(DEV)
+      .domain(CloudFoundryDomain.builder().id("domain-guid").name("apps.example.com").build())
+      .mappedApps(new HashSet<>(Arrays.asList(mappedApps)))
+      .build();
+  }
+
+  private static String serverGroupKey(CloudFoundryServerGroup serverGroup) {
+    return Keys.getServerGroupKey(ACCOUNT, serverGroup.getName(), serverGroup.getRegion());
+  }
+
+  private static String loadBalancerKey(CloudFoundryLoadBalancer loadBalancer) {
+    return Keys.getLoadBalancerKey(ACCOUNT, loadBalancer);
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Pivotal, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cloudfoundry.provider.agent;
+
+import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.agent.DefaultCacheResult;
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.mem.InMemoryCache;
+import com.netflix.spinnaker.cats.provider.DefaultProviderCache;
+import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.CacheRepository;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.cache.ResourceCacheData;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.Applications;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.client.CloudFoundryClient;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryInstance;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundryServerGroup;
+import com.netflix.spinnaker.clouddriver.cloudfoundry.model.CloudFoundrySpace;
+import com.netflix.spinnaker.clouddriver.model.HealthState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.INSTANCES;
+import static com.netflix.spinnaker.clouddriver.cloudfoundry.cache.Keys.Namespace.SERVER_GROUPS;
+import static java.util.Collections.*;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+class CloudFoundryInstanceStateAgentTest {
+  private static final String ACCOUNT = "devaccount";
+  private static final String APP_GUID = "appguid";
+  private static final long NOW = Duration.ofDays(1).toMillis();
+  private static final long POLLING_INTERVAL = Duration.ofMinutes(5).toMillis();
+
+  private final ProviderCache cache = new DefaultProviderCache(new InMemoryCache());
+  private final Applications apps = mock(Applications.class);
+  private final CloudFoundryClient client = mock(CloudFoundryClient.class);
+  private final Clock clock = mock(Clock.class);
+  private final CloudFoundryInstanceStateAgent agent = new CloudFoundryInstanceStateAgent(ACCOUNT, client, 0, 1, POLLING_INTERVAL, clock);
+
+  @BeforeEach
+  void before() {
+    when(client.getApplications()).thenReturn(apps);
+    when(clock.millis()).thenReturn(NOW);
+
+    cacheServerGroups(serverGroup("demo-dev-v001", APP_GUID, CloudFoundryServerGroup.State.STARTED),
+      serverGroup("demo-dev-v000", "stoppedguid", CloudFoundryServerGroup.State.STOPPED));
+  }
+
+  @Test
+  void pollsTheStatsOfStartedServerGroupsOnly() {
+    cycle(instances(instance("0", HealthState.Up, NOW)));
+
+    ArgumentCaptor<Collection<CloudFoundryServerGroup>> serverGroups = ArgumentCaptor.forClass((Class) Collection.class);
+    verify(apps).findInstances(serverGroups.capture());
+    assertThat(serverGroups.getValue()).extracting(CloudFoundryServerGroup::getId).containsExactly(APP_GUID);
+  }
+
+  @Test
+  void writesOnlyTheInstancesWhoseStateChanged() {
+    CacheResult first = cycle(instances(instance("0", HealthState.Up, NOW), instance("1", HealthState.Starting, NOW)));
+    assertThat(written(first)).containsExactlyInAnyOrder(instanceKey("0"), instanceKey("1"));
+
+    // uptimes are reported in whole seconds a little later each poll, which doesn't move the launch time meaningfully
+    CacheResult second = cycle(instances(instance("0", HealthState.Up, NOW + 3000), instance("1", HealthState.Up, NOW)));
+    assertThat(written(second)).containsExactly(instanceKey("1"));
+    assertThat(evicted(second)).isEmpty();
+
+    // a restarted instance has a new launch time
+    CacheResult third = cycle(instances(instance("0", HealthState.Up, NOW + Duration.ofMinutes(5).toMillis()), instance("1", HealthState.Up, NOW)));
+    assertThat(written(third)).containsExactly(instanceKey("0"));
+
+    assertThat(new CacheRepository(cache).findInstanceByKey(instanceKey("1")))
+      .hasValueSatisfying(instance -> assertThat(instance.getHealthState()).isEqualTo(HealthState.Up));
+  }
+
+  @Test
+  void evictsInstancesThatWentAway() {
+    cycle(instances(instance("0", HealthState.Up, NOW), instance("1", HealthState.Up, NOW)));
+
+    CacheResult scaledDown = cycle(instances(instance("0", HealthState.Up, NOW)));
+
+    assertThat(written(scaledDown)).isEmpty();
+    assertThat(evicted(scaledDown)).containsExactly(instanceKey("1"));
+    assertThat(cache.getIdentifiers(INSTANCES.getNs())).containsExactly(instanceKey("0"));
+  }
+
+  @Test
+  void keepsTheInstancesOfServerGroupsWhoseStatsCouldNotBeRetrieved() {
+    cycle(instances(instance("0", HealthState.Up, NOW)));
+
+    CacheResult unread = cycle(emptyMap());
+
+    assertThat(written(unread)).isEmpty();
+    assertThat(evicted(unread)).isEmpty();
+
+    // and are still known when the stats can be read again
+    assertThat(written(cycle(instances(instance("0", HealthState.Up, NOW))))).isEmpty();
+  }
+
+  @Test
+  void startsFromTheInstancesAlreadyCached() {
+    CloudFoundryInstanceStateAgent previous = new CloudFoundryInstanceStateAgent(ACCOUNT, client, 0, 1, POLLING_INTERVAL, clock);
+    when(apps.findInstances(any())).thenReturn(instances(instance("0", HealthState.Up, NOW), instance("1", HealthState.Up, NOW)));
+    cache.putCacheResult(previous.getAgentType(), emptyList(), previous.loadData(cache));
+
+    CacheResult first = cycle(instances(instance("0", HealthState.Up, NOW)));
+
+    assertThat(written(first)).isEmpty();
+    assertThat(evicted(first)).containsExactly(instanceKey("1"));
+  }
+
+  @Test
+  void pollsOnlyTheServerGroupsOfItsShard() {
+    List<String> appGuids = IntStream.range(0, 20).mapToObj(i -> "appguid" + i).collect(toList());
+    cacheServerGroups(appGuids.stream()
+      .map(guid -> serverGroup("demo-dev-v0" + guid.substring("appguid".length()), guid, CloudFoundryServerGroup.State.STARTED))
+      .toArray(CloudFoundryServerGroup[]::new));
+
+    Set<String> polled = new HashSet<>();
+    for (int shard = 0; shard < 3; shard++) {
+      CloudFoundryInstanceStateAgent shardAgent = new CloudFoundryInstanceStateAgent(ACCOUNT, client, shard, 3,
+        POLLING_INTERVAL, clock);
+      assertThat(shardAgent.getAgentType()).isEqualTo(ACCOUNT + "/" + (shard + 1) + "-of-3/CloudFoundryInstanceStateAgent");
+      assertThat(shardAgent.getAgentInterval()).isEqualTo(POLLING_INTERVAL);
+
+      reset(apps);
+      when(apps.findInstances(any())).thenReturn(emptyMap());
+      shardAgent.loadData(cache);
+
+      ArgumentCaptor<Collection<CloudFoundryServerGroup>> serverGroups = ArgumentCaptor.forClass((Class) Collection.class);
+      verify(apps).findInstances(serverGroups.capture());
+      serverGroups.getValue().forEach(serverGroup -> assertThat(polled.add(serverGroup.getId())).isTrue());
+    }
+
+    assertThat(polled).containsExactlyInAnyOrderElementsOf(appGuids);
+  }
+
+  private CacheResult cycle(Map<String, Set<CloudFoundryInstance>> instancesByAppGuid) {
+    when(apps.findInstances(any())).thenReturn(instancesByAppGuid);
+    CacheResult result = agent.loadData(cache);
+    cache.putCacheResult(agent.getAgentType(), emptyList(), result);
+    return result;
+  }
+
+  private void cacheServerGroups(CloudFoundryServerGroup... serverGroups) {
+    Collection<CacheData> serverGroupData = Arrays.stream(serverGroups)
+      .map(serverGroup -> new ResourceCacheData(Keys.getServerGroupKey(ACCOUNT, serverGroup.getName(), serverGroup.getRegion()),
+        CloudFoundryCachingAgent.cacheView(serverGroup), emptyMap()))
+      .collect(toList());
+    cache.putCacheResult("CloudFoundryCachingAgent", singletonList(SERVER_GROUPS.getNs()),
+      new DefaultCacheResult(singletonMap(SERVER_GROUPS.getNs(), serverGroupData)));
+  }
+
+  private static Collection<String> written(CacheResult result) {
+    return result.getCacheResults().get(INSTANCES.getNs()).stream().map(CacheData::getId).collect(toList());
+  }
+
+  private static Collection<String> evicted(CacheResult result) {
+    return result.getEvictions().get(INSTANCES.getNs());
+  }
+
+  private static String instanceKey(String index) {
+    return Keys.getInstanceKey(ACCOUNT, APP_GUID + "-" + index);
+  }
+
+  private static Map<String, Set<CloudFoundryInstance>> instances(CloudFoundryInstance... instances) {
+    return singletonMap(APP_GUID, new HashSet<>(Arrays.asList(instances)));
+  }
+
+  private static CloudFoundryInstance instance(String index, HealthState healthState, long launchTime) {
+    return CloudFoundryInstance.builder()
+      .appGuid(APP_GUID)
+      .key(index)
+      .healthState(healthState)
+      .launchTime(launchTime)
+      .zone("dev")
+      .build();
+  }
+
+  private static CloudFoundryServerGroup serverGroup(String name, String guid, CloudFoundryServerGroup.State state) {
+    return CloudFoundryServerGroup.builder()
+      .name(name)
+      .id(guid)
+      .account(ACCOUNT)
+      .state(state)
+      .space(CloudFoundrySpace.fromRegion("myorg > dev"))
+      .instances(emptySet())
+      .build();
+  }
+}
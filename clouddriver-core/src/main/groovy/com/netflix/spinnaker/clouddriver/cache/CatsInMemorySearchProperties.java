@@ -23,6 +23,12 @@ public class CatsInMemorySearchProperties {
   private boolean enabled = false;
   private int refreshIntervalSeconds = 30;
 
+  /**
+   * When enabled, every searchable type (not just instances) is held in a trigram index that is kept current from
+   * cache writes on this node and fully resynced every refreshIntervalSeconds. Requires enabled.
+   */
+  private boolean indexEnabled = false;
+
   public boolean isEnabled() {
     return enabled;
   }
@@ -38,4 +44,12 @@ public class CatsInMemorySearchProperties {
   public void setRefreshIntervalSeconds(int refreshIntervalSeconds) {
     this.refreshIntervalSeconds = refreshIntervalSeconds;
   }
+
+  public boolean isIndexEnabled() {
+    return indexEnabled;
+  }
+
+  public void setIndexEnabled(boolean indexEnabled) {
+    this.indexEnabled = indexEnabled;
+  }
 }
@@ -17,6 +17,7 @@
 package com.netflix.spinnaker.clouddriver.cache
 
 import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.cats.provider.CacheResultListener
 import com.netflix.spinnaker.cats.provider.ProviderRegistry
 import com.netflix.spinnaker.clouddriver.search.SearchProvider
 import com.netflix.spinnaker.clouddriver.search.SearchResultSet
@@ -29,6 +30,7 @@ import org.springframework.security.core.Authentication
 import org.springframework.security.core.context.SecurityContextHolder
 
 import javax.annotation.PostConstruct
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.TimeUnit
@@ -36,7 +38,7 @@ import java.util.concurrent.atomic.AtomicReference
 
 import static com.netflix.spinnaker.clouddriver.cache.SearchableProvider.SearchableResource
 
-class CatsSearchProvider implements SearchProvider, Runnable {
+class CatsSearchProvider implements SearchProvider, Runnable, CacheResultListener {
 
   private static final Logger log = LoggerFactory.getLogger(CatsSearchProvider)
 
@@ -55,6 +57,18 @@ class CatsSearchProvider implements SearchProvider, Runnable {
     [:]
   )
 
+  /**
+   * Trigram indexes keyed by provider name and then type, only populated when the index is enabled.
+   */
+  private final Map<String, Map<String, TrigramSearchIndex>> searchIndexes = new ConcurrentHashMap<>()
+
+  /**
+   * Writes made while a provider's indexes are rebuilt, replayed onto the rebuilt indexes before they replace the
+   * current ones so that they aren't lost until the next rebuild. Guarded by {@code indexLock}, as are index updates.
+   */
+  private final Map<String, List<IndexDelta>> rebuildDeltas = [:]
+  private final Object indexLock = new Object()
+
   private final FiatPermissionEvaluator permissionEvaluator
   private final List<KeyParser> keyParsers
 
@@ -101,6 +115,10 @@ class CatsSearchProvider implements SearchProvider, Runnable {
 
   @PostConstruct
   void scheduleRefresh() {
+    if (catsInMemorySearchProperties.indexEnabled) {
+      providerRegistry.addCacheResultListener(this)
+    }
+
     if (scheduledExecutorService) {
       scheduledExecutorService.scheduleWithFixedDelay(this, 0, catsInMemorySearchProperties.refreshIntervalSeconds, TimeUnit.SECONDS)
     }
@@ -113,6 +131,11 @@ class CatsSearchProvider implements SearchProvider, Runnable {
    */
   @Override
   void run() {
+    if (catsInMemorySearchProperties.indexEnabled) {
+      refreshSearchIndexes()
+      return
+    }
+
     try {
       log.info("Refreshing Cached Identifiers (instances)")
       def instanceIdentifiers = providers.findAll { provider ->
@@ -136,6 +159,57 @@ class CatsSearchProvider implements SearchProvider, Runnable {
     }
   }
 
+  /**
+   * Rebuild the search index of every searchable type from scratch, picking up any writes made by other nodes.
+   */
+  void refreshSearchIndexes() {
+    providers.each { SearchableProvider provider ->
+      String providerName = provider.getProviderName()
+      synchronized (indexLock) {
+        rebuildDeltas.put(providerName, [])
+      }
+
+      try {
+        def cache = providerRegistry.getProviderCache(providerName)
+        def indexes = new ConcurrentHashMap<String, TrigramSearchIndex>()
+        provider.defaultCaches.findAll { provider.supportsSearch(it, Collections.emptyMap()) }.each { String type ->
+          indexes.put(type, new TrigramSearchIndex(cache.getIdentifiers(type)))
+        }
+
+        synchronized (indexLock) {
+          // replayed in order, so the last write of each key wins whether or not the scan already saw it
+          rebuildDeltas.get(providerName).each { IndexDelta delta -> delta.applyTo(indexes) }
+          searchIndexes.put(providerName, indexes)
+        }
+
+        log.info("Refreshed search index (provider: {}, keys: {})", providerName, indexes.collectEntries { [(it.key): it.value.size()] })
+      } catch (Exception e) {
+        log.error("Unable to refresh search index (provider: ${providerName})", e)
+      } finally {
+        synchronized (indexLock) {
+          rebuildDeltas.remove(providerName)
+        }
+      }
+    }
+  }
+
+  @Override
+  void cacheResultStored(String providerName,
+                         String sourceAgentType,
+                         Map<String, Collection<String>> stored,
+                         Map<String, Collection<String>> evicted) {
+    IndexDelta delta = new IndexDelta(stored: stored, evicted: evicted)
+    synchronized (indexLock) {
+      rebuildDeltas.get(providerName)?.add(delta)
+
+      // nothing to maintain until the first full refresh
+      Map<String, TrigramSearchIndex> indexes = searchIndexes.get(providerName)
+      if (indexes) {
+        delta.applyTo(indexes)
+      }
+    }
+  }
+
   @Override
   String getPlatform() {
     return "aws" //TODO(cfieber) - need a better story around this
@@ -162,48 +236,66 @@ class CatsSearchProvider implements SearchProvider, Runnable {
     types = defaultCaches.intersect(types)
 
     List<String> matches = findMatches(query, types, filters)
-    if (permissionEvaluator) {
-      Authentication auth = SecurityContextHolder.context.authentication
-
-      matches = new ArrayList(matches).findResults { String key ->
-        Map<String, String> result = providers.findResult { it.parseKey(key) }
-        if (!result) {
-          log.warn("No supporting provider found for key (key: ${key})")
-          return key
-        }
 
-        boolean canView = true
-        if (result.application) {
-          canView = permissionEvaluator.hasPermission(auth, result.application as String, 'APPLICATION', 'READ')
-        }
-        if (canView && result.account) {
-          canView = permissionEvaluator.hasPermission(auth, result.account as String, 'ACCOUNT', 'READ')
-        }
-        return canView ? key : null
+    Authentication auth = permissionEvaluator ? SecurityContextHolder.context.authentication : null
+    Map<String, Boolean> permissions = [:]
+    Closure<Boolean> hasPermission = { String resourceType, String resourceName ->
+      String permissionKey = resourceType + ":" + resourceName
+      Boolean permitted = permissions.get(permissionKey)
+      if (permitted == null) {
+        permitted = permissionEvaluator.hasPermission(auth, resourceName, resourceType, 'READ')
+        permissions.put(permissionKey, permitted)
       }
+      return permitted
     }
-    generateResultSet(query, matches, pageNumber, pageSize)
-  }
 
-  private SearchResultSet generateResultSet(String query, List<String> matches, Integer pageNumber, Integer pageSize) {
-    List<String> resultPage = paginateResults(matches, pageSize, pageNumber)
-    List<Map<String, String>> results = resultPage.findResults { String key ->
+    // only the requested page is retained, everything else is just counted
+    int startIndex = pageSize * (pageNumber - 1)
+    int endIndex = pageSize * pageNumber
+    int totalMatches = 0
+    Map<String, Map<String, String>> resultPage = new LinkedHashMap<>()
+    for (String key : matches) {
       Map<String, String> result = providers.findResult { it.parseKey(key) }
-      if (result) {
-        def resultResource = new SearchableResource(resourceType: result.type?.toLowerCase(), platform: result.provider?.toLowerCase())
-        if (resultResource in searchResultHydrators) {
-          return searchResultHydrators[(resultResource)].hydrateResult(cacheView, result, key)
-        } else {
-          return result
+      if (!result) {
+        log.warn("No supporting provider found for key (key: ${key})")
+        continue
+      }
+
+      if (permissionEvaluator) {
+        if (result.application && !hasPermission('APPLICATION', result.application as String)) {
+          continue
+        }
+        if (result.account && !hasPermission('ACCOUNT', result.account as String)) {
+          continue
         }
       }
-      return null
+
+      if (totalMatches >= startIndex && totalMatches < endIndex) {
+        resultPage.put(key, result)
+      }
+      totalMatches++
     }
 
-    int filteredItems = resultPage.size() - results.size()
+    log.info("Paginated ${totalMatches} results; page number: ${pageNumber}, items per page: ${pageSize}")
+    generateResultSet(query, resultPage, totalMatches, pageNumber, pageSize)
+  }
+
+  private SearchResultSet generateResultSet(String query,
+                                            Map<String, Map<String, String>> resultPage,
+                                            int totalMatches,
+                                            Integer pageNumber,
+                                            Integer pageSize) {
+    List<Map<String, String>> results = resultPage.findResults { String key, Map<String, String> result ->
+      def resultResource = new SearchableResource(resourceType: result.type?.toLowerCase(), platform: result.provider?.toLowerCase())
+      if (resultResource in searchResultHydrators) {
+        return searchResultHydrators[(resultResource)].hydrateResult(cacheView, result, key)
+      } else {
+        return result
+      }
+    }
 
     SearchResultSet resultSet = new SearchResultSet(
-      totalMatches: matches.size() - filteredItems,
+      totalMatches: totalMatches,
       platform: getPlatform(),
       query: query,
       pageNumber: pageNumber,
@@ -292,8 +384,14 @@ class CatsSearchProvider implements SearchProvider, Runnable {
         List<SearchableProvider> validProviders = providers.findAll { it.supportsSearch(cache, filters) }
         identifiers = new HashSet<>()
         for (SearchableProvider sp : validProviders) {
-          def providerCache = providerRegistry.getProviderCache(sp.getProviderName())
           def searchGlob = sp.buildSearchTerm(cache, normalizedWord)
+          TrigramSearchIndex searchIndex = searchIndexes.get(sp.getProviderName())?.get(cache)
+          if (searchIndex) {
+            identifiers.addAll(searchIndex.find(searchGlob))
+            continue
+          }
+
+          def providerCache = providerRegistry.getProviderCache(sp.getProviderName())
           def filteredIds = providerCache.filterIdentifiers(cache, searchGlob)
           filteredIds.removeAll(identifiers)
           def existingIds = providerCache.existingIdentifiers(cache, filteredIds)
@@ -314,12 +412,17 @@ class CatsSearchProvider implements SearchProvider, Runnable {
     }
   }
 
-  private static List<String> paginateResults(List<String> matches, Integer pageSize, Integer pageNumber) {
-    log.info("Paginating ${matches.size()} results; page number: ${pageNumber}, items per page: ${pageSize}")
-    Integer startingIndex = pageSize * (pageNumber - 1)
-    Integer endIndex = Math.min(pageSize * pageNumber, matches.size())
-    boolean hasResults = startingIndex < endIndex
-    List<String> toReturn = hasResults ? matches[startingIndex..endIndex - 1] : new ArrayList<String>()
-    toReturn
+  private static class IndexDelta {
+    Map<String, Collection<String>> stored
+    Map<String, Collection<String>> evicted
+
+    void applyTo(Map<String, TrigramSearchIndex> indexes) {
+      stored.each { String type, Collection<String> identifiers ->
+        indexes.get(type)?.addAll(identifiers)
+      }
+      evicted.each { String type, Collection<String> identifiers ->
+        indexes.get(type)?.removeAll(identifiers)
+      }
+    }
   }
 }
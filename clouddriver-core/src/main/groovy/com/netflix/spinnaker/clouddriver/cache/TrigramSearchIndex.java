@@ -0,0 +1,241 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache;
+
+import com.netflix.spinnaker.cats.mem.InMemoryCache.Glob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Glob index over a set of cache keys, answering the same queries as {@code Cache.filterIdentifiers}.
+ *
+ * Every key is broken into its (lowercased) trigrams and assigned an integer id; each trigram maps to the ids of
+ * the keys containing it. A query is answered by walking the smallest posting list among the trigrams of the glob's
+ * literal parts and matching each candidate against the glob, so cost is proportional to the rarest trigram rather
+ * than to the number of keys.
+ *
+ * Removed keys leave a tombstone in the posting lists until enough of them accumulate to warrant a compaction.
+ */
+public class TrigramSearchIndex {
+
+  private static final int MIN_COMPACTION_SIZE = 1024;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private final Map<String, Integer> idsByKey = new HashMap<>();
+  private final Map<Long, PostingList> postings = new HashMap<>();
+  private String[] keysById = new String[MIN_COMPACTION_SIZE];
+  private int nextId = 0;
+  private int tombstones = 0;
+
+  public TrigramSearchIndex() {
+  }
+
+  public TrigramSearchIndex(Collection<String> keys) {
+    addAll(keys);
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return idsByKey.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void addAll(Collection<String> keys) {
+    lock.writeLock().lock();
+    try {
+      for (String key : keys) {
+        add(key);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void removeAll(Collection<String> keys) {
+    lock.writeLock().lock();
+    try {
+      for (String key : keys) {
+        Integer id = idsByKey.remove(key);
+        if (id != null) {
+          keysById[id] = null;
+          tombstones++;
+        }
+      }
+
+      if (tombstones >= MIN_COMPACTION_SIZE && tombstones > idsByKey.size()) {
+        compact();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param glob a glob as accepted by {@code Cache.filterIdentifiers}, e.g. one built by
+   *             {@link SearchableProvider#buildSearchTerm(String, String)}
+   * @return every key matching {@code glob}, in no particular order
+   */
+  public List<String> find(String glob) {
+    Pattern pattern = new Glob(glob).toPattern();
+
+    Set<Long> queryTrigrams = new HashSet<>();
+    for (String literal : literals(glob)) {
+      queryTrigrams.addAll(trigrams(literal.toLowerCase()));
+    }
+
+    lock.readLock().lock();
+    try {
+      if (queryTrigrams.isEmpty()) {
+        return scan(pattern);
+      }
+
+      PostingList smallest = null;
+      for (long trigram : queryTrigrams) {
+        PostingList candidate = postings.get(trigram);
+        if (candidate == null) {
+          return new ArrayList<>();
+        }
+        if (smallest == null || candidate.size < smallest.size) {
+          smallest = candidate;
+        }
+      }
+
+      List<String> matches = new ArrayList<>();
+      for (int i = 0; i < smallest.size; i++) {
+        String key = keysById[smallest.ids[i]];
+        if (key != null && pattern.matcher(key).matches()) {
+          matches.add(key);
+        }
+      }
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private List<String> scan(Pattern pattern) {
+    List<String> matches = new ArrayList<>();
+    for (String key : idsByKey.keySet()) {
+      if (pattern.matcher(key).matches()) {
+        matches.add(key);
+      }
+    }
+    return matches;
+  }
+
+  private void add(String key) {
+    if (idsByKey.containsKey(key)) {
+      return;
+    }
+
+    int id = nextId++;
+    if (id == keysById.length) {
+      keysById = Arrays.copyOf(keysById, keysById.length * 2);
+    }
+    keysById[id] = key;
+    idsByKey.put(key, id);
+
+    for (long trigram : trigrams(key.toLowerCase())) {
+      postings.computeIfAbsent(trigram, t -> new PostingList()).add(id);
+    }
+  }
+
+  private void compact() {
+    List<String> keys = new ArrayList<>(idsByKey.keySet());
+    idsByKey.clear();
+    postings.clear();
+    keysById = new String[Math.max(MIN_COMPACTION_SIZE, keys.size())];
+    nextId = 0;
+    tombstones = 0;
+
+    for (String key : keys) {
+      add(key);
+    }
+  }
+
+  private static Set<Long> trigrams(String value) {
+    Set<Long> trigrams = new HashSet<>();
+    for (int i = 0; i + 3 <= value.length(); i++) {
+      trigrams.add(((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2));
+    }
+    return trigrams;
+  }
+
+  /**
+   * The runs of characters a matching key must contain verbatim, i.e. everything between wildcards and character
+   * classes, with escapes resolved.
+   */
+  static List<String> literals(String glob) {
+    List<String> literals = new ArrayList<>();
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '\\' && i + 1 < glob.length()) {
+        literal.append(glob.charAt(++i));
+        continue;
+      }
+      if (c != '*' && c != '?' && c != '[') {
+        literal.append(c);
+        continue;
+      }
+
+      if (c == '[') {
+        while (i + 1 < glob.length() && glob.charAt(i + 1) != ']') {
+          i += glob.charAt(i + 1) == '\\' ? 2 : 1;
+        }
+        i++;
+      }
+      if (literal.length() > 0) {
+        literals.add(literal.toString());
+        literal.setLength(0);
+      }
+    }
+    if (literal.length() > 0) {
+      literals.add(literal.toString());
+    }
+    return literals;
+  }
+
+  /**
+   * Append-only, ids are always added in increasing order.
+   */
+  private static class PostingList {
+    private int[] ids = new int[4];
+    private int size = 0;
+
+    void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+  }
+}
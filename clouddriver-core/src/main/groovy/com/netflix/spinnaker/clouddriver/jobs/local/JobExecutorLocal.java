@@ -83,7 +83,15 @@ public class JobExecutorLocal implements JobExecutor {
     DefaultExecuteResultHandler resultHandler = new DefaultExecuteResultHandler();
     executor.execute(jobRequest.getCommandLine(), jobRequest.getEnvironment(), resultHandler);
 
-    T result = consumer.consume(new BufferedReader(new InputStreamReader(new PipedInputStream(stdOut))));
+    T result;
+    try {
+      result = consumer.consume(new BufferedReader(new InputStreamReader(new PipedInputStream(stdOut))));
+    } catch (IOException | RuntimeException | Error e) {
+      // nothing reads the output anymore (the consumer failed, or its thread was interrupted); without this the process
+      // would be left running, blocked on a full pipe, until the watchdog times it out
+      executor.getWatchdog().destroyProcess();
+      throw e;
+    }
 
     try {
       resultHandler.waitFor();
@@ -20,6 +20,7 @@ import com.netflix.spinnaker.cats.agent.AgentDataType
 import com.netflix.spinnaker.cats.agent.CachingAgent
 import com.netflix.spinnaker.cats.provider.ProviderCache
 import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import com.netflix.spinnaker.fiat.shared.FiatPermissionEvaluator
 import spock.lang.Shared
 import spock.lang.Specification;
 
@@ -95,4 +96,83 @@ class CatsSearchProviderSpec extends Specification {
     then:
     catsSearchProvider.cachedIdentifiersByType.get() == [:]
   }
+
+  def "should maintain search indexes from cache writes once refreshed"() {
+    given:
+    catsInMemorySearchProperties.indexEnabled = true
+    def provider = Stub(SearchableProvider) {
+      getProviderName() >> "aws"
+      getDefaultCaches() >> ["instances"]
+      supportsSearch('instances', _) >> true
+      getAgents() >> [ instanceAgent ]
+    }
+    def searchProvider = new CatsSearchProvider(catsInMemorySearchProperties, cache, [provider], providerRegistry)
+    cache.getIdentifiers("instances") >> instanceIdentifiers
+
+    when:
+    searchProvider.refreshSearchIndexes()
+    searchProvider.cacheResultStored("aws", "agent", [instances: ["aws:instances:prod:us-west-2:i-4242"]], [instances: [instanceIdentifiers[0]]])
+
+    then:
+    searchProvider.searchIndexes["aws"]["instances"].find("*:instances:*prod*") as Set == (instanceIdentifiers.drop(1) + "aws:instances:prod:us-west-2:i-4242") as Set
+  }
+
+  def "should keep cache writes made while the search indexes are rebuilt"() {
+    given:
+    catsInMemorySearchProperties.indexEnabled = true
+    def provider = Stub(SearchableProvider) {
+      getProviderName() >> "aws"
+      getDefaultCaches() >> ["instances"]
+      supportsSearch('instances', _) >> true
+      getAgents() >> [ instanceAgent ]
+    }
+    def searchProvider = new CatsSearchProvider(catsInMemorySearchProperties, cache, [provider], providerRegistry)
+    cache.getIdentifiers("instances") >> {
+      // written after the rebuild read the identifiers it is indexing
+      def identifiers = new ArrayList<>(instanceIdentifiers)
+      searchProvider.cacheResultStored("aws", "agent", [instances: ["aws:instances:prod:us-west-2:i-4242"]], [instances: [instanceIdentifiers[0]]])
+      return identifiers
+    }
+
+    when:
+    searchProvider.refreshSearchIndexes()
+
+    then:
+    searchProvider.searchIndexes["aws"]["instances"].find("*:instances:*prod*") as Set == (instanceIdentifiers.drop(1) + "aws:instances:prod:us-west-2:i-4242") as Set
+  }
+
+  def "should evaluate permissions once per application and account and only hydrate the requested page"() {
+    given: "a broad query matching 200k server groups across 100 applications and 5 accounts"
+    def keys = (0..<200000).collect { "aws:serverGroups:app${it % 100}:account${it % 5}:us-west-2:app${it % 100}-v${it}".toString() }
+    def hydrator = Mock(SearchableProvider.SearchResultHydrator)
+    def provider = Stub(SearchableProvider) {
+      getProviderName() >> "aws"
+      getDefaultCaches() >> ["serverGroups"]
+      supportsSearch('serverGroups', _) >> true
+      buildSearchTerm(_, _) >> "aws:serverGroups:*app*"
+      getSearchResultHydrators() >> [(new SearchableProvider.SearchableResource("servergroups", "aws")): hydrator]
+      getUrlMappingTemplates() >> [:]
+      parseKey(_) >> { String k ->
+        def parts = k.split(":")
+        return [provider: "aws", type: "serverGroups", application: parts[2], account: parts[3], serverGroup: parts[5]]
+      }
+    }
+    def permissionEvaluator = Mock(FiatPermissionEvaluator)
+    def searchProvider = new CatsSearchProvider(
+      catsInMemorySearchProperties, cache, [provider], providerRegistry, Optional.of(permissionEvaluator), Optional.empty()
+    )
+    cache.filterIdentifiers("serverGroups", _) >> new HashSet<>(keys)
+    cache.existingIdentifiers("serverGroups", _ as Collection<String>) >> { t, i -> return i }
+
+    when:
+    def resultSet = searchProvider.search("app", ["serverGroups"], 2, 10)
+
+    then:
+    100 * permissionEvaluator.hasPermission(_, { it.startsWith("app") }, 'APPLICATION', 'READ') >> { a, String app, t, p -> app != "app1" }
+    5 * permissionEvaluator.hasPermission(_, { it.startsWith("account") }, 'ACCOUNT', 'READ') >> true
+    10 * hydrator.hydrateResult(cache, _, _) >> { c, Map result, String id -> result }
+    resultSet.totalMatches == 198000
+    resultSet.results.size() == 10
+    resultSet.results.every { it.application != "app1" }
+  }
 }
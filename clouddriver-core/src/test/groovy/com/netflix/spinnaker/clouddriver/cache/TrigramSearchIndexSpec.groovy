@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.cache
+
+import com.netflix.spinnaker.cats.mem.InMemoryCache
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TrigramSearchIndexSpec extends Specification {
+
+  def keys = [
+    "aws:serverGroups:myapp-main:prod:us-west-2:myapp-main-v001",
+    "aws:serverGroups:myapp-canary:prod:us-east-1:myapp-canary-v000",
+    "aws:serverGroups:other:test:us-west-2:other-v010",
+  ]
+
+  @Unroll
+  def "should find the same keys as filterIdentifiers for '#glob'"() {
+    given:
+    def index = new TrigramSearchIndex(keys)
+
+    expect:
+    index.find(glob) as Set == expected as Set
+    index.find(glob) as Set == keys.findAll { new InMemoryCache.Glob(glob).toPattern().matcher(it).matches() } as Set
+
+    where:
+    glob                               || expected
+    "aws:serverGroups:*myapp*"         || [keys[0], keys[1]]
+    "*:serverGroups:*myapp-can*"       || [keys[1]]
+    "*:serverGroups:*MYAPP*"           || []
+    "aws:serverGroups:*us-west-2*"     || [keys[0], keys[2]]
+    "*:serverGroups:*v0*"              || keys
+    "*:serverGroups:*v01*"             || [keys[2]]
+    "*:serverGroups:*serverGroups*"    || []
+    "*:instances:*myapp*"              || []
+    "aws:serverGroups:*myapp-*-v00[0]" || [keys[1]]
+    "*:serverGroups:*missing*"         || []
+    "*:serverGroups:*ppa*"             || []
+  }
+
+  @Unroll
+  def "should extract the literal parts of '#glob'"() {
+    expect:
+    TrigramSearchIndex.literals(glob) == expected
+
+    where:
+    glob                   || expected
+    "aws:serverGroups:*a*" || ["aws:serverGroups:", "a"]
+    "*"                    || []
+    "a?bc[de]f"            || ["a", "bc", "f"]
+    "a\\*b"                || ["a*b"]
+    "a[\\]]bc"             || ["a", "bc"]
+  }
+
+  def "should reflect additions and removals"() {
+    given:
+    def index = new TrigramSearchIndex(keys)
+
+    when:
+    index.removeAll([keys[0]])
+    index.addAll(["aws:serverGroups:myapp-main:prod:us-west-2:myapp-main-v002"])
+
+    then:
+    index.size() == 3
+    index.find("*:serverGroups:*myapp-main*") == ["aws:serverGroups:myapp-main:prod:us-west-2:myapp-main-v002"]
+  }
+
+  def "should compact once tombstones outnumber live keys"() {
+    given:
+    def index = new TrigramSearchIndex((0..<3000).collect { "aws:instances:prod:us-west-2:i-${it}".toString() })
+
+    when:
+    index.removeAll((0..<2000).collect { "aws:instances:prod:us-west-2:i-${it}".toString() })
+
+    then:
+    index.size() == 1000
+    index.find("*:instances:*i-2999*") == ["aws:instances:prod:us-west-2:i-2999"]
+    index.find("*:instances:*i-1999*") == []
+  }
+}
@@ -57,7 +57,12 @@ class KubernetesConfigurationProperties {
     List<String> omitKinds
     Boolean onlySpinnakerManaged
     Boolean liveManifestCalls
+    Boolean httpReadCalls
+    Boolean consolidatedListCalls
+    Integer listThreads
     Long cacheIntervalSeconds
+    Boolean cacheUsingWatch
+    Long cacheWatchResyncSeconds
   }
 
   List<ManagedAccount> accounts = []
@@ -82,4 +87,8 @@ class CustomKubernetesResource {
 class KubernetesCachingPolicy {
   String kubernetesKind
   int maxEntriesPerAgent
+  // dotted paths (e.g. "status") left out of listed & watched resources of this kind before they are cached
+  List<String> omitFields = []
+  // cache resources of this kind without their resourceVersion, managedFields & last-applied-configuration
+  boolean stripVolatileFields
 }
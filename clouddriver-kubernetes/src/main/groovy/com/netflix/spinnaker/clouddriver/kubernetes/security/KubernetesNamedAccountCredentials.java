@@ -25,6 +25,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v1.security.KubernetesV1Cred
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesHttpExecutor;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials;
 import com.netflix.spinnaker.clouddriver.names.NamerRegistry;
 import com.netflix.spinnaker.clouddriver.security.AccountCredentials;
@@ -236,6 +237,7 @@ public class KubernetesNamedAccountCredentials<C extends KubernetesCredentials>
     Registry spectatorRegistry;
     AccountCredentialsRepository accountCredentialsRepository;
     KubectlJobExecutor jobExecutor;
+    KubernetesHttpExecutor httpExecutor;
     Namer namer;
     List<CustomKubernetesResource> customResources;
     List<KubernetesCachingPolicy> cachingPolicies;
@@ -247,6 +249,11 @@ public class KubernetesNamedAccountCredentials<C extends KubernetesCredentials>
     Boolean onlySpinnakerManaged;
     Boolean liveManifestCalls;
     Long cacheIntervalSeconds;
+    boolean httpReadCalls;
+    boolean consolidatedListCalls;
+    Integer listThreads;
+    boolean cacheUsingWatch;
+    Long cacheWatchResyncSeconds;
 
     Builder kubernetesSpinnakerKindMap(KubernetesSpinnakerKindMap kubernetesSpinnakerKindMap) {
       this.kubernetesSpinnakerKindMap = kubernetesSpinnakerKindMap;
@@ -396,6 +403,11 @@ public class KubernetesNamedAccountCredentials<C extends KubernetesCredentials>
       return this;
     }
 
+    Builder httpExecutor(KubernetesHttpExecutor httpExecutor) {
+      this.httpExecutor = httpExecutor;
+      return this;
+    }
+
     Builder debug(boolean debug) {
       this.debug = debug;
       return this;
@@ -446,6 +458,31 @@ public class KubernetesNamedAccountCredentials<C extends KubernetesCredentials>
       return this;
     }
 
+    Builder httpReadCalls(boolean httpReadCalls) {
+      this.httpReadCalls = httpReadCalls;
+      return this;
+    }
+
+    Builder consolidatedListCalls(boolean consolidatedListCalls) {
+      this.consolidatedListCalls = consolidatedListCalls;
+      return this;
+    }
+
+    Builder listThreads(Integer listThreads) {
+      this.listThreads = listThreads;
+      return this;
+    }
+
+    Builder cacheUsingWatch(boolean cacheUsingWatch) {
+      this.cacheUsingWatch = cacheUsingWatch;
+      return this;
+    }
+
+    Builder cacheWatchResyncSeconds(Long cacheWatchResyncSeconds) {
+      this.cacheWatchResyncSeconds = cacheWatchResyncSeconds;
+      return this;
+    }
+
     private C buildCredentials() {
       switch (providerVersion) {
         case v1:
@@ -490,8 +527,14 @@ public class KubernetesNamedAccountCredentials<C extends KubernetesCredentials>
               .debug(debug)
               .checkPermissionsOnStartup(checkPermissionsOnStartup)
               .jobExecutor(jobExecutor)
+              .httpExecutor(httpExecutor)
               .onlySpinnakerManaged(onlySpinnakerManaged)
               .liveManifestCalls(liveManifestCalls)
+              .httpReadCalls(httpReadCalls)
+              .consolidatedListCalls(consolidatedListCalls)
+              .listThreads(listThreads)
+              .cacheUsingWatch(cacheUsingWatch)
+              .cacheWatchResyncSeconds(cacheWatchResyncSeconds)
               .build();
         default:
           throw new IllegalArgumentException("Unknown provider type: " + providerVersion);
@@ -22,6 +22,8 @@ import com.netflix.spinnaker.cats.provider.ProviderSynchronizerTypeWrapper
 import com.netflix.spinnaker.clouddriver.kubernetes.config.KubernetesConfigurationProperties
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesHttpExecutor
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials
 import com.netflix.spinnaker.clouddriver.names.NamerRegistry
 import com.netflix.spinnaker.clouddriver.security.AccountCredentialsRepository
 import com.netflix.spinnaker.clouddriver.security.CredentialsInitializerSynchronizable
@@ -41,6 +43,7 @@ class KubernetesNamedAccountCredentialsInitializer implements CredentialsInitial
 
   @Autowired Registry spectatorRegistry
   @Autowired KubectlJobExecutor jobExecutor
+  @Autowired KubernetesHttpExecutor httpExecutor
   @Autowired NamerRegistry namerRegistry
   @Autowired KubernetesSpinnakerKindMap kubernetesSpinnakerKindMap
 
@@ -69,6 +72,10 @@ class KubernetesNamedAccountCredentialsInitializer implements CredentialsInitial
     ApplicationContext applicationContext,
     AccountCredentialsRepository accountCredentialsRepository,
     List<ProviderSynchronizerTypeWrapper> providerSynchronizerTypeWrappers) {
+    def previousAccounts = accountCredentialsRepository.all.findAll {
+      it instanceof KubernetesNamedAccountCredentials
+    } as List<KubernetesNamedAccountCredentials>
+
     def (ArrayList<KubernetesConfigurationProperties.ManagedAccount> accountsToAdd, List<String> namesOfDeletedAccounts) =
     ProviderUtils.calculateAccountDeltas(accountCredentialsRepository,
                                          KubernetesNamedAccountCredentials,
@@ -104,6 +111,7 @@ class KubernetesNamedAccountCredentialsInitializer implements CredentialsInitial
           .permissions(managedAccount.permissions.build())
           .spectatorRegistry(spectatorRegistry)
           .jobExecutor(jobExecutor)
+          .httpExecutor(httpExecutor)
           .namer(namerRegistry.getNamingStrategy(managedAccount.namingStrategy))
           .customResources(managedAccount.customResources)
           .cachingPolicies(managedAccount.cachingPolicies)
@@ -116,15 +124,25 @@ class KubernetesNamedAccountCredentialsInitializer implements CredentialsInitial
           .onlySpinnakerManaged(managedAccount.onlySpinnakerManaged == null ? false : managedAccount.onlySpinnakerManaged)
           .liveManifestCalls(managedAccount.liveManifestCalls ?: false)
           .cacheIntervalSeconds(managedAccount.cacheIntervalSeconds)
+          .httpReadCalls(managedAccount.httpReadCalls ?: false)
+          .consolidatedListCalls(managedAccount.consolidatedListCalls ?: false)
+          .listThreads(managedAccount.listThreads)
+          .cacheUsingWatch(managedAccount.cacheUsingWatch ?: false)
+          .cacheWatchResyncSeconds(managedAccount.cacheWatchResyncSeconds)
           .build()
 
+        def replacedAccount = accountCredentialsRepository.getOne(managedAccount.name)
         accountCredentialsRepository.save(managedAccount.name, kubernetesAccount)
+        if (replacedAccount instanceof KubernetesNamedAccountCredentials && !replacedAccount.is(kubernetesAccount)) {
+          shutdown(replacedAccount)
+        }
       } catch (e) {
         log.info "Could not load account ${managedAccount.name} for Kubernetes.", e
       }
     }
 
     ProviderUtils.unscheduleAndDeregisterAgents(namesOfDeletedAccounts, catsModule)
+    previousAccounts.findAll { namesOfDeletedAccounts.contains(it.name) }.each { shutdown(it) }
 
     if (accountsToAdd && catsModule) {
       ProviderUtils.synchronizeAgentProviders(applicationContext, providerSynchronizerTypeWrappers)
@@ -134,4 +152,10 @@ class KubernetesNamedAccountCredentialsInitializer implements CredentialsInitial
       it instanceof KubernetesNamedAccountCredentials
     } as List<KubernetesNamedAccountCredentials>
   }
+
+  private static void shutdown(KubernetesNamedAccountCredentials account) {
+    if (account.credentials instanceof KubernetesV2Credentials) {
+      ((KubernetesV2Credentials) account.credentials).shutdown()
+    }
+  }
 }
@@ -20,7 +20,6 @@ package com.netflix.spinnaker.clouddriver.kubernetes.v2.artifact;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
@@ -38,11 +37,11 @@ import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
@@ -59,10 +58,11 @@ public class ArtifactReplacer {
       .mappingProvider(new JacksonMappingProvider())
       .build();
 
-  List<Replacer> replacers = new ArrayList<>();
+  // paths are compiled as replacers are registered (once per handler, so once per kind) rather than on every deploy
+  private final List<CompiledReplacer> replacers = new ArrayList<>();
 
   public ArtifactReplacer addReplacer(Replacer replacer) {
-    replacers.add(replacer);
+    replacers.add(new CompiledReplacer(replacer, JsonPath.compile(replacer.path)));
     return this;
   }
 
@@ -98,48 +98,72 @@ public class ArtifactReplacer {
         .collect(Collectors.toList());
   }
 
+  // builds the JsonNode tree the JSON paths run against directly from the manifest, without rendering and re-reading it
+  private static DocumentContext parse(KubernetesManifest input) {
+    try {
+      return JsonPath.using(configuration).parse((Object) mapper.valueToTree(input));
+    } catch (IllegalArgumentException e) {
+      throw new RuntimeException("Malformed manifest", e);
+    }
+  }
+
+  /**
+   * Each replacer's path is walked once, swapping every value it reaches for the reference of the artifact of the
+   * replacer's type with that name (looked up by type & name, the first such artifact winning), instead of
+   * evaluating a filtered path per replacer per artifact.
+   */
   public ReplaceResult replaceAll(KubernetesManifest input, List<Artifact> artifacts, String namespace, String account) {
     log.debug("Doing replacement on {} using {}", input, artifacts);
-    // final to use in below lambda
-    final List<Artifact> finalArtifacts = filterKubernetesArtifactsByNamespaceAndAccount(namespace, account, artifacts);
-    DocumentContext document;
-    try {
-      document = JsonPath.using(configuration).parse(mapper.writeValueAsString(input));
-    } catch (JsonProcessingException e) {
-      log.error("Malformed manifest", e);
-      throw new RuntimeException(e);
+    Map<String, Map<String, Artifact>> artifactsByTypeAndName = new HashMap<>();
+    for (Artifact artifact : filterKubernetesArtifactsByNamespaceAndAccount(namespace, account, artifacts)) {
+      artifactsByTypeAndName.computeIfAbsent(artifact.getType(), t -> new HashMap<>())
+          .putIfAbsent(artifact.getName(), artifact);
     }
 
-    Set<Artifact> replacedArtifacts = replacers.stream()
-        .map(r -> finalArtifacts.stream()
-            .filter(a -> r.replaceIfPossible(document, a))
-            .collect(Collectors.toSet()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toSet());
+    DocumentContext document = parse(input);
+    Set<Artifact> replacedArtifacts = new HashSet<>();
+    for (CompiledReplacer r : replacers) {
+      Map<String, Artifact> artifactsByName = artifactsByTypeAndName.get(r.replacer.getType().getType());
+      if (artifactsByName == null) {
+        continue;
+      }
+
+      try {
+        // the provider hands leaves over unwrapped, so text values arrive as strings
+        document.map(r.path, (value, c) -> {
+          Artifact artifact = value instanceof String ? artifactsByName.get(value) : null;
+          if (artifact == null) {
+            return value;
+          }
+
+          log.info("Found valid swap for {} using {}: {}", artifact, r.replacer.path, value);
+          replacedArtifacts.add(artifact);
+          return artifact.getReference();
+        });
+      } catch (PathNotFoundException e) {
+        // nothing to replace
+      }
+    }
 
     try {
       return ReplaceResult.builder()
-          .manifest(mapper.readValue(document.jsonString(), KubernetesManifest.class))
+          .manifest(mapper.treeToValue(document.json(), KubernetesManifest.class))
           .boundArtifacts(replacedArtifacts)
           .build();
-    } catch (IOException e) {
+    } catch (JsonProcessingException e) {
       log.error("Malformed Document Context", e);
       throw new RuntimeException(e);
     }
   }
 
   public Set<Artifact> findAll(KubernetesManifest input) {
-    DocumentContext document;
-    try {
-      document = JsonPath.using(configuration).parse(mapper.writeValueAsString(input));
-    } catch (JsonProcessingException e) {
-      throw new RuntimeException("Malformed manifest", e);
-    }
+    DocumentContext document = parse(input);
 
     return replacers.stream()
-        .map(r -> {
+        .map(compiled -> {
+              Replacer r = compiled.replacer;
               try {
-                return ((List<String>) mapper.convertValue(r.findAll(document), new TypeReference<List<String>>() { }))
+                return ((List<String>) mapper.convertValue(document.read(compiled.path), new TypeReference<List<String>>() { }))
                     .stream()
                     .map(s -> {
                           String nameFromReference = r.getNameFromReference(s);
@@ -165,35 +189,23 @@ public class ArtifactReplacer {
         .collect(Collectors.toSet());
   }
 
-  @Slf4j
+  @AllArgsConstructor
+  private static class CompiledReplacer {
+    private final Replacer replacer;
+    private final JsonPath path;
+  }
+
   @Builder
   @AllArgsConstructor
   public static class Replacer {
-    private final String replacePath;
-    private final String findPath;
+    // reaches every value that may name an artifact of this type; matching values are swapped for the reference
+    private final String path;
     private final Pattern namePattern; // the first group should be the artifact name
     private final Function<String, String> nameFromReference;
 
     @Getter
     private final KubernetesArtifactType type;
 
-    private static String substituteField(String result, String fieldName, String field) {
-      field = field == null ? "" : field;
-      return result.replace("{%" + fieldName + "%}", field);
-    }
-
-    private static String processPath(String path, Artifact artifact) {
-      String result = substituteField(path, "name", artifact.getName());
-      result = substituteField(result, "type", artifact.getType());
-      result = substituteField(result, "version", artifact.getVersion());
-      result = substituteField(result, "reference", artifact.getReference());
-      return result;
-    }
-
-    ArrayNode findAll(DocumentContext obj) {
-       return obj.read(findPath);
-    }
-
     String getNameFromReference(String reference) {
       if (nameFromReference != null) {
         return nameFromReference.apply(reference);
@@ -208,35 +220,6 @@ public class ArtifactReplacer {
         return null;
       }
     }
-
-    boolean replaceIfPossible(DocumentContext obj, Artifact artifact) {
-      if (artifact == null || StringUtils.isEmpty(artifact.getType())) {
-        throw new IllegalArgumentException("Artifact and artifact type must be set.");
-      }
-
-      if (!artifact.getType().equals(type.getType())) {
-        return false;
-      }
-
-      String jsonPath = processPath(replacePath, artifact);
-
-      log.debug("Processed jsonPath == {}", jsonPath);
-
-      Object get;
-      try {
-        get = obj.read(jsonPath);
-      } catch (PathNotFoundException e) {
-        return false;
-      }
-      if (get == null || (get instanceof ArrayNode && ((ArrayNode) get).size() == 0)) {
-        return false;
-      }
-
-      log.info("Found valid swap for " + artifact + " using " + jsonPath + ": " + get);
-      obj.set(jsonPath, artifact.getReference());
-
-      return true;
-    }
   }
 
   @Data
@@ -41,8 +41,7 @@ public class ArtifactReplacerFactory {
 
   public static Replacer dockerImageReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec['containers', 'initContainers'].[?( @.image == \"{%name%}\" )].image")
-        .findPath("$..spec.template.spec['containers', 'initContainers'].*.image")
+        .path("$..spec.template.spec['containers', 'initContainers'].*.image")
         .nameFromReference(ref -> {
           int atIndex = ref.indexOf('@');
           // @ can only show up in image references denoting a digest
@@ -69,64 +68,56 @@ public class ArtifactReplacerFactory {
   
   public static Replacer configMapVolumeReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec.volumes.[?( @.configMap.name == \"{%name%}\" )].configMap.name")
-        .findPath("$..spec.template.spec.volumes.*.configMap.name")
+        .path("$..spec.template.spec.volumes.*.configMap.name")
         .type(KubernetesArtifactType.ConfigMap)
         .build();
   }
 
   public static Replacer secretVolumeReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec.volumes.[?( @.secret.secretName == \"{%name%}\" )].secret.secretName")
-        .findPath("$..spec.template.spec.volumes.*.secret.secretName")
+        .path("$..spec.template.spec.volumes.*.secret.secretName")
         .type(KubernetesArtifactType.Secret)
         .build();
   }
 
   public static Replacer configMapKeyValueFromReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec['containers', 'initContainers'].*.env.[?( @.valueFrom.configMapKeyRef.name == \"{%name%}\" )].valueFrom.configMapKeyRef.name")
-        .findPath("$..spec.template.spec['containers', 'initContainers'].*.env.*.valueFrom.configMapKeyRef.name")
+        .path("$..spec.template.spec['containers', 'initContainers'].*.env.*.valueFrom.configMapKeyRef.name")
         .type(KubernetesArtifactType.ConfigMap)
         .build();
   }
 
   public static Replacer secretKeyValueFromReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec['containers', 'initContainers'].*.env.[?( @.valueFrom.secretKeyRef.name == \"{%name%}\" )].valueFrom.secretKeyRef.name")
-        .findPath("$..spec.template.spec['containers', 'initContainers'].*.env.*.valueFrom.secretKeyRef.name")
+        .path("$..spec.template.spec['containers', 'initContainers'].*.env.*.valueFrom.secretKeyRef.name")
         .type(KubernetesArtifactType.Secret)
         .build();
   }
 
   public static Replacer configMapEnvFromReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec['containers', 'initContainers'].*.envFrom.[?( @.configMapRef.name == \"{%name%}\" )].configMapRef.name")
-        .findPath("$..spec.template.spec['containers', 'initContainers'].*.envFrom.*.configMapRef.name")
+        .path("$..spec.template.spec['containers', 'initContainers'].*.envFrom.*.configMapRef.name")
         .type(KubernetesArtifactType.ConfigMap)
         .build();
   }
 
   public static Replacer secretEnvFromReplacer() {
     return Replacer.builder()
-        .replacePath("$..spec.template.spec['containers', 'initContainers'].*.envFrom.[?( @.secretRef.name == \"{%name%}\" )].secretRef.name")
-        .findPath("$..spec.template.spec['containers', 'initContainers'].*.envFrom.*.secretRef.name")
+        .path("$..spec.template.spec['containers', 'initContainers'].*.envFrom.*.secretRef.name")
         .type(KubernetesArtifactType.Secret)
         .build();
   }
 
   public static Replacer hpaDeploymentReplacer() {
     return Replacer.builder()
-        .replacePath("$[?( (@.spec.scaleTargetRef.kind == \"Deployment\" || @.spec.scaleTargetRef.kind == \"deployment\") && @.spec.scaleTargetRef.name == \"{%name%}\" )].spec.scaleTargetRef.name")
-        .findPath("$[?( @.spec.scaleTargetRef.kind == \"Deployment\" || @.spec.scaleTargetRef.kind == \"deployment\" )].spec.scaleTargetRef.name")
+        .path("$[?( @.spec.scaleTargetRef.kind == \"Deployment\" || @.spec.scaleTargetRef.kind == \"deployment\" )].spec.scaleTargetRef.name")
         .type(KubernetesArtifactType.Deployment)
         .build();
   }
 
   public static Replacer hpaReplicaSetReplacer() {
     return Replacer.builder()
-        .replacePath("$[?( (@.spec.scaleTargetRef.kind == \"ReplicaSet\" || @.spec.scaleTargetRef.kind == \"replicaSet\") && @.spec.scaleTargetRef.name == \"{%name%}\" )].spec.scaleTargetRef.name")
-        .findPath("$[?( @.spec.scaleTargetRef.kind == \"ReplicaSet\" || @.spec.scaleTargetRef.kind == \"replicaSet\" )].spec.scaleTargetRef.name")
+        .path("$[?( @.spec.scaleTargetRef.kind == \"ReplicaSet\" || @.spec.scaleTargetRef.kind == \"replicaSet\" )].spec.scaleTargetRef.name")
         .type(KubernetesArtifactType.ReplicaSet)
         .build();
   }
@@ -18,16 +18,20 @@
 package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
-import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.Keys.Kind.KUBERNETES_METRIC;
@@ -52,10 +56,14 @@ public class Keys {
 
     @JsonCreator
     public static Kind fromString(String name) {
-      return Arrays.stream(values())
-          .filter(k -> k.toString().equalsIgnoreCase(name))
-          .findFirst()
-          .orElseThrow(() -> new IllegalArgumentException("No matching kind with name " + name + " exists"));
+      // a plain loop, since this runs for every key parsed
+      for (Kind kind : values()) {
+        if (kind.toString().equalsIgnoreCase(name)) {
+          return kind;
+        }
+      }
+
+      throw new IllegalArgumentException("No matching kind with name " + name + " exists");
     }
   }
 
@@ -79,19 +87,33 @@ public class Keys {
 
     @JsonCreator
     public static LogicalKind fromString(String name) {
-      return Arrays.stream(values())
-          .filter(k -> k.toString().equalsIgnoreCase(name))
-          .findFirst()
-          .orElseThrow(() -> new IllegalArgumentException("No matching kind with name " + name + " exists"));
+      for (LogicalKind kind : values()) {
+        if (kind.toString().equalsIgnoreCase(name)) {
+          return kind;
+        }
+      }
+
+      throw new IllegalArgumentException("No matching kind with name " + name + " exists");
     }
   }
 
   private static final String provider = "kubernetes.v2";
+  private static final String providerPrefix = provider + ":";
+
+  // the same keys are parsed over and over by the view providers, so recently parsed keys are kept and shared (which
+  // is why CacheKeys are immutable); bounded so a large account can't pin its whole key space in memory
+  private static final int parsedKeyCacheSize = 20000;
+  private static final Cache<String, Optional<CacheKey>> parsedKeys = CacheBuilder.newBuilder()
+      .maximumSize(parsedKeyCacheSize)
+      .build();
+
+  // KubernetesKind.fromString takes a lock over every known kind, and only a handful ever show up in keys
+  private static final Map<String, KubernetesKind> kubernetesKinds = new ConcurrentHashMap<>();
 
   private static String createKey(Object... elems) {
     List<String> components = Arrays.stream(elems)
         .map(s -> s == null ? "" : s.toString())
-        .map(s -> s.replaceAll(":", ";"))
+        .map(s -> s.replace(':', ';'))
         .collect(Collectors.toList());
     components.add(0, provider);
     return String.join(":", components);
@@ -122,14 +144,22 @@ public class Keys {
   }
 
   public static Optional<CacheKey> parseKey(String key) {
-    String[] parts = key.split(":", -1);
-
-    if (parts.length < 3 || !parts[0].equals(provider)) {
+    if (key == null || !key.startsWith(providerPrefix)) {
       return Optional.empty();
     }
 
-    for (String part : parts) {
-      part.replaceAll(";", ":");
+    Optional<CacheKey> result = parsedKeys.getIfPresent(key);
+    if (result == null) {
+      result = parseKey(key, splitKey(key));
+      parsedKeys.put(key, result);
+    }
+
+    return result;
+  }
+
+  private static Optional<CacheKey> parseKey(String key, String[] parts) {
+    if (parts.length < 3) {
+      return Optional.empty();
     }
 
     try {
@@ -152,6 +182,37 @@ public class Keys {
     }
   }
 
+  // equivalent to key.split(":", -1), sized up front and without going through the regex machinery
+  private static String[] splitKey(String key) {
+    int count = 1;
+    for (int i = key.indexOf(':'); i >= 0; i = key.indexOf(':', i + 1)) {
+      count++;
+    }
+
+    String[] parts = new String[count];
+    int start = 0;
+    for (int i = 0; i < count - 1; i++) {
+      int end = key.indexOf(':', start);
+      parts[i] = key.substring(start, end);
+      start = end + 1;
+    }
+
+    parts[count - 1] = key.substring(start);
+    return parts;
+  }
+
+  private static KubernetesKind kubernetesKind(String name) {
+    KubernetesKind result = kubernetesKinds.get(name);
+    if (result == null) {
+      result = KubernetesKind.fromString(name);
+      if (result != null) {
+        kubernetesKinds.put(name, result);
+      }
+    }
+
+    return result;
+  }
+
   private static CacheKey parseLogicalKey(String[] parts) {
     assert(parts.length >= 3);
 
@@ -167,7 +228,8 @@ public class Keys {
     }
   }
 
-  @Data
+  @EqualsAndHashCode
+  @Getter
   public static abstract class CacheKey {
     private Kind kind;
     private String provider = KubernetesCloudProvider.getID();
@@ -177,20 +239,20 @@ public class Keys {
   }
 
   @EqualsAndHashCode(callSuper = true)
-  @Data
+  @Getter
   public static abstract class LogicalKey extends CacheKey {
-    private Kind kind = Kind.LOGICAL;
+    private final Kind kind = Kind.LOGICAL;
     public abstract LogicalKind getLogicalKind();
   }
 
   @EqualsAndHashCode(callSuper = true)
-  @Data
+  @Getter
   public static class ArtifactCacheKey extends CacheKey {
-    private Kind kind = Kind.ARTIFACT;
-    private String type;
-    private String name;
-    private String location;
-    private String version;
+    private final Kind kind = Kind.ARTIFACT;
+    private final String type;
+    private final String name;
+    private final String location;
+    private final String version;
 
     public ArtifactCacheKey(String[] parts) {
       if (parts.length != 6) {
@@ -215,10 +277,10 @@ public class Keys {
   }
 
   @EqualsAndHashCode(callSuper = true)
-  @Data
+  @Getter
   public static class ApplicationCacheKey extends LogicalKey {
-    private LogicalKind logicalKind = LogicalKind.APPLICATIONS;
-    private String name;
+    private final LogicalKind logicalKind = LogicalKind.APPLICATIONS;
+    private final String name;
 
     public ApplicationCacheKey(String[] parts) {
       if (parts.length != 4) {
@@ -240,12 +302,12 @@ public class Keys {
   }
 
   @EqualsAndHashCode(callSuper = true)
-  @Data
+  @Getter
   public static class ClusterCacheKey extends LogicalKey {
-    private LogicalKind logicalKind = LogicalKind.CLUSTERS;
-    private String account;
-    private String application;
-    private String name;
+    private final LogicalKind logicalKind = LogicalKind.CLUSTERS;
+    private final String account;
+    private final String application;
+    private final String name;
 
     public ClusterCacheKey(String[] parts) {
       if (parts.length != 6) {
@@ -269,20 +331,20 @@ public class Keys {
   }
 
   @EqualsAndHashCode(callSuper = true)
-  @Data
+  @Getter
   public static class InfrastructureCacheKey extends CacheKey {
-    private Kind kind = Kind.INFRASTRUCTURE;
-    private KubernetesKind kubernetesKind;
-    private String account;
-    private String namespace;
-    private String name;
+    private final Kind kind = Kind.INFRASTRUCTURE;
+    private final KubernetesKind kubernetesKind;
+    private final String account;
+    private final String namespace;
+    private final String name;
 
     public InfrastructureCacheKey(String[] parts) {
       if (parts.length != 6) {
         throw new IllegalArgumentException("Malformed infrastructure key " + Arrays.toString(parts));
       }
 
-      kubernetesKind = KubernetesKind.fromString(parts[2]);
+      kubernetesKind = kubernetesKind(parts[2]);
       account = parts[3];
       namespace = parts[4];
       name = parts[5];
@@ -300,20 +362,20 @@ public class Keys {
   }
 
   @EqualsAndHashCode(callSuper = true)
-  @Data
+  @Getter
   public static class MetricCacheKey extends CacheKey {
-    private Kind kind = KUBERNETES_METRIC;
-    private KubernetesKind kubernetesKind;
-    private String account;
-    private String namespace;
-    private String name;
+    private final Kind kind = KUBERNETES_METRIC;
+    private final KubernetesKind kubernetesKind;
+    private final String account;
+    private final String namespace;
+    private final String name;
 
     public MetricCacheKey(String[] parts) {
       if (parts.length != 6) {
         throw new IllegalArgumentException("Malformed metric key " + Arrays.toString(parts));
       }
 
-      kubernetesKind = KubernetesKind.fromString(parts[2]);
+      kubernetesKind = kubernetesKind(parts[2]);
       account = parts[3];
       namespace = parts[4];
       name = parts[5];
@@ -30,6 +30,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.Kube
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifestAnnotater;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifestCompactor;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifestMetadata;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.names.KubernetesManifestNamer;
 import com.netflix.spinnaker.clouddriver.names.NamerRegistry;
@@ -181,6 +182,13 @@ public class KubernetesCacheDataConverter {
   public static CacheData convertAsResource(String account,
       KubernetesManifest manifest,
       List<KubernetesManifest> resourceRelationships) {
+    return convertAsResource(account, manifest, resourceRelationships, false);
+  }
+
+  public static CacheData convertAsResource(String account,
+      KubernetesManifest manifest,
+      List<KubernetesManifest> resourceRelationships,
+      boolean stripVolatileFields) {
     KubernetesCachingProperties cachingProperties = KubernetesManifestAnnotater.getCachingProperties(manifest);
     if (cachingProperties.isIgnore()) {
       return null;
@@ -213,7 +221,7 @@ public class KubernetesCacheDataConverter {
         .put("name", name)
         .put("namespace", namespace)
         .put("fullResourceName", manifest.getFullResourceName())
-        .put("manifest", manifest)
+        .put("manifest", stripVolatileFields ? KubernetesManifestCompactor.withoutVolatileFields(manifest) : manifest)
         .put("moniker", moniker)
         .put("application", cachingProperties.getApplication())
         .build();
@@ -246,7 +254,7 @@ public class KubernetesCacheDataConverter {
   }
 
   public static KubernetesManifest getManifest(CacheData cacheData) {
-    return mapper.convertValue(cacheData.getAttributes().get("manifest"), KubernetesManifest.class);
+    return convertToManifest(cacheData.getAttributes().get("manifest"));
   }
 
   public static Moniker getMoniker(CacheData cacheData) {
@@ -254,6 +262,18 @@ public class KubernetesCacheDataConverter {
   }
 
   public static KubernetesManifest convertToManifest(Object o) {
+    if (o instanceof KubernetesManifest) {
+      return (KubernetesManifest) o;
+    }
+
+    // cached attributes come back as plain maps, lists & Jackson's number types already; re-wrapping the top level is
+    // all it takes, where a conversion would copy the whole document through a token buffer
+    if (o instanceof Map) {
+      KubernetesManifest manifest = new KubernetesManifest();
+      manifest.putAll((Map<String, Object>) o);
+      return manifest;
+    }
+
     return mapper.convertValue(o, KubernetesManifest.class);
   }
 
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.agent;
+
+import com.netflix.spinnaker.cats.cache.CacheData;
+import com.netflix.spinnaker.cats.cache.DefaultCacheData;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.Keys;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Builds the cache result for a set of resources in one pass, spread over the account's executor when one is given. Each resource contributes its own entry,
+ * the inverse of each of its relationships, its application's cluster relationship and its artifact; entries sharing
+ * an id are merged as they arrive rather than collected into intermediate lists and deduplicated afterwards.
+ *
+ * Merging follows {@link KubernetesCacheDataConverter#dedupCacheData}: relationships are unioned, the lowest ttl wins
+ * and attributes already recorded for an id are kept.
+ */
+public class KubernetesCacheResultBuilder {
+  // below this, splitting the work costs more than it saves
+  private static final int parallelThreshold = 256;
+
+  private static final int chunkSize = 128;
+
+  private final String account;
+  private final ExecutorService executor;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public KubernetesCacheResultBuilder(String account) {
+    this(account, null);
+  }
+
+  /**
+   * @param executor shares the work of large batches with the calling thread; it should be bounded per account (see
+   *                 {@link com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials#getListExecutor})
+   *                 so that one account's cycle can't starve the rest of the JVM.
+   */
+  public KubernetesCacheResultBuilder(String account, ExecutorService executor) {
+    this.account = account;
+    this.executor = executor;
+  }
+
+  /**
+   * @param resourceConverter converts a manifest into its cache entry, returning null to skip it. Its artifact is
+   *                          still recorded, as it is when the conversion fails.
+   */
+  public KubernetesCacheResultBuilder addAll(Collection<KubernetesManifest> manifests, Function<KubernetesManifest, CacheData> resourceConverter) {
+    if (executor == null || manifests.size() < parallelThreshold) {
+      manifests.forEach(m -> add(m, resourceConverter));
+      return this;
+    }
+
+    List<KubernetesManifest> list = new ArrayList<>(manifests);
+    int chunks = (list.size() + chunkSize - 1) / chunkSize;
+    AtomicInteger nextChunk = new AtomicInteger();
+    Runnable work = () -> {
+      int chunk;
+      while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+        list.subList(chunk * chunkSize, Math.min(list.size(), (chunk + 1) * chunkSize)).forEach(m -> add(m, resourceConverter));
+      }
+    };
+
+    // the calling thread works through the chunks as well, so a busy executor only means less help
+    List<Future<?>> helpers = new ArrayList<>();
+    try {
+      for (int i = 0; i < Math.min(chunks - 1, Runtime.getRuntime().availableProcessors()); i++) {
+        helpers.add(executor.submit(work));
+      }
+    } catch (RejectedExecutionException e) {
+      // shutting down; finish on this thread
+    }
+
+    try {
+      work.run();
+    } finally {
+      nextChunk.set(chunks);
+      awaitHelpers(helpers);
+    }
+
+    return this;
+  }
+
+  private static void awaitHelpers(List<Future<?>> helpers) {
+    for (Future<?> helper : helpers) {
+      if (helper.cancel(false)) {
+        continue;
+      }
+
+      try {
+        helper.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while building the cache result", e);
+      } catch (ExecutionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  public Map<String, Collection<CacheData>> build() {
+    Map<String, Collection<CacheData>> result = new HashMap<>();
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      Entry value = entry.getValue();
+      // see KubernetesCacheDataConverter#stratifyCacheDataByGroup: an infrastructure entry with no attributes of its
+      // own only exists as the target of a relationship and may well have been deleted
+      if (value.infrastructure && value.attributes.isEmpty()) {
+        continue;
+      }
+
+      result.computeIfAbsent(value.group, g -> new ArrayList<>()).add(value.toCacheData(entry.getKey()));
+    }
+
+    return result;
+  }
+
+  private void add(KubernetesManifest manifest, Function<KubernetesManifest, CacheData> resourceConverter) {
+    CacheData resource = resourceConverter.apply(manifest);
+    if (resource != null) {
+      merge(resource);
+      KubernetesCacheDataConverter.invertRelationships(resource).forEach(this::merge);
+
+      CacheData clusterRelationships = KubernetesCacheDataConverter.getClusterRelationships(account, resource);
+      if (clusterRelationships != null) {
+        merge(clusterRelationships);
+      }
+    }
+
+    CacheData artifact = KubernetesCacheDataConverter.convertAsArtifact(account, manifest);
+    if (artifact != null) {
+      merge(artifact);
+    }
+  }
+
+  private void merge(CacheData cacheData) {
+    String id = cacheData.getId();
+    Entry entry = entries.computeIfAbsent(id, Entry::new);
+    entry.merge(cacheData);
+  }
+
+  private static class Entry {
+    final String group;
+    final boolean infrastructure;
+
+    int ttlSeconds = Integer.MAX_VALUE;
+    Map<String, Object> attributes = Collections.emptyMap();
+    boolean attributesCopied;
+    final Map<String, Collection<String>> relationships = new HashMap<>();
+
+    Entry(String id) {
+      Keys.CacheKey key = Keys.parseKey(id).orElseThrow(() -> new IllegalStateException("Cache data produced with illegal key format " + id));
+      this.group = key.getGroup();
+      this.infrastructure = key instanceof Keys.InfrastructureCacheKey;
+    }
+
+    synchronized void merge(CacheData cacheData) {
+      ttlSeconds = Math.min(ttlSeconds, cacheData.getTtlSeconds());
+
+      Map<String, Object> added = cacheData.getAttributes();
+      if (added != null && !added.isEmpty()) {
+        if (attributes.isEmpty()) {
+          attributes = added;
+        } else {
+          if (!attributesCopied) {
+            attributes = new HashMap<>(attributes);
+            attributesCopied = true;
+          }
+
+          added.forEach(attributes::putIfAbsent);
+        }
+      }
+
+      cacheData.getRelationships().forEach((group, keys) ->
+          relationships.computeIfAbsent(group, g -> new HashSet<>()).addAll(keys));
+    }
+
+    synchronized CacheData toCacheData(String id) {
+      return new DefaultCacheData(id, ttlSeconds, attributes, relationships);
+    }
+  }
+}
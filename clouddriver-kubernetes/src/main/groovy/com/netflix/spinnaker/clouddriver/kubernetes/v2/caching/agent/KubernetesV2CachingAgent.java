@@ -19,15 +19,21 @@ package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.agent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.cats.agent.Agent;
+import com.netflix.spinnaker.cats.agent.AgentDataType;
+import com.netflix.spinnaker.cats.agent.AgentExecution;
 import com.netflix.spinnaker.cats.agent.AgentIntervalAware;
 import com.netflix.spinnaker.cats.agent.CacheResult;
+import com.netflix.spinnaker.cats.agent.CachingAgent;
 import com.netflix.spinnaker.cats.agent.DefaultCacheResult;
 import com.netflix.spinnaker.cats.cache.CacheData;
 import com.netflix.spinnaker.cats.provider.ProviderCache;
+import com.netflix.spinnaker.cats.provider.ProviderRegistry;
 import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider;
 import com.netflix.spinnaker.clouddriver.kubernetes.caching.KubernetesCachingAgent;
 import com.netflix.spinnaker.clouddriver.kubernetes.config.KubernetesCachingPolicy;
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesNamedAccountCredentials;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.Keys;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesResourcePropertyRegistry;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.RegistryUtils;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
@@ -35,21 +41,27 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.Kube
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor.KubectlException;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials;
+import com.netflix.spinnaker.clouddriver.names.NamerRegistry;
+import com.netflix.spinnaker.moniker.Namer;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.NotImplementedException;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
-public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<KubernetesV2Credentials> implements AgentIntervalAware {
+public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<KubernetesV2Credentials> implements AgentIntervalAware, Closeable {
   protected KubectlJobExecutor jobExecutor;
 
   @Getter
@@ -60,6 +72,8 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
 
   private final KubernetesResourcePropertyRegistry propertyRegistry;
 
+  private KubernetesV2WatchState watchState;
+
   protected KubernetesV2CachingAgent(KubernetesNamedAccountCredentials<KubernetesV2Credentials> namedAccountCredentials,
       KubernetesResourcePropertyRegistry propertyRegistry,
       ObjectMapper objectMapper,
@@ -88,18 +102,15 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
   }
 
   protected Map<KubernetesKind, List<KubernetesManifest>> loadPrimaryResourceList() {
-    Map<KubernetesKind, List<KubernetesManifest>> result = namespaces.parallelStream()
-        .map(n -> {
-          try {
-            return credentials.list(primaryKinds(), n);
-          } catch (KubectlException e) {
-            log.warn("{}: Failed to read kind {} from namespace {}: {}", getAgentType(), primaryKinds(), n, e.getMessage());
-            throw e;
-          }
-        })
-        .filter(Objects::nonNull)
-        .flatMap(Collection::stream)
-        .collect(Collectors.groupingBy(KubernetesManifest::getKind));
+    Map<KubernetesKind, List<KubernetesManifest>> result;
+    try {
+      result = credentials.listAcrossNamespaces(primaryKinds(), namespaces)
+          .stream()
+          .collect(Collectors.groupingBy(KubernetesManifest::getKind));
+    } catch (KubectlException e) {
+      log.warn("{}: Failed to read kind {} from namespaces {}: {}", getAgentType(), primaryKinds(), namespaces, e.getMessage());
+      throw e;
+    }
 
     for (KubernetesCachingPolicy policy : credentials.getCachingPolicies()) {
       KubernetesKind policyKind = KubernetesKind.fromString(policy.getKubernetesKind());
@@ -119,9 +130,88 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
       }
     }
 
+    if (watchEnabled()) {
+      getWatchState().resync(result, primaryKinds(), namespaces, credentials::watch);
+    }
+
     return result;
   }
 
+  protected boolean watchEnabled() {
+    return credentials.isCacheUsingWatch();
+  }
+
+  private synchronized KubernetesV2WatchState getWatchState() {
+    if (watchState == null) {
+      Namer<KubernetesManifest> namer = NamerRegistry.lookup()
+          .withProvider(KubernetesCloudProvider.getID())
+          .withAccount(accountName)
+          .withResource(KubernetesManifest.class);
+
+      watchState = new KubernetesV2WatchState(getAgentType(), m -> {
+        try {
+          return namer.deriveMoniker(m).getApp();
+        } catch (Exception e) {
+          return null;
+        }
+      });
+    }
+
+    return watchState;
+  }
+
+  /**
+   * Called once this agent is deregistered, to stop any watches backing it.
+   */
+  @Override
+  public synchronized void close() {
+    if (watchState != null) {
+      watchState.shutdown();
+    }
+  }
+
+  /**
+   * When this account caches using watches, and the watches backing this agent are healthy, only the part of the
+   * resource graph affected by watch events since the last cycle is rebuilt. The result is written without implicit
+   * evictions (see {@link WatchAwareCacheExecution}); an empty value means the caller should perform a full relist.
+   */
+  protected Optional<CacheResult> loadIncrementalData(Map<String, Object> details) {
+    if (!watchEnabled()) {
+      return Optional.empty();
+    }
+
+    KubernetesV2WatchState state = getWatchState();
+    long resyncIntervalMillis = TimeUnit.SECONDS.toMillis(credentials.getCacheWatchResyncSeconds());
+    if (state.requiresResync(primaryKinds(), namespaces, resyncIntervalMillis)) {
+      return Optional.empty();
+    }
+
+    KubernetesV2WatchState.Delta delta = state.drainChanges();
+    details.put("watchChanges", delta.getChangeCount());
+    if (delta.isEmpty()) {
+      return Optional.of(new IncrementalCacheResult(new HashMap<>(), new HashMap<>(), details));
+    }
+
+    try {
+      CacheResult result = buildCacheResult(delta.getResources());
+      Map<String, Collection<String>> evictions = new HashMap<>();
+      delta.getDeleted().forEach(m -> evictions.computeIfAbsent(m.getKind().toString(), k -> new ArrayList<>())
+          .add(Keys.infrastructure(m, accountName)));
+
+      log.info("{}: Applying {} watched changes", getAgentType(), delta.getChangeCount());
+      return Optional.of(new IncrementalCacheResult(result.getCacheResults(), evictions, details));
+    } catch (RuntimeException e) {
+      // the drained changes are lost at this point, so the next cycle has to relist
+      state.invalidate();
+      throw e;
+    }
+  }
+
+  @Override
+  public AgentExecution getAgentExecution(ProviderRegistry providerRegistry) {
+    return new WatchAwareCacheExecution(providerRegistry);
+  }
+
   protected KubernetesManifest loadPrimaryResource(KubernetesKind kind, String namespace, String name) {
     return credentials.get(kind, namespace, name);
   }
@@ -132,6 +222,11 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
     reloadNamespaces();
     Map<String, Object> details = defaultIntrospectionDetails();
 
+    Optional<CacheResult> incrementalResult = loadIncrementalData(details);
+    if (incrementalResult.isPresent()) {
+      return incrementalResult.get();
+    }
+
     try {
       Long start = System.currentTimeMillis();
       Map<KubernetesKind, List<KubernetesManifest>> primaryResourceList = loadPrimaryResourceList();
@@ -149,14 +244,22 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
 
   protected CacheResult buildCacheResult(Map<KubernetesKind, List<KubernetesManifest>> resources) {
     Map<KubernetesManifest, List<KubernetesManifest>> relationships = loadSecondaryResourceRelationships(resources);
+    Set<KubernetesKind> strippedKinds = credentials.getCachingPolicies()
+        .stream()
+        .filter(KubernetesCachingPolicy::isStripVolatileFields)
+        .map(p -> KubernetesKind.fromString(p.getKubernetesKind()))
+        .collect(Collectors.toSet());
 
-    List<CacheData> resourceData = resources.values()
+    List<KubernetesManifest> manifests = resources.values()
         .stream()
         .flatMap(Collection::stream)
-        .peek(m -> RegistryUtils.removeSensitiveKeys(propertyRegistry, accountName, m))
-        .map(rs -> {
+        .collect(Collectors.toList());
+
+    Map<String, Collection<CacheData>> entries = new KubernetesCacheResultBuilder(accountName, credentials.getListExecutor())
+        .addAll(manifests, rs -> {
+          RegistryUtils.removeSensitiveKeys(propertyRegistry, accountName, rs);
           try {
-            CacheData cacheData = KubernetesCacheDataConverter.convertAsResource(accountName, rs, relationships.get(rs));
+            CacheData cacheData = KubernetesCacheDataConverter.convertAsResource(accountName, rs, relationships.get(rs), strippedKinds.contains(rs.getKind()));
             if (credentials.getOnlySpinnakerManaged() && StringUtils.isEmpty((String) cacheData.getAttributes().get("application"))) {
               return null;
             } else {
@@ -167,29 +270,7 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
             return null;
           }
         })
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
-
-    List<CacheData> invertedRelationships = resourceData.stream()
-        .map(KubernetesCacheDataConverter::invertRelationships)
-        .flatMap(Collection::stream)
-        .collect(Collectors.toList());
-
-    resourceData.addAll(resources.values()
-        .stream()
-        .flatMap(Collection::stream)
-        .map(rs -> KubernetesCacheDataConverter.convertAsArtifact(accountName, rs))
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList()));
-
-    resourceData.addAll(invertedRelationships);
-
-    resourceData.addAll(resourceData.stream()
-      .map(rs -> KubernetesCacheDataConverter.getClusterRelationships(accountName, rs))
-      .filter(Objects::nonNull)
-      .collect(Collectors.toList()));
-
-    Map<String, Collection<CacheData>> entries = KubernetesCacheDataConverter.stratifyCacheDataByGroup(KubernetesCacheDataConverter.dedupCacheData(resourceData));
+        .build();
     KubernetesCacheDataConverter.logStratifiedCacheData(getAgentType(), entries);
 
     return new DefaultCacheResult(entries);
@@ -206,4 +287,39 @@ public abstract class KubernetesV2CachingAgent extends KubernetesCachingAgent<Ku
     });
     return result;
   }
+
+  protected static class IncrementalCacheResult extends DefaultCacheResult {
+    IncrementalCacheResult(Map<String, Collection<CacheData>> cacheResults, Map<String, Collection<String>> evictions, Map<String, Object> introspectionDetails) {
+      super(cacheResults, evictions, introspectionDetails);
+    }
+  }
+
+  protected static class WatchAwareCacheExecution extends CachingAgent.CacheExecution {
+    private final ProviderRegistry providerRegistry;
+
+    WatchAwareCacheExecution(ProviderRegistry providerRegistry) {
+      super(providerRegistry);
+      this.providerRegistry = providerRegistry;
+    }
+
+    @Override
+    public void storeAgentResult(Agent agent, CacheResult result) {
+      if (!(result instanceof IncrementalCacheResult)) {
+        super.storeAgentResult(agent, result);
+        return;
+      }
+
+      CachingAgent cachingAgent = (CachingAgent) agent;
+      ProviderCache cache = providerRegistry.getProviderCache(cachingAgent.getProviderName());
+      Set<String> authoritative = cachingAgent.getProvidedDataTypes()
+          .stream()
+          .filter(t -> t.getAuthority() == AgentDataType.Authority.AUTHORITATIVE)
+          .map(AgentDataType::getTypeName)
+          .collect(Collectors.toSet());
+
+      // Incremental update without implicit evictions
+      cache.addCacheResult(agent.getAgentType(), authoritative, result);
+      result.getEvictions().forEach(cache::evictDeletedItems);
+    }
+  }
 }
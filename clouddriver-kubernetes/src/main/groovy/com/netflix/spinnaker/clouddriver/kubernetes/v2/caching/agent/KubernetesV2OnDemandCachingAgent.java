@@ -95,6 +95,12 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
     Map<String, Object> details = defaultIntrospectionDetails();
 
     Long start = System.currentTimeMillis();
+    Optional<CacheResult> incrementalResult = loadIncrementalData(details);
+    if (incrementalResult.isPresent()) {
+      // watched changes say nothing about entries stored on demand, so every pending one of this agent is processed
+      return mergeOnDemandData(providerCache, start, onDemandKeys(providerCache), incrementalResult.get(), details);
+    }
+
     Map<KubernetesKind, List<KubernetesManifest>> primaryResource;
     try {
       primaryResource = loadPrimaryResourceList();
@@ -112,6 +118,10 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
         .map(mf -> Keys.infrastructure(mf, accountName))
         .collect(Collectors.toList());
 
+    return mergeOnDemandData(providerCache, start, primaryKeys, buildCacheResult(primaryResource), details);
+  }
+
+  private CacheResult mergeOnDemandData(ProviderCache providerCache, Long start, Collection<String> primaryKeys, CacheResult result, Map<String, Object> details) {
     List<CacheData> keepInOnDemand = new ArrayList<>();
     List<CacheData> evictFromOnDemand = new ArrayList<>();
 
@@ -130,8 +140,7 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
     // sort by increasing cache time to ensure newest entries are first
     keepInOnDemand.sort(Comparator.comparing(a -> ((Long) a.getAttributes().get(CACHE_TIME_KEY))));
 
-    // first build the cache result, then decide which entries to overwrite with on demand data
-    CacheResult result = buildCacheResult(primaryResource);
+    // the cache result is built first, then we decide which entries to overwrite with on demand data
     Map<String, Collection<CacheData>> cacheResults = result.getCacheResults();
 
     for (CacheData onDemandData : keepInOnDemand) {
@@ -157,10 +166,12 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
     }
 
     cacheResults.put(ON_DEMAND_TYPE, keepInOnDemand);
-    Map<String, Collection<String>> evictionResults = new ImmutableMap.Builder<String, Collection<String>>()
-        .put(ON_DEMAND_TYPE, evictFromOnDemand.stream().map(CacheData::getId).collect(Collectors.toList()))
-        .build();
+    Map<String, Collection<String>> evictionResults = new HashMap<>(result.getEvictions());
+    evictionResults.put(ON_DEMAND_TYPE, evictFromOnDemand.stream().map(CacheData::getId).collect(Collectors.toList()));
 
+    if (result instanceof IncrementalCacheResult) {
+      return new IncrementalCacheResult(cacheResults, evictionResults, details);
+    }
     return new DefaultCacheResult(cacheResults, evictionResults, details);
   }
 
@@ -319,22 +330,23 @@ public abstract class KubernetesV2OnDemandCachingAgent extends KubernetesV2Cachi
     return type == Manifest && cloudProvider.equals(KubernetesCloudProvider.getID());
   }
 
-  @Override
-  public Collection<Map> pendingOnDemandRequests(ProviderCache providerCache) {
+  private List<String> onDemandKeys(ProviderCache providerCache) {
     Collection<String> keys = providerCache.getIdentifiers(ON_DEMAND_TYPE);
-    List<Keys.InfrastructureCacheKey> infraKeys = keys.stream()
+    return keys.stream()
         .map(Keys::parseKey)
         .flatMap(o -> o.map(Stream::of).orElseGet(Stream::empty))
         .filter(k -> k instanceof Keys.InfrastructureCacheKey)
         .map(i -> (Keys.InfrastructureCacheKey) i)
-        .collect(Collectors.toList());
-
-    List<String> matchingKeys = infraKeys.stream()
         .filter(i -> i.getAccount().equals(getAccountName())
-            && (StringUtils.isEmpty(i.getNamespace())) || namespaces.contains(i.getNamespace())
+            && (StringUtils.isEmpty(i.getNamespace()) || namespaces.contains(i.getNamespace()))
             && primaryKinds().contains(i.getKubernetesKind()))
         .map(Keys.InfrastructureCacheKey::toString)
         .collect(Collectors.toList());
+  }
+
+  @Override
+  public Collection<Map> pendingOnDemandRequests(ProviderCache providerCache) {
+    List<String> matchingKeys = onDemandKeys(providerCache);
 
     return providerCache.getAll(ON_DEMAND_TYPE, matchingKeys).stream()
         .map(cd -> {
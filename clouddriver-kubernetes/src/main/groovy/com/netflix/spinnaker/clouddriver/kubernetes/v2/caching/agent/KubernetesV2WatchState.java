@@ -0,0 +1,311 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.agent;
+
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesWatchEvent;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory copy of the resources a caching agent is responsible for, kept current by one kubectl watch per
+ * kind/namespace. Between full relists the agent only rebuilds the part of the resource graph touched by watch
+ * events; see {@link #drainChanges()}.
+ */
+@Slf4j
+public class KubernetesV2WatchState {
+  public interface Watcher {
+    void watch(KubernetesKind kind, String namespace, Consumer<KubernetesWatchEvent> consumer);
+  }
+
+  private final String agentType;
+  private final Function<KubernetesManifest, String> applicationOf;
+  private final LongSupplier clock;
+  private final ExecutorService executor;
+
+  private final Map<String, Entry> resources = new HashMap<>();
+  private final Map<String, Entry> changed = new LinkedHashMap<>();
+  private final Map<String, Entry> deleted = new LinkedHashMap<>();
+  private final List<Future<?>> watches = new ArrayList<>();
+
+  private List<KubernetesKind> watchedKinds = Collections.emptyList();
+  private List<String> watchedNamespaces = Collections.emptyList();
+  private long lastResync;
+  private boolean invalidated = true;
+  private boolean shutdown;
+  private int generation;
+
+  public KubernetesV2WatchState(String agentType, Function<KubernetesManifest, String> applicationOf) {
+    this(agentType, applicationOf, System::currentTimeMillis,
+        Executors.newCachedThreadPool(new NamedThreadFactory(KubernetesV2WatchState.class.getSimpleName())));
+  }
+
+  KubernetesV2WatchState(String agentType, Function<KubernetesManifest, String> applicationOf, LongSupplier clock, ExecutorService executor) {
+    this.agentType = agentType;
+    this.applicationOf = applicationOf;
+    this.clock = clock;
+    this.executor = executor;
+  }
+
+  /**
+   * @return true if the agent must fall back to a full relist, either because a watch was interrupted, the set of
+   * watched kinds or namespaces changed, or the resync interval elapsed.
+   */
+  public synchronized boolean requiresResync(List<KubernetesKind> kinds, List<String> namespaces, long resyncIntervalMillis) {
+    return invalidated
+        || !new HashSet<>(watchedKinds).equals(new HashSet<>(kinds))
+        || !new HashSet<>(watchedNamespaces).equals(new HashSet<>(namespaces))
+        || clock.getAsLong() - lastResync >= resyncIntervalMillis;
+  }
+
+  /**
+   * Replaces the tracked resources with a full listing and (re)starts the watches backing them. kubectl watches start
+   * from "now", so anything changing between the relist and the watch being established is picked up by the next
+   * resync.
+   */
+  public synchronized void resync(Map<KubernetesKind, List<KubernetesManifest>> listed,
+                                  List<KubernetesKind> kinds,
+                                  List<String> namespaces,
+                                  Watcher watcher) {
+    stopWatches();
+    if (shutdown) {
+      return;
+    }
+
+    resources.clear();
+    changed.clear();
+    deleted.clear();
+    listed.values().stream()
+        .flatMap(Collection::stream)
+        .forEach(m -> resources.put(key(m), new Entry(m, applicationOf.apply(m))));
+
+    watchedKinds = new ArrayList<>(kinds);
+    watchedNamespaces = new ArrayList<>(namespaces);
+    lastResync = clock.getAsLong();
+    invalidated = false;
+
+    int watchGeneration = generation;
+    for (KubernetesKind kind : kinds) {
+      if (kind.isNamespaced()) {
+        namespaces.forEach(n -> watches.add(executor.submit(() -> runWatch(watcher, watchGeneration, kind, n))));
+      } else {
+        watches.add(executor.submit(() -> runWatch(watcher, watchGeneration, kind, "")));
+      }
+    }
+  }
+
+  /**
+   * Interrupting a watch makes the job executor destroy its kubectl process.
+   */
+  public synchronized void stopWatches() {
+    generation++;
+    watches.forEach(w -> w.cancel(true));
+    watches.clear();
+  }
+
+  /**
+   * Stops the watches for good and releases their threads; the agent relists on every cycle from then on.
+   */
+  public synchronized void shutdown() {
+    shutdown = true;
+    invalidated = true;
+    stopWatches();
+    executor.shutdownNow();
+  }
+
+  public synchronized void invalidate() {
+    invalidated = true;
+  }
+
+  synchronized void apply(KubernetesWatchEvent event) {
+    KubernetesManifest manifest = event.getObject();
+    switch (event.getType()) {
+      case ADDED:
+      case MODIFIED:
+        Entry entry = new Entry(manifest, applicationOf.apply(manifest));
+        resources.put(key(manifest), entry);
+        changed.put(key(manifest), entry);
+        deleted.remove(key(manifest));
+        break;
+      case DELETED:
+        Entry removed = resources.remove(key(manifest));
+        changed.remove(key(manifest));
+        deleted.put(key(manifest), removed != null ? removed : new Entry(manifest, applicationOf.apply(manifest)));
+        break;
+      case ERROR:
+        // typically the watch fell too far behind (410 Gone); only a relist recovers from that
+        log.warn("{}: Watch reported an error, forcing a full resync: {}", agentType, manifest);
+        invalidated = true;
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Collects the resources that need to be re-cached because of watch events received since the last call. A change
+   * to one resource can alter relationships (label selectors, owner references) of anything else in its namespace,
+   * and the cluster & application entries derived from anything else in its application, so the result is closed
+   * over both: every tracked resource sharing a namespace or an application with a changed resource is included,
+   * repeated until nothing new is pulled in.
+   */
+  public synchronized Delta drainChanges() {
+    if (changed.isEmpty() && deleted.isEmpty()) {
+      return Delta.EMPTY;
+    }
+
+    Set<String> namespaces = new HashSet<>();
+    Set<String> applications = new HashSet<>();
+    for (Entry entry : changed.values()) {
+      addNeighborhood(entry, namespaces, applications);
+    }
+
+    for (Entry entry : deleted.values()) {
+      addNeighborhood(entry, namespaces, applications);
+    }
+
+    Map<String, Entry> selected = new HashMap<>();
+    boolean grew = true;
+    while (grew) {
+      grew = false;
+      for (Map.Entry<String, Entry> resource : resources.entrySet()) {
+        Entry entry = resource.getValue();
+        if (selected.containsKey(resource.getKey()) || !inNeighborhood(entry, namespaces, applications)) {
+          continue;
+        }
+
+        selected.put(resource.getKey(), entry);
+        grew |= addNeighborhood(entry, namespaces, applications);
+      }
+    }
+
+    Map<KubernetesKind, List<KubernetesManifest>> selectedResources = selected.values()
+        .stream()
+        .map(e -> e.manifest)
+        .collect(Collectors.groupingBy(KubernetesManifest::getKind));
+
+    List<KubernetesManifest> deletedResources = deleted.values()
+        .stream()
+        .map(e -> e.manifest)
+        .collect(Collectors.toList());
+
+    int changeCount = changed.size() + deleted.size();
+    changed.clear();
+    deleted.clear();
+
+    return new Delta(changeCount, selectedResources, deletedResources);
+  }
+
+  private void runWatch(Watcher watcher, int watchGeneration, KubernetesKind kind, String namespace) {
+    try {
+      watcher.watch(kind, namespace, event -> {
+        if (!isCurrent(watchGeneration)) {
+          throw new CancellationException();
+        }
+
+        apply(event);
+      });
+      log.info("{}: Watch on {} in '{}' ended", agentType, kind, namespace);
+    } catch (CancellationException e) {
+      return;
+    } catch (Exception e) {
+      log.warn("{}: Watch on {} in '{}' failed: {}", agentType, kind, namespace, e.getMessage());
+    }
+
+    // events may have been missed between this watch ending and the next one starting
+    synchronized (this) {
+      if (generation == watchGeneration) {
+        invalidated = true;
+      }
+    }
+  }
+
+  private synchronized boolean isCurrent(int watchGeneration) {
+    return generation == watchGeneration;
+  }
+
+  private static boolean inNeighborhood(Entry entry, Set<String> namespaces, Set<String> applications) {
+    return namespaces.contains(entry.manifest.getNamespace())
+        || (StringUtils.isNotEmpty(entry.application) && applications.contains(entry.application));
+  }
+
+  private static boolean addNeighborhood(Entry entry, Set<String> namespaces, Set<String> applications) {
+    boolean grew = namespaces.add(entry.manifest.getNamespace());
+    if (StringUtils.isNotEmpty(entry.application)) {
+      grew |= applications.add(entry.application);
+    }
+
+    return grew;
+  }
+
+  private static String key(KubernetesManifest manifest) {
+    return String.join("|", manifest.getKind().toString(), manifest.getNamespace(), manifest.getName());
+  }
+
+  private static class Entry {
+    final KubernetesManifest manifest;
+    final String application;
+
+    Entry(KubernetesManifest manifest, String application) {
+      this.manifest = manifest;
+      this.application = application;
+    }
+  }
+
+  public static class Delta {
+    static final Delta EMPTY = new Delta(0, Collections.emptyMap(), Collections.emptyList());
+
+    @Getter
+    private final int changeCount;
+    @Getter
+    private final Map<KubernetesKind, List<KubernetesManifest>> resources;
+    @Getter
+    private final List<KubernetesManifest> deleted;
+
+    Delta(int changeCount, Map<KubernetesKind, List<KubernetesManifest>> resources, List<KubernetesManifest> deleted) {
+      this.changeCount = changeCount;
+      this.resources = resources;
+      this.deleted = deleted;
+    }
+
+    public boolean isEmpty() {
+      return changeCount == 0;
+    }
+  }
+}
@@ -28,6 +28,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesRes
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesResourcePropertyRegistry;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.handler.KubernetesHandler;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.handler.ModelHandler;
@@ -36,13 +37,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Component
@@ -130,6 +136,82 @@ public class KubernetesCacheUtils {
     return cleanupCollection(cache.getAll(relationshipType, keys));
   }
 
+  /**
+   * Follows a linear relationship path from `sources`, e.g. (SERVER_GROUP_MANAGERS, SERVER_GROUPS) from an application.
+   *
+   * @see #traverse(Collection, List)
+   */
+  public Map<SpinnakerKind, List<CacheData>> traverse(Collection<CacheData> sources, SpinnakerKind... path) {
+    return traverse(sources, Arrays.stream(path).map(Collections::singletonList).collect(Collectors.toList()));
+  }
+
+  /**
+   * Loads everything reached from `sources` by following `hops` in order, where each hop follows the relationships of
+   * the data loaded by the previous hop (or of the sources, for the first) to the spinnaker kinds it lists. For
+   * example [[SERVER_GROUPS], [LOAD_BALANCERS, INSTANCES]] loads a set of clusters' server groups, then those server
+   * groups' load balancers and instances.
+   *
+   * Each hop costs one cache.getAll per kubernetes kind that is actually related to; keys are deduplicated across
+   * the whole traversal, so data reached more than once (or already among the sources) is loaded once.
+   *
+   * @return the data reached for each spinnaker kind in the path, without duplicates
+   */
+  public Map<SpinnakerKind, List<CacheData>> traverse(Collection<CacheData> sources, List<List<SpinnakerKind>> hops) {
+    Map<String, CacheData> loaded = new HashMap<>();
+    Collection<CacheData> current = cleanupCollection(sources);
+    current.forEach(cd -> loaded.put(cd.getId(), cd));
+
+    Map<SpinnakerKind, List<CacheData>> result = new HashMap<>();
+    for (List<SpinnakerKind> hop : hops) {
+      // every key reached by this hop, per spinnaker kind and cache type, in the order first reached
+      Map<SpinnakerKind, Map<String, Set<String>>> reached = new LinkedHashMap<>();
+      Map<String, Set<String>> missing = new HashMap<>();
+      for (SpinnakerKind spinnakerKind : hop) {
+        Map<String, Set<String>> reachedByType = reached.computeIfAbsent(spinnakerKind, k -> new LinkedHashMap<>());
+        for (KubernetesKind kind : kindMap.translateSpinnakerKind(spinnakerKind)) {
+          String type = kind.toString();
+          for (CacheData datum : current) {
+            Collection<String> keys = datum.getRelationships() == null ? null : datum.getRelationships().get(type);
+            if (keys == null) {
+              continue;
+            }
+
+            for (String key : keys) {
+              if (key == null) {
+                continue;
+              }
+
+              reachedByType.computeIfAbsent(type, t -> new LinkedHashSet<>()).add(key);
+              if (!loaded.containsKey(key)) {
+                missing.computeIfAbsent(type, t -> new HashSet<>()).add(key);
+              }
+            }
+          }
+        }
+      }
+
+      missing.forEach((type, keys) -> cleanupCollection(cache.getAll(type, keys))
+          .forEach(cd -> loaded.put(cd.getId(), cd)));
+
+      Map<String, CacheData> next = new LinkedHashMap<>();
+      reached.forEach((spinnakerKind, reachedByType) -> {
+        List<CacheData> data = result.computeIfAbsent(spinnakerKind, k -> new ArrayList<>());
+        reachedByType.values().stream()
+            .flatMap(Collection::stream)
+            .map(loaded::get)
+            .filter(Objects::nonNull)
+            .forEach(cd -> {
+              data.add(cd);
+              next.put(cd.getId(), cd);
+            });
+      });
+
+      current = next.values();
+    }
+
+    return result;
+  }
+
   private <T> Collection<T> cleanupCollection(Collection<T> items) {
     if (items == null) {
       return new ArrayList<>();
@@ -26,6 +26,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.model.Kubern
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.model.KubernetesV2ServerGroup;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.provider.data.KubernetesV2ServerGroupCacheData;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.model.ClusterProvider;
@@ -35,6 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -142,23 +144,14 @@ public class KubernetesV2ClusterProvider implements ClusterProvider<KubernetesV2
         relatedTypes.toArray(new String[relatedTypes.size()]));
 
     return serverGroupData.map(cd -> {
-      List<CacheData> instanceData = kindMap.translateSpinnakerKind(INSTANCES)
-          .stream()
-          .map(k -> cacheUtils.loadRelationshipsFromCache(Collections.singletonList(cd), k.toString()))
-          .flatMap(Collection::stream)
-          .collect(Collectors.toList());
-
-      List<CacheData> loadBalancerData = kindMap.translateSpinnakerKind(LOAD_BALANCERS)
-          .stream()
-          .map(k -> cacheUtils.loadRelationshipsFromCache(Collections.singletonList(cd), k.toString()))
-          .flatMap(Collection::stream)
-          .collect(Collectors.toList());
+      Map<SpinnakerKind, List<CacheData>> relatedData = cacheUtils.traverse(Collections.singletonList(cd),
+          Collections.singletonList(Arrays.asList(INSTANCES, LOAD_BALANCERS)));
 
       return cacheUtils.<KubernetesV2ServerGroup>resourceModelFromCacheData(
         KubernetesV2ServerGroupCacheData.builder()
           .serverGroupData(cd)
-          .instanceData(instanceData)
-          .loadBalancerData(loadBalancerData)
+          .instanceData(relatedData.getOrDefault(INSTANCES, new ArrayList<>()))
+          .loadBalancerData(relatedData.getOrDefault(LOAD_BALANCERS, new ArrayList<>()))
           .build());
     }).orElse(null);
   }
@@ -200,23 +193,14 @@ public class KubernetesV2ClusterProvider implements ClusterProvider<KubernetesV2
 
   private Set<KubernetesV2Cluster> translateClustersWithRelationships(Collection<CacheData> clusterData) {
     // TODO(lwander) possible optimization: store lb relationships in cluster object to cut down on number of loads here.
-    List<CacheData> serverGroupData = kindMap.translateSpinnakerKind(SERVER_GROUPS)
-        .stream()
-        .map(kind -> cacheUtils.loadRelationshipsFromCache(clusterData, kind.toString()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toList());
-
-    List<CacheData> loadBalancerData = kindMap.translateSpinnakerKind(LOAD_BALANCERS)
-        .stream()
-        .map(kind -> cacheUtils.loadRelationshipsFromCache(serverGroupData, kind.toString()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toList());
-
-    List<CacheData> instanceData = kindMap.translateSpinnakerKind(INSTANCES)
-        .stream()
-        .map(kind -> cacheUtils.loadRelationshipsFromCache(serverGroupData, kind.toString()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toList());
+    Map<SpinnakerKind, List<CacheData>> relatedData = cacheUtils.traverse(clusterData, Arrays.asList(
+        Collections.singletonList(SERVER_GROUPS),
+        Arrays.asList(LOAD_BALANCERS, INSTANCES)
+    ));
+
+    List<CacheData> serverGroupData = relatedData.getOrDefault(SERVER_GROUPS, new ArrayList<>());
+    List<CacheData> loadBalancerData = relatedData.getOrDefault(LOAD_BALANCERS, new ArrayList<>());
+    List<CacheData> instanceData = relatedData.getOrDefault(INSTANCES, new ArrayList<>());
 
     Map<String, List<CacheData>> clusterToServerGroups = new HashMap<>();
     for (CacheData serverGroupDatum : serverGroupData) {
@@ -22,6 +22,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.Keys;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.model.KubernetesV2LoadBalancer;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.model.LoadBalancerProvider;
@@ -112,17 +113,9 @@ public class KubernetesV2LoadBalancerProvider implements LoadBalancerProvider<Ku
   }
 
   private Set<KubernetesV2LoadBalancer> fromLoadBalancerCacheData(List<CacheData> loadBalancerData) {
-    List<CacheData> serverGroupData = kindMap.translateSpinnakerKind(SERVER_GROUPS)
-        .stream()
-        .map(kind -> cacheUtils.loadRelationshipsFromCache(loadBalancerData, kind.toString()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toList());
-
-    List<CacheData> instanceData = kindMap.translateSpinnakerKind(INSTANCES)
-        .stream()
-        .map(kind -> cacheUtils.loadRelationshipsFromCache(serverGroupData, kind.toString()))
-        .flatMap(Collection::stream)
-        .collect(Collectors.toList());
+    Map<SpinnakerKind, List<CacheData>> relatedData = cacheUtils.traverse(loadBalancerData, SERVER_GROUPS, INSTANCES);
+    List<CacheData> serverGroupData = relatedData.getOrDefault(SERVER_GROUPS, new ArrayList<>());
+    List<CacheData> instanceData = relatedData.getOrDefault(INSTANCES, new ArrayList<>());
 
     Map<String, List<CacheData>> loadBalancerToServerGroups = cacheUtils.mapByRelationship(serverGroupData, LOAD_BALANCERS);
     Map<String, List<CacheData>> serverGroupToInstances = cacheUtils.mapByRelationship(instanceData, SERVER_GROUPS);
@@ -24,6 +24,7 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.model.Kubern
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.provider.data.KubernetesV2ServerGroupManagerCacheData;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesResourceProperties;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesResourcePropertyRegistry;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.handler.KubernetesHandler;
 import com.netflix.spinnaker.clouddriver.model.ServerGroupManagerProvider;
@@ -60,8 +61,9 @@ public class KubernetesV2ServerGroupManagerProvider implements ServerGroupManage
       return null;
     }
 
-    Collection<CacheData> serverGroupManagerData = cacheUtils.getAllRelationshipsOfSpinnakerKind(Collections.singletonList(applicationDatum), SERVER_GROUP_MANAGERS);
-    Collection<CacheData> serverGroupData = cacheUtils.getAllRelationshipsOfSpinnakerKind(serverGroupManagerData, SERVER_GROUPS);
+    Map<SpinnakerKind, List<CacheData>> relatedData = cacheUtils.traverse(Collections.singletonList(applicationDatum), SERVER_GROUP_MANAGERS, SERVER_GROUPS);
+    Collection<CacheData> serverGroupManagerData = relatedData.getOrDefault(SERVER_GROUP_MANAGERS, new ArrayList<>());
+    Collection<CacheData> serverGroupData = relatedData.getOrDefault(SERVER_GROUPS, new ArrayList<>());
 
     Map<String, List<CacheData>> managerToServerGroupMap = cacheUtils.mapByRelationship(serverGroupData, SERVER_GROUP_MANAGERS);
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * An inverted index from (namespace, label key, label value) to the manifests carrying that label, so equality-based
+ * selectors (e.g. a service's `spec.selector`) can be matched without comparing them against every manifest.
+ *
+ * A selector is resolved by starting from the smallest set of manifests matching any one of its labels and checking
+ * only those candidates against the rest, so the cost follows the most selective label rather than the namespace size.
+ */
+public class KubernetesLabelIndex {
+  private final Map<String, List<Entry>> entries = new HashMap<>();
+
+  public KubernetesLabelIndex add(String namespace, Map<String, String> labels, KubernetesManifest manifest) {
+    if (labels == null || labels.isEmpty()) {
+      return this;
+    }
+
+    Entry entry = new Entry(manifest, labels);
+    for (Map.Entry<String, String> label : labels.entrySet()) {
+      entries.computeIfAbsent(labelKey(namespace, label.getKey(), label.getValue()), k -> new ArrayList<>()).add(entry);
+    }
+
+    return this;
+  }
+
+  /**
+   * @return the manifests in the namespace whose labels include every label of the selector, in the order they were
+   * added. An empty selector matches nothing, as is the case for services.
+   */
+  public List<KubernetesManifest> select(String namespace, Map<String, String> selector) {
+    if (selector == null || selector.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    List<Entry> candidates = null;
+    for (Map.Entry<String, String> label : selector.entrySet()) {
+      List<Entry> matching = entries.getOrDefault(labelKey(namespace, label.getKey(), label.getValue()), Collections.emptyList());
+      if (candidates == null || matching.size() < candidates.size()) {
+        candidates = matching;
+      }
+
+      if (candidates.isEmpty()) {
+        return new ArrayList<>();
+      }
+    }
+
+    return candidates.stream()
+        .filter(e -> e.matches(selector))
+        .map(e -> e.manifest)
+        .collect(Collectors.toList());
+  }
+
+  private static String labelKey(String namespace, String key, String value) {
+    // Space can't be used in any of the values, so it's a safe separator.
+    return namespace + " " + key + " " + value;
+  }
+
+  private static class Entry {
+    final KubernetesManifest manifest;
+    final Map<String, String> labels;
+
+    Entry(KubernetesManifest manifest, Map<String, String> labels) {
+      this.manifest = manifest;
+      this.labels = labels;
+    }
+
+    boolean matches(Map<String, String> selector) {
+      for (Map.Entry<String, String> label : selector.entrySet()) {
+        if (!Objects.equals(label.getValue(), labels.get(label.getKey()))) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
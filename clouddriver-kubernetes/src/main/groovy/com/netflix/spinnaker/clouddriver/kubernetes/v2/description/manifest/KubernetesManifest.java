@@ -27,6 +27,7 @@ import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -39,6 +40,30 @@ public class KubernetesManifest extends HashMap<String, Object> {
     return (KubernetesManifest) super.clone();
   }
 
+  /**
+   * Unlike {@link #clone()}, the copy shares none of the nested maps and lists of this manifest, so it can be modified
+   * without affecting anyone else holding this manifest.
+   */
+  public KubernetesManifest deepCopy() {
+    KubernetesManifest copy = new KubernetesManifest();
+    forEach((k, v) -> copy.put(k, deepCopy(v)));
+    return copy;
+  }
+
+  private static Object deepCopy(Object value) {
+    if (value instanceof Map) {
+      Map<Object, Object> copy = new LinkedHashMap<>();
+      ((Map<?, ?>) value).forEach((k, v) -> copy.put(k, deepCopy(v)));
+      return copy;
+    } else if (value instanceof List) {
+      List<Object> copy = new ArrayList<>();
+      ((List<?>) value).forEach(v -> copy.add(deepCopy(v)));
+      return copy;
+    }
+
+    return value;
+  }
+
   private static <T> T getRequiredField(KubernetesManifest manifest, String field) {
     T res = (T) manifest.get(field);
     if (res == null) {
@@ -177,8 +202,7 @@ public class KubernetesManifest extends HashMap<String, Object> {
     if (!spec.containsKey("replicas")) {
       return null;
     }
-    Double replicas = (Double) spec.get("replicas");
-    return replicas;
+    return toDouble(spec.get("replicas"));
   }
 
   @JsonIgnore
@@ -270,20 +294,25 @@ public class KubernetesManifest extends HashMap<String, Object> {
 
     Object observedGenObj = status.get("observedGeneration");
 
-    if (!(observedGenObj instanceof Double)) {
-      throw new IllegalStateException("Expected status.observedGeneration to be an Double but was actually a " + observedGenObj.getClass());
+    if (!(observedGenObj instanceof Number)) {
+      throw new IllegalStateException("Expected status.observedGeneration to be a Number but was actually a " + observedGenObj.getClass());
     }
-    return (Double) observedGenObj;
+    return toDouble(observedGenObj);
   }
 
   @JsonIgnore
   public Double getGeneration() {
     Object generationObj = getMetadata().get("generation");
 
-    if (!(generationObj instanceof Double)) {
-      throw new IllegalStateException("Expected metadata.generation to be an Double but was actually a " + generationObj.getClass());
+    if (!(generationObj instanceof Number)) {
+      throw new IllegalStateException("Expected metadata.generation to be a Number but was actually a " + generationObj.getClass());
     }
-    return (Double) generationObj;
+    return toDouble(generationObj);
+  }
+
+  // manifests parsed by Gson carry Doubles, while Jackson (and the cache) hand back Integers & Longs
+  private static Double toDouble(Object number) {
+    return number == null ? null : ((Number) number).doubleValue();
   }
 
   @JsonIgnore
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps cached manifests small. Label values, image names, phases and the like repeat across every pod of a cluster,
+ * so the strings read into manifests are pooled; and fields that change on every write without describing the
+ * resource can be left out of what is cached.
+ */
+public class KubernetesManifestCompactor {
+  // long strings (embedded configs, certificates, last-applied-configuration) are rarely shared and not worth pooling
+  private static final int maxInternedLength = 128;
+
+  private static final Interner<String> strings = Interners.newWeakInterner();
+
+  private static final List<String> volatileMetadata = Arrays.asList("resourceVersion", "managedFields");
+
+  private static final List<String> volatileAnnotations = Arrays.asList(KubernetesManifestAnnotater.KUBECTL_LAST_APPLIED_CONFIGURATION);
+
+  public static String intern(String value) {
+    if (value == null || value.length() > maxInternedLength) {
+      return value;
+    }
+
+    return strings.intern(value);
+  }
+
+  /**
+   * @return a copy of the manifest without its resourceVersion, managedFields and last-applied-configuration. Only the
+   * maps along those paths are copied; everything else is shared with the input, which is left untouched.
+   */
+  public static KubernetesManifest withoutVolatileFields(KubernetesManifest manifest) {
+    Object metadataObj = manifest.get("metadata");
+    if (!(metadataObj instanceof Map)) {
+      return manifest;
+    }
+
+    Map<String, Object> metadata = new LinkedHashMap<>((Map<String, Object>) metadataObj);
+    volatileMetadata.forEach(metadata::remove);
+
+    Object annotationsObj = metadata.get("annotations");
+    if (annotationsObj instanceof Map) {
+      Map<String, Object> annotations = new LinkedHashMap<>((Map<String, Object>) annotationsObj);
+      volatileAnnotations.forEach(annotations::remove);
+      metadata.put("annotations", annotations);
+    }
+
+    KubernetesManifest result = new KubernetesManifest();
+    result.putAll(manifest);
+    result.put("metadata", metadata);
+    return result;
+  }
+}
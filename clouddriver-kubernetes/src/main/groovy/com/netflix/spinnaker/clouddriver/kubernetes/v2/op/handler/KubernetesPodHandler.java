@@ -41,8 +41,7 @@ public class KubernetesPodHandler extends KubernetesHandler {
   public KubernetesPodHandler() {
     registerReplacer(
         ArtifactReplacer.Replacer.builder()
-            .replacePath("$.spec.containers.[?( @.image == \"{%name%}\" )].image")
-            .findPath("$.spec.containers.*.image")
+            .path("$.spec.containers.*.image")
             .type(KubernetesArtifactType.DockerImage)
             .build()
     );
@@ -26,17 +26,15 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.JsonPatch;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.JsonPatch.Op;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesLabelIndex;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.model.Manifest.Status;
 import io.kubernetes.client.models.V1Service;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.netflix.spinnaker.clouddriver.kubernetes.v2.description.JsonPatch.Op.remove;
@@ -87,13 +85,13 @@ public class KubernetesServiceHandler extends KubernetesHandler implements CanLo
 
   @Override
   public void addRelationships(Map<KubernetesKind, List<KubernetesManifest>> allResources, Map<KubernetesManifest, List<KubernetesManifest>> relationshipMap) {
-    Map<String, Set<KubernetesManifest>> mapLabelToManifest = new HashMap<>();
+    KubernetesLabelIndex podTemplateLabels = new KubernetesLabelIndex();
 
     allResources.getOrDefault(REPLICA_SET, new ArrayList<>())
-        .forEach(r -> addAllReplicaSetLabels(mapLabelToManifest, r));
+        .forEach(r -> addReplicaSetLabels(podTemplateLabels, r));
 
     for (KubernetesManifest service : allResources.getOrDefault(SERVICE, new ArrayList<>())) {
-      relationshipMap.put(service, getRelatedManifests(service, mapLabelToManifest));
+      relationshipMap.put(service, podTemplateLabels.select(service.getNamespace(), getSelector(service)));
     }
   }
 
@@ -106,60 +104,9 @@ public class KubernetesServiceHandler extends KubernetesHandler implements CanLo
     }
   }
 
-  private List<KubernetesManifest> getRelatedManifests(KubernetesManifest service, Map<String, Set<KubernetesManifest>> mapLabelToManifest) {
-    return new ArrayList<>(intersectLabels(service, mapLabelToManifest));
-  }
-
-  private Set<KubernetesManifest> intersectLabels(KubernetesManifest service, Map<String, Set<KubernetesManifest>> mapLabelToManifest) {
-    Map<String, String> selector = getSelector(service);
-    if (selector == null || selector.isEmpty()) {
-      return new HashSet<>();
-    }
-
-    Set<KubernetesManifest> result = null;
-    String namespace = service.getNamespace();
-    for (Map.Entry<String, String> label : selector.entrySet())  {
-      String labelKey = podLabelKey(namespace, label);
-      Set<KubernetesManifest> manifests = mapLabelToManifest.get(labelKey);
-      manifests = manifests == null ? new HashSet<>() : manifests;
-
-      if (result == null) {
-        result = manifests;
-      } else {
-        result.retainAll(manifests);
-      }
-    }
-
-    return result;
-  }
-
-  private void addAllReplicaSetLabels(Map<String, Set<KubernetesManifest>> entries, KubernetesManifest replicaSet) {
-    String namespace = replicaSet.getNamespace();
+  private void addReplicaSetLabels(KubernetesLabelIndex index, KubernetesManifest replicaSet) {
     Map<String, String> podLabels = KubernetesReplicaSetHandler.getPodTemplateLabels(replicaSet);
-    if (podLabels == null) {
-      return;
-    }
-
-    for (Map.Entry<String, String> label : podLabels.entrySet()) {
-      String labelKey = podLabelKey(namespace, label);
-      enterManifest(entries, labelKey, KubernetesCacheDataConverter.convertToManifest(replicaSet));
-    }
-  }
-
-  private void enterManifest(Map<String, Set<KubernetesManifest>> entries, String label, KubernetesManifest manifest) {
-    Set<KubernetesManifest> pods = entries.get(label);
-    if (pods == null) {
-      pods = new HashSet<>();
-    }
-
-    pods.add(manifest);
-
-    entries.put(label, pods);
-  }
-
-  private String podLabelKey(String namespace, Map.Entry<String, String> label) {
-    // Space can't be used in any of the values, so it's a safe separator.
-    return namespace + " " + label.getKey() + " " + label.getValue();
+    index.add(replicaSet.getNamespace(), podLabels, KubernetesCacheDataConverter.convertToManifest(replicaSet));
   }
 
   @Override
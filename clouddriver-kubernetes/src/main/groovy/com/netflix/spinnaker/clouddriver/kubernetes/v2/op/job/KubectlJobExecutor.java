@@ -18,8 +18,6 @@
 package com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.stream.JsonReader;
 import com.netflix.spinnaker.clouddriver.jobs.JobExecutor;
 import com.netflix.spinnaker.clouddriver.jobs.JobRequest;
 import com.netflix.spinnaker.clouddriver.jobs.JobResult;
@@ -41,12 +39,15 @@ import org.springframework.stereotype.Component;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 @Slf4j
-public class KubectlJobExecutor {
+public class KubectlJobExecutor implements KubernetesReadExecutor {
   @Value("${kubernetes.kubectl.executable:kubectl}")
   String executable;
 
@@ -278,6 +279,7 @@ public class KubectlJobExecutor {
   }
 
 
+  @Override
   public KubernetesManifest get(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name) {
     List<String> command = kubectlNamespacedGet(credentials, Collections.singletonList(kind), namespace);
     command.add(name);
@@ -295,18 +297,19 @@ public class KubectlJobExecutor {
     }
 
     try {
-      return gson.fromJson(status.getOutput(), KubernetesManifest.class);
-    } catch (JsonSyntaxException e) {
+      return credentials.getManifestParser().readManifest(new StringReader(status.getOutput()));
+    } catch (IOException e) {
       throw new KubectlException("Failed to parse kubectl output: " + e.getMessage(), e);
     }
   }
 
+  @Override
   public List<KubernetesManifest> eventsFor(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name) {
     List<String> command = kubectlNamespacedGet(credentials, Collections.singletonList(KubernetesKind.EVENT), namespace);
     command.add("--field-selector");
     command.add(String.format("involvedObject.name=%s,involvedObject.kind=%s", name, StringUtils.capitalize(kind.toString())));
 
-    JobResult<List<KubernetesManifest>> status = jobExecutor.runJob(new JobRequest(command), parseManifestList());
+    JobResult<List<KubernetesManifest>> status = jobExecutor.runJob(new JobRequest(command), parseManifestList(credentials));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       if (status.getError().contains(NO_RESOURCE_TYPE_ERROR)) {
@@ -323,13 +326,31 @@ public class KubectlJobExecutor {
     return status.getOutput();
   }
 
+  @Override
   public List<KubernetesManifest> list(KubernetesV2Credentials credentials, List<KubernetesKind> kinds, String namespace, KubernetesSelectorList selectors) {
     List<String> command = kubectlNamespacedGet(credentials, kinds, namespace);
+    return list(credentials, command, kinds, namespace, selectors);
+  }
+
+  @Override
+  public List<KubernetesManifest> listAllNamespaces(KubernetesV2Credentials credentials, List<KubernetesKind> kinds, KubernetesSelectorList selectors) {
+    List<String> command = kubectlAuthPrefix(credentials);
+    command.add("-o");
+    command.add("json");
+
+    command.add("get");
+    command.add(String.join(",", kinds.stream().map(KubernetesKind::toString).collect(Collectors.toList())));
+    command.add("--all-namespaces");
+
+    return list(credentials, command, kinds, "all namespaces", selectors);
+  }
+
+  private List<KubernetesManifest> list(KubernetesV2Credentials credentials, List<String> command, List<KubernetesKind> kinds, String namespace, KubernetesSelectorList selectors) {
     if (selectors.isNotEmpty()) {
       command.add("-l=" + selectors.toString());
     }
 
-    JobResult<List<KubernetesManifest>> status = jobExecutor.runJob(new JobRequest(command), parseManifestList());
+    JobResult<List<KubernetesManifest>> status = jobExecutor.runJob(new JobRequest(command), parseManifestList(credentials));
 
     if (status.getResult() != JobResult.Result.SUCCESS) {
       if (status.getError().contains(NO_RESOURCE_TYPE_ERROR)) {
@@ -346,6 +367,29 @@ public class KubectlJobExecutor {
     return status.getOutput();
   }
 
+  /**
+   * Streams changes to the given kind in a namespace until kubectl exits. Watches are bounded by the job executor's
+   * timeout, so callers are expected to relist and re-establish the watch once this returns. kubectl cannot resume a
+   * watch from a resourceVersion, which is why every return (normal or not) should be treated as a gap in the stream.
+   */
+  public Void watch(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, Consumer<KubernetesWatchEvent> consumer) {
+    List<String> command = kubectlNamespacedGet(credentials, Collections.singletonList(kind), namespace);
+    command.add("--watch-only");
+    command.add("--output-watch-events");
+
+    JobResult<Void> status = jobExecutor.runJob(new JobRequest(command), parseWatchEvents(credentials, consumer));
+
+    if (status.getResult() != JobResult.Result.SUCCESS && !status.isKilled()) {
+      if (status.getError().contains(NO_RESOURCE_TYPE_ERROR)) {
+        throw new NoResourceTypeException(status.getError());
+      } else {
+        throw new KubectlException("Failed to watch " + kind + " in " + namespace + ": " + status.getError());
+      }
+    }
+
+    return null;
+  }
+
   public Void deploy(KubernetesV2Credentials credentials, KubernetesManifest manifest) {
     List<String> command = kubectlAuthPrefix(credentials);
 
@@ -451,7 +495,7 @@ public class KubectlJobExecutor {
     return command;
   }
 
-  private String getOAuthToken(KubernetesV2Credentials credentials) {
+  String getOAuthToken(KubernetesV2Credentials credentials) {
     List<String> command = new ArrayList<>();
     command.add(oAuthExecutable);
     command.add("fetch");
@@ -467,6 +511,7 @@ public class KubectlJobExecutor {
     return status.getOutput();
   }
 
+  @Override
   public Collection<KubernetesPodMetric> topPod(KubernetesV2Credentials credentials, String namespace) {
     List<String> command = kubectlNamespacedAuthPrefix(credentials, namespace);
     command.add("top");
@@ -581,26 +626,15 @@ public class KubectlJobExecutor {
     return null;
   }
 
-  private ReaderConsumer<List<KubernetesManifest>> parseManifestList() {
+  private ReaderConsumer<List<KubernetesManifest>> parseManifestList(KubernetesV2Credentials credentials) {
+    // kubectl fills in the kind of every item, so omissions are resolved per item
+    return (BufferedReader r) -> credentials.getManifestParser().readList(r, null);
+  }
+
+  private ReaderConsumer<Void> parseWatchEvents(KubernetesV2Credentials credentials, Consumer<KubernetesWatchEvent> consumer) {
     return (BufferedReader r) -> {
-      try (JsonReader reader = new JsonReader(r)) {
-        List<KubernetesManifest> manifestList = new ArrayList<>();
-        reader.beginObject();
-        while (reader.hasNext()) {
-          if (reader.nextName().equals("items")) {
-            reader.beginArray();
-            while (reader.hasNext()) {
-              KubernetesManifest manifest = gson.fromJson(reader, KubernetesManifest.class);
-              manifestList.add(manifest);
-            }
-            reader.endArray();
-          } else {
-            reader.skipValue();
-          }
-        }
-        reader.endObject();
-        return manifestList;
-      }
+      credentials.getManifestParser().readWatchEvents(r, consumer);
+      return null;
     };
   }
 
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job;
+
+import com.google.common.base.Suppliers;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesApiClientConfig;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesPodMetric;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesPodMetric.ContainerMetric;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesSelectorList;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials;
+import com.squareup.okhttp.HttpUrl;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import io.kubernetes.client.ApiClient;
+import io.kubernetes.client.Pair;
+import io.kubernetes.client.auth.Authentication;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serves the read-only calls of accounts configured with `httpReadCalls` straight from the API server, instead of
+ * forking a kubectl process per call. Each account gets one {@link ApiClient} built from the same kubeconfig (or
+ * service account) kubectl would use, so calls share OkHttp's pooled keep-alive connections (HTTP/2 where the server
+ * and JVM negotiate it) rather than paying for process startup, kubeconfig parsing and a TLS handshake every time.
+ *
+ * Kinds are mapped to REST paths using the API server's discovery documents, refreshed periodically and whenever an
+ * unknown kind is requested (a kind the server still doesn't have is not looked up again until discovery expires).
+ * List responses are parsed as they stream in.
+ */
+@Component
+@Slf4j
+public class KubernetesHttpExecutor implements KubernetesReadExecutor {
+  // how long the server's API discovery documents are trusted before newly installed kinds are looked up again
+  @Value("${kubernetes.http.discoveryExpirySeconds:300}")
+  int discoveryExpirySeconds = 300;
+
+  private final static int oAuthTokenExpirySeconds = 300;
+
+  private final static String METRICS_PATH = "/apis/metrics.k8s.io/v1beta1";
+
+  private static final Map<String, BigDecimal> QUANTITY_SUFFIXES = new LinkedHashMap<>();
+
+  static {
+    QUANTITY_SUFFIXES.put("Ki", BigDecimal.valueOf(1L << 10));
+    QUANTITY_SUFFIXES.put("Mi", BigDecimal.valueOf(1L << 20));
+    QUANTITY_SUFFIXES.put("Gi", BigDecimal.valueOf(1L << 30));
+    QUANTITY_SUFFIXES.put("Ti", BigDecimal.valueOf(1L << 40));
+    QUANTITY_SUFFIXES.put("Pi", BigDecimal.valueOf(1L << 50));
+    QUANTITY_SUFFIXES.put("Ei", BigDecimal.valueOf(1L << 60));
+    QUANTITY_SUFFIXES.put("n", new BigDecimal("1e-9"));
+    QUANTITY_SUFFIXES.put("u", new BigDecimal("1e-6"));
+    QUANTITY_SUFFIXES.put("m", new BigDecimal("1e-3"));
+    QUANTITY_SUFFIXES.put("k", new BigDecimal("1e3"));
+    QUANTITY_SUFFIXES.put("M", new BigDecimal("1e6"));
+    QUANTITY_SUFFIXES.put("G", new BigDecimal("1e9"));
+    QUANTITY_SUFFIXES.put("T", new BigDecimal("1e12"));
+    QUANTITY_SUFFIXES.put("P", new BigDecimal("1e15"));
+    QUANTITY_SUFFIXES.put("E", new BigDecimal("1e18"));
+  }
+
+  private final KubectlJobExecutor kubectlJobExecutor;
+
+  private final Gson gson = new Gson();
+
+  // keyed by account name, and replaced when an account's credentials are rebuilt, so a refreshed account doesn't keep
+  // the previous credentials (and their connection pool) alive
+  private final Map<String, AccountClient> clients = new HashMap<>();
+
+  @Autowired
+  KubernetesHttpExecutor(KubectlJobExecutor kubectlJobExecutor) {
+    this.kubectlJobExecutor = kubectlJobExecutor;
+  }
+
+  @Override
+  public KubernetesManifest get(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name) {
+    AccountClient client = client(credentials);
+    ApiResource resource = client.resolve(kind);
+
+    return client.get(resource.path(namespace(credentials, resource, namespace), name), Collections.emptyMap(), reader -> {
+      KubernetesManifest manifest = credentials.getManifestParser().readManifest(reader);
+      return manifest == null ? null : resource.fillTypeMeta(manifest);
+    }).orElse(null);
+  }
+
+  @Override
+  public List<KubernetesManifest> list(KubernetesV2Credentials credentials, List<KubernetesKind> kinds, String namespace, KubernetesSelectorList selectors) {
+    AccountClient client = client(credentials);
+    Map<String, String> query = new HashMap<>();
+    if (selectors.isNotEmpty()) {
+      query.put("labelSelector", selectors.toString());
+    }
+
+    List<KubernetesManifest> result = new ArrayList<>();
+    for (KubernetesKind kind : kinds) {
+      ApiResource resource = client.resolve(kind);
+      client.get(resource.path(namespace(credentials, resource, namespace), null), query, reader -> parseItems(credentials, reader, kind, resource, result));
+    }
+
+    return result;
+  }
+
+  @Override
+  public List<KubernetesManifest> listAllNamespaces(KubernetesV2Credentials credentials, List<KubernetesKind> kinds, KubernetesSelectorList selectors) {
+    AccountClient client = client(credentials);
+    Map<String, String> query = new HashMap<>();
+    if (selectors.isNotEmpty()) {
+      query.put("labelSelector", selectors.toString());
+    }
+
+    List<KubernetesManifest> result = new ArrayList<>();
+    for (KubernetesKind kind : kinds) {
+      ApiResource resource = client.resolve(kind);
+      // omitting the namespace segment lists namespaced kinds across all namespaces
+      client.get(resource.path(null, null), query, reader -> parseItems(credentials, reader, kind, resource, result));
+    }
+
+    return result;
+  }
+
+  @Override
+  public List<KubernetesManifest> eventsFor(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name) {
+    AccountClient client = client(credentials);
+    ApiResource resource = client.resolve(KubernetesKind.EVENT);
+    Map<String, String> query = Collections.singletonMap("fieldSelector",
+        String.format("involvedObject.name=%s,involvedObject.kind=%s", name, StringUtils.capitalize(kind.toString())));
+
+    List<KubernetesManifest> result = new ArrayList<>();
+    client.get(resource.path(namespace(credentials, resource, namespace), null), query, reader -> parseItems(credentials, reader, KubernetesKind.EVENT, resource, result));
+    return result;
+  }
+
+  @Override
+  public Collection<KubernetesPodMetric> topPod(KubernetesV2Credentials credentials, String namespace) {
+    AccountClient client = client(credentials);
+    if (StringUtils.isEmpty(namespace)) {
+      namespace = credentials.getDefaultNamespace();
+    }
+
+    Optional<PodMetricsList> metrics = client.get(METRICS_PATH + "/namespaces/" + namespace + "/pods", Collections.emptyMap(),
+        reader -> gson.fromJson(reader, PodMetricsList.class));
+
+    if (!metrics.isPresent() || metrics.get().items == null) {
+      return new ArrayList<>();
+    }
+
+    // match the column names and units reported by `kubectl top po --containers`
+    List<KubernetesPodMetric> result = new ArrayList<>();
+    for (PodMetrics pod : metrics.get().items) {
+      List<ContainerMetric> containerMetrics = new ArrayList<>();
+      for (ContainerMetrics container : Optional.ofNullable(pod.containers).orElse(Collections.emptyList())) {
+        Map<String, String> usage = Optional.ofNullable(container.usage).orElse(Collections.emptyMap());
+        Map<String, String> values = new HashMap<>();
+        values.put("CPU(cores)", toMillicores(usage.get("cpu")));
+        values.put("MEMORY(bytes)", toMebibytes(usage.get("memory")));
+
+        containerMetrics.add(ContainerMetric.builder()
+            .containerName(container.name)
+            .metrics(values)
+            .build());
+      }
+
+      result.add(KubernetesPodMetric.builder()
+          .podName(pod.metadata == null ? null : (String) pod.metadata.get("name"))
+          .containerMetrics(containerMetrics)
+          .build());
+    }
+
+    return result;
+  }
+
+  /**
+   * Builds the API client for an account. Visible so the connection can be pointed elsewhere in tests.
+   */
+  protected ApiClient apiClient(KubernetesV2Credentials credentials) throws Exception {
+    return new KubernetesApiClientConfig(credentials.getKubeconfigFile(),
+        credentials.getContext(),
+        null,
+        null,
+        null,
+        credentials.isServiceAccount()).getApiCient();
+  }
+
+  /**
+   * Drops the client built for these credentials, once their account is removed or replaced.
+   */
+  public void evict(KubernetesV2Credentials credentials) {
+    synchronized (clients) {
+      AccountClient client = clients.get(credentials.getAccountName());
+      if (client != null && client.credentials == credentials) {
+        clients.remove(credentials.getAccountName());
+      }
+    }
+  }
+
+  private AccountClient client(KubernetesV2Credentials credentials) {
+    synchronized (clients) {
+      AccountClient client = clients.get(credentials.getAccountName());
+      if (client == null || client.credentials != credentials) {
+        try {
+          client = new AccountClient(credentials, apiClient(credentials));
+        } catch (Exception e) {
+          throw new KubectlJobExecutor.KubectlException("Unable to build an API client: " + e.getMessage(), e);
+        }
+        clients.put(credentials.getAccountName(), client);
+      }
+
+      return client;
+    }
+  }
+
+  private static String namespace(KubernetesV2Credentials credentials, ApiResource resource, String namespace) {
+    if (!resource.namespaced) {
+      return null;
+    }
+
+    return StringUtils.isEmpty(namespace) ? credentials.getDefaultNamespace() : namespace;
+  }
+
+  private static Void parseItems(KubernetesV2Credentials credentials, Reader reader, KubernetesKind kind, ApiResource resource, List<KubernetesManifest> result) throws IOException {
+    // items are returned without their kind, so the omissions to apply are picked from the kind being listed
+    for (KubernetesManifest manifest : credentials.getManifestParser().readList(reader, kind)) {
+      result.add(resource.fillTypeMeta(manifest));
+    }
+
+    return null;
+  }
+
+  static String toMillicores(String quantity) {
+    BigDecimal value = parseQuantity(quantity);
+    return value == null ? "" : value.movePointRight(3).setScale(0, RoundingMode.CEILING).toPlainString() + "m";
+  }
+
+  static String toMebibytes(String quantity) {
+    BigDecimal value = parseQuantity(quantity);
+    return value == null ? "" : value.divide(BigDecimal.valueOf(1024L * 1024L), 0, RoundingMode.HALF_UP).toPlainString() + "Mi";
+  }
+
+  static BigDecimal parseQuantity(String quantity) {
+    if (StringUtils.isEmpty(quantity)) {
+      return null;
+    }
+
+    try {
+      for (Map.Entry<String, BigDecimal> suffix : QUANTITY_SUFFIXES.entrySet()) {
+        if (quantity.endsWith(suffix.getKey())) {
+          String number = quantity.substring(0, quantity.length() - suffix.getKey().length());
+          return new BigDecimal(number).multiply(suffix.getValue());
+        }
+      }
+
+      return new BigDecimal(quantity);
+    } catch (NumberFormatException e) {
+      log.warn("Unable to parse quantity '{}'", quantity);
+      return null;
+    }
+  }
+
+  private interface ResponseParser<T> {
+    T parse(Reader reader) throws IOException;
+  }
+
+  private class AccountClient {
+    private final KubernetesV2Credentials credentials;
+    private final ApiClient apiClient;
+    private final OkHttpClient httpClient;
+    private final com.google.common.base.Supplier<Map<String, List<ApiResource>>> discovery;
+    private final Supplier<String> oAuthToken;
+    // kinds the server didn't have when last asked, so unknown kinds don't trigger a full discovery on every call
+    private final Cache<KubernetesKind, Boolean> unknownKinds;
+
+    AccountClient(KubernetesV2Credentials credentials, ApiClient apiClient) {
+      this.credentials = credentials;
+      this.apiClient = apiClient;
+      this.httpClient = apiClient.getHttpClient();
+      this.discovery = Suppliers.memoizeWithExpiration(this::discover, discoveryExpirySeconds, TimeUnit.SECONDS);
+      this.oAuthToken = StringUtils.isNotEmpty(credentials.getOAuthServiceAccount()) && !credentials.isServiceAccount()
+          ? Suppliers.memoizeWithExpiration(() -> kubectlJobExecutor.getOAuthToken(credentials), oAuthTokenExpirySeconds, TimeUnit.SECONDS)
+          : () -> null;
+      this.unknownKinds = CacheBuilder.newBuilder()
+          .expireAfterWrite(discoveryExpirySeconds, TimeUnit.SECONDS)
+          .build();
+    }
+
+    ApiResource resolve(KubernetesKind kind) {
+      Optional<ApiResource> resource = lookup(discovery.get(), kind);
+      if (!resource.isPresent() && unknownKinds.getIfPresent(kind) == null) {
+        // the kind may have been registered (e.g. a new CRD) since discovery last ran
+        resource = lookup(discover(), kind);
+        if (!resource.isPresent()) {
+          unknownKinds.put(kind, true);
+        }
+      }
+
+      return resource.orElseThrow(() -> new KubectlJobExecutor.NoResourceTypeException(
+          "the server doesn't have a resource type \"" + kind + "\""));
+    }
+
+    private Optional<ApiResource> lookup(Map<String, List<ApiResource>> resources, KubernetesKind kind) {
+      String[] parts = StringUtils.split(kind.toString(), ".", 2);
+      List<ApiResource> candidates = resources.getOrDefault(parts[0].toLowerCase(), Collections.emptyList());
+      if (parts.length == 2) {
+        return candidates.stream().filter(r -> r.group.equals(parts[1])).findFirst();
+      }
+
+      // native kinds carry no group; take the first group the server advertises, as kubectl does
+      return candidates.stream().findFirst();
+    }
+
+    private Map<String, List<ApiResource>> discover() {
+      Map<String, List<ApiResource>> result = new LinkedHashMap<>();
+      get("/api", Collections.emptyMap(), reader -> gson.<ApiVersions>fromJson(reader, ApiVersions.class))
+          .ifPresent(versions -> versions.versions.stream().findFirst().ifPresent(v -> addResources(result, "", v)));
+
+      get("/apis", Collections.emptyMap(), reader -> gson.<ApiGroupList>fromJson(reader, ApiGroupList.class))
+          .ifPresent(groups -> groups.groups.stream()
+              .filter(g -> g.preferredVersion != null)
+              .forEach(g -> addResources(result, g.name, g.preferredVersion.groupVersion)));
+
+      return result;
+    }
+
+    private void addResources(Map<String, List<ApiResource>> result, String group, String groupVersion) {
+      String prefix = StringUtils.isEmpty(group) ? "/api/" + groupVersion : "/apis/" + groupVersion;
+      try {
+        get(prefix, Collections.emptyMap(), reader -> gson.<ApiResourceList>fromJson(reader, ApiResourceList.class))
+            .ifPresent(list -> list.resources.stream()
+                // skip subresources such as pods/log
+                .filter(r -> !r.name.contains("/"))
+                .forEach(r -> result.computeIfAbsent(r.kind.toLowerCase(), k -> new ArrayList<>())
+                    .add(new ApiResource(group, groupVersion, prefix, r.name, r.kind, r.namespaced))));
+      } catch (KubectlJobExecutor.KubectlException e) {
+        // aggregated APIs (e.g. metrics) can be unavailable without affecting the rest of discovery
+        log.warn("Unable to discover resources in {}: {}", groupVersion, e.getMessage());
+      }
+    }
+
+    <T> Optional<T> get(String path, Map<String, String> query, ResponseParser<T> parser) {
+      HttpUrl.Builder url = HttpUrl.parse(apiClient.getBasePath() + path).newBuilder();
+      query.forEach(url::addQueryParameter);
+
+      List<Pair> authQuery = new ArrayList<>();
+      Map<String, String> headers = new HashMap<>();
+      for (Authentication authentication : apiClient.getAuthentications().values()) {
+        authentication.applyToParams(authQuery, headers);
+      }
+      authQuery.forEach(p -> url.addQueryParameter(p.getName(), p.getValue()));
+
+      String token = oAuthToken.get();
+      if (token != null) {
+        headers.put("Authorization", "Bearer " + token);
+      }
+
+      Request.Builder request = new Request.Builder().url(url.build()).get();
+      headers.forEach(request::header);
+
+      Response response;
+      try {
+        response = httpClient.newCall(request.build()).execute();
+      } catch (IOException e) {
+        throw new KubectlJobExecutor.KubectlException("Failed to read " + path + ": " + e.getMessage(), e);
+      }
+
+      try (Reader body = response.body().charStream()) {
+        if (response.code() == 404) {
+          return Optional.empty();
+        } else if (!response.isSuccessful()) {
+          throw new KubectlJobExecutor.KubectlException("Failed to read " + path + " (" + response.code() + "): " + readFully(body));
+        }
+
+        return Optional.ofNullable(parser.parse(body));
+      } catch (IOException | JsonSyntaxException e) {
+        throw new KubectlJobExecutor.KubectlException("Failed to parse response from " + path + ": " + e.getMessage(), e);
+      }
+    }
+
+    private String readFully(Reader reader) throws IOException {
+      StringBuilder result = new StringBuilder();
+      char[] buffer = new char[4096];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        result.append(buffer, 0, read);
+      }
+      return result.toString();
+    }
+  }
+
+  private static class ApiResource {
+    final String group;
+    final String groupVersion;
+    final String prefix;
+    final String plural;
+    final String kind;
+    final boolean namespaced;
+
+    ApiResource(String group, String groupVersion, String prefix, String plural, String kind, boolean namespaced) {
+      this.group = group;
+      this.groupVersion = groupVersion;
+      this.prefix = prefix;
+      this.plural = plural;
+      this.kind = kind;
+      this.namespaced = namespaced;
+    }
+
+    String path(String namespace, String name) {
+      StringBuilder path = new StringBuilder(prefix);
+      if (StringUtils.isNotEmpty(namespace)) {
+        path.append("/namespaces/").append(namespace);
+      }
+
+      path.append('/').append(plural);
+      if (StringUtils.isNotEmpty(name)) {
+        path.append('/').append(name);
+      }
+
+      return path.toString();
+    }
+
+    // list items are returned without kind & apiVersion, which kubectl fills in and the caching agents rely on
+    KubernetesManifest fillTypeMeta(KubernetesManifest manifest) {
+      manifest.putIfAbsent("kind", kind);
+      manifest.putIfAbsent("apiVersion", groupVersion);
+      return manifest;
+    }
+  }
+
+  private static class ApiVersions {
+    List<String> versions = new ArrayList<>();
+  }
+
+  private static class ApiGroupList {
+    List<ApiGroup> groups = new ArrayList<>();
+  }
+
+  private static class ApiGroup {
+    String name;
+    GroupVersion preferredVersion;
+  }
+
+  private static class GroupVersion {
+    String groupVersion;
+  }
+
+  private static class ApiResourceList {
+    List<ApiResourceEntry> resources = new ArrayList<>();
+  }
+
+  private static class ApiResourceEntry {
+    String name;
+    String kind;
+    boolean namespaced;
+  }
+
+  private static class PodMetricsList {
+    List<PodMetrics> items;
+  }
+
+  private static class PodMetrics {
+    Map<String, Object> metadata;
+    List<ContainerMetrics> containers;
+  }
+
+  private static class ContainerMetrics {
+    String name;
+    Map<String, String> usage;
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.netflix.spinnaker.clouddriver.kubernetes.config.KubernetesCachingPolicy;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifestCompactor;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads manifests straight off a kubectl or API server response in a single pass, producing the same maps (key order,
+ * Integer/Long/Double numbers) Jackson would, so nothing downstream has to convert them again.
+ *
+ * Listed and watched resources only feed the cache, so those skip `metadata.managedFields` along with any fields the
+ * account's caching policies omit for that kind. Single reads ({@link #readManifest(Reader)}) are kept intact.
+ */
+public class KubernetesManifestParser {
+  // field names are interned by the factory and short values by the compactor, so repeated strings share one copy
+  private static final JsonFactory factory = new JsonFactory();
+
+  private static final List<String> alwaysOmitted = Collections.singletonList("metadata.managedFields");
+
+  private final Omission defaultOmission;
+  // keyed by lower-cased kind name, which is all a manifest's `kind` field carries
+  private final Map<String, Omission> omissions;
+
+  public KubernetesManifestParser(List<KubernetesCachingPolicy> cachingPolicies) {
+    this.defaultOmission = Omission.of(alwaysOmitted);
+    this.omissions = new HashMap<>();
+
+    for (KubernetesCachingPolicy policy : cachingPolicies) {
+      List<String> omitFields = policy.getOmitFields();
+      if (omitFields == null || omitFields.isEmpty()) {
+        continue;
+      }
+
+      List<String> paths = new ArrayList<>(alwaysOmitted);
+      paths.addAll(omitFields);
+      omissions.put(kindName(policy.getKubernetesKind()), Omission.of(paths));
+    }
+  }
+
+  public KubernetesManifest readManifest(Reader reader) throws IOException {
+    try (JsonParser parser = factory.createParser(reader)) {
+      if (parser.nextToken() == null) {
+        return null;
+      }
+
+      return readManifest(parser, Omission.NONE);
+    }
+  }
+
+  /**
+   * Reads the `items` of a list response.
+   *
+   * @param kind the kind being listed if known up front; otherwise omissions are resolved per item from its `kind`.
+   */
+  public List<KubernetesManifest> readList(Reader reader, KubernetesKind kind) throws IOException {
+    List<KubernetesManifest> result = new ArrayList<>();
+    try (JsonParser parser = factory.createParser(reader)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if (field.equals("items") && token == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            result.add(readManifest(parser, kind == null ? null : omissionFor(kind.toString())));
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the stream of events written by `kubectl get --watch --output-watch-events -o json`, one JSON document per
+   * event with no enclosing array, until the stream ends.
+   */
+  public void readWatchEvents(Reader reader, Consumer<KubernetesWatchEvent> consumer) throws IOException {
+    try (JsonParser parser = factory.createParser(reader)) {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        expect(parser, token, JsonToken.START_OBJECT);
+
+        KubernetesWatchEvent.Type type = null;
+        KubernetesManifest object = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          token = parser.nextToken();
+          if (field.equals("type") && token == JsonToken.VALUE_STRING) {
+            type = eventType(parser.getText());
+          } else if (field.equals("object") && token == JsonToken.START_OBJECT) {
+            object = readManifest(parser, null);
+          } else {
+            parser.skipChildren();
+          }
+        }
+
+        if (type != null) {
+          consumer.accept(new KubernetesWatchEvent(type, object));
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the object the parser is positioned at. When the omission isn't known yet it is picked as soon as the
+   * manifest's `kind` is read (kubectl and the API server both emit it ahead of spec & status), and anything read
+   * before that is pruned afterwards.
+   */
+  private KubernetesManifest readManifest(JsonParser parser, Omission omission) throws IOException {
+    KubernetesManifest manifest = new KubernetesManifest();
+    boolean resolved = omission != null || omissions.isEmpty();
+    Omission current = omission != null ? omission : defaultOmission;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      Omission child = current.child(field);
+      if (child == Omission.ALL) {
+        parser.skipChildren();
+        continue;
+      }
+
+      Object value = readValue(parser, token, child);
+      manifest.put(field, value);
+
+      if (!resolved && field.equals("kind") && value instanceof String) {
+        current = omissionFor((String) value);
+        resolved = true;
+      }
+    }
+
+    if (omission == null && current != defaultOmission) {
+      current.prune(manifest);
+    }
+
+    return manifest;
+  }
+
+  private Map<String, Object> readObject(JsonParser parser, Omission omission) throws IOException {
+    Map<String, Object> result = new LinkedHashMap<>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      Omission child = omission.child(field);
+      if (child == Omission.ALL) {
+        parser.skipChildren();
+        continue;
+      }
+
+      result.put(field, readValue(parser, token, child));
+    }
+
+    return result;
+  }
+
+  private List<Object> readArray(JsonParser parser, Omission omission) throws IOException {
+    List<Object> result = new ArrayList<>();
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      result.add(readValue(parser, token, omission));
+    }
+
+    return result;
+  }
+
+  private Object readValue(JsonParser parser, JsonToken token, Omission omission) throws IOException {
+    switch (token) {
+      case START_OBJECT:
+        return readObject(parser, omission);
+      case START_ARRAY:
+        // paths name object fields only, so an omission applies to every element of an array
+        return readArray(parser, omission);
+      case VALUE_STRING:
+        return KubernetesManifestCompactor.intern(parser.getText());
+      case VALUE_NUMBER_INT:
+        // Integer, Long or BigInteger depending on magnitude, as Jackson's untyped deserializer does
+        return parser.getNumberValue();
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDoubleValue();
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        return null;
+      default:
+        throw new JsonParseException(parser, "Unexpected token " + token);
+    }
+  }
+
+  private Omission omissionFor(String kind) {
+    return omissions.getOrDefault(kindName(kind), defaultOmission);
+  }
+
+  // drops the api group of a custom resource, e.g. "crontab.stable.example.com" -> "crontab"
+  private static String kindName(String kind) {
+    return StringUtils.substringBefore(kind, ".").toLowerCase();
+  }
+
+  private static KubernetesWatchEvent.Type eventType(String type) {
+    try {
+      return KubernetesWatchEvent.Type.valueOf(type);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+    if (actual != expected) {
+      throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+    }
+  }
+
+  /**
+   * A tree of dotted field paths (e.g. `status` or `metadata.managedFields`) to leave out of parsed manifests.
+   */
+  private static class Omission {
+    static final Omission NONE = new Omission();
+    static final Omission ALL = new Omission();
+
+    private final Map<String, Omission> children = new HashMap<>();
+
+    static Omission of(Collection<String> paths) {
+      Omission root = new Omission();
+      for (String path : paths) {
+        if (StringUtils.isEmpty(path)) {
+          continue;
+        }
+
+        Omission node = root;
+        String[] fields = path.split("\\.");
+        for (int i = 0; i < fields.length && node != ALL; i++) {
+          if (i == fields.length - 1) {
+            node.children.put(fields[i], ALL);
+          } else {
+            node = node.children.computeIfAbsent(fields[i], f -> new Omission());
+          }
+        }
+      }
+
+      return root;
+    }
+
+    Omission child(String field) {
+      if (children.isEmpty()) {
+        return NONE;
+      }
+
+      return children.getOrDefault(field, NONE);
+    }
+
+    void prune(Map<String, Object> object) {
+      for (Map.Entry<String, Omission> child : children.entrySet()) {
+        if (child.getValue() == ALL) {
+          object.remove(child.getKey());
+        } else {
+          child.getValue().prune(object.get(child.getKey()));
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void prune(Object value) {
+      if (value instanceof Map) {
+        prune((Map<String, Object>) value);
+      } else if (value instanceof List) {
+        ((List<Object>) value).forEach(this::prune);
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job;
+
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesPodMetric;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesSelectorList;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The read-only calls made against an account's cluster, implemented either by forking kubectl or by talking to the
+ * API server directly.
+ *
+ * Implementations signal failures with {@link KubectlJobExecutor.KubectlException}, and unknown kinds with
+ * {@link KubectlJobExecutor.NoResourceTypeException}, regardless of how the call was made.
+ */
+public interface KubernetesReadExecutor {
+  KubernetesManifest get(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name);
+
+  List<KubernetesManifest> list(KubernetesV2Credentials credentials, List<KubernetesKind> kinds, String namespace, KubernetesSelectorList selectors);
+
+  /**
+   * Lists the given kinds across every namespace the account's credentials can see, in one call where possible.
+   */
+  List<KubernetesManifest> listAllNamespaces(KubernetesV2Credentials credentials, List<KubernetesKind> kinds, KubernetesSelectorList selectors);
+
+  List<KubernetesManifest> eventsFor(KubernetesV2Credentials credentials, KubernetesKind kind, String namespace, String name);
+
+  Collection<KubernetesPodMetric> topPod(KubernetesV2Credentials credentials, String namespace);
+}
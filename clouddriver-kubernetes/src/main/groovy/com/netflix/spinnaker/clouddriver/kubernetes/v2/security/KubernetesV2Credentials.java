@@ -19,8 +19,13 @@ package com.netflix.spinnaker.clouddriver.kubernetes.v2.security;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.netflix.spectator.api.Clock;
 import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
 import com.netflix.spinnaker.clouddriver.kubernetes.config.CustomKubernetesResource;
 import com.netflix.spinnaker.clouddriver.kubernetes.config.KubernetesCachingPolicy;
 import com.netflix.spinnaker.clouddriver.kubernetes.security.KubernetesCredentials;
@@ -32,6 +37,10 @@ import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.Kube
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor;
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor.KubectlException;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesHttpExecutor;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesManifestParser;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesReadExecutor;
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesWatchEvent;
 import io.kubernetes.client.models.V1DeleteOptions;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -44,13 +53,21 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 public class KubernetesV2Credentials implements KubernetesCredentials {
   private final KubectlJobExecutor jobExecutor;
+  private final KubernetesHttpExecutor httpExecutor;
   private final Registry registry;
   private final Clock clock;
   private final String accountName;
@@ -66,14 +83,36 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
   private boolean metrics;
   @Getter
   private final List<KubernetesCachingPolicy> cachingPolicies;
+  @JsonIgnore
+  @Getter
+  private final KubernetesManifestParser manifestParser;
   private final boolean onlySpinnakerManaged;
   @Getter
   private final boolean liveManifestCalls;
+  @Getter
+  private final boolean httpReadCalls;
+  @Getter
+  private final boolean consolidatedListCalls;
+  @Getter
+  private final boolean cacheUsingWatch;
+  @Getter
+  private final long cacheWatchResyncSeconds;
   private final boolean checkPermissionsOnStartup;
 
   // TODO(lwander) make configurable
   private final static int namespaceExpirySeconds = 30;
 
+  private final static long defaultCacheWatchResyncSeconds = 600;
+
+  private final static int defaultListThreads = 8;
+
+  private final ThreadPoolExecutor listExecutor;
+
+  // long enough for every caching agent of the account to share one listing per cycle, well below any agent interval
+  private final static int consolidatedListExpirySeconds = 10;
+
+  private final LoadingCache<List<KubernetesKind>, List<KubernetesManifest>> consolidatedLists;
+
   private final com.google.common.base.Supplier<List<String>> liveNamespaceSupplier;
 
   // TODO(lwander) make configurable
@@ -201,6 +240,7 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
     List<String> omitNamespaces = new ArrayList<>();
     Registry registry;
     KubectlJobExecutor jobExecutor;
+    KubernetesHttpExecutor httpExecutor;
     List<CustomKubernetesResource> customResources;
     List<KubernetesCachingPolicy> cachingPolicies;
     List<String> kinds;
@@ -211,6 +251,11 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
     boolean metrics;
     boolean onlySpinnakerManaged;
     boolean liveManifestCalls;
+    boolean httpReadCalls;
+    boolean consolidatedListCalls;
+    Integer listThreads;
+    boolean cacheUsingWatch;
+    Long cacheWatchResyncSeconds;
 
     public Builder accountName(String accountName) {
       this.accountName = accountName;
@@ -262,6 +307,11 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
       return this;
     }
 
+    public Builder httpExecutor(KubernetesHttpExecutor httpExecutor) {
+      this.httpExecutor = httpExecutor;
+      return this;
+    }
+
     public Builder cachingPolicies(List<KubernetesCachingPolicy> cachingPolicies) {
       this.cachingPolicies = cachingPolicies;
       return this;
@@ -322,6 +372,31 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
       return this;
     }
 
+    public Builder httpReadCalls(boolean httpReadCalls) {
+      this.httpReadCalls = httpReadCalls;
+      return this;
+    }
+
+    public Builder consolidatedListCalls(boolean consolidatedListCalls) {
+      this.consolidatedListCalls = consolidatedListCalls;
+      return this;
+    }
+
+    public Builder listThreads(Integer listThreads) {
+      this.listThreads = listThreads;
+      return this;
+    }
+
+    public Builder cacheUsingWatch(boolean cacheUsingWatch) {
+      this.cacheUsingWatch = cacheUsingWatch;
+      return this;
+    }
+
+    public Builder cacheWatchResyncSeconds(Long cacheWatchResyncSeconds) {
+      this.cacheWatchResyncSeconds = cacheWatchResyncSeconds;
+      return this;
+    }
+
     public KubernetesV2Credentials build() {
       namespaces = namespaces == null ? new ArrayList<>() : namespaces;
       omitNamespaces = omitNamespaces == null ? new ArrayList<>() : omitNamespaces;
@@ -329,10 +404,13 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
       kinds = kinds == null ? new ArrayList<>() : kinds;
       omitKinds = omitKinds == null ? new ArrayList<>() : omitKinds;
       cachingPolicies = cachingPolicies == null ? new ArrayList<>() : cachingPolicies;
+      cacheWatchResyncSeconds = cacheWatchResyncSeconds == null ? defaultCacheWatchResyncSeconds : cacheWatchResyncSeconds;
+      listThreads = listThreads == null ? defaultListThreads : listThreads;
 
       return new KubernetesV2Credentials(
           accountName,
           jobExecutor,
+          httpExecutor,
           namespaces,
           omitNamespaces,
           registry,
@@ -351,13 +429,19 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
           checkPermissionsOnStartup,
           debug,
           onlySpinnakerManaged,
-          liveManifestCalls
+          liveManifestCalls,
+          httpReadCalls,
+          consolidatedListCalls,
+          listThreads,
+          cacheUsingWatch,
+          cacheWatchResyncSeconds
       );
     }
   }
 
   private KubernetesV2Credentials(@NotNull String accountName,
       @NotNull KubectlJobExecutor jobExecutor,
+      KubernetesHttpExecutor httpExecutor,
       @NotNull List<String> namespaces,
       @NotNull List<String> omitNamespaces,
       @NotNull Registry registry,
@@ -376,13 +460,19 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
       boolean checkPermissionsOnStartup,
       boolean debug,
       boolean onlySpinnakerManaged,
-      boolean liveManifestCalls) {
+      boolean liveManifestCalls,
+      boolean httpReadCalls,
+      boolean consolidatedListCalls,
+      int listThreads,
+      boolean cacheUsingWatch,
+      long cacheWatchResyncSeconds) {
     this.registry = registry;
     this.clock = registry.clock();
     this.accountName = accountName;
     this.namespaces = namespaces;
     this.omitNamespaces = omitNamespaces;
     this.jobExecutor = jobExecutor;
+    this.httpExecutor = httpExecutor;
     this.debug = debug;
     this.kubectlExecutable = kubectlExecutable;
     this.kubectlRequestTimeoutSeconds = kubectlRequestTimeoutSeconds;
@@ -393,15 +483,30 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
     this.serviceAccount = serviceAccount;
     this.customResources = customResources;
     this.cachingPolicies = cachingPolicies;
+    this.manifestParser = new KubernetesManifestParser(cachingPolicies);
     this.kinds = kinds;
     this.metrics = metrics;
     this.omitKinds = omitKinds.stream()
       .collect(Collectors.toMap(k -> k, k -> InvalidKindReason.EXPLICITLY_OMITTED_BY_CONFIGURATION));
     this.onlySpinnakerManaged = onlySpinnakerManaged;
     this.liveManifestCalls = liveManifestCalls;
+    this.httpReadCalls = httpReadCalls;
+    this.consolidatedListCalls = consolidatedListCalls;
+    this.cacheUsingWatch = cacheUsingWatch;
+    this.cacheWatchResyncSeconds = cacheWatchResyncSeconds;
     this.checkPermissionsOnStartup = checkPermissionsOnStartup;
 
-    this.liveNamespaceSupplier = Suppliers.memoizeWithExpiration(() -> jobExecutor.list(this, Collections.singletonList(KubernetesKind.NAMESPACE), "", new KubernetesSelectorList())
+    // threads are only started once the account lists something, and time out again when it is idle
+    this.listExecutor = new ThreadPoolExecutor(listThreads, listThreads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new NamedThreadFactory(KubernetesV2Credentials.class.getSimpleName() + "-" + accountName));
+    this.listExecutor.allowCoreThreadTimeOut(true);
+
+    this.consolidatedLists = CacheBuilder.newBuilder()
+        .expireAfterWrite(consolidatedListExpirySeconds, TimeUnit.SECONDS)
+        .build(CacheLoader.from((List<KubernetesKind> kinds) -> runAndRecordMetrics("list", kinds, "",
+            () -> readExecutor().listAllNamespaces(this, kinds, new KubernetesSelectorList()))));
+
+    this.liveNamespaceSupplier = Suppliers.memoizeWithExpiration(() -> readExecutor().list(this, Collections.singletonList(KubernetesKind.NAMESPACE), "", new KubernetesSelectorList())
         .stream()
         .map(KubernetesManifest::getName)
         .collect(Collectors.toList()), namespaceExpirySeconds, TimeUnit.SECONDS);
@@ -430,6 +535,10 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
     }, crdExpirySeconds, TimeUnit.SECONDS);
   }
 
+  private KubernetesReadExecutor readExecutor() {
+    return httpReadCalls && httpExecutor != null ? httpExecutor : jobExecutor;
+  }
+
   public void initialize() {
     // ensure this is called at least once before the credentials object is created to ensure all crds are registered
     this.liveCrdSupplier.get();
@@ -518,27 +627,99 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
   }
 
   public KubernetesManifest get(KubernetesKind kind, String namespace, String name) {
-    return runAndRecordMetrics("get", kind, namespace, () -> jobExecutor.get(this, kind, namespace, name));
+    return runAndRecordMetrics("get", kind, namespace, () -> readExecutor().get(this, kind, namespace, name));
   }
 
   public List<KubernetesManifest> list(KubernetesKind kind, String namespace) {
-    return runAndRecordMetrics("list", kind, namespace, () -> jobExecutor.list(this, Collections.singletonList(kind), namespace, new KubernetesSelectorList()));
+    return runAndRecordMetrics("list", kind, namespace, () -> readExecutor().list(this, Collections.singletonList(kind), namespace, new KubernetesSelectorList()));
   }
 
   public List<KubernetesManifest> list(KubernetesKind kind, String namespace, KubernetesSelectorList selectors) {
-    return runAndRecordMetrics("list", kind, namespace, () -> jobExecutor.list(this, Collections.singletonList(kind), namespace, selectors));
+    return runAndRecordMetrics("list", kind, namespace, () -> readExecutor().list(this, Collections.singletonList(kind), namespace, selectors));
   }
 
   public List<KubernetesManifest> list(List<KubernetesKind> kinds, String namespace) {
     if (kinds.isEmpty()) {
       return new ArrayList<>();
     } else {
-      return runAndRecordMetrics("list", kinds, namespace, () -> jobExecutor.list(this, kinds, namespace, new KubernetesSelectorList()));
+      return runAndRecordMetrics("list", kinds, namespace, () -> readExecutor().list(this, kinds, namespace, new KubernetesSelectorList()));
+    }
+  }
+
+  public void watch(KubernetesKind kind, String namespace, Consumer<KubernetesWatchEvent> consumer) {
+    runAndRecordMetrics("watch", kind, namespace, () -> jobExecutor.watch(this, kind, namespace, consumer));
+  }
+
+  /**
+   * Lists the given kinds in each of the namespaces. With `consolidatedListCalls` this is a single cluster-wide call,
+   * shared by all agents of the account that ask for the same kinds within a few seconds, and filtered down to the
+   * requested namespaces; otherwise it is one call per namespace. Either way calls run on this account's bounded
+   * executor rather than the common fork-join pool.
+   *
+   * The returned manifests belong to the caller, who is free to modify them; a shared listing is copied for each
+   * caller.
+   */
+  public List<KubernetesManifest> listAcrossNamespaces(List<KubernetesKind> kinds, List<String> namespaces) {
+    if (kinds.isEmpty() || namespaces.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    if (consolidatedListCalls) {
+      Set<String> requestedNamespaces = new HashSet<>(namespaces);
+      List<KubernetesManifest> all;
+      try {
+        all = consolidatedLists.getUnchecked(new ArrayList<>(kinds));
+      } catch (UncheckedExecutionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+
+      return all.stream()
+          .filter(m -> StringUtils.isEmpty(m.getNamespace()) || requestedNamespaces.contains(m.getNamespace()))
+          .map(KubernetesManifest::deepCopy)
+          .collect(Collectors.toList());
+    }
+
+    List<Future<List<KubernetesManifest>>> lists = namespaces.stream()
+        .map(n -> listExecutor.submit(() -> list(kinds, n)))
+        .collect(Collectors.toList());
+
+    List<KubernetesManifest> result = new ArrayList<>();
+    try {
+      for (Future<List<KubernetesManifest>> list : lists) {
+        result.addAll(list.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KubectlException("Interrupted while listing " + kinds, e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new KubectlException("Failed to list " + kinds, e.getCause());
+    } finally {
+      lists.forEach(l -> l.cancel(true));
+    }
+
+    return result;
+  }
+
+  /**
+   * The account's bounded executor, shared by its list calls and by caching work done on its behalf.
+   */
+  public ExecutorService getListExecutor() {
+    return listExecutor;
+  }
+
+  /**
+   * Releases the threads, listings and API client held by these credentials once the account is removed or replaced.
+   */
+  public void shutdown() {
+    listExecutor.shutdownNow();
+    consolidatedLists.invalidateAll();
+    if (httpExecutor != null) {
+      httpExecutor.evict(this);
     }
   }
 
   public List<KubernetesManifest> eventsFor(KubernetesKind kind, String namespace, String name) {
-    return runAndRecordMetrics("list", KubernetesKind.EVENT, namespace, () -> jobExecutor.eventsFor(this, kind, namespace, name));
+    return runAndRecordMetrics("list", KubernetesKind.EVENT, namespace, () -> readExecutor().eventsFor(this, kind, namespace, name));
   }
 
   public String logs(String namespace, String podName, String containerName) {
@@ -558,7 +739,7 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
   }
 
   public Collection<KubernetesPodMetric> topPod(String namespace) {
-    return runAndRecordMetrics("top", KubernetesKind.POD, namespace, () -> jobExecutor.topPod(this, namespace));
+    return runAndRecordMetrics("top", KubernetesKind.POD, namespace, () -> readExecutor().topPod(this, namespace));
   }
 
   public void deploy(KubernetesManifest manifest) {
@@ -596,12 +777,15 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
   private <T> T runAndRecordMetrics(String action, List<KubernetesKind> kinds, String namespace, Supplier<T> op) {
     T result = null;
     Throwable failure = null;
-    KubectlException apiException = null;
+    RuntimeException passThrough = null;
     long startTime = clock.monotonicTime();
     try {
       result = op.get();
     } catch (KubectlException e) {
-      apiException = e;
+      passThrough = e;
+    } catch (CancellationException e) {
+      // the caller stopped the operation on purpose (e.g. a superseded watch); let it see its own exception
+      passThrough = e;
     } catch (Exception e) {
       failure = e;
     } finally {
@@ -626,8 +810,8 @@ public class KubernetesV2Credentials implements KubernetesCredentials {
 
       if (failure != null) {
         throw new KubectlJobExecutor.KubectlException("Failure running " + action + " on " + kinds + ": " + failure.getMessage(), failure);
-      } else if (apiException != null) {
-        throw apiException;
+      } else if (passThrough != null) {
+        throw passThrough;
       } else {
         return result;
       }
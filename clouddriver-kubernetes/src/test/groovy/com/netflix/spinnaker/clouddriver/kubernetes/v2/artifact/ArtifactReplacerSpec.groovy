@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.clouddriver.artifacts.kubernetes.KubernetesArtifactType
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest
 import com.netflix.spinnaker.kork.artifacts.model.Artifact
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
 import org.yaml.snakeyaml.Yaml
 import org.yaml.snakeyaml.constructor.SafeConstructor
 import spock.lang.Specification
@@ -11,6 +13,8 @@ import spock.lang.Unroll
 
 
 class ArtifactReplacerSpec extends Specification {
+  private static final Logger log = LoggerFactory.getLogger(ArtifactReplacerSpec)
+
   def objectMapper = new ObjectMapper()
   def yaml = new Yaml(new SafeConstructor())
 
@@ -174,4 +178,118 @@ spec:
     "clouddriver@sha256:9145"                   || "clouddriver"
     "localhost:5000/test/busybox@sha256:cbbf22" || "localhost:5000/test/busybox"
   }
+
+  def "replaces every artifact type in one pass, leaving unmatched values alone"() {
+    given:
+    def deploymentManifest = """
+apiVersion: apps/v1
+kind: Deployment
+metadata:
+  name: my-app-deployment
+spec:
+  template:
+    spec:
+      initContainers:
+      - name: init
+        image: busybox
+      containers:
+      - name: main
+        image: nginx
+        envFrom:
+        - configMapRef:
+            name: my-config
+        - secretRef:
+            name: my-secret
+      - name: sidecar
+        image: envoy
+      volumes:
+      - name: config
+        configMap:
+          name: my-config
+"""
+    def artifactReplacer = replacer()
+    def artifacts = [
+      Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("nginx").reference("nginx:1.15").build(),
+      Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("busybox").reference("busybox@sha256:abc").build(),
+      Artifact.builder().type(KubernetesArtifactType.ConfigMap.type).name("my-config").reference("my-config-v002").location("default").build(),
+      Artifact.builder().type(KubernetesArtifactType.Secret.type).name("my-secret").reference("my-secret-v003").location("other").build(),
+      Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("unused").reference("unused:1").build()
+    ]
+
+    when:
+    def result = artifactReplacer.replaceAll(stringToManifest(deploymentManifest), artifacts, "default", "my-account")
+    def spec = result.manifest.spec.template.spec
+
+    then:
+    spec.initContainers[0].image == "busybox@sha256:abc"
+    spec.containers*.image == ["nginx:1.15", "envoy"]
+    spec.containers[0].envFrom[0].configMapRef.name == "my-config-v002"
+    spec.containers[0].envFrom[1].secretRef.name == "my-secret"
+    spec.volumes[0].configMap.name == "my-config-v002"
+    result.boundArtifacts*.name as Set == ["nginx", "busybox", "my-config"] as Set
+  }
+
+  def "replaces the hpa target only for its own kind"() {
+    given:
+    def hpaManifest = """
+apiVersion: autoscaling/v2beta1
+kind: HorizontalPodAutoscaler
+metadata:
+  name: my-hpa
+spec:
+  scaleTargetRef:
+    kind: Deployment
+    name: my-deployment
+"""
+    def artifactReplacer = new ArtifactReplacer()
+      .addReplacer(ArtifactReplacerFactory.hpaDeploymentReplacer())
+      .addReplacer(ArtifactReplacerFactory.hpaReplicaSetReplacer())
+    def artifacts = [
+      Artifact.builder().type(KubernetesArtifactType.ReplicaSet.type).name("my-deployment").reference("my-deployment-v001").build(),
+      Artifact.builder().type(KubernetesArtifactType.Deployment.type).name("my-deployment").reference("my-deployment-v002").build()
+    ]
+
+    when:
+    def result = artifactReplacer.replaceAll(stringToManifest(hpaManifest), artifacts, null, "my-account")
+
+    then:
+    result.manifest.spec.scaleTargetRef.name == "my-deployment-v002"
+    result.boundArtifacts*.type == [KubernetesArtifactType.Deployment.type]
+  }
+
+  /**
+   * There is no JMH harness in this repository, so this just times replacing a large set of required artifacts in a
+   * deployment with many containers, to compare before and after changes to the replacer.
+   */
+  def "benchmark: replacing many artifacts"() {
+    given:
+    def iterations = 200
+    def containers = (0..<50).collect { [name: "c-$it".toString(), image: "image-$it".toString(), envFrom: [[configMapRef: [name: "config-$it".toString()]]]] }
+    def manifest = objectMapper.convertValue([kind: "Deployment", apiVersion: "apps/v1", metadata: [name: "d"], spec: [template: [spec: [containers: containers]]]], KubernetesManifest)
+    def artifacts = (0..<50).collectMany { [
+      Artifact.builder().type(KubernetesArtifactType.DockerImage.type).name("image-$it".toString()).reference("image-$it:v2".toString()).build(),
+      Artifact.builder().type(KubernetesArtifactType.ConfigMap.type).name("config-$it".toString()).reference("config-$it-v002".toString()).build()
+    ] }
+    def artifactReplacer = replacer()
+
+    when:
+    artifactReplacer.replaceAll(manifest, artifacts, null, "my-account") // warm up
+    long start = System.nanoTime()
+    iterations.times { artifactReplacer.replaceAll(manifest, artifacts, null, "my-account") }
+    log.info("Replacing {} artifacts x {}: {}ms", artifacts.size(), iterations, (System.nanoTime() - start).intdiv(1000000))
+
+    then:
+    artifactReplacer.replaceAll(manifest, artifacts, null, "my-account").boundArtifacts.size() == artifacts.size()
+  }
+
+  private static ArtifactReplacer replacer() {
+    return new ArtifactReplacer()
+      .addReplacer(ArtifactReplacerFactory.dockerImageReplacer())
+      .addReplacer(ArtifactReplacerFactory.configMapVolumeReplacer())
+      .addReplacer(ArtifactReplacerFactory.secretVolumeReplacer())
+      .addReplacer(ArtifactReplacerFactory.configMapEnvFromReplacer())
+      .addReplacer(ArtifactReplacerFactory.secretEnvFromReplacer())
+      .addReplacer(ArtifactReplacerFactory.configMapKeyValueFromReplacer())
+      .addReplacer(ArtifactReplacerFactory.secretKeyValueFromReplacer())
+  }
 }
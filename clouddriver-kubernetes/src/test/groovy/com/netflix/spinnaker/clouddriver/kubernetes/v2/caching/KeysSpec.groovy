@@ -19,6 +19,8 @@ package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching
 
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesApiVersion
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
 import spock.lang.Specification
 import spock.lang.Unroll
 
@@ -28,6 +30,8 @@ import spock.lang.Unroll
  *          that every user will have to flush redis to get clouddriver to run correctly
  */
 class KeysSpec extends Specification {
+  private static final Logger log = LoggerFactory.getLogger(KeysSpec)
+
   @Unroll
   def "produces correct app keys #key"() {
     expect:
@@ -121,4 +125,74 @@ class KeysSpec extends Specification {
     KubernetesKind.SERVICE     | KubernetesApiVersion.V1                 | "account" | "namespace" | ""
     KubernetesKind.INGRESS     | KubernetesApiVersion.EXTENSIONS_V1BETA1 | "ac"      | ""          | "nameer"
   }
+
+  @Unroll
+  def "does not parse '#key'"() {
+    expect:
+    !Keys.parseKey(key).isPresent()
+
+    where:
+    key << [
+      "kubernetes.v2",
+      "kubernetes.v2:logical",
+      "kubernetes.v1:logical:applications:app",
+      "aws:logical:applications:app",
+      "kubernetes.v2:unknown:applications:app",
+      "kubernetes.v2:infrastructure:replicaSet:ac:namespace",
+      null
+    ]
+  }
+
+  def "keys parsed repeatedly share one parsed key"() {
+    given:
+    def key = Keys.infrastructure(KubernetesKind.POD, "ac", "namespace", "pod")
+
+    expect:
+    Keys.parseKey(key).get().is(Keys.parseKey(new String(key)).get())
+  }
+
+  @Unroll
+  def "shared #type.simpleName instances cannot be modified"() {
+    expect:
+    !type.methods.any { it.name.startsWith("set") }
+
+    where:
+    type << [Keys.ApplicationCacheKey, Keys.ClusterCacheKey, Keys.InfrastructureCacheKey, Keys.ArtifactCacheKey, Keys.MetricCacheKey]
+  }
+
+  /**
+   * There is no JMH harness in this repository, so this times parsing the keys a view provider would read for an
+   * application with many pods, first as distinct keys and then as the same keys read again, against the way keys
+   * used to be parsed (a split, a regex replacement per part and a kind lookup per key).
+   */
+  def "benchmark: parsing infrastructure keys"() {
+    given:
+    def keys = (0..<50000).collect { Keys.infrastructure(KubernetesKind.POD, "account", "namespace", "pod-$it") }
+    def repeated = keys.subList(0, 10000)
+    def legacyParse = { String key ->
+      String[] parts = key.split(":", -1)
+      parts.each { it.replaceAll(";", ":") }
+      KubernetesKind.fromString(parts[2])
+      return parts
+    }
+
+    when:
+    long start = System.nanoTime()
+    keys.each { legacyParse(it) }
+    long legacyNanos = System.nanoTime() - start
+
+    start = System.nanoTime()
+    keys.each { Keys.parseKey(it) }
+    long distinctNanos = System.nanoTime() - start
+
+    start = System.nanoTime()
+    5.times { repeated.each { Keys.parseKey(it) } }
+    long repeatedNanos = System.nanoTime() - start
+
+    log.info("Parsing {} keys: previous parse {}ms, scanner {}ms; {} keys x 5 again: {}ms", keys.size(),
+      legacyNanos.intdiv(1000000), distinctNanos.intdiv(1000000), repeated.size(), repeatedNanos.intdiv(1000000))
+
+    then:
+    keys.every { ((Keys.InfrastructureCacheKey) Keys.parseKey(it).get()).name == legacyParse(it)[5] }
+  }
 }
@@ -96,6 +96,34 @@ metadata:
     KubernetesKind.SERVICE     | KubernetesApiVersion.V1                 | "another-account" | "your-app"  | null          | "some-namespace" | "what-name"
   }
 
+  def "strips volatile fields from the cached manifest only when asked to"() {
+    setup:
+    def manifest = stringToManifest("""
+apiVersion: v1
+kind: Pod
+metadata:
+  name: a-pod
+  namespace: $NAMESPACE
+  resourceVersion: "12345"
+  managedFields:
+  - manager: kubectl
+  annotations:
+    kubectl.kubernetes.io/last-applied-configuration: '{"kind": "Pod"}'
+    other: annotation
+""")
+
+    when:
+    def stripped = KubernetesCacheDataConverter.getManifest(KubernetesCacheDataConverter.convertAsResource(null, manifest, [], true))
+    def full = KubernetesCacheDataConverter.getManifest(KubernetesCacheDataConverter.convertAsResource(null, manifest, [], false))
+
+    then:
+    stripped.metadata.keySet() == ["name", "namespace", "annotations"] as Set
+    stripped.metadata.annotations == [other: "annotation"]
+    full.metadata.resourceVersion == "12345"
+    full.is(manifest)
+    manifest.metadata.annotations.size() == 2
+  }
+
   @Unroll
   def "given a single owner reference, correctly build relationships"() {
     setup:
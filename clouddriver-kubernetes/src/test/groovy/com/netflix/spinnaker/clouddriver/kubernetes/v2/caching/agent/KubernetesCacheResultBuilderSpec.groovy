@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.agent
+
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.clouddriver.kubernetes.KubernetesCloudProvider
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifestAnnotater
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.names.KubernetesManifestNamer
+import com.netflix.spinnaker.clouddriver.names.NamerRegistry
+import com.netflix.spinnaker.kork.artifacts.model.Artifact
+import com.netflix.spinnaker.moniker.Moniker
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+class KubernetesCacheResultBuilderSpec extends Specification {
+  static final String ACCOUNT = "my-account"
+  static final String NAMESPACE = "my-namespace"
+
+  @Shared
+  ExecutorService executor = Executors.newFixedThreadPool(4)
+
+  def cleanupSpec() {
+    executor.shutdownNow()
+  }
+
+  def setupSpec() {
+    NamerRegistry.lookup()
+      .withProvider(KubernetesCloudProvider.ID)
+      .withAccount(ACCOUNT)
+      .setNamer(KubernetesManifest, new KubernetesManifestNamer())
+  }
+
+  void "produces the same entries as converting, inverting and deduplicating in separate passes"() {
+    given:
+    def manifests = resources(2000)
+    def relationships = relationships(manifests)
+
+    when:
+    def expected = legacyBuild(manifests, relationships)
+    def actual = build(manifests, relationships)
+
+    then:
+    actual.keySet() == expected.keySet()
+    actual.keySet().every { group -> normalize(actual[group]) == normalize(expected[group]) }
+  }
+
+  void "resources that are skipped still record their artifact"() {
+    given:
+    def replicaSet = manifest("ReplicaSet", "rs-0", "app-0")
+    KubernetesManifestAnnotater.annotateManifest(replicaSet, Artifact.builder().type("kubernetes/replicaSet").name("rs").version("v000").location(NAMESPACE).build())
+
+    when:
+    def result = new KubernetesCacheResultBuilder(ACCOUNT).addAll([replicaSet], { null }).build()
+
+    then:
+    result.keySet() == ["artifact"] as Set
+  }
+
+  private Map<String, Collection<CacheData>> build(List<KubernetesManifest> manifests, Map<KubernetesManifest, List<KubernetesManifest>> relationships) {
+    return new KubernetesCacheResultBuilder(ACCOUNT, executor)
+      .addAll(manifests, { m -> KubernetesCacheDataConverter.convertAsResource(ACCOUNT, m, relationships[m]) })
+      .build()
+  }
+
+  // the passes KubernetesV2CachingAgent#buildCacheResult used to make
+  private static Map<String, Collection<CacheData>> legacyBuild(List<KubernetesManifest> manifests, Map<KubernetesManifest, List<KubernetesManifest>> relationships) {
+    List<CacheData> resourceData = manifests.collect { KubernetesCacheDataConverter.convertAsResource(ACCOUNT, it, relationships[it]) }
+    List<CacheData> inverted = resourceData.collectMany { KubernetesCacheDataConverter.invertRelationships(it) }
+    resourceData.addAll(manifests.collect { KubernetesCacheDataConverter.convertAsArtifact(ACCOUNT, it) }.findAll { it != null })
+    resourceData.addAll(inverted)
+    resourceData.addAll(resourceData.collect { KubernetesCacheDataConverter.getClusterRelationships(ACCOUNT, it) }.findAll { it != null })
+    return KubernetesCacheDataConverter.stratifyCacheDataByGroup(KubernetesCacheDataConverter.dedupCacheData(resourceData))
+  }
+
+  private static Map normalize(Collection<CacheData> data) {
+    return data.collectEntries { cd ->
+      [(cd.id): [cd.ttlSeconds, cd.attributes, cd.relationships.collectEntries { k, v -> [(k): v as Set] }]]
+    }
+  }
+
+  private static List<KubernetesManifest> resources(int pods) {
+    def replicaSets = (0..<Math.max(1, pods.intdiv(50))).collect { manifest("ReplicaSet", "rs-$it", "app-${it % 20}") }
+    def services = (0..<20).collect { manifest("Service", "svc-$it", "app-$it") }
+    def podList = (0..<pods).collect {
+      def pod = manifest("Pod", "pod-$it", "app-${it.intdiv(50) % 20}")
+      pod.metadata.ownerReferences = [[kind: "ReplicaSet", apiVersion: "apps/v1", name: "rs-${it.intdiv(50)}".toString()]]
+      return pod
+    }
+
+    return replicaSets + services + podList
+  }
+
+  // every pod is selected by its application's service
+  private static Map<KubernetesManifest, List<KubernetesManifest>> relationships(List<KubernetesManifest> manifests) {
+    def services = manifests.findAll { it.kind == "Service" }.collectEntries { [(it.metadata.labels.app): it] }
+    Map<KubernetesManifest, List<KubernetesManifest>> result = new IdentityHashMap<>()
+    manifests.findAll { it.kind == "Pod" }.each { pod ->
+      def service = services[pod.metadata.labels.app]
+      result[pod] = [service]
+      result.computeIfAbsent(service, { [] }) << pod
+    }
+
+    return result
+  }
+
+  private static KubernetesManifest manifest(String kind, String name, String app) {
+    def manifest = new KubernetesManifest()
+    manifest.put("kind", kind)
+    manifest.put("apiVersion", kind == "Pod" || kind == "Service" ? "v1" : "apps/v1")
+    manifest.put("metadata", [name: name, namespace: NAMESPACE, labels: [app: app], annotations: [:]])
+    KubernetesManifestAnnotater.annotateManifest(manifest, Moniker.builder().app(app).cluster("replicaSet $app").build())
+    return manifest
+  }
+}
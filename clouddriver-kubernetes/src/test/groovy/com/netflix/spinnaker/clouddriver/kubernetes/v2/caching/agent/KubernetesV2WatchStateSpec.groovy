@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.agent
+
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubernetesWatchEvent
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+
+class KubernetesV2WatchStateSpec extends Specification {
+  def now = 0L
+  def executor = Mock(ExecutorService)
+  def state = new KubernetesV2WatchState("agent", { KubernetesManifest m -> m.metadata.labels?.app }, { now }, executor)
+  def watcher = Mock(KubernetesV2WatchState.Watcher)
+
+  def kinds = [KubernetesKind.POD, KubernetesKind.SERVICE]
+  def namespaces = ["ns-a", "ns-b", "ns-c"]
+
+  def podA = manifest("Pod", "ns-a", "pod-a", "frontend")
+  def serviceA = manifest("Service", "ns-a", "svc-a", null)
+  def podB = manifest("Pod", "ns-b", "pod-b", "frontend")
+  def podC = manifest("Pod", "ns-c", "pod-c", "backend")
+
+  def setup() {
+    executor.submit(_ as Runnable) >> Mock(Future)
+    state.resync([(KubernetesKind.POD): [podA, podB, podC], (KubernetesKind.SERVICE): [serviceA]], kinds, namespaces, watcher)
+  }
+
+  void "starts one watch per kind and namespace"() {
+    given:
+    def freshExecutor = Mock(ExecutorService)
+    def freshState = new KubernetesV2WatchState("agent", { null }, { now }, freshExecutor)
+
+    when:
+    freshState.resync([:], kinds, namespaces, watcher)
+
+    then:
+    6 * freshExecutor.submit(_ as Runnable) >> Mock(Future)
+  }
+
+  void "stops its watches and threads for good once shut down"() {
+    given:
+    def freshExecutor = Mock(ExecutorService)
+    def freshState = new KubernetesV2WatchState("agent", { null }, { now }, freshExecutor)
+    def watch = Mock(Future)
+
+    when:
+    freshState.resync([:], [KubernetesKind.NAMESPACE], namespaces, watcher)
+    freshState.shutdown()
+
+    then:
+    1 * freshExecutor.submit(_ as Runnable) >> watch
+    1 * watch.cancel(true)
+    1 * freshExecutor.shutdownNow()
+
+    when:
+    freshState.resync([:], kinds, namespaces, watcher)
+
+    then:
+    0 * freshExecutor.submit(_)
+    freshState.requiresResync(kinds, namespaces, 1000)
+  }
+
+  void "requires a resync when invalidated, reconfigured or stale"() {
+    expect:
+    !state.requiresResync(kinds, namespaces, 1000)
+    state.requiresResync(kinds, ["ns-a"], 1000)
+    state.requiresResync([KubernetesKind.POD], namespaces, 1000)
+
+    when:
+    now = 1000
+
+    then:
+    state.requiresResync(kinds, namespaces, 1000)
+
+    when:
+    now = 0
+    state.apply(new KubernetesWatchEvent(KubernetesWatchEvent.Type.ERROR, new KubernetesManifest()))
+
+    then:
+    state.requiresResync(kinds, namespaces, 1000)
+  }
+
+  void "returns nothing when no events arrived"() {
+    expect:
+    state.drainChanges().isEmpty()
+  }
+
+  void "rebuilds the namespace and application neighborhood of a change"() {
+    given:
+    def updated = manifest("Pod", "ns-a", "pod-a", "frontend")
+
+    when:
+    state.apply(new KubernetesWatchEvent(KubernetesWatchEvent.Type.MODIFIED, updated))
+    def delta = state.drainChanges()
+
+    then:
+    delta.changeCount == 1
+    delta.deleted.isEmpty()
+    // svc-a shares the namespace, pod-b shares the application; pod-c is untouched
+    names(delta.resources) == ["pod-a", "pod-b", "svc-a"] as Set
+    delta.resources[KubernetesKind.POD].find { it.getName() == "pod-a" }.is(updated)
+
+    and:
+    state.drainChanges().isEmpty()
+  }
+
+  void "reports deleted resources and drops them from the tracked set"() {
+    when:
+    state.apply(new KubernetesWatchEvent(KubernetesWatchEvent.Type.DELETED, manifest("Pod", "ns-c", "pod-c", "backend")))
+    def delta = state.drainChanges()
+
+    then:
+    delta.changeCount == 1
+    delta.deleted*.getName() == ["pod-c"]
+    delta.resources.isEmpty()
+
+    when:
+    state.apply(new KubernetesWatchEvent(KubernetesWatchEvent.Type.ADDED, manifest("Pod", "ns-c", "pod-d", null)))
+
+    then:
+    names(state.drainChanges().resources) == ["pod-d"] as Set
+  }
+
+  private static Set<String> names(Map<KubernetesKind, List<KubernetesManifest>> resources) {
+    return resources.values().flatten().collect { it.getName() } as Set
+  }
+
+  private static KubernetesManifest manifest(String kind, String namespace, String name, String app) {
+    def manifest = new KubernetesManifest()
+    manifest.put("kind", kind)
+    manifest.put("apiVersion", "v1")
+    manifest.put("metadata", [name: name, namespace: namespace, labels: app ? [app: app] : [:]])
+    return manifest
+  }
+}
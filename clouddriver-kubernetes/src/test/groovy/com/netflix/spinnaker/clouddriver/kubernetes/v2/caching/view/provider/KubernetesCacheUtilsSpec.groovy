@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.view.provider
+
+import com.netflix.spinnaker.cats.cache.Cache
+import com.netflix.spinnaker.cats.cache.CacheData
+import com.netflix.spinnaker.cats.cache.DefaultCacheData
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.caching.Keys
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesResourcePropertyRegistry
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind
+import spock.lang.Specification
+
+import static com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind.INSTANCES
+import static com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind.LOAD_BALANCERS
+import static com.netflix.spinnaker.clouddriver.kubernetes.v2.description.KubernetesSpinnakerKindMap.SpinnakerKind.SERVER_GROUPS
+
+class KubernetesCacheUtilsSpec extends Specification {
+  static final String ACCOUNT = "my-account"
+  static final String NAMESPACE = "my-namespace"
+
+  def kindMap = new KubernetesSpinnakerKindMap()
+  def cache = Mock(Cache)
+  def cacheUtils = new KubernetesCacheUtils(cache, kindMap, Mock(KubernetesResourcePropertyRegistry))
+
+  def setup() {
+    kindMap.addRelationship(SERVER_GROUPS, KubernetesKind.REPLICA_SET)
+    kindMap.addRelationship(SERVER_GROUPS, KubernetesKind.STATEFUL_SET)
+    kindMap.addRelationship(LOAD_BALANCERS, KubernetesKind.SERVICE)
+    kindMap.addRelationship(INSTANCES, KubernetesKind.POD)
+  }
+
+  void "loads each hop with one request per related kind, sharing data reached more than once"() {
+    given:
+    def service = data(KubernetesKind.SERVICE, "svc", [:])
+    def pods = (0..<4).collect { data(KubernetesKind.POD, "pod-$it", [:]) }
+    def replicaSets = (0..<2).collect { i ->
+      data(KubernetesKind.REPLICA_SET, "rs-$i", [
+        (KubernetesKind.SERVICE.toString()): [service.id],
+        (KubernetesKind.POD.toString()): pods.subList(i * 2, i * 2 + 2)*.id
+      ])
+    }
+    def clusters = (0..<2).collect { i -> new DefaultCacheData(Keys.cluster(ACCOUNT, "app", "cluster-$i"), [:], [(KubernetesKind.REPLICA_SET.toString()): [replicaSets[i].id]]) }
+    def all = ([service] + pods + replicaSets).collectEntries { [(it.id): it] }
+
+    when:
+    def result = cacheUtils.traverse(clusters, [[SERVER_GROUPS], [LOAD_BALANCERS, INSTANCES]])
+
+    then:
+    1 * cache.getAll(KubernetesKind.REPLICA_SET.toString(), { it as Set == replicaSets*.id as Set }) >> { type, ids -> ids.collect { all[it] } }
+    1 * cache.getAll(KubernetesKind.SERVICE.toString(), [service.id] as Set) >> { type, ids -> ids.collect { all[it] } }
+    1 * cache.getAll(KubernetesKind.POD.toString(), { it as Set == pods*.id as Set }) >> { type, ids -> ids.collect { all[it] } }
+    0 * cache._
+
+    result[SERVER_GROUPS]*.id == replicaSets*.id
+    result[LOAD_BALANCERS]*.id == [service.id]
+    result[INSTANCES]*.id == pods*.id
+  }
+
+  void "data among the sources is not loaded again"() {
+    given:
+    def pod = data(KubernetesKind.POD, "pod", [:])
+    def replicaSet = data(KubernetesKind.REPLICA_SET, "rs", [(KubernetesKind.POD.toString()): [pod.id]])
+
+    when:
+    def result = cacheUtils.traverse([replicaSet, pod], INSTANCES)
+
+    then:
+    0 * cache._
+    result[INSTANCES] == [pod]
+  }
+
+  void "linear paths follow the data loaded by the previous hop"() {
+    given:
+    def pod = data(KubernetesKind.POD, "pod", [:])
+    def replicaSet = data(KubernetesKind.REPLICA_SET, "rs", [(KubernetesKind.POD.toString()): [pod.id]])
+    def service = data(KubernetesKind.SERVICE, "svc", [(KubernetesKind.REPLICA_SET.toString()): [replicaSet.id]])
+
+    when:
+    def result = cacheUtils.traverse([service], SERVER_GROUPS, INSTANCES)
+
+    then:
+    1 * cache.getAll(KubernetesKind.REPLICA_SET.toString(), [replicaSet.id] as Set) >> [replicaSet]
+    1 * cache.getAll(KubernetesKind.POD.toString(), [pod.id] as Set) >> [pod]
+    result[SERVER_GROUPS] == [replicaSet]
+    result[INSTANCES] == [pod]
+  }
+
+  private static CacheData data(KubernetesKind kind, String name, Map<String, Collection<String>> relationships) {
+    return new DefaultCacheData(Keys.infrastructure(kind, ACCOUNT, NAMESPACE, name), [name: name], relationships)
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest
+
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class KubernetesLabelIndexSpec extends Specification {
+  private static final Logger log = LoggerFactory.getLogger(KubernetesLabelIndexSpec)
+
+  def a = manifest("a")
+  def b = manifest("b")
+  def c = manifest("c")
+  def index = new KubernetesLabelIndex()
+    .add("default", [app: "app", tier: "web"], a)
+    .add("default", [app: "app", tier: "db"], b)
+    .add("other", [app: "app", tier: "web"], c)
+
+  @Unroll
+  void "selects manifests carrying every label of the selector in the namespace"() {
+    expect:
+    index.select(namespace, selector)*.getName() == expected
+
+    where:
+    namespace | selector                     || expected
+    "default" | [app: "app"]                 || ["a", "b"]
+    "default" | [app: "app", tier: "web"]    || ["a"]
+    "other"   | [tier: "web"]                || ["c"]
+    "default" | [app: "app", tier: "cache"]  || []
+    "default" | [app: "other"]               || []
+    "default" | [:]                          || []
+    "default" | null                         || []
+  }
+
+  void "selecting leaves the index intact for later selectors"() {
+    when:
+    index.select("default", [app: "app", tier: "db"])
+
+    then:
+    index.select("default", [app: "app"])*.getName() == ["a", "b"]
+  }
+
+  /**
+   * There is no JMH harness in this repository, so this times matching a few hundred service selectors against a
+   * namespace with tens of thousands of labelled manifests, by the index and by comparing against each manifest.
+   */
+  void "benchmark: indexed selection vs scanning every manifest"() {
+    given:
+    def services = 300
+    def labelled = (0..<30000).collect { [manifest: manifest("m-$it"), labels: [app: "app-${it % services}".toString(), tier: "web", release: "r-${it % 7}".toString()]] }
+    def selectors = (0..<services).collect { [app: "app-$it".toString(), tier: "web"] }
+    def scan = { Map<String, String> selector -> labelled.findAll { l -> selector.every { k, v -> l.labels[k] == v } }*.manifest }
+
+    when:
+    long start = System.nanoTime()
+    def bigIndex = new KubernetesLabelIndex()
+    labelled.each { bigIndex.add("default", it.labels, it.manifest) }
+    def indexed = selectors.collect { bigIndex.select("default", it) }
+    long indexNanos = System.nanoTime() - start
+
+    start = System.nanoTime()
+    def scanned = selectors.collect { scan(it) }
+    long scanNanos = System.nanoTime() - start
+    log.info("Matching {} selectors against {} manifests: scan {}ms, index {}ms", services, labelled.size(), scanNanos.intdiv(1000000), indexNanos.intdiv(1000000))
+
+    then:
+    indexed.collect { it*.getName() } == scanned.collect { it*.getName() }
+  }
+
+  private static KubernetesManifest manifest(String name) {
+    def manifest = new KubernetesManifest()
+    manifest.put("kind", "ReplicaSet")
+    manifest.put("metadata", [name: name])
+    return manifest
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job
+
+import com.netflix.spinnaker.clouddriver.jobs.local.JobExecutorLocal
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesSelectorList
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.security.KubernetesV2Credentials
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import groovy.json.JsonOutput
+import io.kubernetes.client.ApiClient
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import spock.lang.IgnoreIf
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+
+class KubernetesHttpExecutorSpec extends Specification {
+  private static final Logger log = LoggerFactory.getLogger(KubernetesHttpExecutorSpec)
+
+  static final int POD_COUNT = 500
+  static final String NAMESPACE = "my-namespace"
+
+  @Shared
+  HttpServer server
+
+  @Shared
+  Map<String, String> responses = [:]
+
+  @Shared
+  List<String> requests = Collections.synchronizedList([])
+
+  @Shared
+  String podList
+
+  def credentials = Stub(KubernetesV2Credentials) {
+    getAccountName() >> "my-account"
+    getDefaultNamespace() >> "default"
+    getManifestParser() >> new KubernetesManifestParser([])
+  }
+
+  KubernetesHttpExecutor executor = new KubernetesHttpExecutor(Stub(KubectlJobExecutor)) {
+    @Override
+    protected ApiClient apiClient(KubernetesV2Credentials c) {
+      return new ApiClient().setBasePath("http://localhost:${server.address.port}")
+    }
+  }
+
+  def setupSpec() {
+    def pods = (0..<POD_COUNT).collect { i ->
+      [metadata: [name: "pod-$i", namespace: NAMESPACE, labels: [app: "app-${i % 10}"]], spec: [containers: [[name: "main", image: "nginx:1.$i"]]]]
+    }
+    podList = JsonOutput.toJson([kind: "PodList", apiVersion: "v1", metadata: [resourceVersion: "1"], items: pods])
+
+    responses["/api"] = JsonOutput.toJson([versions: ["v1"]])
+    responses["/api/v1"] = JsonOutput.toJson([groupVersion: "v1", resources: [
+      [name: "pods", namespaced: true, kind: "Pod"],
+      [name: "pods/log", namespaced: true, kind: "Pod"],
+      [name: "events", namespaced: true, kind: "Event"],
+      [name: "namespaces", namespaced: false, kind: "Namespace"]
+    ]])
+    responses["/apis"] = JsonOutput.toJson([groups: [
+      [name: "apps", preferredVersion: [groupVersion: "apps/v1"]],
+      [name: "metrics.k8s.io", preferredVersion: [groupVersion: "metrics.k8s.io/v1beta1"]]
+    ]])
+    responses["/apis/apps/v1"] = JsonOutput.toJson([groupVersion: "apps/v1", resources: [[name: "replicasets", namespaced: true, kind: "ReplicaSet"]]])
+    responses["/api/v1/namespaces/$NAMESPACE/pods".toString()] = podList
+    responses["/api/v1/namespaces/$NAMESPACE/pods/pod-1".toString()] = JsonOutput.toJson([kind: "Pod", apiVersion: "v1", metadata: [name: "pod-1", namespace: NAMESPACE]])
+    responses["/api/v1/namespaces".toString()] = JsonOutput.toJson([items: [[metadata: [name: NAMESPACE]]]])
+    responses["/apis/metrics.k8s.io/v1beta1/namespaces/$NAMESPACE/pods".toString()] = JsonOutput.toJson([items: [
+      [metadata: [name: "pod-1", namespace: NAMESPACE], containers: [[name: "main", usage: [cpu: "2500000n", memory: "20480Ki"]]]]
+    ]])
+
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+    server.createContext("/", { HttpExchange exchange ->
+      requests << exchange.requestURI.toString()
+      String body = responses[exchange.requestURI.path]
+      byte[] bytes = (body ?: JsonOutput.toJson([kind: "Status", code: 404])).getBytes(StandardCharsets.UTF_8)
+      exchange.responseHeaders.add("Content-Type", "application/json")
+      exchange.sendResponseHeaders(body ? 200 : 404, bytes.length)
+      exchange.responseBody.withCloseable { it.write(bytes) }
+    })
+    server.start()
+  }
+
+  def cleanupSpec() {
+    server.stop(0)
+  }
+
+  def setup() {
+    requests.clear()
+  }
+
+  void "lists resources using discovered paths and fills in type metadata"() {
+    when:
+    def pods = executor.list(credentials, [KubernetesKind.POD], NAMESPACE, new KubernetesSelectorList())
+
+    then:
+    pods.size() == POD_COUNT
+    pods.every { it.kind == KubernetesKind.POD && it.apiVersion.toString() == "v1" }
+    pods*.getName().toSet().size() == POD_COUNT
+    pods[0].namespace == NAMESPACE
+  }
+
+  void "cluster-scoped kinds are read without a namespace"() {
+    when:
+    def namespaces = executor.list(credentials, [KubernetesKind.NAMESPACE], "", new KubernetesSelectorList())
+
+    then:
+    namespaces*.getName() == [NAMESPACE]
+  }
+
+  void "discovery is reused across calls"() {
+    when:
+    3.times { executor.get(credentials, KubernetesKind.POD, NAMESPACE, "pod-1") }
+
+    then:
+    requests.count { it == "/api" } == 1
+    requests.count { it == "/api/v1/namespaces/$NAMESPACE/pods/pod-1".toString() } == 3
+  }
+
+  void "missing resources are returned as null and unknown kinds are rejected"() {
+    expect:
+    executor.get(credentials, KubernetesKind.POD, NAMESPACE, "missing") == null
+
+    when:
+    executor.list(credentials, [KubernetesKind.CRON_JOB], NAMESPACE, new KubernetesSelectorList())
+
+    then:
+    thrown(KubectlJobExecutor.NoResourceTypeException)
+  }
+
+  void "unknown kinds do not rerun discovery on every call"() {
+    when:
+    3.times {
+      try {
+        executor.list(credentials, [KubernetesKind.CRON_JOB], NAMESPACE, new KubernetesSelectorList())
+      } catch (KubectlJobExecutor.NoResourceTypeException ignored) {
+      }
+    }
+
+    then:
+    requests.count { it == "/api" } == 2
+  }
+
+  void "refreshed credentials for an account get a new client"() {
+    given:
+    def refreshed = Stub(KubernetesV2Credentials) {
+      getAccountName() >> "my-account"
+      getDefaultNamespace() >> "default"
+      getManifestParser() >> new KubernetesManifestParser([])
+    }
+
+    when:
+    executor.get(credentials, KubernetesKind.POD, NAMESPACE, "pod-1")
+    executor.get(refreshed, KubernetesKind.POD, NAMESPACE, "pod-1")
+    executor.evict(credentials)
+    executor.get(refreshed, KubernetesKind.POD, NAMESPACE, "pod-1")
+
+    then:
+    requests.count { it == "/api" } == 2
+  }
+
+    void "reports pod metrics in the units kubectl top uses"() {
+    when:
+    def metrics = executor.topPod(credentials, NAMESPACE)
+
+    then:
+    metrics.size() == 1
+    metrics[0].podName == "pod-1"
+    metrics[0].containerMetrics[0].metrics == ["CPU(cores)": "3m", "MEMORY(bytes)": "20Mi"]
+  }
+
+  /**
+   * There is no JMH harness in this repository, so this compares the two read paths directly. The "kubectl" here is a
+   * script that prints the same list, which only measures process startup and output parsing -- a real kubectl would
+   * also parse its kubeconfig and negotiate TLS on every call.
+   */
+  @IgnoreIf({ os.windows })
+  void "benchmark: listing through the API server vs forking kubectl"() {
+    given:
+    def iterations = 25
+    def output = Files.createTempFile("pods", ".json")
+    output.toFile().text = JsonOutput.toJson([kind: "List", apiVersion: "v1", items: executor.list(credentials, [KubernetesKind.POD], NAMESPACE, new KubernetesSelectorList())])
+    def script = Files.createTempFile("kubectl", ".sh")
+    script.toFile().text = "#!/bin/sh\ncat ${output.toAbsolutePath()}\n"
+    Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwx------"))
+
+    def kubectl = new KubectlJobExecutor(new JobExecutorLocal(1))
+    kubectl.executable = script.toAbsolutePath().toString()
+
+    when:
+    long httpNanos = time(iterations) { executor.list(credentials, [KubernetesKind.POD], NAMESPACE, new KubernetesSelectorList()) }
+    long kubectlNanos = time(iterations) { kubectl.list(credentials, [KubernetesKind.POD], NAMESPACE, new KubernetesSelectorList()) }
+    log.info("Listing {} pods x {}: http {}ms, kubectl {}ms", POD_COUNT, iterations, httpNanos.intdiv(1000000), kubectlNanos.intdiv(1000000))
+
+    then:
+    kubectl.list(credentials, [KubernetesKind.POD], NAMESPACE, new KubernetesSelectorList()) ==
+      executor.list(credentials, [KubernetesKind.POD], NAMESPACE, new KubernetesSelectorList())
+
+    cleanup:
+    Files.deleteIfExists(output)
+    Files.deleteIfExists(script)
+  }
+
+  private static long time(int iterations, Closure op) {
+    op() // warm up
+    long start = System.nanoTime()
+    iterations.times { op() }
+    return System.nanoTime() - start
+  }
+}
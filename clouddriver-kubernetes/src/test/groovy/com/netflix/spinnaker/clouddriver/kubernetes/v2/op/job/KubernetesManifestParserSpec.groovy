@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Google, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.gson.Gson
+import com.google.gson.stream.JsonReader
+import com.netflix.spinnaker.clouddriver.kubernetes.config.KubernetesCachingPolicy
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest
+import groovy.json.JsonOutput
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import spock.lang.Specification
+
+class KubernetesManifestParserSpec extends Specification {
+  private static final Logger log = LoggerFactory.getLogger(KubernetesManifestParserSpec)
+
+  def parser = new KubernetesManifestParser([new KubernetesCachingPolicy(kubernetesKind: "pod", omitFields: ["status"])])
+
+  void "reads a single manifest intact, with the number types Jackson would produce"() {
+    when:
+    def manifest = parser.readManifest(new StringReader(JsonOutput.toJson(deployment("my-deployment"))))
+
+    then:
+    manifest == new ObjectMapper().readValue(JsonOutput.toJson(deployment("my-deployment")), KubernetesManifest)
+    manifest.spec.replicas instanceof Integer
+    manifest.getReplicas() == 3.0d
+    manifest.metadata.managedFields != null
+  }
+
+  void "listed items drop managed fields and the fields omitted for their kind"() {
+    given:
+    def list = JsonOutput.toJson([kind: "List", apiVersion: "v1", items: [deployment("d"), pod("p")]])
+
+    when:
+    def manifests = parser.readList(new StringReader(list), null)
+
+    then:
+    manifests*.getName() == ["d", "p"]
+    manifests.every { !it.metadata.containsKey("managedFields") }
+    manifests[0].status == [replicas: 3, observedGeneration: 2]
+    !manifests[1].containsKey("status")
+    manifests[1].spec.containers[0].image == "nginx"
+  }
+
+  void "short strings repeated across manifests share one instance"() {
+    given:
+    def list = JsonOutput.toJson([items: [pod("a"), pod("b")]])
+
+    when:
+    def manifests = parser.readList(new StringReader(list), KubernetesKind.POD)
+
+    then:
+    manifests[0].spec.containers[0].image.is(manifests[1].spec.containers[0].image)
+    manifests[0].metadata.labels.app.is(manifests[1].metadata.labels.app)
+  }
+
+  void "omissions resolved from a kind read after other fields are still applied"() {
+    given:
+    def list = """{"items": [{"status": {"phase": "Running"}, "metadata": {"name": "p"}, "kind": "Pod", "apiVersion": "v1"}]}"""
+
+    when:
+    def manifests = parser.readList(new StringReader(list), null)
+
+    then:
+    manifests.size() == 1
+    manifests[0].kind == "Pod"
+    !manifests[0].containsKey("status")
+  }
+
+  void "items without a kind use the kind being listed"() {
+    given:
+    def list = JsonOutput.toJson([items: [[metadata: [name: "p"], status: [phase: "Running"]]]])
+
+    expect:
+    !parser.readList(new StringReader(list), KubernetesKind.POD)[0].containsKey("status")
+    parser.readList(new StringReader(list), KubernetesKind.SERVICE)[0].status == [phase: "Running"]
+  }
+
+  void "reads consecutive watch events and ignores unknown event types"() {
+    given:
+    def events = [
+      [type: "ADDED", object: pod("a")],
+      [type: "SOMETHING_NEW", object: pod("b")],
+      [type: "DELETED", object: pod("c")]
+    ].collect { JsonOutput.toJson(it) }.join("\n")
+    def received = []
+
+    when:
+    parser.readWatchEvents(new StringReader(events), { received << it })
+
+    then:
+    received*.type == [KubernetesWatchEvent.Type.ADDED, KubernetesWatchEvent.Type.DELETED]
+    received*.object*.getName() == ["a", "c"]
+    !received[0].object.containsKey("status")
+  }
+
+  /**
+   * There is no JMH harness in this repository, so this times the old path (a Gson tree per item, then a Jackson
+   * conversion into the cached form) against the single streaming pass.
+   */
+  void "benchmark: streaming parse vs Gson parse and Jackson conversion"() {
+    given:
+    def iterations = 20
+    def items = (0..<2000).collect { pod("pod-$it") }
+    def list = JsonOutput.toJson([kind: "List", apiVersion: "v1", items: items])
+    def gson = new Gson()
+    def mapper = new ObjectMapper()
+    def oldPath = {
+      def reader = new JsonReader(new StringReader(list))
+      def result = []
+      reader.beginObject()
+      while (reader.hasNext()) {
+        if (reader.nextName() == "items") {
+          reader.beginArray()
+          while (reader.hasNext()) {
+            result << mapper.convertValue(gson.fromJson(reader, KubernetesManifest), KubernetesManifest)
+          }
+          reader.endArray()
+        } else {
+          reader.skipValue()
+        }
+      }
+      return result
+    }
+    def fullParser = new KubernetesManifestParser([])
+
+    when:
+    long oldNanos = time(iterations) { oldPath() }
+    long newNanos = time(iterations) { fullParser.readList(new StringReader(list), null) }
+    log.info("Parsing {} pods x {}: gson + convertValue {}ms, streaming {}ms", items.size(), iterations, oldNanos.intdiv(1000000), newNanos.intdiv(1000000))
+
+    then:
+    fullParser.readList(new StringReader(list), null)*.getName() == oldPath()*.getName()
+  }
+
+  private static long time(int iterations, Closure op) {
+    op() // warm up
+    long start = System.nanoTime()
+    iterations.times { op() }
+    return System.nanoTime() - start
+  }
+
+  private static Map deployment(String name) {
+    return [
+      kind: "Deployment",
+      apiVersion: "apps/v1",
+      metadata: [name: name, namespace: "default", generation: 2, managedFields: [[manager: "kubectl", operation: "Apply"]]],
+      spec: [replicas: 3, progressDeadlineSeconds: 600, template: [spec: [terminationGracePeriodSeconds: 30.5]]],
+      status: [replicas: 3, observedGeneration: 2]
+    ]
+  }
+
+  private static Map pod(String name) {
+    return [
+      kind: "Pod",
+      apiVersion: "v1",
+      metadata: [name: name, namespace: "default", labels: [app: "app"], managedFields: [[manager: "kubelet"]]],
+      spec: [containers: [[name: "main", image: "nginx", ports: [[containerPort: 80]]]]],
+      status: [phase: "Running", conditions: [[type: "Ready", status: "True"]]]
+    ]
+  }
+}
@@ -18,9 +18,13 @@ package com.netflix.spinnaker.clouddriver.kubernetes.v2.security
 
 import com.netflix.spectator.api.Registry
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesKind
+import com.netflix.spinnaker.clouddriver.kubernetes.v2.description.manifest.KubernetesManifest
 import com.netflix.spinnaker.clouddriver.kubernetes.v2.op.job.KubectlJobExecutor
 import spock.lang.Specification
 
+import java.util.concurrent.CancellationException
+import java.util.concurrent.RejectedExecutionException
+
 class KubernetesV2CredentialsSpec extends Specification {
   Registry registry = Stub(Registry)
   KubectlJobExecutor kubectlJobExecutor = Stub(KubectlJobExecutor)
@@ -101,4 +105,98 @@ class KubernetesV2CredentialsSpec extends Specification {
     credentials.isValidKind(KubernetesKind.DEPLOYMENT) == false
     credentials.isValidKind(KubernetesKind.REPLICA_SET) == true
   }
+
+  void "Consolidated list calls read all namespaces once and filter client-side"() {
+    given:
+    KubernetesV2Credentials credentials = getBuilder()
+      .checkPermissionsOnStartup(false)
+      .consolidatedListCalls(true)
+      .build()
+
+    when:
+    def first = credentials.listAcrossNamespaces([KubernetesKind.POD, KubernetesKind.NAMESPACE], ["ns-a"])
+    def second = credentials.listAcrossNamespaces([KubernetesKind.POD, KubernetesKind.NAMESPACE], ["ns-b", "ns-c"])
+
+    then:
+    kubectlJobExecutor.listAllNamespaces(_, [KubernetesKind.POD, KubernetesKind.NAMESPACE], _) >> {
+      callCount++
+      return [manifest("pod", "ns-a", "a"), manifest("pod", "ns-b", "b"), manifest("pod", "ns-d", "d"), manifest("namespace", null, "ns-a")]
+    }
+    callCount == 1
+    first*.getName() == ["a", "ns-a"]
+    second*.getName() == ["b", "ns-a"]
+  }
+
+  void "Per-namespace list calls are made for each namespace"() {
+    given:
+    KubernetesV2Credentials credentials = getBuilder()
+      .checkPermissionsOnStartup(false)
+      .build()
+
+    when:
+    def result = credentials.listAcrossNamespaces([KubernetesKind.POD], ["ns-a", "ns-b"])
+
+    then:
+    kubectlJobExecutor.list(_, [KubernetesKind.POD], "ns-a", _) >> [manifest("pod", "ns-a", "a")]
+    kubectlJobExecutor.list(_, [KubernetesKind.POD], "ns-b", _) >> [manifest("pod", "ns-b", "b")]
+    result*.getName() == ["a", "b"]
+  }
+
+  void "Consolidated list calls hand every caller its own copy of the manifests"() {
+    given:
+    KubernetesV2Credentials credentials = getBuilder()
+      .checkPermissionsOnStartup(false)
+      .consolidatedListCalls(true)
+      .build()
+    kubectlJobExecutor.listAllNamespaces(_, [KubernetesKind.POD], _) >> [manifest("pod", "ns-a", "a")]
+
+    when:
+    def first = credentials.listAcrossNamespaces([KubernetesKind.POD], ["ns-a"])
+    first[0].metadata.labels = [app: "changed"]
+    first[0].put("spec", [:])
+    def second = credentials.listAcrossNamespaces([KubernetesKind.POD], ["ns-a"])
+
+    then:
+    !second[0].containsKey("spec")
+    second[0].metadata == [name: "a", namespace: "ns-a"]
+  }
+
+  void "Lists are rejected once the credentials are shut down"() {
+    given:
+    KubernetesV2Credentials credentials = getBuilder()
+      .checkPermissionsOnStartup(false)
+      .listThreads(2)
+      .build()
+
+    when:
+    credentials.shutdown()
+    credentials.listAcrossNamespaces([KubernetesKind.POD], ["ns-a", "ns-b"])
+
+    then:
+    thrown(RejectedExecutionException)
+  }
+
+  void "A watch stopped by its consumer is not reported as a kubectl failure"() {
+    given:
+    KubernetesV2Credentials credentials = getBuilder()
+      .checkPermissionsOnStartup(false)
+      .build()
+    kubectlJobExecutor.watch(_, KubernetesKind.POD, NAMESPACE, _) >> { throw new CancellationException() }
+
+    when:
+    credentials.watch(KubernetesKind.POD, NAMESPACE, {})
+
+    then:
+    thrown(CancellationException)
+  }
+
+  private int callCount = 0
+
+  private static KubernetesManifest manifest(String kind, String namespace, String name) {
+    def manifest = new KubernetesManifest()
+    manifest.put("kind", kind)
+    manifest.put("apiVersion", "v1")
+    manifest.put("metadata", namespace ? [name: name, namespace: namespace] : [name: name])
+    return manifest
+  }
 }
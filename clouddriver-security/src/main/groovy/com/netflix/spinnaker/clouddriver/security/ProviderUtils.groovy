@@ -123,7 +123,8 @@ public class ProviderUtils {
 
   /**
    * Use the provider registry and agent scheduler associated with the cats module to unschedule and deregister
-   * each agent that handles one of the specified accounts.
+   * each agent that handles one of the specified accounts. Deregistered agents that are {@link Closeable} (e.g. because
+   * they hold threads or child processes outside of their executions) are closed.
    */
   public static void unscheduleAndDeregisterAgents(def namesOfDeletedAccounts, def catsModule) {
     namesOfDeletedAccounts.each { nameOfDeletedAccount ->
@@ -144,6 +145,14 @@ public class ProviderUtils {
         }
 
         provider.agents.removeAll(agentsToDelete)
+
+        agentsToDelete.findAll { it instanceof Closeable }.each { Agent agent ->
+          try {
+            ((Closeable) agent).close()
+          } catch (Exception e) {
+            log.warn("Failed to close agent ${agent.agentType}", e)
+          }
+        }
       }
     }
   }
@@ -17,14 +17,20 @@
 package com.netflix.spinnaker.clouddriver
 
 import com.netflix.spectator.api.Registry
+import com.netflix.spinnaker.cats.provider.ProviderRegistry
+import com.netflix.spinnaker.clouddriver.cache.SearchableProvider
 import com.netflix.spinnaker.clouddriver.configuration.CredentialsConfiguration
-
+import com.netflix.spinnaker.clouddriver.model.view.ApplicationSummaryView
+import com.netflix.spinnaker.clouddriver.model.view.ApplicationSummaryViewConfiguration
+import com.netflix.spinnaker.clouddriver.requestqueue.ProviderFanOut
+import com.netflix.spinnaker.clouddriver.requestqueue.ProviderFanOutConfiguration
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueueConfiguration
 import com.netflix.spinnaker.filters.AuthenticatedRequestFilter
 import com.netflix.spinnaker.kork.dynamicconfig.DynamicConfigService
 import com.netflix.spinnaker.kork.web.interceptors.MetricsInterceptor
 import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty
 import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.boot.web.servlet.FilterRegistrationBean
 import org.springframework.context.annotation.Bean
@@ -49,7 +55,12 @@ import javax.servlet.http.HttpServletResponse
   'com.netflix.spinnaker.clouddriver.listeners',
   'com.netflix.spinnaker.clouddriver.security',
 ])
-@EnableConfigurationProperties([CredentialsConfiguration, RequestQueueConfiguration])
+@EnableConfigurationProperties([
+  CredentialsConfiguration,
+  RequestQueueConfiguration,
+  ProviderFanOutConfiguration,
+  ApplicationSummaryViewConfiguration
+])
 public class WebConfig extends WebMvcConfigurerAdapter {
   @Autowired
   Registry registry
@@ -75,6 +86,24 @@ public class WebConfig extends WebMvcConfigurerAdapter {
     return RequestQueue.forConfig(dynamicConfigService, registry, requestQueueConfiguration);
   }
 
+  @Bean
+  ProviderFanOut providerFanOut(ProviderFanOutConfiguration providerFanOutConfiguration,
+                                Registry registry) {
+    return ProviderFanOut.forConfig(registry, providerFanOutConfiguration)
+  }
+
+  @Bean
+  @ConditionalOnProperty('applicationSummaryView.enabled')
+  ApplicationSummaryView applicationSummaryView(ApplicationSummaryViewConfiguration applicationSummaryViewConfiguration,
+                                                ProviderRegistry providerRegistry,
+                                                Optional<List<SearchableProvider>> searchableProviders) {
+    def applicationSummaryView = new ApplicationSummaryView(
+      applicationSummaryViewConfiguration, searchableProviders.orElse([])
+    )
+    providerRegistry.addCacheResultListener(applicationSummaryView)
+    return applicationSummaryView
+  }
+
   @Bean
   FilterRegistrationBean authenticatedRequestFilter() {
     def frb = new FilterRegistrationBean(new AuthenticatedRequestFilter(true))
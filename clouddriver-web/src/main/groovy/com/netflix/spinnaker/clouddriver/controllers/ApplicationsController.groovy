@@ -16,12 +16,15 @@
 
 package com.netflix.spinnaker.clouddriver.controllers
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.clouddriver.model.Application
 import com.netflix.spinnaker.clouddriver.model.ApplicationProvider
 import com.netflix.spinnaker.clouddriver.model.Cluster
 import com.netflix.spinnaker.clouddriver.model.ClusterProvider
 import com.netflix.spinnaker.clouddriver.model.view.ApplicationClusterViewModel
+import com.netflix.spinnaker.clouddriver.model.view.ApplicationSummaryView
 import com.netflix.spinnaker.clouddriver.model.view.ApplicationViewModel
+import com.netflix.spinnaker.clouddriver.requestqueue.ProviderFanOut
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue
 import com.netflix.spinnaker.kork.web.exceptions.NotFoundException
 import groovy.util.logging.Slf4j
@@ -31,7 +34,13 @@ import org.springframework.context.i18n.LocaleContextHolder
 import org.springframework.http.HttpStatus
 import org.springframework.security.access.prepost.PostFilter
 import org.springframework.security.access.prepost.PreAuthorize
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.context.SecurityContextHolder
 import org.springframework.web.bind.annotation.*
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody
+
+import javax.servlet.http.HttpServletRequest
+import java.util.function.Consumer
 
 @Slf4j
 @RestController
@@ -50,35 +59,89 @@ class ApplicationsController {
   @Autowired
   RequestQueue requestQueue
 
+  @Autowired
+  ObjectMapper objectMapper
+
+  @Autowired
+  AuthorizationSupport authorizationSupport
+
+  @Autowired(required = false)
+  ProviderFanOut providerFanOut = ProviderFanOut.sequential()
+
+  @Autowired(required = false)
+  ApplicationSummaryView applicationSummaryView
+
   @PreAuthorize("#restricted ? @fiatPermissionEvaluator.storeWholePermission() : true")
   @PostFilter("#restricted ? hasPermission(filterObject.name, 'APPLICATION', 'READ') : true")
   @RequestMapping(method = RequestMethod.GET)
   List<Application> list(@RequestParam(required = false, value = 'expand', defaultValue = 'true') boolean expand,
                          @RequestParam(required = false, value = 'restricted', defaultValue = 'true') boolean restricted) {
-    def results = requestQueue.execute("applications", {
-      applicationProviders.collectMany { it.getApplications(expand) ?: [] }
+    if (!applicationSummaryView) {
+      return loadApplications(expand)
+    }
+
+    // @PostFilter mutates the returned list, never hand out the shared one
+    return new ArrayList<Application>(applicationSummaryView.getApplications(expand, { loadApplications(expand) }))
+  }
+
+  /**
+   * Streaming variant of {@link #list}; applications are written out as each provider returns them, rather than sorted
+   * once every provider has. The {@code @PostFilter} of {@link #list} is applied to each application as it is written.
+   */
+  @PreAuthorize("#restricted ? @fiatPermissionEvaluator.storeWholePermission() : true")
+  @RequestMapping(method = RequestMethod.GET, params = "stream=true")
+  StreamingResponseBody streamList(@RequestParam(required = false, value = 'expand', defaultValue = 'true') boolean expand,
+                                   @RequestParam(required = false, value = 'restricted', defaultValue = 'true') boolean restricted,
+                                   HttpServletRequest request) {
+    Authentication auth = SecurityContextHolder.context.authentication
+    return JsonArrayStream.of(request, objectMapper, { Consumer<Object> sink ->
+      def write = { Application application ->
+        if (application && (!restricted || authorizationSupport.hasReadPermission(auth, application.name))) {
+          sink.accept(application)
+        }
+      }
+
+      if (applicationSummaryView) {
+        applicationSummaryView.getApplications(expand, { loadApplications(expand) }).each(write)
+      } else {
+        applicationProviders.each { ApplicationProvider provider ->
+          requestQueue.execute("applications", { provider.getApplications(expand) })?.each(write)
+        }
+      }
     })
-    results.removeAll([null])
-    results.sort { a, b -> a?.name?.toLowerCase() <=> b?.name?.toLowerCase() }
   }
 
   @PreAuthorize("hasPermission(#name, 'APPLICATION', 'READ')")
   @RequestMapping(value = "/{name:.+}", method = RequestMethod.GET)
   ApplicationViewModel get(@PathVariable String name) {
     try {
-      def apps = requestQueue.execute(name, {
-        applicationProviders.collect { it.getApplication(name) }
-      }) - null
-      if (!apps) {
+      def result = applicationSummaryView ?
+        applicationSummaryView.getSummary(name, { loadApplication(name) }) :
+        loadApplication(name)
+      if (!result) {
         throw new NotFoundException("Application does not exist (name: ${name})")
-      } else {
-        return transform(apps)
       }
+      return result
     } catch (e) {
       throw new NotFoundException("Application does not exist (name: ${name})")
     }
   }
 
+  private List<Application> loadApplications(boolean expand) {
+    def results = providerFanOut.collect(applicationProviders, { ApplicationProvider provider ->
+      requestQueue.execute("applications", { provider.getApplications(expand) })
+    }).collectMany { it ?: [] }
+    results.removeAll([null])
+    results.sort { a, b -> a?.name?.toLowerCase() <=> b?.name?.toLowerCase() }
+  }
+
+  private ApplicationViewModel loadApplication(String name) {
+    def apps = providerFanOut.collect(applicationProviders, { ApplicationProvider provider ->
+      requestQueue.execute(name, { provider.getApplication(name) })
+    }) - null
+    return apps ? transform(apps) : null
+  }
+
   private ApplicationViewModel transform(List<Application> apps) {
     def attributes = [:]
     ApplicationViewModel result = null
@@ -88,11 +151,11 @@ class ApplicationsController {
       }
       attributes << app.attributes
 
-      clusterProviders.collectMany { provider ->
+      providerFanOut.collect(clusterProviders, { ClusterProvider provider ->
         requestQueue.execute(app.name, {
           provider.getClusterSummaries(app.name)?.values()?.flatten() as Set ?: []
         })
-      }.each { Cluster cluster ->
+      }).flatten().each { Cluster cluster ->
         def account = cluster.accountName
         if (!result.clusters.containsKey(account)) {
           result.clusters[account] = []
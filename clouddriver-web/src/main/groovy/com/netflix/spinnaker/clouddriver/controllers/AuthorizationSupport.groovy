@@ -83,6 +83,25 @@ class AuthorizationSupport {
     return true
   }
 
+  /**
+   * Item-level READ check for responses that are streamed, and so can't be filtered after the fact.
+   * @return true if the user can read both the application and account, items missing either name are denied
+   */
+  boolean hasReadPermission(Authentication auth, String application, String account) {
+    if (!hasReadPermission(auth, application)) {
+      return false
+    }
+    return account && permissionEvaluator.hasPermission(auth, account, 'ACCOUNT', 'READ')
+  }
+
+  /**
+   * Item-level READ check for streamed items that only belong to an application.
+   * @return true if the user can read the application, items without an application name are denied
+   */
+  boolean hasReadPermission(Authentication auth, String application) {
+    return application && permissionEvaluator.hasPermission(auth, application, 'APPLICATION', 'READ')
+  }
+
   boolean filterLoadBalancerProviderItems(List<LoadBalancerProvider.Item> lbItems) {
     if (!lbItems) {
       return true
@@ -23,6 +23,7 @@ import com.netflix.spinnaker.clouddriver.model.ClusterProvider
 import com.netflix.spinnaker.clouddriver.model.ServerGroup
 import com.netflix.spinnaker.clouddriver.model.Summary
 import com.netflix.spinnaker.clouddriver.model.TargetServerGroup
+import com.netflix.spinnaker.clouddriver.requestqueue.ProviderFanOut
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue
 import com.netflix.spinnaker.kork.web.exceptions.NotFoundException
 import com.netflix.spinnaker.moniker.Moniker
@@ -51,6 +52,9 @@ class ClusterController {
   @Autowired
   RequestQueue requestQueue
 
+  @Autowired(required = false)
+  ProviderFanOut providerFanOut = ProviderFanOut.sequential()
+
   @Autowired
   ServerGroupController serverGroupController
 
@@ -77,8 +81,8 @@ class ClusterController {
   @PreAuthorize("hasPermission(#application, 'APPLICATION', 'READ') && hasPermission(#account, 'ACCOUNT', 'READ')")
   @RequestMapping(value = "/{account:.+}", method = RequestMethod.GET)
   Set<ClusterViewModel> getForAccount(@PathVariable String application, @PathVariable String account) {
-    def clusters = clusterProviders.collect {
-      def clusters = (Set<Cluster>) it.getClusters(application, account, false)
+    def clusters = providerFanOut.collect(clusterProviders, { ClusterProvider provider ->
+      def clusters = (Set<Cluster>) provider.getClusters(application, account, false)
       def clusterViews = []
       for (cluster in clusters) {
         clusterViews << new ClusterViewModel(
@@ -94,7 +98,7 @@ class ClusterController {
         )
       }
       clusterViews
-    }?.flatten() as Set<ClusterViewModel>
+    })?.flatten() as Set<ClusterViewModel>
     if (!clusters) {
       throw new NotFoundException("No clusters found (application: ${application}, account: ${account})")
     }
@@ -107,9 +111,9 @@ class ClusterController {
                                     @PathVariable String account,
                                     @PathVariable String name,
                                     @RequestParam(required = false, value = 'expand', defaultValue = 'true') boolean expand) {
-    def clusters = clusterProviders.collect { provider ->
+    def clusters = providerFanOut.collect(clusterProviders, { ClusterProvider provider ->
       requestQueue.execute(application, { provider.getCluster(application, account, name, expand) })
-    }
+    })
 
     clusters.removeAll([null])
     if (!clusters) {
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes a JSON array to the response one element at a time, as elements are produced.
+ *
+ * Elements are serialized and flushed in small batches rather than being collected into a list first, so the
+ * response body is never held in memory in full. Writes block when the client isn't keeping up, which in turn
+ * stalls the producer.
+ *
+ * Once the first batch has been flushed the response is committed; a failure after that point truncates the
+ * array rather than producing an error response.
+ *
+ * The body is written on an async request thread; the security context of the request that created it is restored
+ * there for as long as elements are produced and serialized.
+ */
+public class JsonArrayStream {
+
+  private static final int FLUSH_INTERVAL = 100;
+
+  public static StreamingResponseBody of(HttpServletRequest request,
+                                         ObjectMapper objectMapper,
+                                         Consumer<Consumer<Object>> producer) {
+    // the etag filter would otherwise buffer the entire body to compute a digest
+    ShallowEtagHeaderFilter.disableContentCaching(request);
+
+    ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    return outputStream -> {
+      SecurityContext previousContext = SecurityContextHolder.getContext();
+      SecurityContextHolder.setContext(securityContext);
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray();
+
+        int[] pending = {0};
+        producer.accept(element -> {
+          try {
+            writer.writeValue(generator, element);
+            if (++pending[0] >= FLUSH_INTERVAL) {
+              generator.flush();
+              pending[0] = 0;
+            }
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+
+        generator.writeEndArray();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      } finally {
+        SecurityContextHolder.setContext(previousContext);
+      }
+    };
+  }
+}
@@ -24,6 +24,7 @@ import com.netflix.spinnaker.clouddriver.model.Instance
 import com.netflix.spinnaker.clouddriver.model.ServerGroup
 import com.netflix.spinnaker.clouddriver.model.ServerGroupManager
 import com.netflix.spinnaker.clouddriver.model.view.ServerGroupViewModelPostProcessor
+import com.netflix.spinnaker.clouddriver.requestqueue.ProviderFanOut
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue
 import com.netflix.spinnaker.kork.web.exceptions.NotFoundException
 import com.netflix.spinnaker.moniker.Moniker
@@ -33,11 +34,18 @@ import org.springframework.context.MessageSource
 import org.springframework.security.access.prepost.PostAuthorize
 import org.springframework.security.access.prepost.PostFilter
 import org.springframework.security.access.prepost.PreAuthorize
+import org.springframework.security.access.prepost.PreFilter
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.context.SecurityContextHolder
 import org.springframework.web.bind.annotation.PathVariable
 import org.springframework.web.bind.annotation.RequestMapping
 import org.springframework.web.bind.annotation.RequestMethod
 import org.springframework.web.bind.annotation.RequestParam
 import org.springframework.web.bind.annotation.RestController
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody
+
+import javax.servlet.http.HttpServletRequest
+import java.util.function.Consumer
 
 @Slf4j
 @RestController
@@ -58,9 +66,15 @@ class ServerGroupController {
   @Autowired
   RequestQueue requestQueue
 
+  @Autowired(required = false)
+  ProviderFanOut providerFanOut = ProviderFanOut.sequential()
+
   @Autowired(required = false)
   ServerGroupViewModelPostProcessor serverGroupViewModelPostProcessor
 
+  @Autowired
+  AuthorizationSupport authorizationSupport
+
   @PreAuthorize("hasPermission(#account, 'ACCOUNT', 'READ')")
   @PostAuthorize("hasPermission(returnObject?.moniker?.app, 'APPLICATION', 'READ')")
   @RequestMapping(value = "/applications/{application}/serverGroups/{account}/{region}/{name:.+}", method = RequestMethod.GET)
@@ -91,9 +105,9 @@ class ServerGroupController {
 
     Boolean shouldIncludeDetails = Boolean.valueOf(includeDetails)
 
-    def matches = (Set<ServerGroup>) clusterProviders.findResults { provider ->
+    def matches = (Set<ServerGroup>) providerFanOut.collect(clusterProviders, { ClusterProvider provider ->
       requestQueue.execute(name, { provider.getServerGroup(account, region, name, shouldIncludeDetails) })
-    }
+    }).findAll()
     if (!matches) {
       throw new NotFoundException("Server group not found (account: ${account}, region: ${region}, name: ${name})")
     }
@@ -105,13 +119,13 @@ class ServerGroupController {
   }
 
   List<Map> expandedList(String application, String cloudProvider) {
-    return clusterProviders
-      .findAll { cloudProvider ? cloudProvider.equalsIgnoreCase(it.cloudProviderId) : true }
-      .findResults { ClusterProvider cp ->
+    def providers = clusterProviders.findAll { cloudProvider ? cloudProvider.equalsIgnoreCase(it.cloudProviderId) : true }
+    return providerFanOut.collect(providers, { ClusterProvider cp ->
       requestQueue.execute(application, {
         cp.getClusterDetails(application)?.values()
       })
-    }
+    })
+    .findAll()
     .collectNested { Cluster c ->
       c.serverGroups?.collect {
         expanded(it, c)
@@ -131,21 +145,23 @@ class ServerGroupController {
   }
 
   List<ServerGroupViewModel> summaryList(String application, String cloudProvider) {
-
     List<ServerGroupViewModel> serverGroupViews = []
+    eachServerGroupView(application, cloudProvider) { ServerGroupViewModel serverGroupView ->
+      serverGroupViews << serverGroupView
+    }
+    serverGroupViews
+  }
 
-    def clusters = (Set<Cluster>) clusterProviders
-      .findAll { cloudProvider ? cloudProvider.equalsIgnoreCase(it.cloudProviderId) : true }
-      .findResults { provider ->
+  private void eachServerGroupView(String application, String cloudProvider, Closure callback) {
+    def providers = clusterProviders.findAll { cloudProvider ? cloudProvider.equalsIgnoreCase(it.cloudProviderId) : true }
+    def clusters = (Set<Cluster>) providerFanOut.collect(providers, { ClusterProvider provider ->
       requestQueue.execute(application, { provider.getClusterDetails(application)?.values() })
-    }.flatten()
+    }).findAll().flatten()
     clusters.each { Cluster cluster ->
       cluster.serverGroups.each { ServerGroup serverGroup ->
-        serverGroupViews << new ServerGroupViewModel(serverGroup, cluster.name, cluster.accountName)
+        callback(new ServerGroupViewModel(serverGroup, cluster.name, cluster.accountName))
       }
     }
-
-    serverGroupViews
   }
 
   @PreAuthorize("hasPermission(#application, 'APPLICATION', 'READ')")
@@ -186,6 +202,37 @@ class ServerGroupController {
     }
   }
 
+  /**
+   * Streaming variant of {@code getServerGroups(applications)}; server groups are written out as each provider returns
+   * those of an application, instead of being collected for every application before serialization. The
+   * {@code @PostFilter} and {@code @PostAuthorize} of {@code getServerGroups} are applied to each server group as it is
+   * written.
+   */
+  @PreAuthorize("@fiatPermissionEvaluator.storeWholePermission()")
+  @PreFilter(value = "hasPermission(filterObject, 'APPLICATION', 'READ')", filterTarget = "applications")
+  @RequestMapping(value = "/serverGroups", method = RequestMethod.GET, params = "stream=true")
+  StreamingResponseBody streamServerGroups(@RequestParam(value = 'applications') List<String> applications,
+                                           @RequestParam(required = false, value = 'cloudProvider') String cloudProvider,
+                                           HttpServletRequest request) {
+    Authentication auth = SecurityContextHolder.context.authentication
+    def providers = clusterProviders.findAll { cloudProvider ? cloudProvider.equalsIgnoreCase(it.cloudProviderId) : true }
+    return JsonArrayStream.of(request, objectMapper, { Consumer<Object> sink ->
+      applications.each { String application ->
+        providers.each { ClusterProvider provider ->
+          def clusters = requestQueue.execute(application, { provider.getClusterDetails(application)?.values() })
+          clusters?.flatten()?.each { Cluster cluster ->
+            cluster.serverGroups.each { ServerGroup serverGroup ->
+              def serverGroupView = new ServerGroupViewModel(serverGroup, cluster.name, cluster.accountName)
+              if (authorizationSupport.hasReadPermission(auth, serverGroupView.application, serverGroupView.account)) {
+                sink.accept(serverGroupView)
+              }
+            }
+          }
+        }
+      }
+    })
+  }
+
   private List<ServerGroupViewModel> getServerGroupsForApplications(List<String> applications, String cloudProvider) {
     return applications.collectMany { summaryList(it, cloudProvider) }
   }
@@ -215,9 +262,9 @@ class ServerGroupController {
     Collection<Cluster> matches = clusters.findResults { accountAndName ->
       def (account, clusterName) = accountAndName.split(':')
       if (account && clusterName) {
-        return clusterProviders.findResults { clusterProvider ->
+        return providerFanOut.collect(clusterProviders, { ClusterProvider clusterProvider ->
           requestQueue.execute(application, { clusterProvider.getCluster(application, account, clusterName) })
-        }
+        }).findAll()
       }
       return null
     }.flatten()
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.model.view;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.netflix.spinnaker.cats.provider.CacheResultListener;
+import com.netflix.spinnaker.clouddriver.cache.SearchableProvider;
+import com.netflix.spinnaker.clouddriver.model.Application;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Materialized per-application summaries backing the /applications endpoints.
+ *
+ * Summaries are built on first read and then served from memory until a cache write touches the application's
+ * applications, clusters, serverGroups or loadBalancers keys, at which point the next read rebuilds that application
+ * only. Writes made by other nodes are not observed, so entries also expire after a fixed maximum age; with a shared
+ * backing store (e.g. redis or sql) summaries may be that stale, which is why the view has to be enabled explicitly.
+ *
+ * Only the {@code maxSummaries} most recently read applications are kept, and invalidations are forgotten once they
+ * are older than any summary could be, so memory doesn't grow with every application ever queried or written to.
+ */
+public class ApplicationSummaryView implements CacheResultListener {
+
+  private static final Set<String> SUMMARY_TYPES = new HashSet<>(
+    Arrays.asList("applications", "clusters", "serverGroups", "loadBalancers")
+  );
+
+  private final Map<String, SearchableProvider> searchableProviders;
+  private final long maxAgeMillis;
+  private final long minRefreshIntervalMillis;
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final Cache<String, Long> applicationInvalidations;
+  private final AtomicLong lastInvalidation = new AtomicLong();
+  private final AtomicLong lastUnattributedInvalidation = new AtomicLong();
+
+  private final Cache<String, Entry<ApplicationViewModel>> summaries;
+  private final ConcurrentMap<Boolean, Entry<List<Application>>> applicationLists = new ConcurrentHashMap<>();
+
+  public ApplicationSummaryView(ApplicationSummaryViewConfiguration configuration,
+                                Collection<SearchableProvider> searchableProviders) {
+    this.searchableProviders = searchableProviders
+      .stream()
+      .collect(Collectors.toMap(SearchableProvider::getProviderName, Function.identity(), (a, b) -> a));
+    this.maxAgeMillis = TimeUnit.SECONDS.toMillis(configuration.getMaxAgeSeconds());
+    this.minRefreshIntervalMillis = TimeUnit.SECONDS.toMillis(configuration.getMinRefreshIntervalSeconds());
+    this.summaries = CacheBuilder.newBuilder()
+      .maximumSize(configuration.getMaxSummaries())
+      .expireAfterWrite(maxAgeMillis, TimeUnit.MILLISECONDS)
+      .build();
+    this.applicationInvalidations = CacheBuilder.newBuilder()
+      .expireAfterWrite(maxAgeMillis, TimeUnit.MILLISECONDS)
+      .build();
+  }
+
+  /**
+   * @param loader Builds the summary from the underlying providers; a null summary is returned as-is and not stored.
+   */
+  public ApplicationViewModel getSummary(String application, Callable<ApplicationViewModel> loader) throws Exception {
+    String key = application.toLowerCase(Locale.ROOT);
+    Entry<ApplicationViewModel> entry = summaries.getIfPresent(key);
+    Long applicationInvalidation = applicationInvalidations.getIfPresent(key);
+    long invalidation = Math.max(applicationInvalidation == null ? 0L : applicationInvalidation,
+      lastUnattributedInvalidation.get());
+    if (entry != null && entry.isValid(invalidation)) {
+      return entry.value;
+    }
+
+    long loadSequence = sequence.get();
+    ApplicationViewModel summary = loader.call();
+    if (summary == null) {
+      summaries.invalidate(key);
+    } else {
+      summaries.put(key, new Entry<>(summary, loadSequence));
+    }
+    return summary;
+  }
+
+  /**
+   * The returned list is shared between callers and must not be mutated.
+   */
+  public List<Application> getApplications(boolean expand, Callable<List<Application>> loader) throws Exception {
+    Entry<List<Application>> entry = applicationLists.get(expand);
+    if (entry != null && entry.isValid(lastInvalidation.get())) {
+      return entry.value;
+    }
+
+    long loadSequence = sequence.get();
+    List<Application> applications = loader.call();
+    applicationLists.put(expand, new Entry<>(applications, loadSequence));
+    return applications;
+  }
+
+  @Override
+  public void cacheResultStored(String providerName,
+                                String sourceAgentType,
+                                Map<String, Collection<String>> stored,
+                                Map<String, Collection<String>> evicted) {
+    SearchableProvider searchableProvider = providerName == null ? null : searchableProviders.get(providerName);
+
+    boolean relevant = false;
+    boolean unattributed = false;
+    Set<String> applications = new HashSet<>();
+    for (Map<String, Collection<String>> identifiersByType : Arrays.asList(stored, evicted)) {
+      for (Map.Entry<String, Collection<String>> identifiers : identifiersByType.entrySet()) {
+        if (!SUMMARY_TYPES.contains(identifiers.getKey())) {
+          continue;
+        }
+
+        relevant = true;
+        for (String identifier : identifiers.getValue()) {
+          Map<String, String> parsed = searchableProvider == null ? null : searchableProvider.parseKey(identifier);
+          String application = parsed == null ? null : parsed.get("application");
+          if (application == null) {
+            unattributed = true;
+          } else {
+            applications.add(application.toLowerCase(Locale.ROOT));
+          }
+        }
+      }
+    }
+
+    if (!relevant) {
+      return;
+    }
+
+    long invalidation = sequence.incrementAndGet();
+    lastInvalidation.set(invalidation);
+    if (unattributed) {
+      // can't tell which applications were affected, so all of them are
+      lastUnattributedInvalidation.set(invalidation);
+    }
+    for (String application : applications) {
+      applicationInvalidations.put(application, invalidation);
+    }
+  }
+
+  private class Entry<T> {
+    private final T value;
+    private final long loadSequence;
+    private final long loadTime = System.currentTimeMillis();
+
+    Entry(T value, long loadSequence) {
+      this.value = value;
+      this.loadSequence = loadSequence;
+    }
+
+    boolean isValid(long invalidationSequence) {
+      long age = System.currentTimeMillis() - loadTime;
+      if (age >= maxAgeMillis) {
+        return false;
+      }
+
+      return loadSequence >= invalidationSequence || age < minRefreshIntervalMillis;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.model.view;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * The application summary view is only notified of writes made through the local node's provider caches, so it is
+ * disabled by default and meant for single-node deployments (or ones that tolerate summaries up to
+ * {@code maxAgeSeconds} stale).
+ */
+@ConfigurationProperties("applicationSummaryView")
+public class ApplicationSummaryViewConfiguration {
+  private boolean enabled = false;
+
+  /**
+   * Upper bound on how long a summary is served, regardless of invalidations. Covers writes made by other nodes.
+   */
+  private long maxAgeSeconds = 30;
+
+  /**
+   * Lower bound on how long a summary is served once it has been invalidated, so that continuous caching activity
+   * does not force a rebuild on every request.
+   */
+  private long minRefreshIntervalSeconds = 5;
+
+  /**
+   * How many application summaries are kept, the least recently read ones being dropped first.
+   */
+  private long maxSummaries = 1000;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getMaxAgeSeconds() {
+    return maxAgeSeconds;
+  }
+
+  public void setMaxAgeSeconds(long maxAgeSeconds) {
+    this.maxAgeSeconds = maxAgeSeconds;
+  }
+
+  public long getMinRefreshIntervalSeconds() {
+    return minRefreshIntervalSeconds;
+  }
+
+  public void setMinRefreshIntervalSeconds(long minRefreshIntervalSeconds) {
+    this.minRefreshIntervalSeconds = minRefreshIntervalSeconds;
+  }
+
+  public long getMaxSummaries() {
+    return maxSummaries;
+  }
+
+  public void setMaxSummaries(long maxSummaries) {
+    this.maxSummaries = maxSummaries;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.clouddriver.requestqueue.fanout.ConcurrentProviderFanOut;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Invokes an operation against every provider (ie. ClusterProvider, ApplicationProvider) backing a read endpoint.
+ *
+ * Results are returned in provider order, whichever provider answers first.
+ */
+public interface ProviderFanOut {
+
+  long DEFAULT_TIMEOUT_MILLIS = 60000;
+  int DEFAULT_CONCURRENCY_PER_REQUEST = 4;
+
+  static ProviderFanOut forConfig(Registry registry, ProviderFanOutConfiguration config) {
+    if (!config.isEnabled()) {
+      return sequential();
+    }
+
+    return new ConcurrentProviderFanOut(registry, config.getPoolSize(), config.getConcurrencyPerRequest(),
+      config.getTimeoutMillis());
+  }
+
+  static ProviderFanOut sequential() {
+    return new Sequential();
+  }
+
+  static ProviderFanOut concurrent(Registry registry, int poolSize, long timeoutMillis) {
+    return new ConcurrentProviderFanOut(registry, poolSize, timeoutMillis);
+  }
+
+  /**
+   * @return the result of {@code operation} for each provider, including any nulls.
+   */
+  <P, R> List<R> collect(Collection<P> providers, Function<P, R> operation) throws Throwable;
+
+  class Sequential implements ProviderFanOut {
+    @Override
+    public <P, R> List<R> collect(Collection<P> providers, Function<P, R> operation) {
+      List<R> results = new ArrayList<>(providers.size());
+      for (P provider : providers) {
+        results.add(operation.apply(provider));
+      }
+      return results;
+    }
+  }
+}
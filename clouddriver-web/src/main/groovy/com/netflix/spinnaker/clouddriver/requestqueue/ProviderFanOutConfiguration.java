@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Provider calls are fanned out concurrently only when {@code providerFanOut.enabled} is set, otherwise they are made
+ * sequentially as before.
+ */
+@ConfigurationProperties("providerFanOut")
+public class ProviderFanOutConfiguration {
+  private boolean enabled = false;
+  private long timeoutMillis = ProviderFanOut.DEFAULT_TIMEOUT_MILLIS;
+  private int poolSize = 20;
+  private int concurrencyPerRequest = ProviderFanOut.DEFAULT_CONCURRENCY_PER_REQUEST;
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+
+  public void setTimeoutMillis(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  public int getConcurrencyPerRequest() {
+    return concurrencyPerRequest;
+  }
+
+  public void setConcurrencyPerRequest(int concurrencyPerRequest) {
+    this.concurrencyPerRequest = concurrencyPerRequest;
+  }
+}
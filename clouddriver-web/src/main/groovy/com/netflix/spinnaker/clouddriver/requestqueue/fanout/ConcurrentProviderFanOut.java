@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue.fanout;
+
+import com.netflix.spectator.api.Registry;
+import com.netflix.spinnaker.cats.thread.NamedThreadFactory;
+import com.netflix.spinnaker.clouddriver.requestqueue.ProviderFanOut;
+import com.netflix.spinnaker.security.AuthenticatedRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Calls each provider on a shared, bounded pool so that latency tracks the slowest provider rather than the sum of
+ * all of them.
+ *
+ * A request takes at most {@code concurrencyPerRequest} threads of the pool, so that one request can't starve the
+ * others. Calls the pool hasn't started by the time the request gets to them run on the request's own thread, as they
+ * would have sequentially.
+ *
+ * A provider that has not answered within {@code timeoutMillis} of its call starting is cancelled and fails the
+ * fan-out with a {@link ProviderTimeoutException}, as its results would otherwise be silently missing; a provider that
+ * fails propagates its exception, same as a sequential call would.
+ */
+public class ConcurrentProviderFanOut implements ProviderFanOut {
+  private static final long NOT_STARTED = Long.MIN_VALUE;
+
+  private final Logger log = LoggerFactory.getLogger(getClass());
+
+  private final Registry registry;
+  private final ExecutorService executorService;
+  private final int concurrencyPerRequest;
+  private final long timeoutMillis;
+
+  public ConcurrentProviderFanOut(Registry registry, int poolSize, long timeoutMillis) {
+    this(registry, poolSize, DEFAULT_CONCURRENCY_PER_REQUEST, timeoutMillis);
+  }
+
+  public ConcurrentProviderFanOut(Registry registry, int poolSize, int concurrencyPerRequest, long timeoutMillis) {
+    if (poolSize < 1) {
+      throw new IllegalArgumentException("poolSize");
+    }
+
+    if (concurrencyPerRequest < 1) {
+      throw new IllegalArgumentException("concurrencyPerRequest");
+    }
+
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException("timeoutMillis");
+    }
+
+    this.registry = registry;
+    this.concurrencyPerRequest = concurrencyPerRequest;
+    this.timeoutMillis = timeoutMillis;
+    this.executorService = Executors.newFixedThreadPool(
+      poolSize, new NamedThreadFactory(ConcurrentProviderFanOut.class.getSimpleName())
+    );
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  @Override
+  public <P, R> List<R> collect(Collection<P> providers, Function<P, R> operation) throws Throwable {
+    if (providers.size() <= 1) {
+      // nothing to overlap, avoid the thread hop
+      return new Sequential().collect(providers, operation);
+    }
+
+    List<Call<P, R>> calls = new ArrayList<>(providers.size());
+    for (P provider : providers) {
+      calls.add(new Call<>(provider, operation));
+    }
+
+    AtomicInteger nextCall = new AtomicInteger();
+    Callable<Void> callRemaining = AuthenticatedRequest.propagate(() -> {
+      for (int i = nextCall.getAndIncrement(); i < calls.size(); i = nextCall.getAndIncrement()) {
+        calls.get(i).run();
+      }
+      return null;
+    });
+
+    List<Future<?>> workers = new ArrayList<>();
+    try {
+      for (int i = 0; i < Math.min(concurrencyPerRequest, calls.size()); i++) {
+        workers.add(executorService.submit(callRemaining));
+      }
+
+      // results are taken in provider order, so that callers merging them don't depend on which provider was fastest
+      List<R> results = new ArrayList<>(calls.size());
+      for (Call<P, R> call : calls) {
+        results.add(call.await());
+      }
+      return results;
+    } finally {
+      // interrupts the calls that timed out or were left behind by a failure, and leaves the rest unmade
+      nextCall.set(calls.size());
+      workers.forEach(worker -> worker.cancel(true));
+    }
+  }
+
+  private class Call<P, R> {
+    private final P provider;
+    private final Function<P, R> operation;
+    private final AtomicLong startedNanos = new AtomicLong(NOT_STARTED);
+    private final CompletableFuture<R> result = new CompletableFuture<>();
+
+    Call(P provider, Function<P, R> operation) {
+      this.provider = provider;
+      this.operation = operation;
+    }
+
+    void run() {
+      if (!startedNanos.compareAndSet(NOT_STARTED, System.nanoTime())) {
+        return;
+      }
+
+      try {
+        result.complete(operation.apply(provider));
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      }
+    }
+
+    R await() throws Throwable {
+      // a call the pool hasn't started yet is made on the calling thread
+      run();
+
+      try {
+        long remainingNanos = startedNanos.get() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - System.nanoTime();
+        return result.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+      } catch (ExecutionException e) {
+        throw e.getCause();
+      } catch (TimeoutException e) {
+        String providerName = provider.getClass().getSimpleName();
+        log.warn("Timed out waiting for provider (provider: {}, timeoutMillis: {})", providerName, timeoutMillis);
+        registry.counter("providerFanOut.timeouts", "provider", providerName).increment();
+        throw new ProviderTimeoutException(Collections.singletonList(providerName), timeoutMillis);
+      }
+    }
+  }
+}
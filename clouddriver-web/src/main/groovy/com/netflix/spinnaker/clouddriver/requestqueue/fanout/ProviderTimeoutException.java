@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue.fanout;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+/**
+ * Raised when a provider does not answer a fan-out in time, so that the request fails rather than returning the
+ * partial results of the providers that did answer.
+ */
+@ResponseStatus(value = HttpStatus.GATEWAY_TIMEOUT)
+public class ProviderTimeoutException extends RuntimeException {
+  ProviderTimeoutException(List<String> providerNames, long timeoutMillis) {
+    super("Timed out after " + timeoutMillis + "ms waiting for providers " + providerNames);
+  }
+}
@@ -16,9 +16,16 @@
 
 package com.netflix.spinnaker.clouddriver.controllers
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.netflix.spinnaker.clouddriver.model.*
 import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue
+import com.netflix.spinnaker.fiat.shared.FiatPermissionEvaluator
 import com.netflix.spinnaker.kork.web.exceptions.NotFoundException
+import com.netflix.spinnaker.security.User
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.context.SecurityContextHolder
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
@@ -157,4 +164,42 @@ class ApplicationControllerSpec extends Specification {
     "aws"          | "titus"        || "aws,titus"
     "aws"          | "aws"          || "aws"
   }
+
+  def "stream only the applications the user can read, with the security context of the request"() {
+    setup:
+    def auth = new TestingAuthenticationToken(new User(email: "testUser"), null)
+    SecurityContextHolder.context.authentication = auth
+    def permissionEvaluator = Mock(FiatPermissionEvaluator)
+    def appProvider = Mock(ApplicationProvider)
+    applicationsController.applicationProviders = [appProvider]
+    applicationsController.objectMapper = new ObjectMapper()
+    applicationsController.authorizationSupport = new AuthorizationSupport(permissionEvaluator: permissionEvaluator)
+    def outputStream = new ByteArrayOutputStream()
+    Authentication streamedAs = null
+
+    when:
+    def body = applicationsController.streamList(false /*expand*/, true /*restricted*/, new MockHttpServletRequest())
+    SecurityContextHolder.clearContext()
+    Thread.start { body.writeTo(outputStream) }.join()
+
+    then:
+    1 * appProvider.getApplications(false) >> [new TestApplication(name: "foo"), new TestApplication(name: "bar"), new TestApplication()]
+    1 * permissionEvaluator.hasPermission(auth, "foo", 'APPLICATION', 'READ') >> {
+      streamedAs = SecurityContextHolder.context.authentication
+      true
+    }
+    1 * permissionEvaluator.hasPermission(auth, "bar", 'APPLICATION', 'READ') >> false
+    0 * permissionEvaluator._
+    new ObjectMapper().readValue(outputStream.toByteArray(), List)*.name == ["foo"]
+    streamedAs == auth
+
+    cleanup:
+    SecurityContextHolder.clearContext()
+  }
+
+  static class TestApplication implements Application {
+    String name
+    Map<String, String> attributes = [:]
+    Map<String, Set<String>> clusterNames = [:]
+  }
 }
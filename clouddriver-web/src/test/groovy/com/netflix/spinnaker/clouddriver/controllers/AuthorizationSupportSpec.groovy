@@ -175,6 +175,41 @@ class AuthorizationSupportSpec extends Specification {
     list.size() == 1
   }
 
+  @Unroll
+  def "should deny streamed items missing an application or account name (application: #application, account: #account)"() {
+    given:
+    AuthorizationSupport support = new AuthorizationSupport(permissionEvaluator: permissionEvaluator)
+    def auth = SecurityContextHolder.context.authentication
+    permissionEvaluator.hasPermission(_, _, _, _) >> true
+
+    expect:
+    support.hasReadPermission(auth, "test", "account1")
+    !support.hasReadPermission(auth, application, account)
+
+    where:
+    application | account
+    null        | "account1"
+    ""          | "account1"
+    "test"      | null
+    "test"      | ""
+  }
+
+  def "should deny streamed applications without a name"() {
+    given:
+    AuthorizationSupport support = new AuthorizationSupport(permissionEvaluator: permissionEvaluator)
+    def auth = SecurityContextHolder.context.authentication
+
+    when:
+    def result = support.hasReadPermission(auth, name)
+
+    then:
+    0 * permissionEvaluator.hasPermission(_, _, 'APPLICATION', 'READ')
+    !result
+
+    where:
+    name << [null, ""]
+  }
+
   @Unroll
   def "should verify access to entity tags account/application"() {
     given:
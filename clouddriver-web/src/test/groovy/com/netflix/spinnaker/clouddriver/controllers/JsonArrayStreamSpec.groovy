@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.controllers
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.springframework.mock.web.MockHttpServletRequest
+import spock.lang.Specification
+
+import java.util.function.Consumer
+
+class JsonArrayStreamSpec extends Specification {
+
+  def objectMapper = new ObjectMapper()
+
+  def "should write every produced element as a single json array"() {
+    given:
+    def outputStream = new ByteArrayOutputStream()
+    def body = JsonArrayStream.of(new MockHttpServletRequest(), objectMapper, { Consumer<Object> sink ->
+      (1..250).each { sink.accept([name: "sg-${it}".toString()]) }
+    })
+
+    when:
+    body.writeTo(outputStream)
+    def result = objectMapper.readValue(outputStream.toByteArray(), List)
+
+    then:
+    result.size() == 250
+    result.first() == [name: "sg-1"]
+    result.last() == [name: "sg-250"]
+  }
+
+  def "should write an empty array when nothing is produced"() {
+    given:
+    def outputStream = new ByteArrayOutputStream()
+    def body = JsonArrayStream.of(new MockHttpServletRequest(), objectMapper, { Consumer<Object> sink -> })
+
+    when:
+    body.writeTo(outputStream)
+
+    then:
+    outputStream.toString() == "[]"
+  }
+}
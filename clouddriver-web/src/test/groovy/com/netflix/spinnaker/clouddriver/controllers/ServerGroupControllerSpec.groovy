@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.controllers
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.netflix.spinnaker.clouddriver.model.Cluster
+import com.netflix.spinnaker.clouddriver.model.ClusterProvider
+import com.netflix.spinnaker.clouddriver.model.ServerGroup
+import com.netflix.spinnaker.clouddriver.requestqueue.RequestQueue
+import com.netflix.spinnaker.fiat.shared.FiatPermissionEvaluator
+import com.netflix.spinnaker.security.User
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.security.authentication.TestingAuthenticationToken
+import org.springframework.security.core.Authentication
+import org.springframework.security.core.context.SecurityContextHolder
+import spock.lang.Specification
+
+class ServerGroupControllerSpec extends Specification {
+
+  def auth = new TestingAuthenticationToken(new User(email: "testUser"), null)
+  def permissionEvaluator = Mock(FiatPermissionEvaluator)
+  def clusterProvider = Mock(ClusterProvider)
+  def objectMapper = new ObjectMapper()
+
+  ServerGroupController serverGroupController = new ServerGroupController(
+    clusterProviders: [clusterProvider],
+    objectMapper: objectMapper,
+    requestQueue: RequestQueue.noop(),
+    authorizationSupport: new AuthorizationSupport(permissionEvaluator: permissionEvaluator)
+  )
+
+  def setup() {
+    SecurityContextHolder.context.authentication = auth
+  }
+
+  def cleanup() {
+    SecurityContextHolder.clearContext()
+  }
+
+  def "should stream only the server groups the user can read"() {
+    given:
+    def outputStream = new ByteArrayOutputStream()
+
+    when:
+    def body = serverGroupController.streamServerGroups(["foo", "bar"], null, new MockHttpServletRequest())
+    body.writeTo(outputStream)
+
+    then:
+    1 * clusterProvider.getClusterDetails("foo") >> [
+      test: [cluster("foo", "test", "foo-v001")] as Set,
+      prod: [cluster("foo", "prod", "foo-v002")] as Set,
+      none: [cluster("foo", null, "foo-v003")] as Set
+    ]
+    1 * clusterProvider.getClusterDetails("bar") >> [test: [cluster("bar", "test", "bar-v001")] as Set]
+    3 * permissionEvaluator.hasPermission(auth, "foo", 'APPLICATION', 'READ') >> true
+    1 * permissionEvaluator.hasPermission(auth, "bar", 'APPLICATION', 'READ') >> false
+    1 * permissionEvaluator.hasPermission(auth, "test", 'ACCOUNT', 'READ') >> true
+    1 * permissionEvaluator.hasPermission(auth, "prod", 'ACCOUNT', 'READ') >> false
+    // the server group without an account is denied without asking for a null account
+    0 * permissionEvaluator._
+
+    objectMapper.readValue(outputStream.toByteArray(), List)*.name == ["foo-v001"]
+  }
+
+  def "should produce and serialize server groups with the security context of the request"() {
+    given:
+    def outputStream = new ByteArrayOutputStream()
+    Authentication loadedAs = null
+
+    when:
+    def body = serverGroupController.streamServerGroups(["foo"], null, new MockHttpServletRequest())
+    SecurityContextHolder.clearContext()
+    Thread.start { body.writeTo(outputStream) }.join()
+
+    then:
+    1 * clusterProvider.getClusterDetails("foo") >> {
+      loadedAs = SecurityContextHolder.context.authentication
+      [test: [cluster("foo", "test", "foo-v001")] as Set]
+    }
+    1 * permissionEvaluator.hasPermission(auth, "foo", 'APPLICATION', 'READ') >> true
+    1 * permissionEvaluator.hasPermission(auth, "test", 'ACCOUNT', 'READ') >> true
+
+    loadedAs == auth
+    objectMapper.readValue(outputStream.toByteArray(), List)*.name == ["foo-v001"]
+  }
+
+  private Cluster cluster(String name, String account, String serverGroupName) {
+    def serverGroup = Mock(ServerGroup) {
+      getName() >> serverGroupName
+    }
+    return Mock(Cluster) {
+      getName() >> name
+      getAccountName() >> account
+      getServerGroups() >> ([serverGroup] as Set)
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.model.view
+
+import com.netflix.spinnaker.clouddriver.cache.SearchableProvider
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+
+class ApplicationSummaryViewSpec extends Specification {
+
+  def searchableProvider = Stub(SearchableProvider) {
+    getProviderName() >> "aws"
+    parseKey(_) >> { String key -> [application: key.split(":")[2]] }
+  }
+
+  def view = new ApplicationSummaryView(
+    new ApplicationSummaryViewConfiguration(minRefreshIntervalSeconds: 0),
+    [searchableProvider]
+  )
+
+  def "should serve summaries from memory until the application is written to"() {
+    given:
+    def loader = Mock(Callable)
+
+    when:
+    view.getSummary("foo", loader)
+    view.getSummary("foo", loader)
+
+    then:
+    1 * loader.call() >> new ApplicationViewModel(name: "foo")
+
+    when: "an unrelated application is written to"
+    view.cacheResultStored("aws", "agent", [clusters: ["aws:clusters:bar:test:bar-main"]], [:])
+    view.getSummary("foo", loader)
+
+    then:
+    0 * loader.call()
+
+    when: "a server group for the application is evicted"
+    view.cacheResultStored("aws", "agent", [:], [serverGroups: ["aws:serverGroups:foo:test:us-west-1:foo-v000"]])
+    view.getSummary("foo", loader)
+
+    then:
+    1 * loader.call() >> new ApplicationViewModel(name: "foo")
+  }
+
+  def "should ignore writes to types that do not contribute to the summary"() {
+    given:
+    def loader = Mock(Callable)
+
+    when:
+    view.getSummary("foo", loader)
+    view.cacheResultStored("aws", "agent", [instances: ["aws:instances:foo:test:i-1234"]], [:])
+    view.getSummary("foo", loader)
+
+    then:
+    1 * loader.call() >> new ApplicationViewModel(name: "foo")
+  }
+
+  def "should not store missing applications"() {
+    given:
+    def loader = Mock(Callable)
+
+    when:
+    def first = view.getSummary("foo", loader)
+    def second = view.getSummary("foo", loader)
+
+    then:
+    2 * loader.call() >>> [null, new ApplicationViewModel(name: "foo")]
+    first == null
+    second.name == "foo"
+  }
+
+  def "should only keep the most recently read summaries"() {
+    given:
+    def view = new ApplicationSummaryView(
+      new ApplicationSummaryViewConfiguration(minRefreshIntervalSeconds: 0, maxSummaries: 1),
+      [searchableProvider]
+    )
+    def loader = Mock(Callable)
+
+    when:
+    view.getSummary("foo", loader)
+    view.getSummary("bar", loader)
+    view.getSummary("foo", loader)
+
+    then:
+    3 * loader.call() >> new ApplicationViewModel(name: "foo")
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License")
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.netflix.spinnaker.clouddriver.requestqueue.fanout
+
+import com.netflix.spectator.api.NoopRegistry
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ConcurrentProviderFanOutSpec extends Specification {
+
+  @AutoCleanup("shutdown")
+  def fanOut = new ConcurrentProviderFanOut(new NoopRegistry(), 4, 1000)
+
+  def "should call every provider concurrently"() {
+    given: "providers that only complete once all of them have started"
+    def latch = new CountDownLatch(3)
+
+    when:
+    def results = fanOut.collect(["a", "b", "c"], { String provider ->
+      latch.countDown()
+      assert latch.await(500, TimeUnit.MILLISECONDS)
+      return provider.toUpperCase()
+    })
+
+    then:
+    results as Set == ["A", "B", "C"] as Set
+  }
+
+  def "should fail when a provider exceeds the timeout"() {
+    given:
+    def fanOut = new ConcurrentProviderFanOut(new NoopRegistry(), 2, 50)
+
+    when:
+    fanOut.collect(["fast", "slow"], { String provider ->
+      if (provider == "slow") {
+        Thread.sleep(5000)
+      }
+      return provider
+    })
+
+    then:
+    def e = thrown(ProviderTimeoutException)
+    e.message.contains("String")
+
+    cleanup:
+    fanOut.shutdown()
+  }
+
+  def "should return results in provider order"() {
+    when:
+    def results = fanOut.collect(["a", "b", "c"], { String provider ->
+      Thread.sleep(provider == "a" ? 200 : 0)
+      return provider.toUpperCase()
+    })
+
+    then:
+    results == ["A", "B", "C"]
+  }
+
+  def "should not count the time a call waited for a thread against its timeout"() {
+    given: "a single thread for more calls than fit in one timeout"
+    def fanOut = new ConcurrentProviderFanOut(new NoopRegistry(), 1, 1, 300)
+
+    when:
+    def results = fanOut.collect(["a", "b", "c", "d"], { String provider ->
+      Thread.sleep(150)
+      return provider
+    })
+
+    then:
+    results == ["a", "b", "c", "d"]
+
+    cleanup:
+    fanOut.shutdown()
+  }
+
+  def "should propagate provider failures"() {
+    when:
+    fanOut.collect(["a", "b"], { String provider ->
+      if (provider == "b") {
+        throw new IllegalStateException(provider)
+      }
+      return provider
+    })
+
+    then:
+    thrown(IllegalStateException)
+  }
+}